@@ -89,7 +89,7 @@ public class AuthenticationFilter implements Filter {
                         remoteUser);
                 String extendedToken;
                 if (tokenIsUsed) {
-                    extendedToken = tokenHandler.extendToken(authorizationHeader);
+                    extendedToken = tokenHandler.renewToken(authorizationHeader);
                 } else {
                     // we have a remote user but no token was provided
                     extendedToken = tokenHandler.createToken(remoteUser);
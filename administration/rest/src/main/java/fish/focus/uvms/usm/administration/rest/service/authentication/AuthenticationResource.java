@@ -73,7 +73,7 @@ public class AuthenticationResource {
 
         AuthenticationJwtResponse ret = new AuthenticationJwtResponse();
         try {
-            AuthenticationResponse response = service.authenticateUser(request);
+            AuthenticationResponse response = service.authenticateUser(request, servletRequest.getRemoteAddr());
 
             if (response != null) {
                 ret.setAuthenticated(response.isAuthenticated());
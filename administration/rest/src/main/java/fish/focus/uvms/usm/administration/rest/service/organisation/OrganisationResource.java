@@ -333,6 +333,12 @@ public class OrganisationResource {
      * @param name          the organisation name
      * @param nation        the organisation nation
      * @param status        the organisation status
+     * @param pagination    "keyset" for keyset pagination, by cursor rather
+     *                      than by offset
+     * @param cursor        the (keyset) pagination cursor, as returned with the
+     *                      previous page (none for the first page)
+     * @param exactCount    whether the total (in keyset mode) must be exact
+     *                      rather than counted up to one minute ago
      * @return an OK status and the list of organisations that meet the criteria,
      * or a BAD_REQUEST error code in case the provided input incomplete, with an
      * INTERNAL_SERVER_ERROR error code in case an internal error prevented
@@ -349,7 +355,10 @@ public class OrganisationResource {
                                       @DefaultValue("DESC") @QueryParam("sortDirection") String sortDirection,
                                       @QueryParam("name") String name,
                                       @QueryParam("nation") String nation,
-                                      @QueryParam("status") String status) {
+                                      @QueryParam("status") String status,
+                                      @QueryParam("pagination") String pagination,
+                                      @QueryParam("cursor") String cursor,
+                                      @DefaultValue("false") @QueryParam("exactCount") boolean exactCount) {
         LOGGER.debug("findOrganisations() - (ENTER)");
 
         // Setup paginator
@@ -358,6 +367,9 @@ public class OrganisationResource {
         paginator.setLimit(limit);
         paginator.setSortColumn(sortColumn);
         paginator.setSortDirection(sortDirection);
+        paginator.setKeyset("keyset".equalsIgnoreCase(pagination) || cursor != null);
+        paginator.setCursor(cursor);
+        paginator.setExactCount(exactCount);
 
         ServiceRequest<FindOrganisationsQuery> request = new ServiceRequest<>();
         request.setRequester(servletRequest.getRemoteUser());
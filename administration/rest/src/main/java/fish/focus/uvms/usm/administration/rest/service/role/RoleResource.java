@@ -100,6 +100,12 @@ public class RoleResource {
      * @param nameOfRole      the requested role
      * @param applicationName the requested application
      * @param status          the requested status of the role
+     * @param pagination      "keyset" for keyset pagination, by cursor rather
+     *                        than by offset
+     * @param cursor          the (keyset) pagination cursor, as returned with the
+     *                        previous page (none for the first page)
+     * @param exactCount      whether the total (in keyset mode) must be exact
+     *                        rather than counted up to one minute ago
      * @return an OK status and the list of roles that meet the criteria, or a
      * BAD_REQUEST error code in case the provided input incomplete, with an
      * INTERNAL_SERVER_ERROR error code in case an internal error prevented
@@ -116,7 +122,10 @@ public class RoleResource {
                               @DefaultValue("DESC") @QueryParam("sortDirection") String sortDirection,
                               @QueryParam("role") String nameOfRole,
                               @QueryParam("application") String applicationName,
-                              @QueryParam("status") String status) {
+                              @QueryParam("status") String status,
+                              @QueryParam("pagination") String pagination,
+                              @QueryParam("cursor") String cursor,
+                              @DefaultValue("false") @QueryParam("exactCount") boolean exactCount) {
         LOGGER.debug("findRoles() - (ENTER)");
 
         // Setup paginator
@@ -125,6 +134,9 @@ public class RoleResource {
         paginator.setLimit(limit);
         paginator.setSortColumn(sortColumn);
         paginator.setSortDirection(sortDirection);
+        paginator.setKeyset("keyset".equalsIgnoreCase(pagination) || cursor != null);
+        paginator.setCursor(cursor);
+        paginator.setExactCount(exactCount);
 
         ServiceRequest<FindRolesQuery> request = new ServiceRequest<>();
         request.setRequester(servletRequest.getRemoteUser());
@@ -204,6 +204,12 @@ public class ScopeResource {
      * @param nameOfScope     the requested scope
      * @param applicationName the requested application
      * @param status          the requested status of the scope
+     * @param pagination      "keyset" for keyset pagination, by cursor rather
+     *                        than by offset
+     * @param cursor          the (keyset) pagination cursor, as returned with the
+     *                        previous page (none for the first page)
+     * @param exactCount      whether the total (in keyset mode) must be exact
+     *                        rather than counted up to one minute ago
      * @return an OK status and the list of scopes that meet the criteria, or a
      * BAD_REQUEST error code in case the provided input incomplete, with an
      * INTERNAL_SERVER_ERROR error code in case an internal error prevented
@@ -220,7 +226,10 @@ public class ScopeResource {
                                @DefaultValue("DESC") @QueryParam("sortDirection") String sortDirection,
                                @QueryParam("name") String nameOfScope,
                                @QueryParam("application") String applicationName,
-                               @QueryParam("status") String status) {
+                               @QueryParam("status") String status,
+                               @QueryParam("pagination") String pagination,
+                               @QueryParam("cursor") String cursor,
+                               @DefaultValue("false") @QueryParam("exactCount") boolean exactCount) {
         LOGGER.debug("findScopes() - (ENTER)");
 
         // Setup paginator
@@ -229,6 +238,9 @@ public class ScopeResource {
         paginator.setLimit(limit);
         paginator.setSortColumn(sortColumn);
         paginator.setSortDirection(sortDirection);
+        paginator.setKeyset("keyset".equalsIgnoreCase(pagination) || cursor != null);
+        paginator.setCursor(cursor);
+        paginator.setExactCount(exactCount);
 
         ServiceRequest<FindScopesQuery> request = new ServiceRequest<>();
         request.setRequester(servletRequest.getRemoteUser());
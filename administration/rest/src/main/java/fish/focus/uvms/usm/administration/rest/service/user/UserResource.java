@@ -5,6 +5,7 @@ import fish.focus.uvms.usm.administration.rest.ResponseWrapper;
 import fish.focus.uvms.usm.administration.rest.ServiceArrayResponse;
 import fish.focus.uvms.usm.administration.rest.common.DateParser;
 import fish.focus.uvms.usm.administration.rest.common.ExceptionHandler;
+import fish.focus.uvms.usm.administration.service.JsonBConfiguratorExtended;
 import fish.focus.uvms.usm.administration.service.user.ManageUserService;
 import fish.focus.uvms.usm.administration.service.user.ViewUsersService;
 import fish.focus.uvms.usm.administration.service.userContext.UserContextService;
@@ -12,10 +13,12 @@ import fish.focus.uvms.usm.administration.service.userPreference.UserPreferenceS
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PostConstruct;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import javax.json.bind.Jsonb;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.constraints.Max;
 import javax.ws.rs.*;
@@ -23,6 +26,13 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -33,6 +43,7 @@ import java.util.List;
 @Produces(MediaType.APPLICATION_JSON)
 public class UserResource {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserResource.class);
+    private static final String NDJSON = "application/x-ndjson";
 
     @EJB
     private ViewUsersService service;
@@ -49,6 +60,13 @@ public class UserResource {
     @Context
     private HttpServletRequest servletRequest;
 
+    private Jsonb jsonb;
+
+    @PostConstruct
+    public void init() {
+        jsonb = new JsonBConfiguratorExtended().getContext(null);
+    }
+
     /**
      * Retrieves a list of users(containing only the basic info) plus a total
      * results value that meet the provided criteria and the provided pagination
@@ -69,6 +87,12 @@ public class UserResource {
      * @param activeFrom    the date (in ISO 8601 format) user is active from
      * @param activeTo      the date (in ISO 8601 format) user is active to
      * @param status        the requested status of the user
+     * @param pagination    "keyset" for keyset pagination, by cursor rather
+     *                      than by offset
+     * @param cursor        the (keyset) pagination cursor, as returned with the
+     *                      previous page (none for the first page)
+     * @param exactCount    whether the total (in keyset mode) must be exact
+     *                      rather than counted up to one minute ago
      * @return an OK statues and the list of users that meet the criteria, or a
      * BAD_REQUEST error code in case the provided input incomplete, with an
      * INTERNAL_SERVER_ERROR error code in case an internal error prevented
@@ -88,7 +112,10 @@ public class UserResource {
                               @QueryParam("organisation") String organisation,
                               @QueryParam("activeFrom") String activeFrom,
                               @QueryParam("activeTo") String activeTo,
-                              @QueryParam("status") String status) {
+                              @QueryParam("status") String status,
+                              @QueryParam("pagination") String pagination,
+                              @QueryParam("cursor") String cursor,
+                              @DefaultValue("false") @QueryParam("exactCount") boolean exactCount) {
         LOGGER.debug("findUsers() - (ENTER)");
 
         ServiceRequest<FindUsersQuery> request = new ServiceRequest<>();
@@ -102,6 +129,9 @@ public class UserResource {
         paginator.setLimit(limit);
         paginator.setSortColumn(sortColumn);
         paginator.setSortDirection(sortDirection);
+        paginator.setKeyset("keyset".equalsIgnoreCase(pagination) || cursor != null);
+        paginator.setCursor(cursor);
+        paginator.setExactCount(exactCount);
 
         // Setup query
         FindUsersQuery query = new FindUsersQuery();
@@ -569,6 +599,72 @@ public class UserResource {
         return ret;
     }
 
+    /**
+     * Exports all users, with their contexts and preferences, as
+     * newline-delimited JSON (one user per line), streamed from the database
+     * as the response is written. The requester is authorised before the
+     * response is built.
+     *
+     * @param jwtToken  the JWT token identifying the service requester, optional if
+     *                  the service requester is authenticated by the J2EE container
+     * @param roleName  the name of the Role of the selected UserContext (optional)
+     * @param scopeName the name of the Scope of the selected UserContext
+     *                  (optional)
+     * @return the exported users with an OK status; or a FORBIDDEN status if
+     * the requester is not authenticated; or an UNAUTHORIZED status if the
+     * requester is not authorised to use the service; or an
+     * INTERNAL_SERVER_ERROR status if an internal error prevented servicing the
+     * request. Errors occurring once the export has started writing abort the
+     * response instead.
+     */
+    @GET
+    @Path("export")
+    @Produces(NDJSON)
+    public Response exportUsers(@HeaderParam("authorization") String jwtToken,
+                                @HeaderParam("roleName") String roleName,
+                                @HeaderParam("scopeName") String scopeName) {
+        LOGGER.debug("exportUsers() - (ENTER)");
+
+        ServiceRequest<NoBody> request = new ServiceRequest<>();
+        request.setRequester(servletRequest.getRemoteUser());
+        request.setRoleName(roleName);
+        request.setScopeName(scopeName);
+        request.setBody(new NoBody());
+
+        Response ret;
+        try {
+            service.authoriseExport(request);
+
+            StreamingOutput stream = output -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                try {
+                    service.exportUsers(request, user -> writeLine(writer, jsonb.toJson(user)));
+                    writer.flush();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } catch (Exception e) {
+                    Response error = ExceptionHandler.handleException(e);
+                    throw new WebApplicationException(Response.fromResponse(error).type(MediaType.APPLICATION_JSON).build());
+                }
+            };
+            ret = Response.ok(stream).build();
+        } catch (Exception e) {
+            ret = ExceptionHandler.handleException(e);
+        }
+
+        LOGGER.debug("exportUsers() - (LEAVE)");
+        return ret;
+    }
+
+    private static void writeLine(Writer writer, String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Copy a list of a given contexts/preferences to a specified user
      *
@@ -9,10 +9,16 @@ import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
+import fish.focus.uvms.usm.administration.domain.PaginationResponse;
+import fish.focus.uvms.usm.administration.domain.Paginator;
+import fish.focus.uvms.usm.service.impl.UnitOfWork;
+
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * JDBC based data access object for the retrieval of information.
@@ -25,6 +31,15 @@ public class BaseJdbcDao {
     private static final Logger LOGGER = LoggerFactory.getLogger(BaseJdbcDao.class);
     private static final String FAILED_TO_EXECUTE_QUERY = "Failed to execute query: ";
     private static final String DATASOURCE_NAME = "jdbc/USM2";
+    private static final long COUNT_TTL = (60 * 1000);
+    private static final int MAX_CACHED_COUNTS = 1000;
+    private static final ConcurrentMap<String, CachedCount> COUNTS = new ConcurrentHashMap<>();
+
+    /**
+     * Opening of the derived table wrapping the (filtered) query of a
+     * listing paginated with keyset pagination.
+     */
+    protected static final String KEYSET_QUERY = "select * from (";
     private DataSource dataSource;
 
     public BaseJdbcDao() {
@@ -52,12 +67,18 @@ public class BaseJdbcDao {
         LOGGER.debug("lookupDatasource() - (LEAVE)");
     }
 
+    /**
+     * Gets a connection, shared with the other data access objects taking
+     * part in the current unit of work (if any).
+     *
+     * @see UnitOfWork
+     */
     protected Connection getConnection()
             throws SQLException {
         if (dataSource == null) {
             lookupDatasource();
         }
-        return dataSource.getConnection();
+        return UnitOfWork.getConnection(dataSource);
     }
 
     /**
@@ -75,11 +96,9 @@ public class BaseJdbcDao {
         PreparedStatement ps = null;
         ResultSet rs = null;
         try {
-            co = dataSource.getConnection();
+            co = getConnection();
             ps = co.prepareStatement(query.getStatement());
-            for (int i = 0; i < query.getParameters().size(); i++) {
-                bindParameter(ps, i + 1, query.getParameters().get(i));
-            }
+            bindParameters(ps, query);
             rs = ps.executeQuery();
             while (rs.next()) {
                 ret.add(rm.mapRow(rs));
@@ -112,11 +131,9 @@ public class BaseJdbcDao {
         ResultSet rs = null;
 
         try {
-            co = dataSource.getConnection();
+            co = getConnection();
             ps = co.prepareStatement(query.getStatement());
-            for (int i = 0; i < query.getParameters().size(); i++) {
-                bindParameter(ps, i + 1, query.getParameters().get(i));
-            }
+            bindParameters(ps, query);
             rs = ps.executeQuery();
             if (rs.next()) {
                 Object tm = rm.mapRow(rs);
@@ -153,11 +170,9 @@ public class BaseJdbcDao {
         ResultSet rs = null;
 
         try {
-            co = dataSource.getConnection();
+            co = getConnection();
             ps = co.prepareStatement(query.getStatement());
-            for (int i = 0; i < query.getParameters().size(); i++) {
-                bindParameter(ps, i + 1, query.getParameters().get(i));
-            }
+            bindParameters(ps, query);
             rs = ps.executeQuery();
 
             ret = rs.next();
@@ -180,11 +195,9 @@ public class BaseJdbcDao {
         ResultSet rs = null;
 
         try {
-            co = dataSource.getConnection();
+            co = getConnection();
             ps = co.prepareStatement(query.getStatement());
-            for (int i = 0; i < query.getParameters().size(); i++) {
-                bindParameter(ps, i + 1, query.getParameters().get(i));
-            }
+            bindParameters(ps, query);
             rs = ps.executeQuery();
             if (rs.next()) {
                 ret = rs.getInt(1);
@@ -216,11 +229,9 @@ public class BaseJdbcDao {
         ResultSet rs = null;
 
         try {
-            co = dataSource.getConnection();
+            co = getConnection();
             ps = co.prepareStatement(query.getStatement());
-            for (int i = 0; i < query.getParameters().size(); i++) {
-                bindParameter(ps, i + 1, query.getParameters().get(i));
-            }
+            bindParameters(ps, query);
             rs = ps.executeQuery();
             if (rs.next()) {
                 ret = (int) rm.mapRow(rs);
@@ -237,6 +248,129 @@ public class BaseJdbcDao {
         return ret;
     }
 
+    /**
+     * Gets the total number of records that the given query will fetch,
+     * possibly as counted (by the same query) up to one minute ago.
+     *
+     * @param query the query to be executed
+     * @param rm    the RowMapper to be used to map results to objects
+     * @param exact whether the count must be exact, rather than cached
+     * @return the total number of records
+     */
+    public int queryForTotalRecords(Query query, RowMapper rm, boolean exact) {
+        String key = query.getStatement() + query.getParameters();
+        long now = System.currentTimeMillis();
+
+        CachedCount cached = exact ? null : COUNTS.get(key);
+        if (cached == null || cached.timestamp + COUNT_TTL <= now) {
+            if (COUNTS.size() >= MAX_CACHED_COUNTS) {
+                COUNTS.values().removeIf(c -> c.timestamp + COUNT_TTL <= now);
+                if (COUNTS.size() >= MAX_CACHED_COUNTS) {
+                    COUNTS.clear();
+                }
+            }
+            cached = new CachedCount(queryForTotalRecords(query, rm), now);
+            COUNTS.put(key, cached);
+        }
+        return cached.count;
+    }
+
+    /**
+     * Gets one page of the objects matching the given query, using keyset
+     * (seek) pagination: the page starts right after the row identified by
+     * the cursor of the paginator (or at the first row if there is none),
+     * which avoids numbering and skipping all the preceding rows.
+     * <p>
+     * Rows are sorted on the sort column, in the sort direction of the
+     * paginator (with null values last when ascending, first when
+     * descending), then on the key column.
+     *
+     * @param query      the query to be executed
+     * @param rm         the RowMapper to be used to map results to objects
+     * @param sortColumn the (query) column results are sorted on
+     * @param keyColumn  the (query) column uniquely identifying results
+     * @param paginator  the paginator, providing the sort direction, the
+     *                   limit and the cursor
+     * @return the page of objects and the cursor of the next page (null on
+     * the last page), without total
+     * @throws IllegalArgumentException in case the cursor is invalid or does
+     *                                  not match the sort order
+     */
+    @SuppressWarnings("unchecked")
+    public <T> PaginationResponse<T> queryForPage(Query query, RowMapper rm, String sortColumn, String keyColumn,
+                                                  Paginator paginator) {
+        LOGGER.debug("queryForPage(" + query + ", " + paginator + ") - (ENTER)");
+
+        boolean descending = "DESC".equalsIgnoreCase(paginator.getSortDirection());
+        String order = descending ? " desc" : " asc";
+        int limit = paginator.getLimit();
+
+        Query page = new Query("select * from (").append(query.getStatement()).append(") ks where 1=1 ");
+        page.addAll(query);
+        if (paginator.getCursor() != null && !paginator.getCursor().isEmpty()) {
+            KeysetCursor cursor = KeysetCursor.decode(paginator.getCursor());
+            if (!cursor.getSortColumn().equals(sortColumn) || cursor.isDescending() != descending) {
+                throw new IllegalArgumentException("Pagination cursor does not match the sort order");
+            }
+            String after = descending ? "<" : ">";
+            if (cursor.getSortValue() != null) {
+                page.append("and (" + sortColumn + after + "? or (" + sortColumn + "=? and " +
+                        keyColumn + after + "?)" + (descending ? ") " : " or " + sortColumn + " is null) "))
+                        .add(cursor.getSortValue())
+                        .add(cursor.getSortValue())
+                        .add(cursor.getKeyValue());
+            } else {
+                page.append("and (" + sortColumn + (descending ? " is not null or " : " is null and ") +
+                        keyColumn + after + "?) ")
+                        .add(cursor.getKeyValue());
+            }
+        }
+        page.append("order by " + sortColumn + order + "," + keyColumn + order);
+        if (limit != -1) {
+            // One more row, telling whether there is a next page
+            page.append(" fetch first ? rows only").add(limit + 1, Binder.INTEGER);
+        }
+
+        List<Object[]> keys = new ArrayList<>();
+        List<T> results = queryForList(page, rs -> {
+            keys.add(new Object[]{rs.getObject(sortColumn), rs.getObject(keyColumn)});
+            return rm.mapRow(rs);
+        });
+
+        PaginationResponse<T> ret = new PaginationResponse<>();
+        if (limit > 0 && results.size() > limit) {
+            results = new ArrayList<>(results.subList(0, limit));
+            Object[] last = keys.get(limit - 1);
+            ret.setNextCursor(new KeysetCursor(sortColumn, descending, last[0], last[1]).encode());
+        }
+        ret.setResults(results);
+
+        LOGGER.debug("queryForPage() - (LEAVE)");
+        return ret;
+    }
+
+    /**
+     * Binds all the parameters of the given query, with their binders when
+     * known, according to their (run-time) type otherwise.
+     *
+     * @param stm   the prepared-statement of the query
+     * @param query the query
+     * @throws SQLException in case a parameter could not be bound
+     */
+    public void bindParameters(PreparedStatement stm, Query query)
+            throws SQLException {
+        List parameters = query.getParameters();
+        List<Binder> binders = query.getBinders();
+        for (int i = 0; i < parameters.size(); i++) {
+            Binder binder = binders.get(i);
+            if (binder != null) {
+                binder.bind(stm, i + 1, parameters.get(i));
+            } else {
+                bindParameter(stm, i + 1, parameters.get(i));
+            }
+        }
+    }
+
     public void bindParameter(PreparedStatement stm, int idx, Object param)
             throws SQLException {
         if (param == null) {
@@ -302,6 +436,16 @@ public class BaseJdbcDao {
         }
     }
 
+    private static class CachedCount {
+        private final int count;
+        private final long timestamp;
+
+        private CachedCount(int count, long timestamp) {
+            this.count = count;
+            this.timestamp = timestamp;
+        }
+    }
+
     public static class StringMapper implements RowMapper {
 
         public StringMapper() {
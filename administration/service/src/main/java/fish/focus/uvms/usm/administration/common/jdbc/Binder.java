@@ -0,0 +1,66 @@
+package fish.focus.uvms.usm.administration.common.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+
+/**
+ * Binds a parameter of a known type to a prepared-statement, resolved once
+ * per query template rather than on every call.
+ */
+public enum Binder {
+    STRING {
+        @Override
+        public void bind(PreparedStatement ps, int idx, Object value) throws SQLException {
+            if (value == null) {
+                ps.setNull(idx, Types.VARCHAR);
+            } else {
+                ps.setString(idx, (String) value);
+            }
+        }
+    },
+    INTEGER {
+        @Override
+        public void bind(PreparedStatement ps, int idx, Object value) throws SQLException {
+            if (value == null) {
+                ps.setNull(idx, Types.INTEGER);
+            } else {
+                ps.setInt(idx, (Integer) value);
+            }
+        }
+    },
+    LONG {
+        @Override
+        public void bind(PreparedStatement ps, int idx, Object value) throws SQLException {
+            if (value == null) {
+                ps.setNull(idx, Types.BIGINT);
+            } else {
+                ps.setLong(idx, (Long) value);
+            }
+        }
+    },
+    TIMESTAMP {
+        @Override
+        public void bind(PreparedStatement ps, int idx, Object value) throws SQLException {
+            if (value == null) {
+                ps.setNull(idx, Types.TIMESTAMP);
+            } else if (value instanceof Timestamp) {
+                ps.setTimestamp(idx, (Timestamp) value);
+            } else {
+                ps.setTimestamp(idx, new Timestamp(((Date) value).getTime()));
+            }
+        }
+    };
+
+    /**
+     * Binds the given value to the given prepared-statement parameter.
+     *
+     * @param ps    the prepared-statement
+     * @param idx   the (1-based) parameter index
+     * @param value the possibly-null value
+     * @throws SQLException in case the value could not be bound
+     */
+    public abstract void bind(PreparedStatement ps, int idx, Object value) throws SQLException;
+}
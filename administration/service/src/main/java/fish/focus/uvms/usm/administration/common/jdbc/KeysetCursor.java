@@ -0,0 +1,132 @@
+package fish.focus.uvms.usm.administration.common.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Opaque (base64url) cursor of keyset pagination, holding the sort order
+ * and the sort and key values of the last row of a page.
+ */
+class KeysetCursor {
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte NUMBER = 2;
+    private static final byte TIMESTAMP = 3;
+
+    private final String sortColumn;
+    private final boolean descending;
+    private final Object sortValue;
+    private final Object keyValue;
+
+    KeysetCursor(String sortColumn, boolean descending, Object sortValue, Object keyValue) {
+        this.sortColumn = sortColumn;
+        this.descending = descending;
+        this.sortValue = normalise(sortValue);
+        this.keyValue = normalise(keyValue);
+    }
+
+    String getSortColumn() {
+        return sortColumn;
+    }
+
+    boolean isDescending() {
+        return descending;
+    }
+
+    Object getSortValue() {
+        return sortValue;
+    }
+
+    Object getKeyValue() {
+        return keyValue;
+    }
+
+    /**
+     * Encodes this cursor.
+     *
+     * @return the opaque cursor
+     */
+    String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(sortColumn);
+            out.writeBoolean(descending);
+            writeValue(out, sortValue);
+            writeValue(out, keyValue);
+        } catch (IOException exc) {
+            throw new IllegalStateException("Failed to encode cursor", exc);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Decodes an opaque cursor.
+     *
+     * @param cursor the opaque cursor
+     * @return the decoded cursor
+     * @throws IllegalArgumentException in case the cursor is invalid
+     */
+    static KeysetCursor decode(String cursor) {
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            String sortColumn = in.readUTF();
+            boolean descending = in.readBoolean();
+            Object sortValue = readValue(in);
+            Object keyValue = readValue(in);
+            return new KeysetCursor(sortColumn, descending, sortValue, keyValue);
+        } catch (IOException | IllegalArgumentException exc) {
+            throw new IllegalArgumentException("Invalid pagination cursor: " + cursor);
+        }
+    }
+
+    private static Object normalise(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Date && !(value instanceof Timestamp)) {
+            return new Timestamp(((Date) value).getTime());
+        } else if (value != null && !(value instanceof String) && !(value instanceof Timestamp)) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Long) {
+            out.writeByte(NUMBER);
+            out.writeLong((Long) value);
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case NUMBER:
+                return in.readLong();
+            case TIMESTAMP:
+                Timestamp ret = new Timestamp(in.readLong());
+                ret.setNanos(in.readInt());
+                return ret;
+            case STRING:
+                return in.readUTF();
+            default:
+                throw new IOException("Unknown value type: " + type);
+        }
+    }
+}
@@ -5,12 +5,13 @@ import java.util.List;
 
 /**
  * Holds an SQL query expressed as a prepared-statement and its
- * bind parameters.
+ * bind parameters, with their binders when known (see {@link QueryTemplate}).
  */
 public class Query {
 
     private final StringBuilder statement = new StringBuilder();
     private final List parameters = new ArrayList();
+    private final List<Binder> binders = new ArrayList<>();
 
     public Query() {
     }
@@ -72,11 +73,49 @@ public class Query {
      * @return this instance
      */
     public Query add(Object parameter) {
+        return add(parameter, null);
+    }
+
+    /**
+     * Adds the provided parameter, and its binder, to the list of bind
+     * parameters.
+     *
+     * @param parameter the parameter to be added
+     * @param binder    the binder of the parameter, or <i>null</i> to bind
+     *                  it according to its (run-time) type
+     * @return this instance
+     */
+    public Query add(Object parameter, Binder binder) {
         parameters.add(parameter);
+        binders.add(binder);
 
         return this;
     }
 
+    /**
+     * Adds the bind parameters of the provided query, with their binders.
+     *
+     * @param query the query whose parameters are to be added
+     * @return this instance
+     */
+    public Query addAll(Query query) {
+        for (int i = 0; i < query.parameters.size(); i++) {
+            add(query.parameters.get(i), query.binders.get(i));
+        }
+
+        return this;
+    }
+
+    /**
+     * Gets the list of binders, one for each bind parameter.
+     *
+     * @return the possibly empty list of binders, holding <i>null</i> for
+     * the parameters to be bound according to their (run-time) type
+     */
+    public List<Binder> getBinders() {
+        return binders;
+    }
+
     /**
      * Closes unbalanced parenthesis.
      */
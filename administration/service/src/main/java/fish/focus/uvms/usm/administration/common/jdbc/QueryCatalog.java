@@ -0,0 +1,159 @@
+package fish.focus.uvms.usm.administration.common.jdbc;
+
+import fish.focus.uvms.usm.administration.domain.Paginator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Catalog of the query templates of a (filtered and paginated) listing.
+ * <p>
+ * A listing is a selection from a base query, narrowed by optional
+ * filters. The templates are keyed by shape, i.e. by the set of filters
+ * present: the count and selection templates of every shape are built
+ * once, when the catalog is created, while the (offset) page templates are
+ * built on first use of a shape and sort order, and re-used afterwards. The
+ * SQL of a given shape is thus always the same, which lets the database
+ * (and the statement cache) re-use it.
+ */
+public class QueryCatalog {
+    private static final int MAX_FILTERS = 16;
+
+    private final Filter[] filters;
+    private final QueryTemplate[] selects;
+    private final QueryTemplate[] rows;
+    private final QueryTemplate[] counts;
+    private final ConcurrentMap<String, QueryTemplate> pages = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new catalog, building the count and selection templates of
+     * all shapes.
+     *
+     * @param selection      the selected columns (and possibly the first
+     *                       tables) of the listing
+     * @param countSelection the selected column (and possibly the first
+     *                       tables) of the count of the listing
+     * @param from           the base query, from the (rest of the) tables to
+     *                       the where clause
+     * @param filters        the optional filters, appended to the where clause
+     */
+    public QueryCatalog(String selection, String countSelection, String from, Filter... filters) {
+        if (filters.length > MAX_FILTERS) {
+            throw new IllegalArgumentException("Too many filters: " + filters.length);
+        }
+        this.filters = filters.clone();
+
+        int shapes = 1 << filters.length;
+        selects = new QueryTemplate[shapes];
+        rows = new QueryTemplate[shapes];
+        counts = new QueryTemplate[shapes];
+        for (int shape = 0; shape < shapes; shape++) {
+            QueryTemplate where = new QueryTemplate(from);
+            for (int i = 0; i < filters.length; i++) {
+                if ((shape & (1 << i)) != 0) {
+                    where = where.append(filters[i].sql, filters[i].binders);
+                }
+            }
+            selects[shape] = where.wrap("select " + selection, "");
+            rows[shape] = selects[shape].wrap(BaseJdbcDao.KEYSET_QUERY, ") du");
+            counts[shape] = where.wrap("select count(*) from (select " + countSelection, ") du");
+        }
+    }
+
+    /**
+     * Creates the query counting the rows of the listing.
+     *
+     * @param values the value of each filter, <i>null</i> for absent filters
+     * @return the count query
+     */
+    public Query count(Object... values) {
+        return counts[shape(values)].bind(expand(values));
+    }
+
+    /**
+     * Creates the query selecting all the rows of the listing, e.g. to be
+     * paginated with keyset pagination.
+     *
+     * @param values the value of each filter, <i>null</i> for absent filters
+     * @return the selection query
+     */
+    public Query select(Object... values) {
+        return rows[shape(values)].bind(expand(values));
+    }
+
+    /**
+     * Creates the query selecting one page of the rows of the listing,
+     * using offset pagination.
+     *
+     * @param sortColumn the (query) column rows are sorted on
+     * @param paginator  the paginator, providing the sort direction, the
+     *                   offset and the limit (-1 for all rows)
+     * @param values     the value of each filter, <i>null</i> for absent
+     *                   filters
+     * @return the page query
+     */
+    public Query page(String sortColumn, Paginator paginator, Object... values) {
+        int shape = shape(values);
+        String direction = "DESC".equalsIgnoreCase(paginator.getSortDirection()) ? "DESC" : "ASC";
+        int limit = paginator.getLimit();
+        String key = shape + " " + sortColumn + " " + direction + " " + (limit != -1);
+
+        QueryTemplate template = pages.computeIfAbsent(key, k -> {
+            String prefix = "select * from (select ROW_NUMBER() over(order by " + sortColumn + " " + direction +
+                    ") as rn, du.* from(";
+            if (limit != -1) {
+                return selects[shape].wrap(prefix, ") du) us where rn between ? and ? order by rn",
+                        Binder.INTEGER, Binder.INTEGER);
+            }
+            return selects[shape].wrap(prefix, ") du) us ");
+        });
+
+        List<Object> parameters = expand(values);
+        if (limit != -1) {
+            parameters.add(paginator.getOffset() + 1);
+            parameters.add(paginator.getOffset() + limit);
+        }
+        return template.bind(parameters);
+    }
+
+    private int shape(Object[] values) {
+        if (values.length != filters.length) {
+            throw new IllegalArgumentException("Expected " + filters.length + " filter values, got " + values.length);
+        }
+        int ret = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                ret |= 1 << i;
+            }
+        }
+        return ret;
+    }
+
+    private List<Object> expand(Object[] values) {
+        List<Object> ret = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                for (int j = 0; j < filters[i].binders.length; j++) {
+                    ret.add(values[i]);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * An optional filter of a listing: an SQL fragment of the where clause,
+     * all the parameters of which are bound to the (same) filter value.
+     */
+    public static class Filter {
+        private final String sql;
+        private final Binder[] binders;
+
+        public Filter(String sql, Binder... binders) {
+            this.sql = sql;
+            this.binders = binders.clone();
+        }
+    }
+}
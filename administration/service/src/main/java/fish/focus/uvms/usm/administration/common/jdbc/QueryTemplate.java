@@ -0,0 +1,112 @@
+package fish.focus.uvms.usm.administration.common.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable SQL query expressed as a prepared-statement, with the binders
+ * of its parameters, from which queries are created by binding values.
+ */
+public final class QueryTemplate {
+
+    private final String statement;
+    private final List<Binder> binders;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param statement the SQL prepared-statement
+     * @param binders   the binders of the statement parameters, in order
+     */
+    public QueryTemplate(String statement, Binder... binders) {
+        this(statement, Arrays.asList(binders));
+    }
+
+    private QueryTemplate(String statement, List<Binder> binders) {
+        this.statement = statement;
+        this.binders = Collections.unmodifiableList(new ArrayList<>(binders));
+    }
+
+    /**
+     * Gets the SQL prepared-statement.
+     *
+     * @return the SQL prepared-statement
+     */
+    public String getStatement() {
+        return statement;
+    }
+
+    /**
+     * Gets the binders of the statement parameters.
+     *
+     * @return the possibly-empty list of binders
+     */
+    public List<Binder> getBinders() {
+        return binders;
+    }
+
+    /**
+     * Creates a new template, appending the provided SQL fragment and the
+     * binders of its parameters.
+     *
+     * @param sql     the SQL fragment to be appended
+     * @param binders the binders of the fragment parameters
+     * @return the new template
+     */
+    public QueryTemplate append(String sql, Binder... binders) {
+        List<Binder> all = new ArrayList<>(this.binders);
+        all.addAll(Arrays.asList(binders));
+        return new QueryTemplate(statement + sql, all);
+    }
+
+    /**
+     * Creates a new template, wrapping this one between the provided SQL
+     * fragments.
+     *
+     * @param prefix  the SQL fragment to be prepended, without parameters
+     * @param suffix  the SQL fragment to be appended
+     * @param binders the binders of the parameters of the appended fragment
+     * @return the new template
+     */
+    public QueryTemplate wrap(String prefix, String suffix, Binder... binders) {
+        return new QueryTemplate(prefix + statement, this.binders).append(suffix, binders);
+    }
+
+    /**
+     * Creates a query from this template, binding the provided values.
+     *
+     * @param values the parameter values, in order
+     * @return the query
+     * @throws IllegalArgumentException in case the number of values does not
+     *                                  match the number of parameters
+     */
+    public Query bind(Object... values) {
+        return bind(Arrays.asList(values));
+    }
+
+    /**
+     * Creates a query from this template, binding the provided values.
+     *
+     * @param values the parameter values, in order
+     * @return the query
+     * @throws IllegalArgumentException in case the number of values does not
+     *                                  match the number of parameters
+     */
+    public Query bind(List<?> values) {
+        if (values.size() != binders.size()) {
+            throw new IllegalArgumentException("Expected " + binders.size() + " parameters, got " + values.size());
+        }
+        Query ret = new Query(statement);
+        for (int i = 0; i < values.size(); i++) {
+            ret.add(values.get(i), binders.get(i));
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "{" + statement + ", " + binders + "}";
+    }
+}
@@ -5,11 +5,13 @@ import java.util.List;
 
 /**
  * Holds a response that contains the response plus the total number of the results
+ * and, in keyset pagination mode, the cursor of the next page (if any)
  */
 public class PaginationResponse<T> implements Serializable {
     private static final long serialVersionUID = 1L;
     private List<T> results;
     private int total;
+    private String nextCursor;
 
     public PaginationResponse() {
     }
@@ -30,11 +32,20 @@ public class PaginationResponse<T> implements Serializable {
         this.total = total;
     }
 
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     @Override
     public String toString() {
         return "PaginationResponse{" +
                 "results=" + results +
                 "total=" + total +
+                "nextCursor=" + nextCursor +
                 '}';
     }
 
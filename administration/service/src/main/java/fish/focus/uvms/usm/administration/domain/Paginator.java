@@ -4,6 +4,9 @@ import java.io.Serializable;
 
 /**
  * object to be used for pagination
+ * <p>
+ * Pages are selected either by offset, or (in keyset mode) by the cursor
+ * returned with the previous page, which is cheaper for deep pages.
  */
 public class Paginator implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -11,6 +14,9 @@ public class Paginator implements Serializable {
     private int limit;
     private String sortColumn;
     private String sortDirection;
+    private boolean keyset;
+    private String cursor;
+    private boolean exactCount;
 
     public Paginator() {
     }
@@ -47,6 +53,30 @@ public class Paginator implements Serializable {
         this.sortDirection = sortDirection;
     }
 
+    public boolean isKeyset() {
+        return keyset;
+    }
+
+    public void setKeyset(boolean keyset) {
+        this.keyset = keyset;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public boolean isExactCount() {
+        return exactCount;
+    }
+
+    public void setExactCount(boolean exactCount) {
+        this.exactCount = exactCount;
+    }
+
     @Override
     public String toString() {
         return "Option{" +
@@ -54,6 +84,9 @@ public class Paginator implements Serializable {
                 ", limit=" + limit +
                 ", sortColumn=" + sortColumn +
                 ", sortDirection=" + sortDirection +
+                ", keyset=" + keyset +
+                ", cursor=" + cursor +
+                ", exactCount=" + exactCount +
                 '}';
     }
 
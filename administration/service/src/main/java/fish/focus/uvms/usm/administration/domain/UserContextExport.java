@@ -0,0 +1,61 @@
+package fish.focus.uvms.usm.administration.domain;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the exported details of a UserContext, with its preferences
+ */
+public class UserContextExport implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private Long userContextId;
+    private String role;
+    private String scope;
+    private List<Preference> preferences = new ArrayList<>();
+
+    public UserContextExport() {
+    }
+
+    public Long getUserContextId() {
+        return userContextId;
+    }
+
+    public void setUserContextId(Long userContextId) {
+        this.userContextId = userContextId;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public void setRole(String role) {
+        this.role = role;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public void setScope(String scope) {
+        this.scope = scope;
+    }
+
+    public List<Preference> getPreferences() {
+        return preferences;
+    }
+
+    public void setPreferences(List<Preference> preferences) {
+        this.preferences = preferences;
+    }
+
+    @Override
+    public String toString() {
+        return "UserContextExport{" +
+                "userContextId=" + userContextId +
+                ", role=" + role +
+                ", scope=" + scope +
+                ", preferences=" + preferences +
+                '}';
+    }
+}
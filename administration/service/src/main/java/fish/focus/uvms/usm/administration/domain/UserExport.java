@@ -0,0 +1,41 @@
+package fish.focus.uvms.usm.administration.domain;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the exported details of a User, with its contexts and preferences
+ */
+public class UserExport implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private UserAccount user;
+    private List<UserContextExport> contexts = new ArrayList<>();
+
+    public UserExport() {
+    }
+
+    public UserAccount getUser() {
+        return user;
+    }
+
+    public void setUser(UserAccount user) {
+        this.user = user;
+    }
+
+    public List<UserContextExport> getContexts() {
+        return contexts;
+    }
+
+    public void setContexts(List<UserContextExport> contexts) {
+        this.contexts = contexts;
+    }
+
+    @Override
+    public String toString() {
+        return "UserExport{" +
+                "user=" + user +
+                ", contexts=" + contexts +
+                '}';
+    }
+}
@@ -0,0 +1,227 @@
+package fish.focus.uvms.usm.administration.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * J2EE Singleton decoupling the administration services from the audit
+ * JMS queue.
+ * <p>
+ * Audit logs are appended to a bounded in-memory outbox once the business
+ * transaction commits (logs of rolled back transactions are discarded), and
+ * sent to the audit queue in batches by a background timer, so that the
+ * services neither pay the JMS latency nor fail when the broker does.
+ * Sending is retried, with an increasing delay, until the broker is back;
+ * an audit log failing to be sent {@value #MAX_ATTEMPTS} times is dropped
+ * (and logged), so that it cannot hold back the ones after it forever.
+ * When the outbox is full, appending waits briefly for room and the audit
+ * log is dropped (and logged) if none is made.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class AuditOutbox {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuditOutbox.class);
+    private static final int CAPACITY = 10000;
+    private static final int BATCH_SIZE = 200;
+    private static final long APPEND_TIMEOUT = 100;
+    private static final long MIN_RETRY_DELAY = (5 * 1000);
+    private static final long MAX_RETRY_DELAY = (5 * 60 * 1000);
+    static final int MAX_ATTEMPTS = 10;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    @Inject
+    private AuditProducer auditProducer;
+
+    private final BlockingDeque<Entry> pending = new LinkedBlockingDeque<>(CAPACITY);
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Consumer<String> sender;
+    private long retryDelay;
+    private long nextAttempt;
+
+    @PostConstruct
+    public void init() {
+        if (sender == null) {
+            sender = auditProducer::sendModuleMessage;
+        }
+    }
+
+    /**
+     * Appends an audit log to the outbox, as soon as the current transaction
+     * (if any) commits.
+     *
+     * @param auditLog the audit log message
+     */
+    public void append(String auditLog) {
+        if (txRegistry != null && txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // Nothing to do
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        offer(auditLog);
+                    }
+                }
+            });
+        } else {
+            offer(auditLog);
+        }
+    }
+
+    /**
+     * Sends the pending audit logs to the audit queue, in batches, until the
+     * outbox is empty or sending fails.
+     */
+    @Schedule(second = "*/5", minute = "*", hour = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public synchronized void flush() {
+        if (pending.isEmpty() || System.currentTimeMillis() < nextAttempt) {
+            return;
+        }
+        LOGGER.debug("flush() - (ENTER)");
+
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        while (pending.drainTo(batch, BATCH_SIZE) > 0) {
+            int count = 0;
+            try {
+                for (Entry entry : batch) {
+                    sender.accept(entry.auditLog);
+                    count++;
+                }
+            } catch (RuntimeException e) {
+                sent.addAndGet(count);
+                failed.incrementAndGet();
+                Entry entry = batch.get(count);
+                if (++entry.attempts >= MAX_ATTEMPTS) {
+                    // Carry on with the audit logs after it
+                    dropped.incrementAndGet();
+                    LOGGER.error("Failed to send audit log " + entry.attempts + " times, dropping it: " +
+                            entry.auditLog, e);
+                    requeue(batch.subList(count + 1, batch.size()));
+                    batch.clear();
+                    continue;
+                }
+                requeue(batch.subList(count, batch.size()));
+                retryDelay = Math.min(Math.max(2 * retryDelay, MIN_RETRY_DELAY), MAX_RETRY_DELAY);
+                nextAttempt = System.currentTimeMillis() + retryDelay;
+                LOGGER.warn("Failed to send audit logs, " + pending.size() + " pending, retrying in " +
+                        (retryDelay / 1000) + "s: " + e.getMessage());
+                return;
+            }
+            sent.addAndGet(count);
+            batch.clear();
+        }
+        retryDelay = 0;
+        nextAttempt = 0;
+
+        LOGGER.debug("flush() - (LEAVE): " + getMetrics());
+    }
+
+    /**
+     * Gets the counters of this outbox.
+     *
+     * @return the number of appended, sent, pending and dropped audit logs,
+     * and of failed sending attempts
+     */
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> ret = new LinkedHashMap<>();
+        ret.put("appended", appended.get());
+        ret.put("sent", sent.get());
+        ret.put("pending", (long) pending.size());
+        ret.put("dropped", dropped.get());
+        ret.put("failed", failed.get());
+        return ret;
+    }
+
+    /**
+     * Replaces the audit queue, e.g. with a local stand-in queue when no
+     * broker is available.
+     *
+     * @param sender the consumer of the audit logs
+     */
+    public void setSender(Consumer<String> sender) {
+        this.sender = sender;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        nextAttempt = 0;
+        flush();
+        if (!pending.isEmpty()) {
+            LOGGER.error("Discarding " + pending.size() + " unsent audit logs: " + pending);
+        }
+    }
+
+    private void offer(String auditLog) {
+        boolean offered = false;
+        try {
+            offered = pending.offer(new Entry(auditLog), APPEND_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (offered) {
+            appended.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+            LOGGER.error("Audit outbox is full, dropping audit log: " + auditLog);
+        }
+    }
+
+    private void requeue(List<Entry> unsent) {
+        for (int i = unsent.size() - 1; i >= 0; i--) {
+            if (!pending.offerFirst(unsent.get(i))) {
+                dropped.incrementAndGet();
+                LOGGER.error("Audit outbox is full, dropping audit log: " + unsent.get(i));
+            }
+        }
+    }
+
+    /**
+     * A pending audit log, with the number of failed attempts to send it.
+     */
+    private static class Entry {
+        private final String auditLog;
+        private int attempts;
+
+        Entry(String auditLog) {
+            this.auditLog = auditLog;
+        }
+
+        @Override
+        public String toString() {
+            return auditLog;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package fish.focus.uvms.usm.administration.service;
+
+import fish.focus.uvms.usm.administration.domain.USMApplication;
+import fish.focus.uvms.usm.information.domain.UserContext;
+import fish.focus.uvms.usm.information.domain.UserContextQuery;
+import fish.focus.uvms.usm.information.service.InformationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * J2EE Singleton holding the compiled USM permissions of the service
+ * requesters.<br/>
+ * Permissions are cached for 1 minute, and evicted as soon as roles, scopes
+ * or user contexts are modified through the administration services.
+ * <p>
+ * Evictions requested within a transaction take place once the transaction
+ * completes, so that permissions re-loaded by concurrent requests before
+ * the commit are not kept; permissions loaded while an eviction took place
+ * are not cached either.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class AuthorisationCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthorisationCache.class);
+    private static final long TTL = (60 * 1000);
+
+    @EJB
+    private InformationService infoService;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    private final ConcurrentMap<String, TimedKeeper> cache = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Retrieves the compiled USM permissions of the specified user.
+     *
+     * @param userName the user name
+     * @return the permission index of the user (never null)
+     */
+    public PermissionIndex getPermissions(String userName) {
+        TimedKeeper tk = cache.get(userName);
+        if (tk != null && tk.timestamp + TTL > System.currentTimeMillis()) {
+            return tk.index;
+        }
+
+        long generation = evictions.get();
+        UserContextQuery query = new UserContextQuery();
+        query.setApplicationName(USMApplication.USM.name());
+        query.setUserName(userName);
+        UserContext ctx = infoService.getUserContext(query);
+
+        PermissionIndex ret = PermissionIndex.compile(ctx);
+        if (evictions.get() == generation) {
+            cache.put(userName, new TimedKeeper(ret));
+        }
+        return ret;
+    }
+
+    /**
+     * Evicts the cached permissions of the specified user, once the current
+     * transaction (if any) completes.
+     *
+     * @param userName the user name
+     */
+    public void evict(String userName) {
+        if (userName != null) {
+            afterCompletion(() -> {
+                LOGGER.debug("evict(" + userName + ")");
+                evictions.incrementAndGet();
+                cache.remove(userName);
+            });
+        }
+    }
+
+    /**
+     * Evicts the cached permissions of all users, once the current
+     * transaction (if any) completes.
+     */
+    public void evictAll() {
+        afterCompletion(() -> {
+            LOGGER.debug("evictAll()");
+            evictions.incrementAndGet();
+            cache.clear();
+        });
+    }
+
+    private void afterCompletion(Runnable eviction) {
+        if (txRegistry != null && txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // Nothing to do
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+
+    private static class TimedKeeper {
+        private final long timestamp;
+        private final PermissionIndex index;
+
+        private TimedKeeper(PermissionIndex index) {
+            this.index = index;
+            this.timestamp = System.currentTimeMillis();
+        }
+    }
+
+}
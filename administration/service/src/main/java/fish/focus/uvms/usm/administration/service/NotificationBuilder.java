@@ -17,6 +17,8 @@ public class NotificationBuilder {
     private static final Logger LOGGER = LoggerFactory.getLogger(NotificationBuilder.class);
     private static final String PROPERTIES = "/notification.properties";
 
+    private static volatile Properties properties;
+
     public NotificationBuilder() {
     }
 
@@ -67,7 +69,21 @@ public class NotificationBuilder {
     }
 
 
-    private static Properties getProperties() {
+    /**
+     * Gets the notification properties, read once from the class-path.
+     *
+     * @return the notification properties
+     */
+    public static Properties getProperties() {
+        Properties ret = properties;
+        if (ret == null) {
+            ret = loadProperties();
+            properties = ret;
+        }
+        return ret;
+    }
+
+    private static Properties loadProperties() {
         Properties ret = new Properties();
 
         InputStream is = NotificationBuilder.class.getResourceAsStream(PROPERTIES);
@@ -11,15 +11,33 @@ import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Properties;
 
+/**
+ * Sends Notification messages via e-mail.
+ * <p>
+ * The (JNDI) mail session is looked up once and shared by all instances,
+ * unless a mail session is provided explicitly, e.g. a session targeting a
+ * local SMTP stand-in.
+ */
 public class NotificationSender {
     private static final Logger LOGGER = LoggerFactory.getLogger(NotificationSender.class);
-    private static final String PROPERTIES = "/notification.properties";
+
+    private static volatile Session sharedSession;
+
+    private final Session session;
 
     public NotificationSender() {
+        this(null);
+    }
+
+    /**
+     * Creates a sender using the provided mail session.
+     *
+     * @param session the mail session, or <i>null</i> to use the one bound
+     *                to the JNDI name configured in notification.properties
+     */
+    public NotificationSender(Session session) {
+        this.session = session;
     }
 
     /**
@@ -30,31 +48,54 @@ public class NotificationSender {
      */
     public void sendNotification(Notification msg) throws MessagingException {
         LOGGER.debug("sendNotification() - (ENTER)");
-        Session session = getSession();
 
-        Message message = new MimeMessage(session);
+        Transport.send(createMessage(getSession(), msg));
+
+        LOGGER.debug("sendNotification() - (LEAVE)");
+    }
+
+    /**
+     * Opens an SMTP connection for sending several Notification messages.
+     *
+     * @return the connection, to be closed once all messages are sent
+     * @throws MessagingException in case the connection fails to be opened
+     */
+    public Connection connect() throws MessagingException {
+        return new Connection(getSession());
+    }
+
+    private static Message createMessage(Session session, Notification msg) throws MessagingException {
+        Message ret = new MimeMessage(session);
         if (msg.getSender() != null) {
-            message.setFrom(new InternetAddress(msg.getSender()));
+            ret.setFrom(new InternetAddress(msg.getSender()));
         }
-        message.setRecipient(Message.RecipientType.TO,
+        ret.setRecipient(Message.RecipientType.TO,
                 new InternetAddress(msg.getRecipient()));
         if (msg.getSubject() != null) {
-            message.setSubject(msg.getSubject());
+            ret.setSubject(msg.getSubject());
         }
-        message.setText(msg.getContent());
-
-        Transport.send(message);
-
-        LOGGER.debug("sendNotification() - (LEAVE)");
+        ret.setText(msg.getContent());
+        return ret;
     }
 
     private Session getSession() throws MessagingException {
-        LOGGER.debug("getSession() - (ENTER)");
+        Session ret = session;
+        if (ret == null) {
+            ret = sharedSession;
+            if (ret == null) {
+                ret = lookupSession();
+                sharedSession = ret;
+            }
+        }
+        return ret;
+    }
+
+    private static Session lookupSession() throws MessagingException {
+        LOGGER.debug("lookupSession() - (ENTER)");
         InitialContext ctx = null;
         Session ret;
 
-        Properties prop = getProperties();
-        String smtpSession = prop.getProperty("smtp_session");
+        String smtpSession = NotificationBuilder.getProperties().getProperty("smtp_session");
 
         try {
             ctx = new InitialContext();
@@ -71,24 +112,46 @@ public class NotificationSender {
             }
         }
 
-        LOGGER.debug("getSession() - (LEAVE)");
+        LOGGER.debug("lookupSession() - (LEAVE)");
         return ret;
     }
 
-    private Properties getProperties() {
-        Properties ret = new Properties();
+    /**
+     * An SMTP connection, re-used for sending several messages and
+     * re-opened if the server closed it in between.
+     */
+    public static class Connection implements AutoCloseable {
+        private final Session session;
+        private final Transport transport;
 
-        InputStream is = getClass().getResourceAsStream(PROPERTIES);
-        try {
-            if (is == null) {
-                throw new IOException("Resource " + PROPERTIES + " not found");
-            } else {
-                ret.load(is);
+        private Connection(Session session) throws MessagingException {
+            this.session = session;
+            this.transport = session.getTransport();
+            this.transport.connect();
+        }
+
+        /**
+         * Sends the provided Notification message.
+         *
+         * @param msg the Notification message
+         * @throws MessagingException in case message fails to be sent
+         */
+        public void send(Notification msg) throws MessagingException {
+            Message message = createMessage(session, msg);
+            message.saveChanges();
+            if (!transport.isConnected()) {
+                transport.connect();
             }
-        } catch (IOException exc) {
-            LOGGER.error("Failed to load " + PROPERTIES, exc);
+            transport.sendMessage(message, message.getAllRecipients());
         }
 
-        return ret;
+        @Override
+        public void close() {
+            try {
+                transport.close();
+            } catch (MessagingException exc) {
+                LOGGER.info("Error closing SMTP connection", exc);
+            }
+        }
     }
 }
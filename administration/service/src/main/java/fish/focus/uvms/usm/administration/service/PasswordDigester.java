@@ -1,38 +1,38 @@
 package fish.focus.uvms.usm.administration.service;
 
+import fish.focus.uvms.usm.authentication.service.impl.PasswordHashService;
+
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 @Stateless
 public class PasswordDigester {
-    private static final String MD5 = "MD5";
+
+    @EJB
+    private PasswordHashService passwordHashService;
 
     /**
-     * Computes the MD5 hash of the provided password.
+     * Computes the (salted) hash of the provided password, using the
+     * currently configured hashing algorithm.
      *
      * @param password the password
-     * @return the computed hash as an hexadecimal string
-     * @throws RuntimeException in case the MD5 algorithm is not supported
+     * @return the computed self-describing hash
+     * @throws RuntimeException in case the hash could not be computed
      */
     public String hashPassword(String password) {
-        String ret = null;
-
-        if (password != null) {
-            try {
-                MessageDigest md = MessageDigest.getInstance(MD5);
-                md.update(password.getBytes());
-                byte[] digest = md.digest();
+        return passwordHashService.hashPassword(password);
+    }
 
-                StringBuilder sb = new StringBuilder();
-              for (byte b : digest) {
-                sb.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
-              }
-                ret = sb.toString();
-            } catch (NoSuchAlgorithmException ex) {
-                throw new RuntimeException("Failed to compute hash", ex);
-            }
-        }
-        return ret;
+    /**
+     * Verifies the provided password against the provided hash, whatever
+     * the hashing algorithm the hash was computed with.
+     *
+     * @param password the password
+     * @param hash     the stored hash
+     * @return true if the password matches the hash
+     * @throws RuntimeException in case the hash could not be computed
+     */
+    public boolean verifyPassword(String password, String hash) {
+        return passwordHashService.verifyPassword(password, hash);
     }
 }
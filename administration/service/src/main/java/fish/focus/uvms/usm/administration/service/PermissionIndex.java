@@ -0,0 +1,127 @@
+package fish.focus.uvms.usm.administration.service;
+
+import fish.focus.uvms.usm.administration.domain.USMApplication;
+import fish.focus.uvms.usm.administration.domain.USMFeature;
+import fish.focus.uvms.usm.information.domain.Context;
+import fish.focus.uvms.usm.information.domain.Feature;
+import fish.focus.uvms.usm.information.domain.UserContext;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiled, immutable view of the USM features granted to a single user.
+ * <p>
+ * Features are held as bit-sets of USMFeature ordinals, keyed by role and
+ * scope, so that an authorisation check is a couple of map look-ups instead
+ * of a walk through all the user contexts and their features.
+ */
+public class PermissionIndex {
+    /**
+     * Features of contexts without a scope, per role name
+     */
+    private final Map<String, BitSet> unscoped = new HashMap<>();
+    /**
+     * Features of contexts with a scope, per role name and scope name
+     */
+    private final Map<String, Map<String, BitSet>> scoped = new HashMap<>();
+    /**
+     * Features of contexts without a scope, regardless of the role
+     */
+    private final BitSet anyRoleUnscoped = new BitSet();
+    /**
+     * Features of contexts with a scope, per scope name, regardless of the role
+     */
+    private final Map<String, BitSet> anyRoleScoped = new HashMap<>();
+
+    private PermissionIndex() {
+    }
+
+    /**
+     * Compiles the USM features of the provided user context.
+     *
+     * @param userContext the (possibly null) user context
+     * @return the compiled permission index (never null)
+     */
+    public static PermissionIndex compile(UserContext userContext) {
+        PermissionIndex ret = new PermissionIndex();
+
+        if (userContext != null && userContext.getContextSet() != null &&
+                userContext.getContextSet().getContexts() != null) {
+            for (Context c : userContext.getContextSet().getContexts()) {
+                if (c.getRole() != null) {
+                    ret.add(c, toBitSet(c));
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Checks whether the specified feature is granted to the user when using
+     * the specified role and scope.
+     *
+     * @param roleName  the optional role name, any role matches if null
+     * @param scopeName the optional scope name
+     * @param feature   the feature
+     * @return true if the feature is granted, false otherwise
+     */
+    public boolean isGranted(String roleName, String scopeName, USMFeature feature) {
+        int bit = feature.ordinal();
+
+        if (roleName == null) {
+            return anyRoleUnscoped.get(bit) || isSet(anyRoleScoped.get(scopeName), bit);
+        }
+
+        if (isSet(unscoped.get(roleName), bit)) {
+            return true;
+        }
+        Map<String, BitSet> byScope = scoped.get(roleName);
+        return byScope != null && isSet(byScope.get(scopeName), bit);
+    }
+
+    private void add(Context c, BitSet features) {
+        String roleName = c.getRole().getRoleName();
+
+        if (c.getScope() == null) {
+            unscoped.computeIfAbsent(roleName, k -> new BitSet()).or(features);
+            anyRoleUnscoped.or(features);
+        } else {
+            String scopeName = c.getScope().getScopeName();
+            scoped.computeIfAbsent(roleName, k -> new HashMap<>())
+                    .computeIfAbsent(scopeName, k -> new BitSet()).or(features);
+            anyRoleScoped.computeIfAbsent(scopeName, k -> new BitSet()).or(features);
+        }
+    }
+
+    private static BitSet toBitSet(Context c) {
+        BitSet ret = new BitSet();
+
+        if (c.getRole().getFeatures() != null) {
+            for (Feature f : c.getRole().getFeatures()) {
+                if (USMApplication.USM.name().equals(f.getApplicationName())) {
+                    USMFeature usmFeature = toUSMFeature(f.getFeatureName());
+                    if (usmFeature != null) {
+                        ret.set(usmFeature.ordinal());
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static USMFeature toUSMFeature(String featureName) {
+        for (USMFeature f : USMFeature.values()) {
+            if (f.name().equals(featureName)) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSet(BitSet bits, int bit) {
+        return bits != null && bits.get(bit);
+    }
+
+}
@@ -1,19 +1,12 @@
 package fish.focus.uvms.usm.administration.service;
 
-import fish.focus.uvms.usm.information.domain.Context;
-import fish.focus.uvms.usm.information.domain.Feature;
-import fish.focus.uvms.usm.information.domain.UserContext;
-import fish.focus.uvms.usm.information.domain.UserContextQuery;
-import fish.focus.uvms.usm.information.service.InformationService;
 import fish.focus.uvms.usm.administration.domain.ServiceRequest;
-import fish.focus.uvms.usm.administration.domain.USMApplication;
 import fish.focus.uvms.usm.administration.domain.USMFeature;
 import fish.focus.uvms.usm.administration.domain.UnauthorisedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ejb.EJB;
-import javax.ejb.Stateless;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -27,7 +20,7 @@ public class RequestValidator {
     protected static final Logger LOGGER = LoggerFactory.getLogger(RequestValidator.class);
 
     @EJB
-    private InformationService infoService;
+    private AuthorisationCache authorisationCache;
 
     /**
      * Creates a new instance.
@@ -53,29 +46,8 @@ public class RequestValidator {
         assertNotEmpty("requester", input.getRequester());
 
         if (feature != null) {
-            UserContextQuery query = new UserContextQuery();
-            query.setApplicationName(USMApplication.USM.name());
-            query.setUserName(input.getRequester());
-            UserContext ctx = infoService.getUserContext(query);
-            boolean isAuthorised = false;
-            if (ctx != null && ctx.getContextSet() != null) {
-                for (Context c : ctx.getContextSet().getContexts()) {
-                    if (c.getRole() != null &&
-                            (input.getRoleName() == null || input.getRoleName().equals(c.getRole().getRoleName())) &&
-                            (c.getScope() == null || c.getScope().getScopeName().equals(input.getScopeName()))) {
-                        for (Feature f : c.getRole().getFeatures()) {
-                            if (USMApplication.USM.name().equals(f.getApplicationName()) &&
-                                    feature.name().equals(f.getFeatureName())) {
-                                isAuthorised = true;
-                                break;
-                            }
-                        }
-                    }
-                    if (isAuthorised) {
-                        break;
-                    }
-                }
-            }
+            PermissionIndex permissions = authorisationCache.getPermissions(input.getRequester());
+            boolean isAuthorised = permissions.isGranted(input.getRoleName(), input.getScopeName(), feature);
 
             if (!isAuthorised) {
                 LOGGER.info("User " + input.getRequester() +
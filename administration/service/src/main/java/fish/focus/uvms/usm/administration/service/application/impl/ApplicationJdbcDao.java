@@ -1,7 +1,10 @@
 package fish.focus.uvms.usm.administration.service.application.impl;
 
 import fish.focus.uvms.usm.administration.common.jdbc.BaseJdbcDao;
+import fish.focus.uvms.usm.administration.common.jdbc.Binder;
 import fish.focus.uvms.usm.administration.common.jdbc.Query;
+import fish.focus.uvms.usm.administration.common.jdbc.QueryCatalog;
+import fish.focus.uvms.usm.administration.common.jdbc.QueryCatalog.Filter;
 import fish.focus.uvms.usm.administration.common.jdbc.RowMapper;
 import fish.focus.uvms.usm.administration.domain.Application;
 import fish.focus.uvms.usm.administration.domain.FindApplicationQuery;
@@ -25,6 +28,12 @@ import java.util.List;
 @Stateless
 public class ApplicationJdbcDao extends BaseJdbcDao {
     private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationJdbcDao.class);
+    private static final QueryCatalog FIND_APPLICATIONS = new QueryCatalog(
+            "DISTINCT a.NAME,a.DESCRIPTION,p.NAME AS PARENT ",
+            "DISTINCT a.NAME ",
+            "from APPLICATION_T a left outer join APPLICATION_T p on a.PARENT_ID=p.APPLICATION_ID where 1=1 ",
+            new Filter("and lower(a.name) like lower(?) ", Binder.STRING),
+            new Filter("and p.name = ?", Binder.STRING));
 
     public ApplicationJdbcDao() {
     }
@@ -58,12 +67,9 @@ public class ApplicationJdbcDao extends BaseJdbcDao {
 
         Paginator rPaginator = request.getPaginator();
 
-        String paginationQuery = "select * from (select ROW_NUMBER() over(order by NAME "
-                + rPaginator.getSortDirection() + ") as rn, du.* from(";
-
-        Query queryForTotalRecords = getFindApplicationsQuery(null, null, request);
-        Query queryForFindApplications = getFindApplicationsQuery(paginationQuery,
-                rPaginator, request);
+        Object[] filters = getFindApplicationsFilters(request);
+        Query queryForTotalRecords = FIND_APPLICATIONS.count(filters);
+        Query queryForFindApplications = FIND_APPLICATIONS.page("NAME", rPaginator, filters);
 
         int totalRecords = queryForTotalRecords(queryForTotalRecords,
                 new TotalRecordsMapper());
@@ -77,43 +83,10 @@ public class ApplicationJdbcDao extends BaseJdbcDao {
         return ret;
     }
 
-    private Query getFindApplicationsQuery(String paginationQuery, Paginator rPaginator, FindApplicationQuery request) {
-        Query query = new Query();
-        String selection;
-
-        if (paginationQuery != null) {
-            query.append(paginationQuery);
-            selection = "select " +
-                    "DISTINCT a.NAME,a.DESCRIPTION,p.NAME AS PARENT ";
-        } else {
-            selection = "select count(*) from (select DISTINCT a.NAME ";
-        }
-
-        String basicQuery = selection +
-                "from APPLICATION_T a left outer join APPLICATION_T p on a.PARENT_ID=p.APPLICATION_ID where 1=1 ";
-
-        query.append(basicQuery);
-
-        if (request.getName() != null) {
-            query.append("and lower(a.name) like lower(?) ").add("%" + request.getName() + "%");
-        }
-
-        if (request.getParentName() != null) {
-            query.append("and p.name = ?").add(request.getParentName());
-        }
-
-        if (rPaginator != null) {
-            query.append(") du) us ");
-            int limit = rPaginator.getLimit();
-            if (limit != -1) {
-                query.append("where rn between ? and ? order by rn");
-                query.add(rPaginator.getOffset() + 1);
-                query.add(rPaginator.getOffset() + limit);
-            }
-        } else {
-            query.append(") du");
-        }
-        return query;
+    private Object[] getFindApplicationsFilters(FindApplicationQuery request) {
+        return new Object[]{
+                request.getName() != null ? "%" + request.getName() + "%" : null,
+                request.getParentName()};
     }
 
     private static class TotalRecordsMapper implements RowMapper {
@@ -1,7 +1,10 @@
 package fish.focus.uvms.usm.administration.service.organisation.impl;
 
 import fish.focus.uvms.usm.administration.common.jdbc.BaseJdbcDao;
+import fish.focus.uvms.usm.administration.common.jdbc.Binder;
 import fish.focus.uvms.usm.administration.common.jdbc.Query;
+import fish.focus.uvms.usm.administration.common.jdbc.QueryCatalog;
+import fish.focus.uvms.usm.administration.common.jdbc.QueryCatalog.Filter;
 import fish.focus.uvms.usm.administration.common.jdbc.RowMapper;
 import fish.focus.uvms.usm.administration.domain.*;
 import org.slf4j.Logger;
@@ -22,6 +25,15 @@ import java.util.List;
 @Stateless
 public class OrganisationJdbcDao extends BaseJdbcDao {
     private static final Logger LOGGER = LoggerFactory.getLogger(OrganisationJdbcDao.class);
+    private static final QueryCatalog FIND_ORGANISATIONS = new QueryCatalog(
+            "DISTINCT o.ORGANISATION_ID,o.NAME,o.DESCRIPTION,o.STATUS, o.E_MAIL, p.NAME as PARENT_NAME, "
+                    + " o.ISOA3CODE ",
+            "DISTINCT o.NAME ",
+            "from ORGANISATION_T o left join ORGANISATION_T  p on "
+                    + "o.PARENT_ID = p.ORGANISATION_ID where 1=1 ",
+            new Filter("and lower(o.name) like lower(?) ", Binder.STRING),
+            new Filter("and o.isoa3code=? ", Binder.STRING),
+            new Filter("and o.status=? ", Binder.STRING));
 
     public OrganisationJdbcDao() {
     }
@@ -118,20 +130,26 @@ public class OrganisationJdbcDao extends BaseJdbcDao {
         LOGGER.debug("findOrganisations(" + request + ") - (ENTER)");
 
         Paginator rPaginator = request.getPaginator();
-
-        String paginationQuery = "select * from (select ROW_NUMBER() over(order by "
-                + appendColumnNames(rPaginator.getSortColumn()) + " " + rPaginator.getSortDirection()
-                + ") as rn, du.* from(";
-
-        Query queryForTotalRecords = getFindOrganisationsQuery(null, null, request);
-        Query queryForFindOrganisation = getFindOrganisationsQuery(paginationQuery, rPaginator, request);
-
-        int totalRecords = queryForTotalRecords(queryForTotalRecords, new TotalRecordsMapper());
-        LOGGER.info("The query is " + queryForFindOrganisation.getStatement());
-        List<Organisation> scopesList = queryForList(queryForFindOrganisation, new OrganisationMapper());
-        PaginationResponse<Organisation> ret = new PaginationResponse<>();
-        ret.setResults(scopesList);
-        ret.setTotal(totalRecords);
+        Object[] filters = getFindOrganisationsFilters(request);
+        Query queryForTotalRecords = FIND_ORGANISATIONS.count(filters);
+        PaginationResponse<Organisation> ret;
+
+        if (rPaginator.isKeyset()) {
+            ret = queryForPage(FIND_ORGANISATIONS.select(filters), new OrganisationMapper(),
+                    appendColumnNames(rPaginator.getSortColumn()), "ORGANISATION_ID", rPaginator);
+            ret.setTotal(queryForTotalRecords(queryForTotalRecords, new TotalRecordsMapper(),
+                    rPaginator.isExactCount()));
+        } else {
+            Query queryForFindOrganisation = FIND_ORGANISATIONS.page(appendColumnNames(rPaginator.getSortColumn()),
+                    rPaginator, filters);
+
+            int totalRecords = queryForTotalRecords(queryForTotalRecords, new TotalRecordsMapper());
+            LOGGER.info("The query is " + queryForFindOrganisation.getStatement());
+            List<Organisation> scopesList = queryForList(queryForFindOrganisation, new OrganisationMapper());
+            ret = new PaginationResponse<>();
+            ret.setResults(scopesList);
+            ret.setTotal(totalRecords);
+        }
 
         LOGGER.debug("findOrganisations() - (LEAVE): " + ret);
         return ret;
@@ -183,48 +201,11 @@ public class OrganisationJdbcDao extends BaseJdbcDao {
         }
     }
 
-    private Query getFindOrganisationsQuery(String pagination, Paginator rPaginator, FindOrganisationsQuery request) {
-        Query query = new Query();
-        String selection;
-
-        if (pagination != null) {
-            query.append(pagination);
-            selection = "select "
-                    + "DISTINCT o.ORGANISATION_ID,o.NAME,o.DESCRIPTION,o.STATUS, o.E_MAIL, p.NAME as PARENT_NAME, "
-                    + " o.ISOA3CODE ";
-        } else {
-            selection = "select count(*) from (select DISTINCT o.NAME ";
-        }
-
-        String basicQuery = selection
-                + "from ORGANISATION_T o left join ORGANISATION_T  p on "
-                + "o.PARENT_ID = p.ORGANISATION_ID where 1=1 ";
-
-        query.append(basicQuery);
-
-        if (request.getName() != null) {
-            query.append("and lower(o.name) like lower(?) ").add("%" + request.getName() + "%");
-        }
-        if (request.getNation() != null) {
-            query.append("and o.isoa3code=? ").add(request.getNation());
-        }
-        if (request.getStatus() != null) {
-            query.append("and o.status=? ").add(request.getStatus());
-        }
-
-        if (rPaginator != null) {
-            query.append(") du) us ");
-            int limit = rPaginator.getLimit();
-            if (limit != -1) {
-                query.append("where rn between ? and ? order by rn");
-                query.add(rPaginator.getOffset() + 1);
-                query.add(rPaginator.getOffset() + limit);
-            }
-        } else {
-            query.append(") du");
-        }
-
-        return query;
+    private Object[] getFindOrganisationsFilters(FindOrganisationsQuery request) {
+        return new Object[]{
+                request.getName() != null ? "%" + request.getName() + "%" : null,
+                request.getNation(),
+                request.getStatus()};
     }
 
     private String appendColumnNames(String column) {
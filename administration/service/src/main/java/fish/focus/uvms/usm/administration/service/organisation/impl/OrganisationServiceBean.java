@@ -6,12 +6,14 @@ import fish.focus.uvms.usm.information.entity.EndPointContactEntity;
 import fish.focus.uvms.usm.information.entity.EndPointEntity;
 import fish.focus.uvms.usm.information.entity.OrganisationEntity;
 import fish.focus.uvms.usm.administration.domain.*;
-import fish.focus.uvms.usm.administration.service.AuditProducer;
+import fish.focus.uvms.usm.administration.service.AuditOutbox;
 import fish.focus.uvms.usm.administration.service.organisation.OrganisationService;
 import fish.focus.uvms.usm.administration.service.person.impl.PersonJpaDao;
+import fish.focus.uvms.usm.information.service.impl.OrganisationCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
@@ -46,7 +48,9 @@ public class OrganisationServiceBean implements OrganisationService {
     @Inject
     private PersonJpaDao personJpaDao;
     @Inject
-    private AuditProducer auditProducer;
+    private AuditOutbox auditOutbox;
+    @EJB
+    private OrganisationCache organisationCache;
 
     @Override
     @TransactionAttribute(TransactionAttributeType.REQUIRED)
@@ -72,7 +76,9 @@ public class OrganisationServiceBean implements OrganisationService {
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.CREATE.getValue(), AuditObjectTypeEnum.ORGANISATION.getValue() + " " +
                         request.getBody().getName(), request.getBody().getDescription(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
+
+        organisationCache.evictAll();
 
         LOGGER.debug("createOrganisation() - (LEAVE)");
         return converter.convertEntityToDomain(entity);
@@ -110,7 +116,9 @@ public class OrganisationServiceBean implements OrganisationService {
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.UPDATE.getValue(), AuditObjectTypeEnum.ORGANISATION.getValue() + " " +
                         request.getBody().getName(), request.getBody().getDescription(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
+
+        organisationCache.evictAll();
 
         LOGGER.debug("updateOrganisation() - (LEAVE)");
         return converter.convertEntityToDomain(entity);
@@ -133,7 +141,9 @@ public class OrganisationServiceBean implements OrganisationService {
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(), AuditOperationEnum.DELETE.getValue(),
                 AuditObjectTypeEnum.ORGANISATION.getValue() + " " + request.getBody(), "" + request.getBody(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
+
+        organisationCache.evictAll();
 
         LOGGER.debug("deleteOrganisation() - (LEAVE)");
     }
@@ -295,7 +305,9 @@ public class OrganisationServiceBean implements OrganisationService {
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.CREATE.getValue(), AuditObjectTypeEnum.ENDPOINT.getValue() + " " +
                         request.getBody().getName(), request.getBody().getDescription(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
+
+        organisationCache.evictAll();
 
         LOGGER.debug("createEndPoint() - (LEAVE)");
         return converter.convertEndPointEntityToDomain(entity, true);
@@ -321,7 +333,9 @@ public class OrganisationServiceBean implements OrganisationService {
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(), AuditOperationEnum.UPDATE.getValue(),
                 AuditObjectTypeEnum.ENDPOINT.getValue() + " " + request.getBody().getName(), request.getBody().getDescription(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
+
+        organisationCache.evictAll();
 
         LOGGER.debug("updateEndPoint() - (LEAVE)");
         return ret;
@@ -338,7 +352,9 @@ public class OrganisationServiceBean implements OrganisationService {
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(), AuditOperationEnum.DELETE.getValue(),
                 AuditObjectTypeEnum.ENDPOINT.getValue() + " " + request.getBody(), "" + request.getBody(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
+
+        organisationCache.evictAll();
 
         LOGGER.debug("deleteEndPoint() - (LEAVE)");
     }
@@ -383,7 +399,9 @@ public class OrganisationServiceBean implements OrganisationService {
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.CREATE.getValue(), AuditObjectTypeEnum.CHANNEL.getValue() + " " +
                         request.getBody().getEndpointId(), "" + request.getBody().getEndpointId(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
+        organisationCache.evictAll();
+
         LOGGER.debug("createChannel() - (LEAVE)");
         return converter.convertChannelEntityToDomain(entity);
     }
@@ -419,7 +437,9 @@ public class OrganisationServiceBean implements OrganisationService {
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.UPDATE.getValue(), AuditObjectTypeEnum.CHANNEL.getValue() + " " +
                         request.getBody().getEndpointId(), "" + request.getBody().getEndpointId(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
+
+        organisationCache.evictAll();
 
         LOGGER.debug("updateChannel() - (LEAVE)");
         return ret;
@@ -437,7 +457,9 @@ public class OrganisationServiceBean implements OrganisationService {
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.DELETE.getValue(), AuditObjectTypeEnum.CHANNEL.getValue() + " " +
                         request.getBody(), "" + request.getBody(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
+
+        organisationCache.evictAll();
 
         LOGGER.debug("deleteChannel() - (LEAVE)");
     }
@@ -479,6 +501,8 @@ public class OrganisationServiceBean implements OrganisationService {
 
         epcontact = endPointContactJpaDao.create(epcontact);
 
+        organisationCache.evictAll();
+
         LOGGER.debug("assignContact() - (LEAVE)");
         return converter.convertEndPointContactEntityToDomain(epcontact);
     }
@@ -498,7 +522,9 @@ public class OrganisationServiceBean implements OrganisationService {
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.REMOVE.getValue(), AuditObjectTypeEnum.ENDPOINT_CONTACT.getValue() + " " +
                         request.getBody().getEndPointContactId(), "" + request.getBody().getEndPointContactId(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
+        organisationCache.evictAll();
+
         LOGGER.debug("removeContact() - (LEAVE)");
     }
 
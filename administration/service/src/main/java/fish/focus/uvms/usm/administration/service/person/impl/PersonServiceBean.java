@@ -5,13 +5,14 @@ import fish.focus.uvms.usm.information.entity.PendingDetailsEntity;
 import fish.focus.uvms.usm.information.entity.PersonEntity;
 import fish.focus.uvms.usm.information.entity.UserEntity;
 import fish.focus.uvms.usm.administration.domain.*;
-import fish.focus.uvms.usm.administration.service.AuditProducer;
+import fish.focus.uvms.usm.administration.service.AuditOutbox;
 import fish.focus.uvms.usm.administration.service.person.PersonService;
 import fish.focus.uvms.usm.administration.service.policy.DefinitionService;
 import fish.focus.uvms.usm.administration.service.user.impl.UserJpaDao;
 import fish.focus.uvms.usm.authentication.domain.AuthenticationRequest;
 import fish.focus.uvms.usm.authentication.domain.AuthenticationResponse;
 import fish.focus.uvms.usm.authentication.service.AuthenticationService;
+import fish.focus.uvms.usm.information.service.impl.OrganisationCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,8 +60,11 @@ public class PersonServiceBean implements PersonService {
     @EJB
     private DefinitionService definition;
 
+    @EJB
+    private OrganisationCache organisationCache;
+
     @Inject
-    private AuditProducer auditProducer;
+    private AuditOutbox auditOutbox;
 
     @Override
     public Person getPerson(ServiceRequest<Long> personRequest)
@@ -156,7 +160,7 @@ public class PersonServiceBean implements PersonService {
         String requester = request.getRequester();
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(), AuditOperationEnum.UPDATE.getValue(),
                 AuditObjectTypeEnum.CONTACT_DETAILS.getValue() + " " + requester, requester, requester);
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("updateContactDetails() - (LEAVE)");
         return ret;
@@ -180,6 +184,8 @@ public class PersonServiceBean implements PersonService {
             user.setPerson(ret);
             userJpaDao.update(user);
         }
+        // End-point contacts hold person details
+        organisationCache.evictAll();
         return ret;
     }
 
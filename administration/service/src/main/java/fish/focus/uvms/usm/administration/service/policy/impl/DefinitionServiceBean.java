@@ -5,24 +5,32 @@ import fish.focus.uvms.usm.administration.domain.PolicyDefinition;
 import fish.focus.uvms.usm.administration.domain.ServiceRequest;
 import fish.focus.uvms.usm.administration.domain.UnauthorisedException;
 import fish.focus.uvms.usm.administration.service.policy.DefinitionService;
+import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
 import javax.ejb.Singleton;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * J2EE Singleton implementation of the Policy DefinitionService.<br/>
- * Policy definitions are cached for 5 minutes.
+ * Policy definitions are kept in an immutable snapshot, read without
+ * locking and refreshed when the version of the POLICY_T table changes
+ * (checked at most every 10 seconds).
  */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 @TransactionAttribute(TransactionAttributeType.REQUIRED)
 public class DefinitionServiceBean implements DefinitionService {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefinitionServiceBean.class);
-    private static final long TTL = (5 * 60 * 1000);
+    private static final long VERSION_CHECK_INTERVAL = (10 * 1000);
 
     @Inject
     private PolicyValidator validator;
@@ -30,10 +38,19 @@ public class DefinitionServiceBean implements DefinitionService {
     @Inject
     private PolicyJpaDao jpaDao;
 
-    private final Map<String, TimedKeeper> cache;
+    @Inject
+    private PolicyJdbcDao jdbcDao;
+
+    @EJB
+    private PolicyProvider policyProvider;
+
+    private volatile Map<String, PolicyDefinition> cache;
+    private volatile String version;
+    private final AtomicLong nextVersionCheck;
 
     public DefinitionServiceBean() {
-        cache = new HashMap<>();
+        cache = Collections.emptyMap();
+        nextVersionCheck = new AtomicLong();
     }
 
     @Override
@@ -43,17 +60,9 @@ public class DefinitionServiceBean implements DefinitionService {
 
         validator.assertNotEmpty("subject", subject);
 
-        PolicyDefinition ret = null;
-        TimedKeeper tk = cache.get(subject);
-        if (tk != null) {
-            if (tk.timestamp + TTL > System.currentTimeMillis()) {
-                ret = tk.definition;
-            } else {
-                // Evict expired cached version
-                evictDefinition(subject);
-            }
-        }
+        checkVersion();
 
+        PolicyDefinition ret = cache.get(subject);
         if (ret == null) {
             ret = readDefinition(subject);
             if (ret != null) {
@@ -95,6 +104,7 @@ public class DefinitionServiceBean implements DefinitionService {
 
         // Evict any cached version
         evictDefinition(subject);
+        policyProvider.evict(subject);
 
         // Read existing properties
         List<PolicyEntity> existing = jpaDao.readPolicy(subject);
@@ -119,15 +129,35 @@ public class DefinitionServiceBean implements DefinitionService {
         LOGGER.debug("setDefinition() - (LEAVE)");
     }
 
-    private void cacheDefinition(String subject, PolicyDefinition ret) {
-        synchronized (cache) {
-            cache.put(subject, new TimedKeeper(ret));
-        }
+    private synchronized void cacheDefinition(String subject, PolicyDefinition ret) {
+        Map<String, PolicyDefinition> definitions = new HashMap<>(cache);
+        definitions.put(subject, ret);
+        cache = Collections.unmodifiableMap(definitions);
     }
 
-    public void evictDefinition(String subject) {
-        synchronized (cache) {
-            cache.remove(subject);
+    public synchronized void evictDefinition(String subject) {
+        Map<String, PolicyDefinition> definitions = new HashMap<>(cache);
+        definitions.remove(subject);
+        cache = Collections.unmodifiableMap(definitions);
+    }
+
+    /**
+     * Drops all cached definitions if the version of the policy table
+     * changed. Only one thread checks the version at a time, the others
+     * keep using the cached definitions.
+     */
+    private void checkVersion() {
+        long now = System.currentTimeMillis();
+        long next = nextVersionCheck.get();
+        if (now >= next && nextVersionCheck.compareAndSet(next, now + VERSION_CHECK_INTERVAL)) {
+            String current = jdbcDao.getVersion();
+            if (current != null && !current.equals(version)) {
+                LOGGER.debug("Policy version changed: " + version + " -> " + current);
+                synchronized (this) {
+                    cache = Collections.emptyMap();
+                    version = current;
+                }
+            }
         }
     }
 
@@ -149,14 +179,4 @@ public class DefinitionServiceBean implements DefinitionService {
         return ret;
     }
 
-    private class TimedKeeper {
-        long timestamp;
-        PolicyDefinition definition;
-
-        private TimedKeeper(PolicyDefinition def) {
-            definition = def;
-            timestamp = System.currentTimeMillis();
-        }
-    }
-
 }
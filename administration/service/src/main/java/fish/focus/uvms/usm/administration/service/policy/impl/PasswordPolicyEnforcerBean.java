@@ -83,10 +83,10 @@ public class PasswordPolicyEnforcerBean implements PasswordPolicyEnforcer {
         LOGGER.debug(MIN_HISTORY + ": " + minHistory);
 
         if (minHistory != 0) {
-            String hash = digester.hashPassword(request.getNewPassword());
+            String password = request.getNewPassword();
 
             UserEntity usr = userDao.read(request.getUserName());
-            if (usr != null && hash.equals(usr.getPassword())) {
+            if (usr != null && digester.verifyPassword(password, usr.getPassword())) {
                 throw new IllegalArgumentException(USED_RECENTLY);
             }
 
@@ -95,7 +95,7 @@ public class PasswordPolicyEnforcerBean implements PasswordPolicyEnforcer {
             List<PasswordHistEntity> lst = userDao.getPasswordHistory(request.getUserName());
             if (lst != null && !lst.isEmpty()) {
                 for (int i = 0; i < minHistory && i < lst.size(); i++) {
-                    if (hash.equals(lst.get(i).getPassword())) {
+                    if (digester.verifyPassword(password, lst.get(i).getPassword())) {
                         throw new IllegalArgumentException(USED_RECENTLY);
                     }
                 }
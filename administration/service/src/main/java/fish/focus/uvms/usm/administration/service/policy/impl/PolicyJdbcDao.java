@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ejb.Stateless;
+import java.sql.Timestamp;
 import java.util.List;
 
 /**
@@ -37,4 +38,25 @@ public class PolicyJdbcDao extends BaseJdbcDao {
         LOGGER.debug("getSubjects() - (LEAVE)");
         return ret;
     }
+
+    /**
+     * Gets the current version of the policy table, derived from its number
+     * of rows and latest creation/modification time.
+     *
+     * @return a version tag, which changes whenever a policy property is
+     * created, updated or deleted, or <i>null</i> in case of error
+     */
+    public String getVersion() {
+        LOGGER.debug("getVersion() - (ENTER)");
+
+        Query query = new Query("select count(*),max(coalesce(MODIFIED_ON,CREATED_ON)) from POLICY_T");
+
+        String ret = (String) queryForObject(query, rs -> {
+            Timestamp lastModified = rs.getTimestamp(2);
+            return rs.getInt(1) + "@" + (lastModified != null ? lastModified.getTime() : 0);
+        });
+
+        LOGGER.debug("getVersion() - (LEAVE): " + ret);
+        return ret;
+    }
 }
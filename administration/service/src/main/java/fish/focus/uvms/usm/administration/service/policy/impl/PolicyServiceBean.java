@@ -3,9 +3,10 @@ package fish.focus.uvms.usm.administration.service.policy.impl;
 import fish.focus.uvms.audit.model.mapper.AuditLogModelMapper;
 import fish.focus.uvms.usm.information.entity.PolicyEntity;
 import fish.focus.uvms.usm.administration.domain.*;
-import fish.focus.uvms.usm.administration.service.AuditProducer;
+import fish.focus.uvms.usm.administration.service.AuditOutbox;
 import fish.focus.uvms.usm.administration.service.policy.DefinitionService;
 import fish.focus.uvms.usm.administration.service.policy.PolicyService;
+import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,6 +16,7 @@ import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -37,8 +39,11 @@ public class PolicyServiceBean implements PolicyService {
     @EJB
     private DefinitionService definitionService;
 
+    @EJB
+    private PolicyProvider policyProvider;
+
     @Inject
-    private AuditProducer auditProducer;
+    private AuditOutbox auditOutbox;
 
     @Override
     public Policy updatePolicy(ServiceRequest<Policy> request)
@@ -58,14 +63,18 @@ public class PolicyServiceBean implements PolicyService {
                     && policyEntity.getSubject().equals(subject)) {
 
                 policyEntity.setValue(value);
+                policyEntity.setModifiedBy(request.getRequester());
+                policyEntity.setModifiedOn(new Date());
                 policyJpaDao.updatePolicyProperty(policyEntity);
 
+                // Other nodes notice the new MODIFIED_ON with their next version check
                 definitionService.evictDefinition(subject);
+                policyProvider.evict(subject);
 
                 String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                         AuditOperationEnum.UPDATE.getValue(), AuditObjectTypeEnum.POLICY.getValue() + " " +
                                 name, request.getBody().getDescription(), request.getRequester());
-                auditProducer.sendModuleMessage(auditLog);
+                auditOutbox.append(auditLog);
 
                 return convertToDomain(policyEntity);
             }
@@ -1,7 +1,10 @@
 package fish.focus.uvms.usm.administration.service.role.impl;
 
 import fish.focus.uvms.usm.administration.common.jdbc.BaseJdbcDao;
+import fish.focus.uvms.usm.administration.common.jdbc.Binder;
 import fish.focus.uvms.usm.administration.common.jdbc.Query;
+import fish.focus.uvms.usm.administration.common.jdbc.QueryCatalog;
+import fish.focus.uvms.usm.administration.common.jdbc.QueryCatalog.Filter;
 import fish.focus.uvms.usm.administration.common.jdbc.RowMapper;
 import fish.focus.uvms.usm.administration.domain.ComprehensiveRole;
 import fish.focus.uvms.usm.administration.domain.FindRolesQuery;
@@ -25,6 +28,17 @@ import java.util.List;
 @Stateless
 public class RoleJdbcDao extends BaseJdbcDao {
     private static final Logger LOGGER = LoggerFactory.getLogger(RoleJdbcDao.class);
+    private static final QueryCatalog FIND_ROLES = new QueryCatalog(
+            "DISTINCT r.ROLE_ID,r.NAME,r.DESCRIPTION,STATUS,coalesce(v.USERS,0) as USERS " +
+                    "from ROLE_T r left join (select ROLE_ID,count(DISTINCT USER_NAME) as USERS " +
+                    "from active_user_role_v group by ROLE_ID) v on v.ROLE_ID=r.ROLE_ID ",
+            "DISTINCT r.NAME from ROLE_T r ",
+            "left join PERMISSION_T  p on p.ROLE_ID = r.ROLE_ID " +
+                    "left join FEATURE_T f on f.FEATURE_ID = p.FEATURE_ID " +
+                    "left join APPLICATION_T a on a.APPLICATION_ID=f.APPLICATION_ID where 1=1 ",
+            new Filter("and lower(r.name) like lower(?) ", Binder.STRING),
+            new Filter("and status=? ", Binder.STRING),
+            new Filter("and a.name=? ", Binder.STRING));
 
     public RoleJdbcDao() {
     }
@@ -58,19 +72,25 @@ public class RoleJdbcDao extends BaseJdbcDao {
         LOGGER.debug("findRoles(" + request + ") - (ENTER)");
 
         Paginator rPaginator = request.getPaginator();
-
-        String paginationQuery = "select * from (select ROW_NUMBER() over(order by " +
-                appendColumnNames(rPaginator.getSortColumn()) + " " + rPaginator.getSortDirection() +
-                ") as rn, du.* from(";
-
-        Query queryForTotalRecords = getFindRolesQuery(null, null, request);
-        Query queryForFindRoles = getFindRolesQuery(paginationQuery, rPaginator, request);
-
-        int totalRecords = queryForTotalRecords(queryForTotalRecords, new TotalRecordsMapper());
-        List<ComprehensiveRole> rolesList = queryForList(queryForFindRoles, new ComprehensiveRoleMapper());
-        PaginationResponse<ComprehensiveRole> ret = new PaginationResponse<>();
-        ret.setResults(rolesList);
-        ret.setTotal(totalRecords);
+        Object[] filters = getFindRolesFilters(request);
+        Query queryForTotalRecords = FIND_ROLES.count(filters);
+        PaginationResponse<ComprehensiveRole> ret;
+
+        if (rPaginator.isKeyset()) {
+            ret = queryForPage(FIND_ROLES.select(filters), new ComprehensiveRoleMapper(),
+                    appendColumnNames(rPaginator.getSortColumn()), "ROLE_ID", rPaginator);
+            ret.setTotal(queryForTotalRecords(queryForTotalRecords, new TotalRecordsMapper(),
+                    rPaginator.isExactCount()));
+        } else {
+            Query queryForFindRoles = FIND_ROLES.page(appendColumnNames(rPaginator.getSortColumn()), rPaginator,
+                    filters);
+
+            int totalRecords = queryForTotalRecords(queryForTotalRecords, new TotalRecordsMapper());
+            List<ComprehensiveRole> rolesList = queryForList(queryForFindRoles, new ComprehensiveRoleMapper());
+            ret = new PaginationResponse<>();
+            ret.setResults(rolesList);
+            ret.setTotal(totalRecords);
+        }
 
         LOGGER.debug("findRoles() - (LEAVE): " + ret);
         return ret;
@@ -111,50 +131,11 @@ public class RoleJdbcDao extends BaseJdbcDao {
         }
     }
 
-    private Query getFindRolesQuery(String pagination, Paginator rPaginator, FindRolesQuery request) {
-        Query query = new Query();
-        String selection;
-
-        if (pagination != null) {
-            query.append(pagination);
-            selection = "select DISTINCT " +
-                    "r.ROLE_ID,r.NAME,r.DESCRIPTION,STATUS,(select count(DISTINCT USER_NAME) " +
-                    "from active_user_role_v v where v.ROLE_ID=r.ROLE_ID) as USERS ";
-        } else {
-            selection = "select count(*) from (select DISTINCT r.NAME ";
-        }
-
-        String basicQuery = selection +
-                "from ROLE_T r left join PERMISSION_T  p on p.ROLE_ID = r.ROLE_ID " +
-                "left join FEATURE_T f on f.FEATURE_ID = p.FEATURE_ID " +
-                "left join APPLICATION_T a on a.APPLICATION_ID=f.APPLICATION_ID where 1=1 ";
-
-        query.append(basicQuery);
-
-        if (request.getRoleName() != null) {
-            query.append("and lower(r.name) like lower(?) ").add("%" + request.getRoleName() + "%");
-        }
-        if (request.getStatus() != null) {
-            query.append("and status=? ").add(request.getStatus());
-        }
-        if (request.getApplicationName() != null) {
-            query.append("and a.name=? ").add(request.getApplicationName());
-        }
-
-        if (rPaginator != null) {
-            query.append(") du) us ");
-            int limit = rPaginator.getLimit();
-            if (limit != -1) {
-                query.append("where rn between ? and ? order by rn");
-                query.add(rPaginator.getOffset() + 1);
-                query.add(rPaginator.getOffset() + limit);
-            }
-        } else {
-            query.append(") du");
-        }
-
-        return query;
-
+    private Object[] getFindRolesFilters(FindRolesQuery request) {
+        return new Object[]{
+                request.getRoleName() != null ? "%" + request.getRoleName() + "%" : null,
+                request.getStatus(),
+                request.getApplicationName()};
     }
 
     private String appendColumnNames(String column) {
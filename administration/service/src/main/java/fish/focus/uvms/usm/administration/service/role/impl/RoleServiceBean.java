@@ -5,12 +5,15 @@ import fish.focus.uvms.usm.information.entity.FeatureEntity;
 import fish.focus.uvms.usm.information.entity.RoleEntity;
 import fish.focus.uvms.usm.information.entity.UserContextEntity;
 import fish.focus.uvms.usm.administration.domain.*;
-import fish.focus.uvms.usm.administration.service.AuditProducer;
+import fish.focus.uvms.usm.administration.service.AuditOutbox;
+import fish.focus.uvms.usm.administration.service.AuthorisationCache;
 import fish.focus.uvms.usm.administration.service.role.RoleService;
 import fish.focus.uvms.usm.administration.service.user.impl.UserJpaDao;
+import fish.focus.uvms.usm.information.service.impl.RoleFeatureIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
@@ -43,7 +46,11 @@ public class RoleServiceBean implements RoleService {
     @Inject
     private RoleConverter converter;
     @Inject
-    private AuditProducer auditProducer;
+    private AuditOutbox auditOutbox;
+    @EJB
+    private AuthorisationCache authorisationCache;
+    @EJB
+    private RoleFeatureIndex roleFeatureIndex;
 
     @Override
     public List<String> getRoleNames(ServiceRequest<RoleQuery> request) {
@@ -118,7 +125,7 @@ public class RoleServiceBean implements RoleService {
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.CREATE.getValue(), AuditObjectTypeEnum.ROLE.getValue() + " " +
                         request.getBody().getName(), request.getBody().getDescription(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("createRole() - (LEAVE)");
         return ret;
@@ -142,12 +149,13 @@ public class RoleServiceBean implements RoleService {
         entity.setModifiedOn(new Date());
 
         roleJpaDao.update(entity);
-
+        authorisationCache.evictAll();
+        roleFeatureIndex.evictRole(entity.getRoleId());
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.UPDATE.getValue(), AuditObjectTypeEnum.ROLE.getValue() + " " +
                         request.getBody().getName(), request.getBody().getDescription(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("updateRole() - (LEAVE)");
     }
@@ -160,11 +168,13 @@ public class RoleServiceBean implements RoleService {
 
         validator.assertValid(request, USMFeature.manageRoles, "roleId");
         roleJpaDao.delete(request.getBody());
+        authorisationCache.evictAll();
+        roleFeatureIndex.evictRole(request.getBody());
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.DELETE.getValue(), AuditObjectTypeEnum.ROLE.getValue() + " " +
                         request.getBody(), "" + request.getBody(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("deleteRole() - (LEAVE)");
     }
@@ -1,7 +1,10 @@
 package fish.focus.uvms.usm.administration.service.scope.impl;
 
 import fish.focus.uvms.usm.administration.common.jdbc.BaseJdbcDao;
+import fish.focus.uvms.usm.administration.common.jdbc.Binder;
 import fish.focus.uvms.usm.administration.common.jdbc.Query;
+import fish.focus.uvms.usm.administration.common.jdbc.QueryCatalog;
+import fish.focus.uvms.usm.administration.common.jdbc.QueryCatalog.Filter;
 import fish.focus.uvms.usm.administration.common.jdbc.RowMapper;
 import fish.focus.uvms.usm.administration.domain.*;
 import org.slf4j.Logger;
@@ -22,6 +25,19 @@ import java.util.List;
 @Stateless
 public class ScopeJdbcDao extends BaseJdbcDao {
     private static final Logger LOGGER = LoggerFactory.getLogger(ScopeJdbcDao.class);
+    private static final QueryCatalog FIND_SCOPES = new QueryCatalog(
+            "DISTINCT s.SCOPE_ID,s.NAME,s.DESCRIPTION,STATUS,ACTIVE_FROM, " +
+                    "ACTIVE_TO,DATA_FROM,DATA_TO,coalesce(v.USERS,0) as USERS " +
+                    "from SCOPE_T s left join (select SCOPE_ID,count(DISTINCT USER_NAME) as USERS " +
+                    "from active_user_scope_v group by SCOPE_ID) v on v.SCOPE_ID=s.SCOPE_ID ",
+            "DISTINCT s.NAME from SCOPE_T s ",
+            "left join SCOPE_DATASET_T  sd on " +
+                    "s.SCOPE_ID = sd.SCOPE_ID left join DATASET_T d on " +
+                    "sd.DATASET_ID = d.DATASET_ID left join APPLICATION_T a on " +
+                    "a.APPLICATION_ID=d.APPLICATION_ID where 1=1 ",
+            new Filter("and lower(s.name) like lower(?) ", Binder.STRING),
+            new Filter("and status=? ", Binder.STRING),
+            new Filter("and a.name=? ", Binder.STRING));
 
     public ScopeJdbcDao() {
     }
@@ -39,19 +55,25 @@ public class ScopeJdbcDao extends BaseJdbcDao {
         LOGGER.debug("findScopes(" + request + ") - (ENTER)");
 
         Paginator rPaginator = request.getPaginator();
-
-        String paginationQuery = "select * from (select ROW_NUMBER() over(order by " +
-                appendColumnNames(rPaginator.getSortColumn()) + " " + rPaginator.getSortDirection() +
-                ") as rn, du.* from(";
-
-        Query queryForTotalRecords = getFindScopesQuery(null, null, request);
-        Query queryForFindScopes = getFindScopesQuery(paginationQuery, rPaginator, request);
-
-        int totalRecords = queryForTotalRecords(queryForTotalRecords, new TotalRecordsMapper());
-        List<Scope> scopesList = queryForList(queryForFindScopes, new ScopeMapper());
-        PaginationResponse<Scope> ret = new PaginationResponse<>();
-        ret.setResults(scopesList);
-        ret.setTotal(totalRecords);
+        Object[] filters = getFindScopesFilters(request);
+        Query queryForTotalRecords = FIND_SCOPES.count(filters);
+        PaginationResponse<Scope> ret;
+
+        if (rPaginator.isKeyset()) {
+            ret = queryForPage(FIND_SCOPES.select(filters), new ScopeMapper(),
+                    appendColumnNames(rPaginator.getSortColumn()), "SCOPE_ID", rPaginator);
+            ret.setTotal(queryForTotalRecords(queryForTotalRecords, new TotalRecordsMapper(),
+                    rPaginator.isExactCount()));
+        } else {
+            Query queryForFindScopes = FIND_SCOPES.page(appendColumnNames(rPaginator.getSortColumn()), rPaginator,
+                    filters);
+
+            int totalRecords = queryForTotalRecords(queryForTotalRecords, new TotalRecordsMapper());
+            List<Scope> scopesList = queryForList(queryForFindScopes, new ScopeMapper());
+            ret = new PaginationResponse<>();
+            ret.setResults(scopesList);
+            ret.setTotal(totalRecords);
+        }
 
         LOGGER.debug("findScopes() - (LEAVE): " + ret);
         return ret;
@@ -180,52 +202,11 @@ public class ScopeJdbcDao extends BaseJdbcDao {
         return names;
     }
 
-    private Query getFindScopesQuery(String pagination, Paginator rPaginator, FindScopesQuery request) {
-        Query query = new Query();
-        String selection;
-
-        if (pagination != null) {
-            query.append(pagination);
-            selection = "select " +
-                    "DISTINCT s.SCOPE_ID,s.NAME,s.DESCRIPTION,STATUS,ACTIVE_FROM, " +
-                    "ACTIVE_TO,DATA_FROM,DATA_TO,(select count(DISTINCT USER_NAME) " +
-                    "from active_user_scope_v v where v.SCOPE_ID=s.SCOPE_ID) as USERS ";
-        } else {
-            selection = "select count(*) from (select DISTINCT s.NAME ";
-        }
-
-        String basicQuery = selection +
-                "from SCOPE_T s left join SCOPE_DATASET_T  sd on " +
-                "s.SCOPE_ID = sd.SCOPE_ID left join DATASET_T d on " +
-                "sd.DATASET_ID = d.DATASET_ID left join APPLICATION_T a on " +
-                "a.APPLICATION_ID=d.APPLICATION_ID where 1=1 ";
-
-        query.append(basicQuery);
-
-        if (request.getScopeName() != null) {
-            query.append("and lower(s.name) like lower(?) ").add("%" + request.getScopeName() + "%");
-        }
-        if (request.getStatus() != null) {
-            query.append("and status=? ").add(request.getStatus());
-        }
-        if (request.getApplicationName() != null) {
-            query.append("and a.name=? ").add(request.getApplicationName());
-        }
-
-        if (rPaginator != null) {
-            query.append(") du) us ");
-            int limit = rPaginator.getLimit();
-            if (limit != -1) {
-                query.append("where rn between ? and ? order by rn");
-                query.add(rPaginator.getOffset() + 1);
-                query.add(rPaginator.getOffset() + limit);
-            }
-        } else {
-            query.append(") du");
-        }
-
-        return query;
-
+    private Object[] getFindScopesFilters(FindScopesQuery request) {
+        return new Object[]{
+                request.getScopeName() != null ? "%" + request.getScopeName() + "%" : null,
+                request.getStatus(),
+                request.getApplicationName()};
     }
 
     private String appendColumnNames(String column) {
@@ -6,12 +6,14 @@ import fish.focus.uvms.usm.information.entity.ScopeEntity;
 import fish.focus.uvms.usm.information.entity.UserContextEntity;
 import fish.focus.uvms.usm.information.service.impl.DataSetJpaDao;
 import fish.focus.uvms.usm.administration.domain.*;
-import fish.focus.uvms.usm.administration.service.AuditProducer;
+import fish.focus.uvms.usm.administration.service.AuditOutbox;
+import fish.focus.uvms.usm.administration.service.AuthorisationCache;
 import fish.focus.uvms.usm.administration.service.scope.ScopeService;
 import fish.focus.uvms.usm.administration.service.user.impl.UserJpaDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
@@ -44,7 +46,10 @@ public class ScopeServiceBean implements ScopeService {
     private UserJpaDao userJpaDao;
 
     @Inject
-    private AuditProducer auditProducer;
+    private AuditOutbox auditOutbox;
+
+    @EJB
+    private AuthorisationCache authorisationCache;
 
     @Override
     @TransactionAttribute(TransactionAttributeType.REQUIRED)
@@ -68,7 +73,7 @@ public class ScopeServiceBean implements ScopeService {
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.CREATE.getValue(), AuditObjectTypeEnum.SCOPE.getValue() + " " +
                         request.getBody().getName(), request.getBody().getDescription(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("createScope() - (LEAVE)");
         return ret;
@@ -90,13 +95,14 @@ public class ScopeServiceBean implements ScopeService {
         scope.setModifiedBy(request.getRequester());
         scope.setModifiedOn(new Date());
         scope = jpaDao.update(scope);
+        authorisationCache.evictAll();
 
         Scope ret = convertEntityToResponse(scope);
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.UPDATE.getValue(), AuditObjectTypeEnum.SCOPE.getValue() + " " +
                         request.getBody().getName(), request.getBody().getDescription(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("updateScope() - (LEAVE)");
         return ret;
@@ -110,11 +116,12 @@ public class ScopeServiceBean implements ScopeService {
 
         validator.assertValid(request, USMFeature.manageScopes, "scopeId");
         jpaDao.delete(request.getBody());
+        authorisationCache.evictAll();
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.DELETE.getValue(), AuditObjectTypeEnum.SCOPE.getValue() + " " +
                         request.getBody(), "" + request.getBody(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("deleteScope() - (LEAVE)");
     }
@@ -1,6 +1,7 @@
 package fish.focus.uvms.usm.administration.service.user;
 
 import java.util.List;
+import java.util.function.Consumer;
 import fish.focus.uvms.usm.administration.domain.*;
 
 /**
@@ -54,4 +55,36 @@ public interface ViewUsersService {
      */
     public List<String> getUsersNames(ServiceRequest<String> request)
             throws IllegalArgumentException, UnauthorisedException, RuntimeException;
+
+    /**
+     * Checks that the service requester is authorised to export users,
+     * before any response is committed to the export.
+     *
+     * @param request holds the identity of the service requester
+     * @throws IllegalArgumentException in case the provided input is null, empty
+     *                                  or otherwise incomplete
+     * @throws UnauthorisedException    in case the service requestor is not
+     *                                  authorised to view user information
+     * @throws RuntimeException         in case an internal error prevented fulfilling
+     *                                  the request
+     */
+    public void authoriseExport(ServiceRequest<NoBody> request)
+            throws IllegalArgumentException, UnauthorisedException, RuntimeException;
+
+    /**
+     * Exports all users, with their contexts and preferences, streaming
+     * them one at a time to the provided consumer.
+     *
+     * @param request  holds the identity of the service requester
+     * @param consumer the consumer of the exported users, in user name order
+     * @return the number of exported users
+     * @throws IllegalArgumentException in case the provided input is null, empty
+     *                                  or otherwise incomplete
+     * @throws UnauthorisedException    in case the service requestor is not
+     *                                  authorised to view user information
+     * @throws RuntimeException         in case an internal error prevented fulfilling
+     *                                  the request
+     */
+    public int exportUsers(ServiceRequest<NoBody> request, Consumer<UserExport> consumer)
+            throws IllegalArgumentException, UnauthorisedException, RuntimeException;
 }
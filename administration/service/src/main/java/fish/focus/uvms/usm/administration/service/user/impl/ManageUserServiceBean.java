@@ -3,7 +3,8 @@ package fish.focus.uvms.usm.administration.service.user.impl;
 import fish.focus.uvms.audit.model.mapper.AuditLogModelMapper;
 import fish.focus.uvms.usm.information.entity.*;
 import fish.focus.uvms.usm.administration.domain.*;
-import fish.focus.uvms.usm.administration.service.AuditProducer;
+import fish.focus.uvms.usm.administration.service.AuditOutbox;
+import fish.focus.uvms.usm.administration.service.AuthorisationCache;
 import fish.focus.uvms.usm.administration.service.NotificationBuilder;
 import fish.focus.uvms.usm.administration.service.NotificationSender;
 import fish.focus.uvms.usm.administration.service.PasswordDigester;
@@ -17,6 +18,9 @@ import fish.focus.uvms.usm.authentication.domain.AuthenticationResponse;
 import fish.focus.uvms.usm.authentication.service.AuthenticationService;
 import fish.focus.uvms.usm.authentication.service.impl.CreateLdapUser;
 import fish.focus.uvms.usm.authentication.service.impl.CreateLdapUserEvent;
+import fish.focus.uvms.usm.authentication.service.impl.LoginThrottle;
+import fish.focus.uvms.usm.authentication.service.impl.PasswordStatusCache;
+import fish.focus.uvms.usm.information.service.impl.OrganisationCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +66,18 @@ public class ManageUserServiceBean implements ManageUserService {
     @EJB
     private DefinitionService definitionService;
 
+    @EJB
+    private AuthorisationCache authorisationCache;
+
+    @EJB
+    private PasswordStatusCache passwordStatusCache;
+
+    @EJB
+    private LoginThrottle loginThrottle;
+
+    @EJB
+    private OrganisationCache organisationCache;
+
     @Inject
     private UserJpaDao userDao;
 
@@ -78,7 +94,7 @@ public class ManageUserServiceBean implements ManageUserService {
     private ManageUserValidator validator;
 
     @Inject
-    private AuditProducer auditProducer;
+    private AuditOutbox auditOutbox;
 
     @Override
     public UserAccount createUser(ServiceRequest<UserAccount> request) {
@@ -101,7 +117,7 @@ public class ManageUserServiceBean implements ManageUserService {
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.CREATE.getValue(), AuditObjectTypeEnum.USER.getValue() + " " +
                         request.getBody().getUserName(), request.getBody().getNotes(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("createUser() - (LEAVE)");
         return convert(user);
@@ -122,7 +138,7 @@ public class ManageUserServiceBean implements ManageUserService {
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(), AuditOperationEnum.CREATE.getValue(),
                 AuditObjectTypeEnum.USER.getValue() + " " + event.username, "", "LDAP");
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
     }
 
     @Override
@@ -140,12 +156,17 @@ public class ManageUserServiceBean implements ManageUserService {
         entity.setModifiedOn(new Date());
 
         UserEntity updatedUser = userDao.update(entity);
+        authorisationCache.evict(updatedUser.getUserName());
+        // An unlocked or re-enabled user starts afresh
+        loginThrottle.clear(updatedUser.getUserName());
+        // End-point contacts hold person details
+        organisationCache.evictAll();
         UserAccount userAccount = convert(updatedUser);
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(), AuditOperationEnum.UPDATE.getValue(),
                 AuditObjectTypeEnum.USER.getValue() + " " +
                         request.getBody().getUserName(), request.getBody().getNotes(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("updateUser() - (LEAVE)");
         return userAccount;
@@ -187,7 +208,7 @@ public class ManageUserServiceBean implements ManageUserService {
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(), AuditOperationEnum.UPDATE.getValue(),
                 AuditObjectTypeEnum.PASSWORD.getValue() + " " + request.getBody().getUserName(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("changePassword() - (LEAVE)");
     }
@@ -312,7 +333,7 @@ public class ManageUserServiceBean implements ManageUserService {
     private void auditAction(String actionName, ServiceRequest<UserAccount> request) {
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(), actionName,
                 "ManageUserService " + request.getBody().getUserName(), request.getRequester(), request.getBody().getNotes());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
     }
 
     private void changePassword(UserEntity entity, ServiceRequest<ChangePassword> request, boolean isTemporaryPassword) {
@@ -351,6 +372,7 @@ public class ManageUserServiceBean implements ManageUserService {
         entity.setModifiedBy(request.getRequester());
         entity.setModifiedOn(now);
         userDao.update(entity);
+        passwordStatusCache.evict(entity.getUserName());
         auditActionGeneric(RESET_PASSWD, request);
     }
 
@@ -494,7 +516,7 @@ public class ManageUserServiceBean implements ManageUserService {
 
             String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(), auditOperation,
                     AuditObjectTypeEnum.CHALLENGE.getValue() + " " + userName, userName, request.getRequester());
-            auditProducer.sendModuleMessage(auditLog);
+            auditOutbox.append(auditLog);
 
             challengeInformation.setChallengeId(challengeEntity.getChallengeId());
         }
@@ -532,7 +554,7 @@ public class ManageUserServiceBean implements ManageUserService {
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(), AuditOperationEnum.RESET.getValue(),
                 AuditObjectTypeEnum.PASSWORD.getValue() + " " + userName, userName, request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
         LOGGER.debug("resetPassword() - (LEAVE)");
     }
 
@@ -606,7 +628,7 @@ public class ManageUserServiceBean implements ManageUserService {
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(), AuditOperationEnum.RESET.getValue(),
                 AuditObjectTypeEnum.PASSWORD.getValue() + " " + userName, userName, request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
         LOGGER.debug("resetPasswordAndNotify() - (LEAVE)");
     }
 
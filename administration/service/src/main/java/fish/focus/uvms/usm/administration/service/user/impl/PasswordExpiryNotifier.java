@@ -8,19 +8,33 @@ import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
+import javax.mail.MessagingException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Reminds/notifies users via e-mail of the pending expiry of
  * their password.
+ * <p>
+ * Bulk reminders are sent by a bounded number of concurrent workers
+ * (notification property <i>reminder.concurrency</i>, default 4), each
+ * re-using its SMTP connection, within an overall rate limit (notification
+ * property <i>reminder.ratePerSecond</i>, default 10).
  */
 @Stateless
 public class PasswordExpiryNotifier {
@@ -28,6 +42,10 @@ public class PasswordExpiryNotifier {
     private static final String PASSWORD_SUBJECT = "Password";
     private static final String RENEWAL_REMINDER = "password.renewalReminder";
     private static final long ONE_DAY = (1000L * 60 * 60 * 24);
+    private static final String CONCURRENCY = "reminder.concurrency";
+    private static final String RATE_PER_SECOND = "reminder.ratePerSecond";
+    private static final int DEFAULT_CONCURRENCY = 4;
+    private static final int DEFAULT_RATE_PER_SECOND = 10;
 
     @EJB
     private PolicyProvider policyProvider;
@@ -38,6 +56,9 @@ public class PasswordExpiryNotifier {
     @Inject
     private UserJpaDao jpaDao;
 
+    @Resource
+    private ManagedExecutorService executor;
+
     NotificationSender sender;
 
     public PasswordExpiryNotifier() {
@@ -57,12 +78,8 @@ public class PasswordExpiryNotifier {
 
         List<String> ret = Collections.EMPTY_LIST;
 
-        Properties policy = policyProvider.getProperties(PASSWORD_SUBJECT);
-        int days = policyProvider.getIntProperty(policy, RENEWAL_REMINDER, 0);
-
-        if (days != 0) {
-            Date expiringBefore = new Date(System.currentTimeMillis() +
-                    (days * ONE_DAY));
+        Date expiringBefore = getReminderDate();
+        if (expiringBefore != null) {
             ret = jdbcDao.findByPasswordExpiry(expiringBefore);
         }
 
@@ -70,6 +87,60 @@ public class PasswordExpiryNotifier {
         return ret;
     }
 
+    /**
+     * Reminds/notifies all active (and enabled) users whose password is
+     * about to expire, and who were not yet reminded/notified, of the pending
+     * expiry of their password.
+     * <p>
+     * Notifications are recorded, for all the users that were sent one,
+     * with a single batched update.
+     *
+     * @return the number of reminded/notified users
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public int notifyUsers() {
+        LOGGER.debug("notifyUsers() - (ENTER)");
+
+        List<String> notified = new ArrayList<>();
+
+        Date expiringBefore = getReminderDate();
+        List<UserEntity> users = Collections.emptyList();
+        if (expiringBefore != null) {
+            users = jdbcDao.findPasswordExpiryReminders(expiringBefore);
+        }
+
+        if (!users.isEmpty()) {
+            Properties config = NotificationBuilder.getProperties();
+            int concurrency = Math.min(getIntProperty(config, CONCURRENCY, DEFAULT_CONCURRENCY), users.size());
+            RateLimiter limiter = new RateLimiter(getIntProperty(config, RATE_PER_SECOND, DEFAULT_RATE_PER_SECOND));
+            Queue<UserEntity> pending = new ConcurrentLinkedQueue<>(users);
+
+            List<Future<List<String>>> workers = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(() -> sendNotifications(pending, limiter)));
+            }
+            try {
+                for (Future<List<String>> worker : workers) {
+                    try {
+                        notified.addAll(worker.get());
+                    } catch (ExecutionException exc) {
+                        LOGGER.error("Failed to remind users of the pending expiry of their password", exc);
+                    }
+                }
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                pending.clear();
+                LOGGER.warn("Interrupted while reminding users of the pending expiry of their password");
+            } finally {
+                // Record notifications to avoid spamming the users
+                jdbcDao.updateExpiryNotification(notified, new Date());
+            }
+        }
+
+        LOGGER.debug("notifyUsers() - (LEAVE): " + notified.size() + "/" + users.size());
+        return notified.size();
+    }
+
     /**
      * Reminds/notifies the specified user of the pending expiry of
      * her/his password.
@@ -82,7 +153,7 @@ public class PasswordExpiryNotifier {
 
         UserEntity user = jpaDao.read(userName);
         if (user != null) {
-            if (sendNotification(user)) {
+            if (sendNotification(user, null)) {
                 // Record notification to avoid spamming the user
                 user.setExpiryNotification(new Date());
                 jpaDao.update(user);
@@ -92,14 +163,67 @@ public class PasswordExpiryNotifier {
         LOGGER.debug("remindUser() - (LEAVE)");
     }
 
+    private Date getReminderDate() {
+        Date ret = null;
+
+        Properties policy = policyProvider.getProperties(PASSWORD_SUBJECT);
+        int days = policyProvider.getIntProperty(policy, RENEWAL_REMINDER, 0);
+
+        if (days != 0) {
+            ret = new Date(System.currentTimeMillis() + (days * ONE_DAY));
+        }
+        return ret;
+    }
+
+    /**
+     * Sends reminders/notifications to pending users, over a single SMTP
+     * connection, until there are no more pending users.
+     *
+     * @return the names of the users that were sent a notification
+     */
+    private List<String> sendNotifications(Queue<UserEntity> pending, RateLimiter limiter) {
+        List<String> ret = new ArrayList<>();
+
+        try (NotificationSender.Connection connection = sender.connect()) {
+            UserEntity user;
+            while ((user = pending.poll()) != null) {
+                limiter.acquire();
+                if (sendNotification(user, connection)) {
+                    ret.add(user.getUserName());
+                }
+            }
+        } catch (MessagingException exc) {
+            LOGGER.error("Failed to connect to the SMTP server", exc);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+
+        return ret;
+    }
+
+    private static int getIntProperty(Properties config, String name, int defaultValue) {
+        int ret = defaultValue;
+        String value = config.getProperty(name);
+        if (value != null) {
+            try {
+                ret = Math.max(1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException exc) {
+                LOGGER.error("Notification property value for '" + name + "' is not parsable: " + exc.getMessage());
+            }
+        }
+        return ret;
+    }
+
     /**
      * Builds and sends a password expiration reminder/notification.
      *
-     * @param user the user whose password is about to expire
+     * @param user       the user whose password is about to expire
+     * @param connection the SMTP connection to be used, or <i>null</i> to
+     *                   open a new one
      * @return <i>true</i> if the notification was sent, <i>false</i>
      * otherwise
      */
-    private boolean sendNotification(UserEntity user) {
+    private boolean sendNotification(UserEntity user, NotificationSender.Connection connection) {
         LOGGER.debug("sendNotification() - (ENTER)");
 
         Date passwordExpiry = user.getPasswordExpiry();
@@ -110,7 +234,11 @@ public class PasswordExpiryNotifier {
             Notification msg = NotificationBuilder.buildReminder(eMail,
                     user.getUserName(),
                     passwordExpiry);
-            sender.sendNotification(msg);
+            if (connection != null) {
+                connection.send(msg);
+            } else {
+                sender.sendNotification(msg);
+            }
 
             LOGGER.info("Reminded user " + user.getUserName() +
                     " via e-mail to " + eMail +
@@ -127,4 +255,29 @@ public class PasswordExpiryNotifier {
         LOGGER.debug("sendNotification() - (LEAVE)");
         return ret;
     }
+
+    /**
+     * Spaces out the sending of notifications, shared by all workers.
+     */
+    private static class RateLimiter {
+        private final long interval;
+        private long next;
+
+        private RateLimiter(int permitsPerSecond) {
+            interval = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+            next = System.nanoTime();
+        }
+
+        private void acquire() throws InterruptedException {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                wait = next - now;
+                next = Math.max(next, now) + interval;
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
 }
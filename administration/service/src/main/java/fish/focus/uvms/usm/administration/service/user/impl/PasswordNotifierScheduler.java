@@ -4,7 +4,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ejb.*;
-import java.util.List;
 
 /**
  * J2EE scheduled singleton for triggering the sending of
@@ -32,13 +31,9 @@ public class PasswordNotifierScheduler {
     public void triggerNotifications() {
         LOGGER.debug("triggerNotifications() - (ENTER)");
 
-        List<String> userNames = expiryReminder.findUsersToNotify();
+        int notified = expiryReminder.notifyUsers();
 
-        for (String userName : userNames) {
-            expiryReminder.notifyUser(userName);
-        }
-
-        LOGGER.debug("triggerNotifications() - (LEAVE)");
+        LOGGER.debug("triggerNotifications() - (LEAVE): " + notified);
     }
 
 }
@@ -1,17 +1,26 @@
 package fish.focus.uvms.usm.administration.service.user.impl;
 
 import fish.focus.uvms.usm.administration.common.jdbc.BaseJdbcDao;
+import fish.focus.uvms.usm.administration.common.jdbc.Binder;
 import fish.focus.uvms.usm.administration.common.jdbc.Query;
+import fish.focus.uvms.usm.administration.common.jdbc.QueryCatalog;
+import fish.focus.uvms.usm.administration.common.jdbc.QueryCatalog.Filter;
 import fish.focus.uvms.usm.administration.common.jdbc.RowMapper;
 import fish.focus.uvms.usm.administration.domain.*;
+import fish.focus.uvms.usm.information.entity.PersonEntity;
+import fish.focus.uvms.usm.information.entity.UserEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ejb.Stateless;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * JDBC based data access object for the retrieval of user-related information.
@@ -22,6 +31,37 @@ import java.util.List;
 @Stateless
 public class UserJdbcDao extends BaseJdbcDao {
     private static final Logger LOGGER = LoggerFactory.getLogger(UserJdbcDao.class);
+    private static final QueryCatalog FIND_USERS = new QueryCatalog(
+            "USER_NAME,ACTIVE_FROM,ACTIVE_TO,u.STATUS,FIRST_NAME,LAST_NAME,o.NAME,"
+                    + "o.ISOA3CODE,po.NAME as PARENT,p.e_mail as EMAIL, p.phone_number, p.mobile_number, p.fax_number ",
+            "USER_NAME ",
+            "from USER_T u "
+                    + "left outer join PERSON_T p on p.PERSON_ID=u.PERSON_ID "
+                    + "left outer join ORGANISATION_T o on u.organisation_id=o.organisation_id "
+                    + "left outer join ORGANISATION_T po on o.parent_id=po.organisation_id "
+                    + "where 1=1 ",
+            new Filter("and o.isoa3code=? ", Binder.STRING),
+            new Filter("and o.name=? ", Binder.STRING),
+            new Filter("and (u.active_from is null or u.active_from>=?) ", Binder.TIMESTAMP),
+            new Filter("and (u.active_to is null or u.active_to<=?) ", Binder.TIMESTAMP),
+            new Filter("and u.status=? ", Binder.STRING),
+            new Filter("and (lower(u.user_name) like lower (?) or lower(p.first_name) like (?) "
+                    + "or lower(p.last_name) like (?))", Binder.STRING, Binder.STRING, Binder.STRING));
+    private static final String EXPORT_USERS = "select u.USER_NAME,u.ACTIVE_FROM,u.ACTIVE_TO,u.STATUS,"
+            + "p.FIRST_NAME,p.LAST_NAME,p.E_MAIL as EMAIL,p.PHONE_NUMBER,p.MOBILE_NUMBER,p.FAX_NUMBER,"
+            + "o.NAME,o.ISOA3CODE,po.NAME as PARENT,uc.USER_CONTEXT_ID,r.NAME as ROLE_NAME,s.NAME as SCOPE_NAME,"
+            + "op.NAME as OPTION_NAME,op.GROUP_NAME,pr.OPTION_VALUE "
+            + "from USER_T u "
+            + "left outer join PERSON_T p on p.PERSON_ID=u.PERSON_ID "
+            + "left outer join ORGANISATION_T o on u.organisation_id=o.organisation_id "
+            + "left outer join ORGANISATION_T po on o.parent_id=po.organisation_id "
+            + "left outer join USER_CONTEXT_T uc on uc.USER_ID=u.USER_ID "
+            + "left outer join ROLE_T r on r.ROLE_ID=uc.ROLE_ID "
+            + "left outer join SCOPE_T s on s.SCOPE_ID=uc.SCOPE_ID "
+            + "left outer join PREFERENCE_T pr on pr.USER_CONTEXT_ID=uc.USER_CONTEXT_ID "
+            + "left outer join OPTION_T op on op.OPTION_ID=pr.OPTION_ID "
+            + "order by u.USER_NAME,uc.USER_CONTEXT_ID,op.NAME";
+    private static final int EXPORT_FETCH_SIZE = 500;
 
     public UserJdbcDao() {
     }
@@ -38,19 +78,25 @@ public class UserJdbcDao extends BaseJdbcDao {
         LOGGER.debug("findUsers(" + request + ") - (ENTER)");
 
         Paginator rPaginator = request.getPaginator();
-
-        String paginationQuery = "select * from (select ROW_NUMBER() over(order by "
-                + appendColumnNames(rPaginator.getSortColumn()) + " " + rPaginator.getSortDirection()
-                + ") as rn, du.* from(";
-
-        Query queryForTotalRecords = getFindUsersQuery(null, null, request);
-        Query queryForFindUsers = getFindUsersQuery(paginationQuery, rPaginator, request);
-
-        int totalRecords = queryForTotalRecords(queryForTotalRecords, new TotalRecordsMapper());
-        List<UserAccount> cuList = queryForList(queryForFindUsers, new ComprehensiveUserMapper());
-        PaginationResponse<UserAccount> ret = new PaginationResponse<>();
-        ret.setResults(cuList);
-        ret.setTotal(totalRecords);
+        Object[] filters = getFindUsersFilters(request);
+        Query queryForTotalRecords = FIND_USERS.count(filters);
+        PaginationResponse<UserAccount> ret;
+
+        if (rPaginator.isKeyset()) {
+            ret = queryForPage(FIND_USERS.select(filters), new ComprehensiveUserMapper(),
+                    appendColumnNames(rPaginator.getSortColumn()), "USER_NAME", rPaginator);
+            ret.setTotal(queryForTotalRecords(queryForTotalRecords, new TotalRecordsMapper(),
+                    rPaginator.isExactCount()));
+        } else {
+            Query queryForFindUsers = FIND_USERS.page(appendColumnNames(rPaginator.getSortColumn()), rPaginator,
+                    filters);
+
+            int totalRecords = queryForTotalRecords(queryForTotalRecords, new TotalRecordsMapper());
+            List<UserAccount> cuList = queryForList(queryForFindUsers, new ComprehensiveUserMapper());
+            ret = new PaginationResponse<>();
+            ret.setResults(cuList);
+            ret.setTotal(totalRecords);
+        }
 
         LOGGER.debug("findUsers() - (LEAVE): " + ret);
         return ret;
@@ -100,6 +146,102 @@ public class UserJdbcDao extends BaseJdbcDao {
         return ret;
     }
 
+    /**
+     * Exports all users, with their contexts and preferences, one user at a
+     * time.
+     * <p>
+     * Users are read through a single forward-only cursor, ordered by user
+     * name, so that only the current user is held in memory regardless of
+     * the number of users. The cursor is only fetched in chunks within a
+     * transaction (depending on the JDBC driver).
+     *
+     * @param consumer the consumer of the exported users, in user name order
+     * @return the number of exported users
+     * @throws RuntimeException in case an internal error prevented fulfilling the request
+     */
+    public int exportUsers(Consumer<UserExport> consumer) {
+        LOGGER.debug("exportUsers() - (ENTER)");
+
+        int ret = 0;
+        RowMapper userMapper = new ComprehensiveUserMapper();
+        Connection co = null;
+        boolean autoCommit = true;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            co = getConnection();
+            // Drivers such as PostgreSQL only fetch a cursor in chunks
+            // outside auto-commit; called outside any transaction, the
+            // cursor is read in a local (read-only) one.
+            autoCommit = co.getAutoCommit();
+            if (autoCommit) {
+                co.setAutoCommit(false);
+            }
+            ps = co.prepareStatement(EXPORT_USERS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            rs = ps.executeQuery();
+
+            UserExport user = null;
+            UserContextExport context = null;
+            while (rs.next()) {
+                String userName = rs.getString("USER_NAME");
+                if (user == null || !user.getUser().getUserName().equals(userName)) {
+                    if (user != null) {
+                        consumer.accept(user);
+                        ret++;
+                    }
+                    user = new UserExport();
+                    user.setUser((UserAccount) userMapper.mapRow(rs));
+                    context = null;
+                }
+
+                if (rs.getObject("USER_CONTEXT_ID") != null) {
+                    long userContextId = rs.getLong("USER_CONTEXT_ID");
+                    if (context == null || context.getUserContextId() != userContextId) {
+                        context = new UserContextExport();
+                        context.setUserContextId(userContextId);
+                        context.setRole(rs.getString("ROLE_NAME"));
+                        context.setScope(rs.getString("SCOPE_NAME"));
+                        user.getContexts().add(context);
+                    }
+
+                    if (rs.getString("OPTION_NAME") != null) {
+                        Preference preference = new Preference();
+                        preference.setOptionName(rs.getString("OPTION_NAME"));
+                        preference.setGroupName(rs.getString("GROUP_NAME"));
+                        preference.setOptionValue(rs.getBytes("OPTION_VALUE"));
+                        context.getPreferences().add(preference);
+                    }
+                }
+            }
+            if (user != null) {
+                consumer.accept(user);
+                ret++;
+            }
+        } catch (SQLException ex) {
+            logException(ex);
+        } finally {
+            closeResultSet(rs);
+            closeStatement(ps);
+            restoreAutoCommit(co, autoCommit);
+            closeConnection(co);
+        }
+
+        LOGGER.debug("exportUsers() - (LEAVE): " + ret);
+        return ret;
+    }
+
+    private void restoreAutoCommit(Connection co, boolean autoCommit) {
+        if (co != null && autoCommit) {
+            try {
+                co.rollback();
+                co.setAutoCommit(true);
+            } catch (SQLException ex) {
+                LOGGER.info("Error restoring auto-commit", ex);
+            }
+        }
+    }
+
     /**
      * Finds the userName of all active (and enabled) users whose
      * password will expire before (or at) the provided date.
@@ -125,6 +267,67 @@ public class UserJdbcDao extends BaseJdbcDao {
         return ret;
     }
 
+    /**
+     * Finds all active (and enabled) users, with an e-mail address, whose
+     * password expires before the specified date and who were not yet
+     * notified of it.
+     *
+     * @param expiringBefore the password expiry date/time
+     * @return the possibly-empty list of matching users, holding only their
+     * user name, password expiry and (person) e-mail address
+     */
+    public List<UserEntity> findPasswordExpiryReminders(Date expiringBefore) {
+        LOGGER.debug("findPasswordExpiryReminders() - (ENTER)");
+
+        Query query = new Query("select u.user_name,u.password_expiry,p.e_mail" +
+                " from active_user_v a,user_t u,person_t p" +
+                " where u.user_name=a.user_name" +
+                "   and u.person_id=p.person_id" +
+                "   and p.e_mail is not null" +
+                "   and u.expiry_notification is null" +
+                "   and u.password_expiry <=?");
+        query.add(expiringBefore);
+
+        List<UserEntity> ret = queryForList(query, new ExpiryReminderMapper());
+
+        LOGGER.debug("findPasswordExpiryReminders() - (LEAVE): " + ret.size());
+        return ret;
+    }
+
+    /**
+     * Records, with a single JDBC batch, that the specified users were
+     * notified of the pending expiry of their password.
+     *
+     * @param userNames  the names of the notified users
+     * @param notifiedOn the notification date/time
+     * @throws RuntimeException in case an internal error prevented fulfilling the request
+     */
+    public void updateExpiryNotification(Collection<String> userNames, Date notifiedOn) {
+        LOGGER.debug("updateExpiryNotification(" + userNames.size() + ") - (ENTER)");
+
+        if (!userNames.isEmpty()) {
+            Connection co = null;
+            PreparedStatement ps = null;
+            try {
+                co = getConnection();
+                ps = co.prepareStatement("update user_t set expiry_notification=? where user_name=?");
+                for (String userName : userNames) {
+                    ps.setTimestamp(1, getTimestamp(notifiedOn));
+                    ps.setString(2, userName);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            } catch (Exception ex) {
+                logException(ex);
+            } finally {
+                closeStatement(ps);
+                closeConnection(co);
+            }
+        }
+
+        LOGGER.debug("updateExpiryNotification() - (LEAVE)");
+    }
+
     private String appendColumnNames(String column) {
         switch (column) {
             case "firstName":
@@ -147,68 +350,14 @@ public class UserJdbcDao extends BaseJdbcDao {
         }
     }
 
-    private Query getFindUsersQuery(String pagination, Paginator rPaginator, FindUsersQuery request) {
-        Query query = new Query();
-        String selection;
-
-        if (pagination != null) {
-            query.append(pagination);
-            selection = "select "
-                    + "USER_NAME,ACTIVE_FROM,ACTIVE_TO,u.STATUS,FIRST_NAME,LAST_NAME,o.NAME,"
-                    + "o.ISOA3CODE,po.NAME as PARENT,p.e_mail as EMAIL, p.phone_number, p.mobile_number, p.fax_number ";
-        } else {
-            selection = "select count(*) from (select USER_NAME ";
-        }
-
-        String basicQuery = selection
-                + "from USER_T u "
-                + "left outer join PERSON_T p on p.PERSON_ID=u.PERSON_ID "
-                + "left outer join ORGANISATION_T o on u.organisation_id=o.organisation_id "
-                + "left outer join ORGANISATION_T po on o.parent_id=po.organisation_id "
-                + "where 1=1 ";
-
-        query.append(basicQuery);
-
-        if (request.getNation() != null) {
-            query.append("and o.isoa3code=? ").
-                    add(request.getNation());
-        }
-        if (request.getOrganisation() != null) {
-            query.append("and o.name=? ").
-                    add(request.getOrganisation());
-        }
-        if (request.getActiveFrom() != null) {
-            query.append("and (u.active_from is null or u.active_from>=?) ").
-                    add(request.getActiveFrom());
-        }
-        if (request.getActiveTo() != null) {
-            query.append("and (u.active_to is null or u.active_to<=?) ").
-                    add(request.getActiveTo());
-        }
-        if (request.getStatus() != null) {
-            query.append("and u.status=? ").add(request.getStatus());
-        }
-        if (request.getName() != null) {
-            query.append("and (lower(u.user_name) like lower (?) or lower(p.first_name) like (?) "
-                    + "or lower(p.last_name) like (?))")
-                    .add("%" + request.getName() + "%")
-                    .add("%" + request.getName() + "%")
-                    .add("%" + request.getName() + "%");
-        }
-
-        if (rPaginator != null) {
-            query.append(") du) us ");
-            int limit = rPaginator.getLimit();
-            if (limit != -1) {
-                query.append("where rn between ? and ? order by rn");
-                query.add(rPaginator.getOffset() + 1);
-                query.add(rPaginator.getOffset() + limit);
-            }
-        } else {
-            query.append(") du");
-        }
-
-        return query;
+    private Object[] getFindUsersFilters(FindUsersQuery request) {
+        return new Object[]{
+                request.getNation(),
+                request.getOrganisation(),
+                request.getActiveFrom(),
+                request.getActiveTo(),
+                request.getStatus(),
+                request.getName() != null ? "%" + request.getName() + "%" : null};
     }
 
     private static class ComprehensiveUserMapper implements RowMapper {
@@ -247,6 +396,23 @@ public class UserJdbcDao extends BaseJdbcDao {
         }
     }
 
+    private static class ExpiryReminderMapper implements RowMapper {
+
+        @Override
+        public Object mapRow(ResultSet rs)
+                throws SQLException {
+            UserEntity ret = new UserEntity();
+
+            ret.setUserName(rs.getString("USER_NAME"));
+            ret.setPasswordExpiry(rs.getTimestamp("PASSWORD_EXPIRY"));
+            PersonEntity person = new PersonEntity();
+            person.setEMail(rs.getString("E_MAIL"));
+            ret.setPerson(person);
+
+            return ret;
+        }
+    }
+
     private static class UserMapper implements RowMapper {
 
         public UserMapper() {
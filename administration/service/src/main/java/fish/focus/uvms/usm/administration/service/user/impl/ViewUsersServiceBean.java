@@ -12,6 +12,7 @@ import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 import java.util.HashSet;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Stateless session bean implementation of the UsersService
@@ -75,4 +76,38 @@ public class ViewUsersServiceBean implements ViewUsersService {
 
     }
 
+    @Override
+    public void authoriseExport(ServiceRequest<NoBody> request) {
+        LOGGER.debug("authoriseExport(" + request + ") - (ENTER)");
+
+        HashSet<USMFeature> featureSet = new HashSet<USMFeature>();
+        featureSet.add(USMFeature.viewUsers);
+        featureSet.add(USMFeature.manageUsers);
+
+        validator.assertValid(request, "query", featureSet);
+
+        LOGGER.debug("authoriseExport() - (LEAVE)");
+    }
+
+    /**
+     * Runs outside any transaction, so that an export lasting as long as the
+     * client takes to download it is not bound by the transaction timeout.
+     */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public int exportUsers(ServiceRequest<NoBody> request, Consumer<UserExport> consumer) {
+        LOGGER.debug("exportUsers(" + request + ") - (ENTER)");
+
+        HashSet<USMFeature> featureSet = new HashSet<USMFeature>();
+        featureSet.add(USMFeature.viewUsers);
+        featureSet.add(USMFeature.manageUsers);
+
+        validator.assertValid(request, "query", featureSet);
+
+        int response = userDao.exportUsers(consumer);
+
+        LOGGER.debug("exportUsers() - (LEAVE): " + response);
+        return response;
+    }
+
 }
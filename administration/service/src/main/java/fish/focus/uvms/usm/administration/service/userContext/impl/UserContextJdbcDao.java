@@ -83,14 +83,18 @@ public class UserContextJdbcDao extends BaseJdbcDao {
     }
 
     private Query getFindContextsQuery(String userName) {
+        String columns = "uc.USER_CONTEXT_ID," +
+                " sc.SCOPE_ID, sc.NAME, sc.DESCRIPTION, sc.STATUS," +
+                " rl.ROLE_ID, rl.NAME, rl.DESCRIPTION, rl.STATUS";
         String select = "select uc.USER_CONTEXT_ID," +
                 " sc.SCOPE_ID, sc.NAME AS SCOPE_NAME, sc.DESCRIPTION AS SCOPE_DESCRIPTION, sc.STATUS AS SCOPE_STATUS," +
                 " rl.ROLE_ID, rl.NAME AS ROLE_NAME, rl.DESCRIPTION AS ROLE_DESCRIPTION, rl.STATUS AS ROLE_STATUS," +
-                " (select count(preference_id) from PREFERENCE_T pref where pref.user_context_id = uc.USER_CONTEXT_ID) PREF_NUMBER" +
+                " count(pref.PREFERENCE_ID) PREF_NUMBER" +
                 " from USER_T u " +
                 " join USER_CONTEXT_T uc on uc.user_id = u.user_id " +
                 " join ROLE_T rl on rl.role_id = uc.role_id " +
                 " left outer join SCOPE_T sc on sc.scope_id = uc.scope_id " +
+                " left outer join PREFERENCE_T pref on pref.user_context_id = uc.USER_CONTEXT_ID" +
                 " where 1=1";
 
         Query ret = new Query();
@@ -98,6 +102,7 @@ public class UserContextJdbcDao extends BaseJdbcDao {
         if (userName != null) {
             ret.append(" and u.user_name=?").add(userName);
         }
+        ret.append(" group by " + columns);
         return ret;
     }
 
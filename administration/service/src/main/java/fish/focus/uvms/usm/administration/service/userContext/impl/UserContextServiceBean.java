@@ -3,7 +3,8 @@ package fish.focus.uvms.usm.administration.service.userContext.impl;
 import fish.focus.uvms.audit.model.mapper.AuditLogModelMapper;
 import fish.focus.uvms.usm.information.entity.*;
 import fish.focus.uvms.usm.administration.domain.*;
-import fish.focus.uvms.usm.administration.service.AuditProducer;
+import fish.focus.uvms.usm.administration.service.AuditOutbox;
+import fish.focus.uvms.usm.administration.service.AuthorisationCache;
 import fish.focus.uvms.usm.administration.service.role.impl.RoleJpaDao;
 import fish.focus.uvms.usm.administration.service.scope.impl.ScopeJpaDao;
 import fish.focus.uvms.usm.administration.service.user.impl.UserJpaDao;
@@ -12,6 +13,7 @@ import fish.focus.uvms.usm.administration.service.userPreference.impl.Preference
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
@@ -49,7 +51,10 @@ public class UserContextServiceBean implements UserContextService {
     private ScopeJpaDao scopeJpaDao;
 
     @Inject
-    private AuditProducer auditProducer;
+    private AuditOutbox auditOutbox;
+
+    @EJB
+    private AuthorisationCache authorisationCache;
 
     @Override
     @TransactionAttribute(TransactionAttributeType.SUPPORTS)
@@ -84,11 +89,12 @@ public class UserContextServiceBean implements UserContextService {
         UserContextEntity entity = new UserContextEntity();
         copy(entity, request.getBody());
         entity = userContextJpaDao.create(entity);
+        authorisationCache.evict(request.getBody().getUserName());
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.CREATE.getValue(), AuditObjectTypeEnum.CONTEXT.getValue() + " " +
                         request.getBody().getUserName(), request.getBody().getUserName(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("createUserContext() - (LEAVE)");
         return convert(entity);
@@ -105,13 +111,16 @@ public class UserContextServiceBean implements UserContextService {
             throw new IllegalArgumentException("UserContext Does not exist");
         }
 
+        String previousUserName = entity.getUser() != null ? entity.getUser().getUserName() : null;
         copy(entity, request.getBody());
         UserContextEntity updatedUserContext = userContextJpaDao.update(entity);
+        authorisationCache.evict(previousUserName);
+        authorisationCache.evict(request.getBody().getUserName());
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.UPDATE.getValue(), AuditObjectTypeEnum.CONTEXT.getValue() + " " +
                         request.getBody().getUserName(), request.getBody().getUserName(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("updateUserContext() - (LEAVE)");
         return convert(updatedUserContext);
@@ -125,11 +134,12 @@ public class UserContextServiceBean implements UserContextService {
         validator.assertValid(request, USMFeature.manageUsers, "role");
 
         userContextJpaDao.delete(Long.valueOf(request.getBody()));
+        authorisationCache.evictAll();
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.DELETE.getValue(), AuditObjectTypeEnum.CONTEXT.getValue() + " " +
                         request.getBody(), request.getBody(), request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("deleteUserContext() - (LEAVE)");
     }
@@ -168,11 +178,12 @@ public class UserContextServiceBean implements UserContextService {
             }
             userContextJpaDao.create(entity);
         }
+        authorisationCache.evict(toUserName);
 
         String auditLog = AuditLogModelMapper.mapToAuditLog(USMApplication.USM.name(),
                 AuditOperationEnum.COPY.getValue(), AuditObjectTypeEnum.CONTEXT.getValue() + " " +
                         toUserName, toUserName, request.getRequester());
-        auditProducer.sendModuleMessage(auditLog);
+        auditOutbox.append(auditLog);
 
         LOGGER.debug("copyUserProfiles() - (LEAVE)");
     }
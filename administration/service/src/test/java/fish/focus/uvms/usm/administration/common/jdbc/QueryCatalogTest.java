@@ -0,0 +1,171 @@
+package fish.focus.uvms.usm.administration.common.jdbc;
+
+import fish.focus.uvms.usm.administration.common.jdbc.QueryCatalog.Filter;
+import fish.focus.uvms.usm.administration.domain.Paginator;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class QueryCatalogTest {
+    private static final String FROM = "from USER_T u where 1=1 ";
+    private static final String STATUS = "and u.status=? ";
+    private static final String ACTIVE_FROM = "and u.active_from>=? ";
+    private static final String NAME = "and (lower(u.user_name) like lower(?) or lower(u.first_name) like (?) "
+            + "or lower(u.last_name) like (?)) ";
+
+    private final QueryCatalog catalog = new QueryCatalog("USER_NAME,STATUS ", "USER_NAME ", FROM,
+            new Filter(STATUS, Binder.STRING),
+            new Filter(ACTIVE_FROM, Binder.TIMESTAMP),
+            new Filter(NAME, Binder.STRING, Binder.STRING, Binder.STRING));
+
+    @Test
+    public void testShapeWithoutFilters() {
+        Query query = catalog.count(null, null, null);
+
+        assertEquals("select count(*) from (select USER_NAME " + FROM + ") du", query.getStatement());
+        assertTrue(query.getParameters().isEmpty());
+        assertTrue(query.getBinders().isEmpty());
+    }
+
+    @Test
+    public void testShapeWithFilters() {
+        Timestamp activeFrom = new Timestamp(0);
+        Query query = catalog.select("E", activeFrom, null);
+
+        assertEquals(BaseJdbcDao.KEYSET_QUERY + "select USER_NAME,STATUS " + FROM + STATUS + ACTIVE_FROM + ") du",
+                query.getStatement());
+        assertEquals(Arrays.asList("E", activeFrom), query.getParameters());
+        assertEquals(Arrays.asList(Binder.STRING, Binder.TIMESTAMP), query.getBinders());
+    }
+
+    @Test
+    public void testEveryShapeDistinct() {
+        Set<String> statements = new HashSet<>();
+        for (int shape = 0; shape < 8; shape++) {
+            Object[] values = new Object[3];
+            int expected = 0;
+            if ((shape & 1) != 0) {
+                values[0] = "E";
+                expected++;
+            }
+            if ((shape & 2) != 0) {
+                values[1] = new Timestamp(0);
+                expected++;
+            }
+            if ((shape & 4) != 0) {
+                values[2] = "john%";
+                expected += 3;
+            }
+            Query query = catalog.count(values);
+
+            assertTrue(statements.add(query.getStatement()));
+            assertEquals(expected, query.getParameters().size());
+            assertEquals(expected, query.getBinders().size());
+        }
+    }
+
+    @Test
+    public void testMultiBinderFilter() {
+        Query query = catalog.count("E", null, "john%");
+
+        assertEquals("select count(*) from (select USER_NAME " + FROM + STATUS + NAME + ") du", query.getStatement());
+        assertEquals(Arrays.asList("E", "john%", "john%", "john%"), query.getParameters());
+        assertEquals(Collections.nCopies(4, Binder.STRING), query.getBinders());
+    }
+
+    @Test
+    public void testWrongNumberOfValues() {
+        try {
+            catalog.count("E", null);
+            fail("Failed to trigger IllegalArgumentException");
+        } catch (IllegalArgumentException exc) {
+            System.out.println("Triggered expected exception: " + exc.getMessage());
+        }
+    }
+
+    @Test
+    public void testPageBounds() {
+        Query query = catalog.page("USER_NAME", paginator("desc", 20, 10), null, null, "john%");
+
+        assertTrue(query.getStatement().startsWith(
+                "select * from (select ROW_NUMBER() over(order by USER_NAME DESC) as rn, du.* from("));
+        assertTrue(query.getStatement().endsWith(") du) us where rn between ? and ? order by rn"));
+        assertEquals(Arrays.asList("john%", "john%", "john%", 21, 30), query.getParameters());
+        assertEquals(Arrays.asList(Binder.STRING, Binder.STRING, Binder.STRING, Binder.INTEGER, Binder.INTEGER),
+                query.getBinders());
+    }
+
+    @Test
+    public void testPageWithoutLimit() {
+        Query query = catalog.page("USER_NAME", paginator(null, 20, -1), "E", null, null);
+
+        assertTrue(query.getStatement().contains("over(order by USER_NAME ASC)"));
+        assertFalse(query.getStatement().contains("between"));
+        assertEquals(Collections.singletonList("E"), query.getParameters());
+        assertEquals(Collections.singletonList(Binder.STRING), query.getBinders());
+    }
+
+    @Test
+    public void testPageTemplatesMemoised() throws Exception {
+        Query first = catalog.page("USER_NAME", paginator("asc", 0, 10), "E", null, null);
+        Query second = catalog.page("USER_NAME", paginator("asc", 10, 10), "F", null, null);
+        assertEquals(first.getStatement(), second.getStatement());
+        assertEquals(Arrays.asList("F", 11, 20), second.getParameters());
+        assertEquals(1, pages().size());
+
+        // Other sort direction, limit mode and shape
+        catalog.page("USER_NAME", paginator("desc", 0, 10), "E", null, null);
+        catalog.page("USER_NAME", paginator("asc", 0, -1), "E", null, null);
+        catalog.page("USER_NAME", paginator("asc", 0, 10), null, null, null);
+        assertEquals(4, pages().size());
+
+        catalog.page("USER_NAME", paginator("asc", 30, -1), "G", null, null);
+        assertEquals(4, pages().size());
+    }
+
+    @Test
+    public void testTemplateBinding() {
+        QueryTemplate base = new QueryTemplate("where a=? ", Binder.STRING);
+        QueryTemplate wrapped = base.append("and b=? ", Binder.INTEGER).wrap("select * from T ", "limit ?", Binder.LONG);
+
+        assertEquals("where a=? ", base.getStatement());
+        assertEquals(Collections.singletonList(Binder.STRING), base.getBinders());
+        assertEquals("select * from T where a=? and b=? limit ?", wrapped.getStatement());
+
+        Query query = wrapped.bind("A", 1, 2L);
+        assertEquals(Arrays.asList("A", 1, 2L), query.getParameters());
+        assertEquals(Arrays.asList(Binder.STRING, Binder.INTEGER, Binder.LONG), query.getBinders());
+
+        try {
+            wrapped.bind("A", 1);
+            fail("Failed to trigger IllegalArgumentException");
+        } catch (IllegalArgumentException exc) {
+            System.out.println("Triggered expected exception: " + exc.getMessage());
+        }
+    }
+
+    private Map<?, ?> pages() throws Exception {
+        Field field = QueryCatalog.class.getDeclaredField("pages");
+        field.setAccessible(true);
+        return (Map<?, ?>) field.get(catalog);
+    }
+
+    private static Paginator paginator(String sortDirection, int offset, int limit) {
+        Paginator ret = new Paginator();
+        ret.setSortDirection(sortDirection);
+        ret.setOffset(offset);
+        ret.setLimit(limit);
+        return ret;
+    }
+}
@@ -0,0 +1,92 @@
+package fish.focus.uvms.usm.administration.service;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AuditOutboxTest {
+    private AuditOutbox outbox;
+    private List<String> localQueue;
+
+    @Before
+    public void setUp() {
+        localQueue = new ArrayList<>();
+        outbox = new AuditOutbox();
+        outbox.setSender(localQueue::add);
+    }
+
+    @Test
+    public void testFlushInOrder() {
+        for (int i = 0; i < 500; i++) {
+            outbox.append("log " + i);
+        }
+        assertTrue(localQueue.isEmpty());
+
+        outbox.flush();
+
+        assertEquals(500, localQueue.size());
+        assertEquals("log 0", localQueue.get(0));
+        assertEquals("log 499", localQueue.get(499));
+        assertEquals(Long.valueOf(500), outbox.getMetrics().get("sent"));
+        assertEquals(Long.valueOf(0), outbox.getMetrics().get("pending"));
+    }
+
+    @Test
+    public void testRetryAfterFailure() {
+        outbox.setSender(auditLog -> {
+            if (auditLog.equals("second")) {
+                throw new RuntimeException("Error while sending log to audit");
+            }
+            localQueue.add(auditLog);
+        });
+        outbox.append("first");
+        outbox.append("second");
+        outbox.append("third");
+
+        outbox.flush();
+
+        assertEquals(Arrays.asList("first"), localQueue);
+        assertEquals(Long.valueOf(2), outbox.getMetrics().get("pending"));
+        assertEquals(Long.valueOf(1), outbox.getMetrics().get("failed"));
+
+        // Retry is delayed, even once the broker is back
+        outbox.setSender(localQueue::add);
+        outbox.flush();
+        assertEquals(1, localQueue.size());
+
+        outbox.destroy();
+        assertEquals(Arrays.asList("first", "second", "third"), localQueue);
+    }
+
+    @Test
+    public void testDroppedAfterMaxAttempts() {
+        outbox.setSender(auditLog -> {
+            if (auditLog.equals("poison")) {
+                throw new RuntimeException("Error while sending log to audit");
+            }
+            localQueue.add(auditLog);
+        });
+        outbox.append("poison");
+        outbox.append("next");
+
+        // Retry without delay
+        for (int i = 1; i < AuditOutbox.MAX_ATTEMPTS; i++) {
+            outbox.destroy();
+        }
+        assertTrue(localQueue.isEmpty());
+        assertEquals(Long.valueOf(2), outbox.getMetrics().get("pending"));
+        assertEquals(Long.valueOf(0), outbox.getMetrics().get("dropped"));
+
+        outbox.destroy();
+        assertEquals(Arrays.asList("next"), localQueue);
+        assertEquals(Long.valueOf(0), outbox.getMetrics().get("pending"));
+        assertEquals(Long.valueOf(1), outbox.getMetrics().get("dropped"));
+        assertEquals(Long.valueOf(AuditOutbox.MAX_ATTEMPTS), outbox.getMetrics().get("failed"));
+    }
+}
@@ -79,7 +79,8 @@ public class DeploymentFactory {
                         "fish.focus.uvms.usm:Authentication-Service",
                         "fish.focus.uvms.usm:Information-Model",
                         "fish.focus.uvms.usm:Authentication-Model",
-                        "fish.focus.uvms.audit:audit-model")
+                        "fish.focus.uvms.audit:audit-model",
+                        "com.icegreen:greenmail")
                 .withoutTransitivity().asFile();
         war.addAsLibraries(files);
         return war;
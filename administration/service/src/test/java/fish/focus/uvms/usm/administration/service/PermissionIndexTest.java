@@ -0,0 +1,90 @@
+package fish.focus.uvms.usm.administration.service;
+
+import fish.focus.uvms.usm.administration.domain.USMApplication;
+import fish.focus.uvms.usm.administration.domain.USMFeature;
+import fish.focus.uvms.usm.information.domain.Context;
+import fish.focus.uvms.usm.information.domain.ContextSet;
+import fish.focus.uvms.usm.information.domain.Feature;
+import fish.focus.uvms.usm.information.domain.Role;
+import fish.focus.uvms.usm.information.domain.Scope;
+import fish.focus.uvms.usm.information.domain.UserContext;
+import org.junit.Test;
+
+import java.util.HashSet;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PermissionIndexTest {
+
+    @Test
+    public void testUnscopedContext() {
+        UserContext userContext = userContext(context("USM-UserManager", null, "viewUsers", "manageUsers"));
+        PermissionIndex index = PermissionIndex.compile(userContext);
+
+        assertTrue(index.isGranted("USM-UserManager", null, USMFeature.manageUsers));
+        assertTrue(index.isGranted("USM-UserManager", "some scope", USMFeature.viewUsers));
+        assertTrue(index.isGranted(null, null, USMFeature.viewUsers));
+        assertFalse(index.isGranted("USM-UserManager", null, USMFeature.manageRoles));
+        assertFalse(index.isGranted("Other Role", null, USMFeature.viewUsers));
+    }
+
+    @Test
+    public void testScopedContext() {
+        UserContext userContext = userContext(context("USM-UserBrowser", "FRA Quotas", "viewUsers"));
+        PermissionIndex index = PermissionIndex.compile(userContext);
+
+        assertTrue(index.isGranted("USM-UserBrowser", "FRA Quotas", USMFeature.viewUsers));
+        assertTrue(index.isGranted(null, "FRA Quotas", USMFeature.viewUsers));
+        assertFalse(index.isGranted("USM-UserBrowser", null, USMFeature.viewUsers));
+        assertFalse(index.isGranted("USM-UserBrowser", "GRC Quotas", USMFeature.viewUsers));
+        assertFalse(index.isGranted(null, null, USMFeature.viewUsers));
+    }
+
+    @Test
+    public void testIgnoresOtherApplications() {
+        Context ctx = context("Quota Manager", null, "manageUsers");
+        ctx.getRole().getFeatures().iterator().next().setApplicationName("Quota");
+        PermissionIndex index = PermissionIndex.compile(userContext(ctx));
+
+        assertFalse(index.isGranted("Quota Manager", null, USMFeature.manageUsers));
+    }
+
+    @Test
+    public void testNoContext() {
+        PermissionIndex index = PermissionIndex.compile(null);
+
+        assertFalse(index.isGranted(null, null, USMFeature.viewUsers));
+    }
+
+    private UserContext userContext(Context... contexts) {
+        UserContext ret = new UserContext();
+        ret.setUserName("usm_admin");
+        ret.setApplicationName(USMApplication.USM.name());
+        ret.setContextSet(new ContextSet());
+        ret.getContextSet().setContexts(new HashSet<Context>());
+        for (Context c : contexts) {
+            ret.getContextSet().getContexts().add(c);
+        }
+        return ret;
+    }
+
+    private Context context(String roleName, String scopeName, String... featureNames) {
+        Context ret = new Context();
+        ret.setRole(new Role());
+        ret.getRole().setRoleName(roleName);
+        ret.getRole().setFeatures(new HashSet<Feature>());
+        for (String featureName : featureNames) {
+            Feature f = new Feature();
+            f.setApplicationName(USMApplication.USM.name());
+            f.setFeatureName(featureName);
+            ret.getRole().getFeatures().add(f);
+        }
+        if (scopeName != null) {
+            ret.setScope(new Scope());
+            ret.getScope().setScopeName(scopeName);
+        }
+        return ret;
+    }
+
+}
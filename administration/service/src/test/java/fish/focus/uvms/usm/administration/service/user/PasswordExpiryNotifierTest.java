@@ -1,21 +1,44 @@
 package fish.focus.uvms.usm.administration.service.user;
 
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import com.icegreen.greenmail.util.ServerSetupTest;
 import fish.focus.uvms.usm.administration.service.DeploymentFactory;
 import fish.focus.uvms.usm.administration.common.JdbcTestFixture;
+import fish.focus.uvms.usm.administration.common.jdbc.Query;
+import fish.focus.uvms.usm.administration.service.NotificationBuilder;
+import fish.focus.uvms.usm.administration.service.NotificationSender;
 import fish.focus.uvms.usm.administration.service.user.impl.PasswordExpiryNotifier;
+import fish.focus.uvms.usm.administration.service.user.impl.UserJdbcDao;
+import fish.focus.uvms.usm.information.entity.UserEntity;
 import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
 import org.jboss.arquillian.junit.Arquillian;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Properties;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
 @RunWith(Arquillian.class)
 public class PasswordExpiryNotifierTest extends DeploymentFactory {
+    private static final String RATE_PER_SECOND = "reminder.ratePerSecond";
+    private static final int TEST_RATE_PER_SECOND = 4;
+    private static final long ONE_DAY = 1000L * 60 * 60 * 24;
 
     @EJB
     private PasswordExpiryNotifier testSubject;
@@ -26,6 +49,15 @@ public class PasswordExpiryNotifierTest extends DeploymentFactory {
     @EJB
     private JdbcTestFixture jdbcDao;
 
+    @EJB
+    private UserJdbcDao userJdbcDao;
+
+    @Resource(lookup = "java:comp/DefaultManagedExecutorService")
+    private ManagedExecutorService executor;
+
+    private GreenMail smtpServer;
+    private String ratePerSecond;
+
     @Before
     public void setUp() {
         jdbcDao.update("update user_t set expiry_notification=null" +
@@ -35,6 +67,18 @@ public class PasswordExpiryNotifierTest extends DeploymentFactory {
                 " and name='password.renewalReminder'");
         //we must reset the policyProvider to avoid hitting the cache
         policyProvider.reset();
+
+        smtpServer = new GreenMail(ServerSetupTest.SMTP);
+        smtpServer.start();
+        ratePerSecond = NotificationBuilder.getProperties().getProperty(RATE_PER_SECOND);
+    }
+
+    @After
+    public void tearDown() {
+        if (ratePerSecond != null) {
+            NotificationBuilder.getProperties().setProperty(RATE_PER_SECOND, ratePerSecond);
+        }
+        smtpServer.stop();
     }
 
     @Test
@@ -65,4 +109,100 @@ public class PasswordExpiryNotifierTest extends DeploymentFactory {
             assertNotSame("Unexpected UsersToNotify value", userName, checkItem);
         }
     }
+
+    @Test
+    public void testNotifyUsers() throws Exception {
+        // Set-up
+        List<String> setup = testSubject.findUsersToNotify();
+        assertFalse("Unexpected empy UsersToNotify list", setup.isEmpty());
+        Set<String> expectedRecipients = new HashSet<>();
+        for (UserEntity user : userJdbcDao.findPasswordExpiryReminders(new Date(System.currentTimeMillis() + 7 * ONE_DAY))) {
+            expectedRecipients.add(user.getPerson().getEMail());
+        }
+        PasswordExpiryNotifier notifier = createNotifier(smtpServer.getSmtp().getServerSetup());
+        NotificationBuilder.getProperties().setProperty(RATE_PER_SECOND, String.valueOf(TEST_RATE_PER_SECOND));
+        Date before = new Date(System.currentTimeMillis() - 1000);
+
+        // Execute
+        long start = System.nanoTime();
+        int notified = notifier.notifyUsers();
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        // Verify messages sent
+        MimeMessage[] received = smtpServer.getReceivedMessages();
+        assertEquals("Unexpected notified count", setup.size(), notified);
+        assertEquals("Unexpected received count", notified, received.length);
+        Set<String> recipients = new HashSet<>();
+        for (MimeMessage message : received) {
+            assertEquals("Unexpected subject", "password-expiration reminder", message.getSubject());
+            for (Address recipient : message.getRecipients(Message.RecipientType.TO)) {
+                recipients.add(recipient.toString());
+            }
+        }
+        assertEquals("Unexpected recipients", expectedRecipients, recipients);
+
+        // Verify rate limit, the first message being sent without delay
+        long minimumMillis = (notified - 1) * 1000L / TEST_RATE_PER_SECOND;
+        assertTrue("Rate limit exceeded: " + notified + " messages in " + elapsedMillis + "ms",
+                elapsedMillis >= minimumMillis);
+
+        // Verify notification dates, recorded by a single batched update
+        assertTrue("Unexpected UsersToNotify", testSubject.findUsersToNotify().isEmpty());
+        assertEquals("Unexpected notified user count", notified,
+                jdbcDao.queryForCount(notifiedQuery("count(*)", setup, before)));
+        assertEquals("Unexpected notification date count", 1,
+                jdbcDao.queryForCount(notifiedQuery("count(distinct expiry_notification)", setup, before)));
+    }
+
+    @Test
+    public void testNotifyUsersSmtpUnavailable() throws Exception {
+        // Set-up
+        List<String> setup = testSubject.findUsersToNotify();
+        assertFalse("Unexpected empy UsersToNotify list", setup.isEmpty());
+        PasswordExpiryNotifier notifier = createNotifier(smtpServer.getSmtp().getServerSetup());
+        smtpServer.stop();
+
+        // Execute
+        int notified = notifier.notifyUsers();
+
+        // Verify
+        assertEquals("Unexpected notified count", 0, notified);
+        assertEquals("Unexpected UsersToNotify count", setup.size(), testSubject.findUsersToNotify().size());
+    }
+
+    private static Query notifiedQuery(String count, List<String> userNames, Date notifiedAfter) {
+        Query ret = new Query("select " + count + " from user_t where expiry_notification>=?");
+        ret.add(notifiedAfter);
+        ret.append(" and user_name in (");
+        for (int i = 0; i < userNames.size(); i++) {
+            ret.append(i == 0 ? "?" : ",?");
+            ret.add(userNames.get(i));
+        }
+        ret.append(')');
+        return ret;
+    }
+
+    /**
+     * Creates a notifier sending via the provided (local) SMTP server,
+     * wired with the beans injected in this test.
+     */
+    private PasswordExpiryNotifier createNotifier(ServerSetup serverSetup) throws Exception {
+        Properties props = new Properties();
+        props.setProperty("mail.transport.protocol", serverSetup.getProtocol());
+        props.setProperty("mail.smtp.host", serverSetup.getBindAddress());
+        props.setProperty("mail.smtp.port", String.valueOf(serverSetup.getPort()));
+
+        PasswordExpiryNotifier ret = new PasswordExpiryNotifier();
+        setField(ret, "policyProvider", policyProvider);
+        setField(ret, "jdbcDao", userJdbcDao);
+        setField(ret, "executor", executor);
+        setField(ret, "sender", new NotificationSender(Session.getInstance(props)));
+        return ret;
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
 }
@@ -8,6 +8,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -87,6 +90,42 @@ public class ViewUsersServiceTest extends DeploymentFactory {
 				expectedOrganisation, getOrganisation(results, expectedOrganisation));
     }
 
+    /**
+     * Tests the find users method in keyset pagination mode, paging through
+     * all users with the returned cursors
+     */
+    @Test
+    public void testKeysetFindUsers() {
+        // Setup
+        Paginator paginator = new Paginator();
+        paginator.setLimit(2);
+        paginator.setSortColumn("user_name");
+        paginator.setSortDirection("ASC");
+        paginator.setKeyset(true);
+        paginator.setExactCount(true);
+        FindUsersQuery query = new FindUsersQuery();
+        query.setPaginator(paginator);
+
+        ServiceRequest<FindUsersQuery> request = new ServiceRequest<>();
+        request.setRequester("vms_admin_com");
+        request.setBody(query);
+
+        // Execute
+        List<String> userNames = new ArrayList<>();
+        PaginationResponse<UserAccount> response;
+        do {
+            response = testSubject.findUsers(request);
+            assertTrue("Unexpected page size", response.getResults().size() <= 2);
+            response.getResults().forEach(u -> userNames.add(u.getUserName()));
+            paginator.setCursor(response.getNextCursor());
+        } while (response.getNextCursor() != null);
+
+        // Verify
+        assertTrue("Unexpected number of users", userNames.size() > 2);
+        assertEquals("Unexpected duplicate users", userNames.size(), new HashSet<>(userNames).size());
+        assertEquals("Unexpected 'total' value", response.getTotal(), userNames.size());
+    }
+
     private String getUserName(List<UserAccount> cUsers, String expected) {
     	return cUsers.stream()
 				.filter(u -> u.getUserName().equals(expected))
@@ -156,4 +195,46 @@ public class ViewUsersServiceTest extends DeploymentFactory {
         assertTrue("Expected userName not found", response.contains(expected));
     }
 
+    @Test
+    public void testExportUsers() {
+        // Setup
+        ServiceRequest<NoBody> request = new ServiceRequest<>();
+        request.setRequester("vms_admin_com");
+        request.setBody(new NoBody());
+
+        // Execute
+        List<UserExport> users = new ArrayList<>();
+        int response = testSubject.exportUsers(request, users::add);
+
+        // Verify
+        assertEquals("Unexpected number of users", users.size(), response);
+        assertEquals("Unexpected duplicate users", users.size(),
+                users.stream().map(u -> u.getUser().getUserName()).distinct().count());
+        assertTrue("Expected user not found",
+                users.stream().anyMatch(u -> u.getUser().getUserName().equals("vms_user_com")));
+        assertTrue("Unexpected users without roles", users.stream()
+                .flatMap(u -> u.getContexts().stream())
+                .allMatch(c -> c.getRole() != null));
+        assertTrue("Unexpected empty contexts", users.stream().anyMatch(u -> !u.getContexts().isEmpty()));
+    }
+
+    @Test
+    public void testAuthoriseExport() {
+        // Setup
+        ServiceRequest<NoBody> request = new ServiceRequest<>();
+        request.setRequester("vms_admin_com");
+        request.setBody(new NoBody());
+
+        // Execute
+        testSubject.authoriseExport(request);
+
+        request.setRequester("unknown_requester");
+        try {
+            testSubject.authoriseExport(request);
+            fail("Failed to trigger UnauthorisedException");
+        } catch (EJBException | UnauthorisedException exc) {
+            System.out.println("Triggered expected exception: " + exc.getMessage());
+        }
+    }
+
 }
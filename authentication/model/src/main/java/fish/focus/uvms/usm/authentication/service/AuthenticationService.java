@@ -43,6 +43,17 @@ public interface AuthenticationService {
      */
     public AuthenticationResponse authenticateUser(AuthenticationRequest request);
 
+    /**
+     * Asserts the identity of a user based on the provided user identifier
+     * and password, throttling login attempts per user and per client
+     * address.
+     *
+     * @param request       the user identifier and password
+     * @param clientAddress the (IP) address of the client, possibly null
+     * @return an AuthenticationResponse
+     */
+    public AuthenticationResponse authenticateUser(AuthenticationRequest request, String clientAddress);
+
     /**
      * Retrieves a challenge suitable for confirming the identity of a user.
      *
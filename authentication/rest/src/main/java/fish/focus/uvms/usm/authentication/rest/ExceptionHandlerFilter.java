@@ -1,5 +1,6 @@
 package fish.focus.uvms.usm.authentication.rest;
 
+import fish.focus.uvms.usm.service.impl.UnitOfWork;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,6 +13,10 @@ import java.io.IOException;
 /**
  * Filters incoming REST requests, logging and reporting in JSON
  * format, otherwise un-handled exceptions.
+ * <p>
+ * Each request is processed as a unit of work, sharing JDBC connections
+ * between data access objects, and reporting the number of connections
+ * acquired and statements executed.
  */
 @WebFilter(filterName = "ExceptionHandlerFilter", urlPatterns = {"/rest/*" })
 public class ExceptionHandlerFilter implements Filter {
@@ -26,7 +31,7 @@ public class ExceptionHandlerFilter implements Filter {
 
     /**
      * Filters an incoming request, logging and reporting any un-handled
-     * exception
+     * exception, within a unit of work
      *
      * @param request  The request we are processing
      * @param response The response we are creating
@@ -39,6 +44,7 @@ public class ExceptionHandlerFilter implements Filter {
         HttpServletResponse httpResponse = (HttpServletResponse) response;
         LOGGER.debug("doFilter(" + httpRequest.getMethod() + ", " + httpRequest.getPathInfo() + ") - (ENTER)");
 
+        UnitOfWork.begin();
         try {
             chain.doFilter(request, response);
         } catch (Exception exc) {
@@ -60,6 +66,9 @@ public class ExceptionHandlerFilter implements Filter {
                     append(quote(message)).
                     append("}");
             httpResponse.getWriter().print(sb.toString());
+        } finally {
+            UnitOfWork.Statistics statistics = UnitOfWork.end();
+            LOGGER.debug("Unit of work: " + statistics);
         }
 
         LOGGER.debug("doFilter() - (LEAVE)");
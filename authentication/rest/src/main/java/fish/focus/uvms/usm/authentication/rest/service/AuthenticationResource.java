@@ -13,7 +13,9 @@ import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -26,6 +28,9 @@ public class AuthenticationResource {
     @EJB
     private AuthenticationService service;
 
+    @Context
+    private HttpServletRequest servletRequest;
+
     /**
      * Asserts the identity of a user based on the provided user
      * identifier and password.
@@ -44,7 +49,7 @@ public class AuthenticationResource {
 
         Response response;
         try {
-            AuthenticationResponse ar = service.authenticateUser(request);
+            AuthenticationResponse ar = service.authenticateUser(request, servletRequest.getRemoteAddr());
             response = Response.ok(ar).build();
         } catch (Exception exc) {
             response = ExceptionHandler.handleException(exc);
@@ -11,9 +11,12 @@ import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Stateless Session Bean, JDBC based data access object for the authentication
@@ -29,6 +32,7 @@ public class AuthenticationDao extends AbstractJdbcDao {
 
     private static final String[] PERSON_COLUMNS =
             {"first_name", "last_name", "phone_number", "mobile_number", "fax_number", "e_mail" };
+    private static final int SYNC_CHUNK_SIZE = 500;
 
     public AuthenticationDao() {
     }
@@ -44,35 +48,38 @@ public class AuthenticationDao extends AbstractJdbcDao {
     }
 
     /**
-     * Retrieves the unique identifier (PK) of the user with the given name and
-     * password.
+     * Gets the size of the narrowest of the password columns of USER_T and
+     * PASSWORD_HIST_T.
      *
-     * @param userName the user name
-     * @param password the MD5 hash for the user password
-     * @return the unique identifier of the user if it exists, is active, is
-     * neither disabled nor locked-out, and has the given password; or null
-     * otherwise.
+     * @return the maximum number of characters of a stored password hash,
+     * or 0 if the database does not report it
      */
-    public Long getActiveUserId(String userName, String password) {
-        LOGGER.debug("getActiveUserId(" + userName + ") - (ENTER)");
+    public int getPasswordColumnSize() {
+        LOGGER.debug("getPasswordColumnSize() - (ENTER)");
 
-        Long ret = null;
+        int ret = 0;
+        for (String table : new String[]{"USER_T", "PASSWORD_HIST_T"}) {
+            int size = getColumnSize("select PASSWORD from " + table + " where 1=0");
+            if (size > 0 && (ret == 0 || size < ret)) {
+                ret = size;
+            }
+        }
+
+        LOGGER.debug("getPasswordColumnSize() - (LEAVE): " + ret);
+        return ret;
+    }
+
+    private int getColumnSize(String sql) {
+        int ret = 0;
 
         Connection co = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
-
         try {
             co = getConnection();
-            ps = co.prepareStatement("select USER_ID from active_user_v where user_name=? and password=?");
-            ps.setString(1, userName);
-            ps.setString(2, password);
+            ps = co.prepareStatement(sql);
             rs = ps.executeQuery();
-            if (rs.next()) {
-                if (rs.getObject(1) != null) {
-                    ret = rs.getLong(1);
-                }
-            }
+            ret = rs.getMetaData().getPrecision(1);
         } catch (Exception ex) {
             handleException(ex);
         } finally {
@@ -81,21 +88,20 @@ public class AuthenticationDao extends AbstractJdbcDao {
             closeConnection(co);
         }
 
-        LOGGER.debug("getActiveUserId() - (LEAVE)");
         return ret;
     }
 
     /**
-     * Retrieves the lockout reason of the user with the given name.
+     * Retrieves, in a single query, the credential row of the user with the
+     * given name.
      *
      * @param userName the user name
-     * @return the lockout reason of the user if it exists, is
-     * locked-out, and has the given password; or null otherwise.
+     * @return the credentials of the user if it exists, null otherwise
      */
-    public String getLockoutReason(String userName) {
-        LOGGER.debug("getLockoutReason(" + userName + ") - (ENTER)");
+    public UserCredentials getCredentials(String userName) {
+        LOGGER.debug("getCredentials(" + userName + ") - (ENTER)");
 
-        String ret = null;
+        UserCredentials ret = null;
 
         Connection co = null;
         PreparedStatement ps = null;
@@ -103,13 +109,17 @@ public class AuthenticationDao extends AbstractJdbcDao {
 
         try {
             co = getConnection();
-            ps = co.prepareStatement("select LOCKOUT_REASON from USER_T where user_name=?");
+            ps = co.prepareStatement("select u.STATUS,a.PASSWORD as ACTIVE_PASSWORD,u.LOCKOUT_REASON," +
+                    "u.PASSWORD_EXPIRY" +
+                    " from USER_T u left join active_user_v a on a.USER_ID=u.USER_ID" +
+                    " where u.USER_NAME=?");
             ps.setString(1, userName);
             rs = ps.executeQuery();
             if (rs.next()) {
-                if (rs.getObject(1) != null) {
-                    ret = rs.getString(1);
-                }
+                ret = new UserCredentials(rs.getString("STATUS"),
+                        rs.getString("ACTIVE_PASSWORD"),
+                        rs.getString("LOCKOUT_REASON"),
+                        rs.getDate("PASSWORD_EXPIRY"));
             }
         } catch (Exception ex) {
             handleException(ex);
@@ -119,10 +129,44 @@ public class AuthenticationDao extends AbstractJdbcDao {
             closeConnection(co);
         }
 
-        LOGGER.debug("getLockoutReason() - (LEAVE)");
+        LOGGER.debug("getCredentials() - (LEAVE): " + ret);
         return ret;
     }
 
+    /**
+     * Replaces the password hash of the user with the given name, provided
+     * it was not changed in the meantime.
+     *
+     * @param userName the user name
+     * @param previousHash the password hash being replaced
+     * @param hash the new password hash, for the same password
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void rehashPassword(String userName, String previousHash, String hash) {
+        LOGGER.debug("rehashPassword(" + userName + ") - (ENTER)");
+
+        Connection co = null;
+        PreparedStatement ps = null;
+
+        try {
+            co = getConnection();
+            ps = co.prepareStatement("update USER_T set PASSWORD=?" +
+                    " where USER_NAME=? and PASSWORD=?");
+            ps.setString(1, hash);
+            ps.setString(2, userName);
+            ps.setString(3, previousHash);
+            int cnt = ps.executeUpdate();
+            LOGGER.debug("Row count: " + cnt);
+        } catch (Exception ex) {
+            handleException(ex);
+        } finally {
+            closeStatement(ps);
+            closeConnection(co);
+        }
+
+        LOGGER.debug("rehashPassword() - (LEAVE)");
+    }
+
     /**
      * Retrieves the status of the user with the given name.
      *
@@ -285,91 +329,62 @@ public class AuthenticationDao extends AbstractJdbcDao {
     }
 
     /**
-     * Gets the password expiry time for the given user.
+     * Records the last logon time of the given users, in a single batch.
      *
-     * @param userName the user name
-     * @return the password expiry time of the user
+     * @param lastLogons the last logon time (in milliseconds) per user name
      */
-    public Date getPasswordExpiry(String userName) {
-        LOGGER.debug("getPasswordExpiry(" + userName + ") - (ENTER)");
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void recordLastLogons(Map<String, Long> lastLogons) {
+        LOGGER.debug("recordLastLogons(" + lastLogons.size() + ") - (ENTER)");
 
         Connection co = null;
         PreparedStatement ps = null;
-        ResultSet rs = null;
-        Date ret = null;
 
         try {
             co = getConnection();
-            ps = co.prepareStatement("select PASSWORD_EXPIRY from USER_T where USER_NAME=?");
-            ps.setString(1, userName);
-            rs = ps.executeQuery();
-            if (rs.next()) {
-                ret = rs.getDate(1);
+            ps = co.prepareStatement("update USER_T set LAST_LOGON=?" +
+                    " where USER_NAME=?" +
+                    " and (LAST_LOGON is null or LAST_LOGON<?)");
+            for (Map.Entry<String, Long> entry : lastLogons.entrySet()) {
+                Timestamp lastLogon = new Timestamp(entry.getValue());
+                ps.setTimestamp(1, lastLogon);
+                ps.setString(2, entry.getKey());
+                ps.setTimestamp(3, lastLogon);
+                ps.addBatch();
             }
+            int[] cnt = ps.executeBatch();
+            LOGGER.debug("Batch size: " + cnt.length);
         } catch (Exception ex) {
             handleException(ex);
         } finally {
-            closeResultSet(rs);
             closeStatement(ps);
             closeConnection(co);
         }
 
-        LOGGER.debug("getPasswordExpiry() - (LEAVE)");
-        return ret;
+        LOGGER.debug("recordLastLogons() - (LEAVE)");
     }
 
     /**
-     * Records a failed login for the given user.
-     *
-     * @param userName the user name
-     */
-    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
-    public void recordLoginFailure(String userName) {
-        LOGGER.debug("recordLoginFailure(" + userName + ") - (ENTER)");
-
-        Connection co = null;
-        PreparedStatement upd = null;
-
-        try {
-            co = getConnection();
-            upd = co.prepareStatement("update USER_T set LOGON_FAILURE=1 + " +
-                    " coalesce(LOGON_FAILURE, 0)" +
-                    " where USER_NAME=?");
-            upd.setString(1, userName);
-            int cnt = upd.executeUpdate();
-            LOGGER.debug("Row count: " + cnt);
-        } catch (Exception ex) {
-            handleException(ex);
-        } finally {
-            closeStatement(upd);
-            closeConnection(co);
-        }
-
-        LOGGER.debug("recordLoginFailure() - (LEAVE)");
-    }
-
-    /**
-     * Retrieves the number of consecutive failed login attempts for
-     * the given user.
+     * Gets the password expiry time for the given user.
      *
      * @param userName the user name
-     * @return the number of consecutive failed login attempts
+     * @return the password expiry time of the user
      */
-    public int getLoginFailures(String userName) {
-        LOGGER.debug("getLoginFailures(" + userName + ") - (ENTER)");
+    public Date getPasswordExpiry(String userName) {
+        LOGGER.debug("getPasswordExpiry(" + userName + ") - (ENTER)");
 
         Connection co = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
-        int ret = 0;
+        Date ret = null;
 
         try {
             co = getConnection();
-            ps = co.prepareStatement("select LOGON_FAILURE from USER_T where USER_NAME=?");
+            ps = co.prepareStatement("select PASSWORD_EXPIRY from USER_T where USER_NAME=?");
             ps.setString(1, userName);
             rs = ps.executeQuery();
             if (rs.next()) {
-                ret = rs.getInt(1);
+                ret = rs.getDate(1);
             }
         } catch (Exception ex) {
             handleException(ex);
@@ -379,32 +394,62 @@ public class AuthenticationDao extends AbstractJdbcDao {
             closeConnection(co);
         }
 
-        LOGGER.debug("getLoginFailures() - (LEAVE): " + ret);
+        LOGGER.debug("getPasswordExpiry() - (LEAVE)");
         return ret;
     }
 
     /**
-     * Locks-out the user with the provided user name.
+     * Records the failed logins of the given users, in a single batch, and
+     * locks-out the users whose number of consecutive failed logins reaches
+     * the provided threshold.
      *
-     * @param userName      the user name
-     * @param lockoutExpiry the lock-out expiry time
+     * @param failures      the number of failed logins, per user name
+     * @param threshold     the number of consecutive failed logins that
+     *                      triggers a lock-out, or 0 to never lock-out
+     * @param lockoutExpiry the lock-out expiry time, ignored if the threshold
+     *                      is 0
      */
     @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
-    public void lockUser(String userName, Date lockoutExpiry) {
-        LOGGER.debug("lockUser(" + userName + ") - (ENTER)");
+    public void recordLoginFailures(Map<String, Integer> failures, int threshold, Date lockoutExpiry) {
+        LOGGER.debug("recordLoginFailures(" + failures.size() + ", " + threshold + ") - (ENTER)");
 
         Connection co = null;
         PreparedStatement upd = null;
+        String lockout = "case when STATUS='E' and ? + coalesce(LOGON_FAILURE, 0)>=? ";
 
         try {
             co = getConnection();
-            upd = co.prepareStatement("update USER_T set STATUS='L',LOCKOUT_TO=?," +
-                    "LOCKOUT_REASON='Consecutive login failures'" +
-                    " where STATUS='E' and USER_NAME=?");
-            upd.setTimestamp(1, new Timestamp(lockoutExpiry.getTime()));
-            upd.setString(2, userName);
-            int cnt = upd.executeUpdate();
-            LOGGER.debug("Row count: " + cnt);
+            if (threshold != 0) {
+                upd = co.prepareStatement("update USER_T set LOGON_FAILURE=? + coalesce(LOGON_FAILURE, 0)," +
+                        " STATUS=" + lockout + "then 'L' else STATUS end," +
+                        " LOCKOUT_TO=" + lockout + "then ? else LOCKOUT_TO end," +
+                        " LOCKOUT_REASON=" + lockout + "then 'Consecutive login failures' else LOCKOUT_REASON end" +
+                        " where USER_NAME=?");
+                Timestamp lockoutTo = new Timestamp(lockoutExpiry.getTime());
+                for (Map.Entry<String, Integer> entry : failures.entrySet()) {
+                    int failed = entry.getValue();
+                    upd.setInt(1, failed);
+                    upd.setInt(2, failed);
+                    upd.setInt(3, threshold);
+                    upd.setInt(4, failed);
+                    upd.setInt(5, threshold);
+                    upd.setTimestamp(6, lockoutTo);
+                    upd.setInt(7, failed);
+                    upd.setInt(8, threshold);
+                    upd.setString(9, entry.getKey());
+                    upd.addBatch();
+                }
+            } else {
+                upd = co.prepareStatement("update USER_T set LOGON_FAILURE=? + coalesce(LOGON_FAILURE, 0)" +
+                        " where USER_NAME=?");
+                for (Map.Entry<String, Integer> entry : failures.entrySet()) {
+                    upd.setInt(1, entry.getValue());
+                    upd.setString(2, entry.getKey());
+                    upd.addBatch();
+                }
+            }
+            int[] cnt = upd.executeBatch();
+            LOGGER.debug("Batch size: " + cnt.length);
         } catch (Exception ex) {
             handleException(ex);
         } finally {
@@ -412,7 +457,7 @@ public class AuthenticationDao extends AbstractJdbcDao {
             closeConnection(co);
         }
 
-        LOGGER.debug("lockUser() - (LEAVE)");
+        LOGGER.debug("recordLoginFailures() - (LEAVE)");
     }
 
     /**
@@ -460,9 +505,9 @@ public class AuthenticationDao extends AbstractJdbcDao {
         LOGGER.debug("createPersonForUser(" + userName + ") - (ENTER)");
 
         Connection connection = null;
-        PreparedStatement select = null;
         PreparedStatement insert = null;
         PreparedStatement update = null;
+        ResultSet resultSet = null;
 
         try {
             String[] queryAttributes = LDAP.getQueryAttributes(userMap);
@@ -471,7 +516,7 @@ public class AuthenticationDao extends AbstractJdbcDao {
             connection = getConnection();
             insert = connection.prepareStatement("insert into person_t(first_name, last_name, " +
                             "phone_number, mobile_number, fax_number, e_mail) values (?, ?, ?, ?, ?, ?)",
-                    Statement.RETURN_GENERATED_KEYS);
+                    new String[]{"person_id"});
 
             for (int i = 0; i < PERSON_COLUMNS.length; i++) {
                 if (i < queryAttributes.length) {
@@ -486,35 +531,22 @@ public class AuthenticationDao extends AbstractJdbcDao {
 
             LOGGER.debug("Insert Row count: " + numberOfRowsInserted);
 
-            ResultSet resultSet = insert.getGeneratedKeys();
+            // Asking for the key column by name returns the person id itself
+            // on every database, no need to re-select it by rowid
+            resultSet = insert.getGeneratedKeys();
             resultSet.next();
-            String rowId = resultSet.getString(1);
-            if (rowId.length() > 10) {
-                LOGGER.debug("Created Person rowid: " + rowId);
-
-                select = connection.prepareStatement("select person_id from person_t where rowid=?");
-                select.setString(1, rowId);
-                ResultSet rsPersonId = select.executeQuery();
-                rsPersonId.next();
-                update = connection.prepareStatement("update user_t set person_id = ? where user_name = ?");
-                update.setInt(1, rsPersonId.getInt(1));
-
-            } else {
-                int personId = Integer.parseInt(rowId);
-
-                LOGGER.debug("Created Person id: " + personId);
+            long personId = resultSet.getLong(1);
+            LOGGER.debug("Created Person id: " + personId);
 
-                update = connection.prepareStatement("update user_t set person_id = ? where user_name = ?");
-                update.setInt(1, personId);
-
-            }
+            update = connection.prepareStatement("update user_t set person_id = ? where user_name = ?");
+            update.setLong(1, personId);
             update.setString(2, userName);
             numberOfRowsInserted = update.executeUpdate();
             LOGGER.debug("Update Row count: " + numberOfRowsInserted);
         } catch (Exception ex) {
             handleException(ex);
         } finally {
-            closeStatement(select);
+            closeResultSet(resultSet);
             closeStatement(insert);
             closeStatement(update);
             closeConnection(connection);
@@ -524,88 +556,119 @@ public class AuthenticationDao extends AbstractJdbcDao {
     }
 
     /**
-     * Sync the person of the given id with the passed values
+     * Synchronises, in a single transaction, the persons of the given users
+     * with the passed (LDAP) values.
+     * <p>
+     * Persons are read in chunks and compared column by column; only the
+     * columns that actually differ are updated, using one JDBC batch per
+     * set of changed columns. Users without a person are ignored.
      *
-     * @param map      values to be sync
-     * @param personId the user name
-     * @return true if sync took place or false if the values was identical
+     * @param userMaps the values to be synchronised, by user name
+     * @return the number of persons that were updated
      */
-    public boolean syncPerson(Map<String, Object> map, int personId) {
-        LOGGER.debug("syncPerson(" + personId + ") - (ENTER)");
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int syncPersons(Map<String, Map<String, Object>> userMaps) {
+        LOGGER.debug("syncPersons(" + userMaps.size() + ") - (ENTER)");
 
         Connection co = null;
         PreparedStatement ps = null;
-        PreparedStatement update = null;
         ResultSet rs = null;
-        boolean identical = false;
-        String[] dbValues = new String[PERSON_COLUMNS.length];
+        int ret = 0;
+        Map<String, List<Object[]>> updates = new HashMap<>();
 
         try {
             co = getConnection();
-            ps = co.prepareStatement("select first_name, last_name, phone_number, mobile_number, fax_number, e_mail"
-                    + " from person_t where person_id=?");
-            ps.setInt(1, personId);
-            rs = ps.executeQuery();
-            if (rs.next()) {
-                dbValues[0] = rs.getString(1);
-                dbValues[1] = rs.getString(2);
-                dbValues[2] = rs.getString(3);
-                dbValues[3] = rs.getString(4);
-                dbValues[4] = rs.getString(5);
-                dbValues[5] = rs.getString(6);
-
-                if (rs.next()) {
-                    LOGGER.warn("Many rows for person id: " + personId);
-                }
 
-                String[] queryAttributes = LDAP.getQueryAttributes(map);
-                String[] values = new String[PERSON_COLUMNS.length];
-
-                update = co.prepareStatement("update person_t set first_name = ?, last_name = ?, phone_number = ?, "
-                        + "mobile_number = ?, fax_number = ?, e_mail = ?"
-                        + " where person_id=?");
-
-                String ldap = "";
-                String db = "";
-                int i;
-                for (i = 0; i < PERSON_COLUMNS.length; i++) {
-                    db = db + dbValues[i];
-                    if (i < queryAttributes.length) {
-                        values[i] = (String) map.get(queryAttributes[i]);
-                        if (queryAttributes[i].equals("")) {
-                            ldap = ldap + dbValues[i];
-                            update.setString(i + 1, dbValues[i]);
-                        } else {
-                            ldap = ldap + values[i];
-                            update.setString(i + 1, values[i]);
-                        }
-                    } else {
-                        ldap = ldap + dbValues[i];
-                        update.setString(i + 1, dbValues[i]);
+            List<String> userNames = new ArrayList<>(userMaps.keySet());
+            for (int from = 0; from < userNames.size(); from += SYNC_CHUNK_SIZE) {
+                List<String> chunk = userNames.subList(from, Math.min(from + SYNC_CHUNK_SIZE, userNames.size()));
+
+                ps = co.prepareStatement("select u.USER_NAME, p.PERSON_ID, p.first_name, p.last_name," +
+                        " p.phone_number, p.mobile_number, p.fax_number, p.e_mail" +
+                        " from USER_T u join PERSON_T p on p.PERSON_ID=u.PERSON_ID" +
+                        " where u.USER_NAME in (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")");
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setString(i + 1, chunk.get(i));
+                }
+                rs = ps.executeQuery();
+                while (rs.next()) {
+                    String[] dbValues = new String[PERSON_COLUMNS.length];
+                    for (int i = 0; i < PERSON_COLUMNS.length; i++) {
+                        dbValues[i] = rs.getString(i + 3);
                     }
+                    diffPerson(userMaps.get(rs.getString(1)), rs.getLong(2), dbValues, updates);
                 }
+                closeResultSet(rs);
+                rs = null;
+                closeStatement(ps);
+                ps = null;
+            }
 
-                identical = db.equals(ldap);
-                if (!identical) {
-                    LOGGER.debug("LDAP sync needed");
-                    update.setInt(7, personId);
-                    int cnt = update.executeUpdate();
-                    LOGGER.debug("LDAP sync rows updated: " + cnt);
-                } else {
-                    LOGGER.debug("No LDAP sync needed");
-                }
+            for (Map.Entry<String, List<Object[]>> entry : updates.entrySet()) {
+                ret += updatePersons(co, entry.getKey(), entry.getValue());
             }
         } catch (Exception ex) {
             handleException(ex);
         } finally {
             closeResultSet(rs);
             closeStatement(ps);
-            closeStatement(update);
             closeConnection(co);
         }
 
-        LOGGER.debug("syncPerson() - (LEAVE)");
-        return identical;
+        LOGGER.debug("syncPersons() - (LEAVE): " + ret);
+        return ret;
+    }
+
+    /**
+     * Compares the LDAP values of a person with its database values and
+     * registers the new values of the changed columns, followed by the
+     * person id, under the comma separated names of those columns.
+     * <p>
+     * Columns without (or with an empty) LDAP attribute keep their database
+     * value.
+     */
+    private static void diffPerson(Map<String, Object> map, long personId, String[] dbValues,
+                                   Map<String, List<Object[]>> updates) {
+        String[] queryAttributes = LDAP.getQueryAttributes(map);
+        List<String> columns = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+
+        for (int i = 0; i < PERSON_COLUMNS.length && i < queryAttributes.length; i++) {
+            if (!queryAttributes[i].equals("")) {
+                String value = (String) map.get(queryAttributes[i]);
+                if (!Objects.equals(value, dbValues[i])) {
+                    columns.add(PERSON_COLUMNS[i]);
+                    values.add(value);
+                }
+            }
+        }
+
+        if (!columns.isEmpty()) {
+            values.add(personId);
+            updates.computeIfAbsent(String.join(",", columns), k -> new ArrayList<>())
+                    .add(values.toArray());
+        }
+    }
+
+    private int updatePersons(Connection co, String columns, List<Object[]> rows) throws SQLException {
+        PreparedStatement ps = null;
+
+        try {
+            ps = co.prepareStatement("update person_t set " + columns.replace(",", " = ?, ") + " = ?" +
+                    " where person_id=?");
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length - 1; i++) {
+                    ps.setString(i + 1, (String) row[i]);
+                }
+                ps.setLong(row.length, (Long) row[row.length - 1]);
+                ps.addBatch();
+            }
+            int[] cnt = ps.executeBatch();
+            LOGGER.debug("LDAP sync of " + columns + ", batch size: " + cnt.length);
+            return cnt.length;
+        } finally {
+            closeStatement(ps);
+        }
     }
 
 }
@@ -16,8 +16,6 @@ import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.enterprise.event.Event;
 import javax.inject.Inject;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -32,10 +30,8 @@ public class AuthenticationServiceBean implements AuthenticationService {
 
     private static final String AUTHENTICATION_SUBJECT = "Authentication";
     private static final String RENEWAL_REMINDER = "password.renewalReminder";
-    private static final String LOCKOUT_DURATION = "account.lockoutDuration";
-    private static final String LOCKOUT_FRESHOLD = "account.lockoutFreshold";
     private static final String LDAP_ENABLED = "ldap.enabled";
-    private static final long ONE_MINUTE = (1000L * 60L);
+    private static final String LOCKOUT_REASON = "Consecutive login failures";
     private static final long ONE_DAY = (1000L * 60 * 60 * 24);
     private static final String LOCKED = "L";
     private static final String DISABLED = "D";
@@ -47,6 +43,24 @@ public class AuthenticationServiceBean implements AuthenticationService {
     @EJB
     private PolicyProvider policyProvider;
 
+    @EJB
+    private PasswordStatusCache passwordStatusCache;
+
+    @EJB
+    private LastLogonRecorder lastLogonRecorder;
+
+    @EJB
+    private LoginThrottle loginThrottle;
+
+    @EJB
+    private PasswordHashService passwordHashService;
+
+    @EJB
+    private LdapProvider ldapProvider;
+
+    @EJB
+    private PersonSynchronizer personSynchronizer;
+
     @Inject
     private RequestValidator validator;
 
@@ -71,10 +85,10 @@ public class AuthenticationServiceBean implements AuthenticationService {
 
         boolean passwordExpired = false;
 
-        dao.recordLoginSuccess(userName);
+        lastLogonRecorder.recordActivity(userName);
 
         Date now = new Date();
-        Date expiry = dao.getPasswordExpiry(userName);
+        Date expiry = passwordStatusCache.getPasswordExpiry(userName);
         if (expiry != null) {
             if (expiry.before(now)) {
                 passwordExpired = true;
@@ -91,10 +105,10 @@ public class AuthenticationServiceBean implements AuthenticationService {
 
         boolean passwordAboutToExpire = false;
 
-        dao.recordLoginSuccess(userName);
+        lastLogonRecorder.recordActivity(userName);
 
         Date now = new Date();
-        Date expiry = dao.getPasswordExpiry(userName);
+        Date expiry = passwordStatusCache.getPasswordExpiry(userName);
         if (expiry != null) {
             Properties props = policyProvider.getProperties(AUTHENTICATION_SUBJECT);
             int days = policyProvider.getIntProperty(props, RENEWAL_REMINDER, 0);
@@ -112,30 +126,50 @@ public class AuthenticationServiceBean implements AuthenticationService {
 
     @Override
     public AuthenticationResponse authenticateUser(AuthenticationRequest request) {
-        LOGGER.debug("authenticateUser(" + request + ") - (ENTER)");
+        return authenticateUser(request, null);
+    }
+
+    @Override
+    public AuthenticationResponse authenticateUser(AuthenticationRequest request, String clientAddress) {
+        LOGGER.debug("authenticateUser(" + request + ", " + clientAddress + ") - (ENTER)");
         validator.assertValid(request);
 
-        AuthenticationResponse authenticationResponse;
-        if (isLDAPEnabled()) {
-            authenticationResponse = authenticateLdap(request);
-        } else {
-            authenticationResponse = authenticateLocal(request);
+        if (loginThrottle.isThrottled(request.getUserName(), clientAddress)) {
+            AuthenticationResponse authenticationResponse = createResponse();
+            authenticationResponse.setStatusCode(AuthenticationResponse.ACCOUNT_LOCKED);
+            authenticationResponse.setErrorDescription(LOCKOUT_REASON);
+            LOGGER.debug("authenticateUser() - (LEAVE): " + authenticationResponse);
+            return authenticationResponse;
+        }
+
+        Properties properties = policyProvider.getProperties(AUTHENTICATION_SUBJECT);
+        if (!Boolean.parseBoolean(properties.getProperty(LDAP_ENABLED, "false"))) {
+            AuthenticationResponse authenticationResponse = authenticateLocal(request, clientAddress, properties);
+            LOGGER.debug("authenticateUser() - (LEAVE): " + authenticationResponse);
+            return authenticationResponse;
         }
 
+        AuthenticationResponse authenticationResponse = authenticateLdap(request);
         if (!authenticationResponse.isAuthenticated()) {
-            handleLoginFailure(request.getUserName());
+            handleLoginFailure(request.getUserName(), clientAddress);
             LOGGER.debug("authenticateUser() - (LEAVE): " + authenticationResponse);
             return authenticationResponse;
         }
 
-        Date now = new Date();
         Date passwordExpiryDate = handleLoginSuccess(authenticationResponse.getUserMap(), request.getUserName());
+        checkPasswordExpiry(authenticationResponse, passwordExpiryDate, properties);
+
+        LOGGER.debug("authenticateUser() - (LEAVE): " + authenticationResponse);
+        return authenticationResponse;
+    }
 
+    private void checkPasswordExpiry(AuthenticationResponse authenticationResponse, Date passwordExpiryDate,
+                                     Properties properties) {
         if (passwordExpiryDate != null) {
+            Date now = new Date();
             if (passwordExpiryDate.before(now)) {
                 authenticationResponse.setStatusCode(AuthenticationResponse.PASSWORD_EXPIRED);
             } else {
-                Properties properties = policyProvider.getProperties(AUTHENTICATION_SUBJECT);
                 int days = policyProvider.getIntProperty(properties, RENEWAL_REMINDER, 0);
                 if (days != 0) {
                     Date reminder = new Date(passwordExpiryDate.getTime() - (days * ONE_DAY));
@@ -145,8 +179,6 @@ public class AuthenticationServiceBean implements AuthenticationService {
                 }
             }
         }
-        LOGGER.debug("authenticateUser() - (LEAVE): " + authenticationResponse);
-        return authenticationResponse;
     }
 
     @Override
@@ -196,19 +228,29 @@ public class AuthenticationServiceBean implements AuthenticationService {
         return authenticationResponse;
     }
 
-    private AuthenticationResponse authenticateLocal(AuthenticationRequest request) {
+    /**
+     * Authenticates the user against the USM database, loading the user
+     * credential row with a single query. Login failures are recorded by the
+     * login throttle, and written back in batches.
+     */
+    private AuthenticationResponse authenticateLocal(AuthenticationRequest request, String clientAddress,
+                                                     Properties properties) {
         LOGGER.debug("authenticateLocal(" + request + ") - (ENTER)");
         AuthenticationResponse authenticationResponse = createResponse();
+        String userName = request.getUserName();
 
+        UserCredentials credentials = null;
         try {
-            String password = hashPassword(request.getPassword());
-            Long uid = dao.getActiveUserId(request.getUserName(), password);
-            String lockoutReason = dao.getLockoutReason(request.getUserName());
-            if (uid != null) {
+            credentials = dao.getCredentials(userName);
+            String hash = credentials != null ? credentials.getActivePassword() : null;
+            boolean verified = passwordHashService.verifyPassword(request.getPassword(), hash);
+            if (verified) {
+                rehashPassword(userName, request.getPassword(), hash);
                 authenticationResponse.setAuthenticated(true);
                 authenticationResponse.setStatusCode(AuthenticationResponse.SUCCESS);
             } else {
-                String status = dao.getUserStatus(request.getUserName());
+                String status = credentials != null ? credentials.getStatus() : null;
+                String lockoutReason = credentials != null ? credentials.getLockoutReason() : null;
                 if (ENABLED.equals(status)) {
                     // Invalid password
                     authenticationResponse.setStatusCode(AuthenticationResponse.INVALID_CREDENTIALS);
@@ -229,6 +271,16 @@ public class AuthenticationServiceBean implements AuthenticationService {
             authenticationResponse.setStatusCode(AuthenticationResponse.INTERNAL_ERROR);
         }
 
+        if (credentials == null) {
+            // Unknown user, only the client address is to be throttled
+            loginThrottle.recordFailure(null, clientAddress);
+        } else if (authenticationResponse.isAuthenticated()) {
+            loginThrottle.recordSuccess(userName);
+            checkPasswordExpiry(authenticationResponse, credentials.getPasswordExpiry(), properties);
+        } else {
+            loginThrottle.recordFailure(userName, clientAddress);
+        }
+
         LOGGER.debug("authenticateLocal() - (LEAVE): " + authenticationResponse);
         return authenticationResponse;
     }
@@ -238,7 +290,7 @@ public class AuthenticationServiceBean implements AuthenticationService {
         AuthenticationResponse authenticationResponse = createResponse();
         String username = request.getUserName();
 
-        LDAP ldap = new LDAP(policyProvider.getProperties(AUTHENTICATION_SUBJECT));
+        LDAP ldap = ldapProvider.getLdap(policyProvider.getProperties(AUTHENTICATION_SUBJECT));
         Map<String, Object> userMap = ldap.authenticate(username, request.getPassword());
         LOGGER.debug("ldap.authenticate: " + userMap);
 
@@ -289,28 +341,20 @@ public class AuthenticationServiceBean implements AuthenticationService {
         return authenticationResponse;
     }
 
-    private String hashPassword(String password) throws NoSuchAlgorithmException {
-        if (password == null) {
-            return null;
-        }
-
-        MessageDigest md = MessageDigest.getInstance("MD5");
-        md.update(password.getBytes());
-
-        byte[] digest = md.digest();
-
-        StringBuilder stringBuilder = new StringBuilder();
-        for (byte b : digest) {
-            stringBuilder.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+    private void rehashPassword(String userName, String password, String hash) {
+        if (passwordHashService.needsRehash(hash)) {
+            try {
+                dao.rehashPassword(userName, hash, passwordHashService.hashPassword(password));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to rehash password of user " + userName + ": " + e.getMessage());
+            }
         }
-
-        return stringBuilder.toString();
     }
 
     private Date handleLoginSuccess(Map<String, Object> userMap, String userName) {
         LOGGER.debug("handleLoginSuccess(" + userName + ") - (ENTER)");
 
-        dao.recordLoginSuccess(userName);
+        loginThrottle.recordSuccess(userName);
 
         Date passwordExpiryDate = dao.getPasswordExpiry(userName);
 
@@ -325,12 +369,9 @@ public class AuthenticationServiceBean implements AuthenticationService {
     }
 
     private void handleSyncWithLDAP(Map<String, Object> userMap, String userName) {
-        int personId = dao.getPersonId(userName);
-        if (personId == 0) {
-            dao.createPersonForUser(userMap, userName);
-        } else {
-            dao.syncPerson(userMap, personId);
-        }
+        // The person has been created (if needed) by authenticateLdap,
+        // keeping it in sync is left to the next batch
+        personSynchronizer.enqueue(userName, userMap);
     }
 
     private boolean personDoesNotExistInDatabase(String username) {
@@ -351,21 +392,10 @@ public class AuthenticationServiceBean implements AuthenticationService {
         ldapUserEventEvent.fire(createLdapUserEvent);
     }
 
-    private void handleLoginFailure(String userName) {
+    private void handleLoginFailure(String userName, String clientAddress) {
         LOGGER.debug("handleLoginFailure(" + userName + ") - (ENTER)");
 
-        dao.recordLoginFailure(userName);
-
-        Properties props = policyProvider.getProperties(AUTHENTICATION_SUBJECT);
-        int threshold = policyProvider.getIntProperty(props, LOCKOUT_FRESHOLD, 0);
-        int duration = policyProvider.getIntProperty(props, LOCKOUT_DURATION, 0);
-        if (threshold != 0 && duration != 0) {
-            int failures = dao.getLoginFailures(userName);
-            if (failures >= threshold) {
-                Date lockoutExpiry = new Date(System.currentTimeMillis() + duration * ONE_MINUTE);
-                dao.lockUser(userName, lockoutExpiry);
-            }
-        }
+        loginThrottle.recordFailure(userName, clientAddress);
 
         LOGGER.debug("handleLoginFailure() - (LEAVE)");
     }
@@ -11,13 +11,34 @@ import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
 import javax.naming.ldap.InitialLdapContext;
 import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Authenticates users against an LDAP server.
+ * <p>
+ * Users are first searched with the technical account, on connections
+ * pooled by the JNDI LDAP provider (see the 'com.sun.jndi.ldap.connect.pool.*'
+ * system properties to tune the pool; LDAPS connections are only pooled if
+ * 'com.sun.jndi.ldap.connect.pool.protocol' includes 'ssl'). The search
+ * results are cached for 1 minute, so that a returning user only needs a
+ * bind with its own credentials. Instances are meant to be shared, see
+ * LdapProvider.
+ */
 public class LDAP {
     private static final Logger LOGGER = LoggerFactory.getLogger(LDAP.class);
+    private static final String CONNECT_POOL = "com.sun.jndi.ldap.connect.pool";
+    private static final long SEARCH_CACHE_TTL = (60 * 1000);
+    private static final int MAX_CACHED_SEARCHES = 10000;
     private static final String LOCKED = "Bind failed: account was permanently locked]";
     private static final String INVALID_CREDENTIALS = "[LDAP: error code 49";
     public static final String STATUS_CODE = "statusCode";
@@ -31,6 +52,8 @@ public class LDAP {
     private String queryFilter;
     private String queryAttributes;
 
+    private final ConcurrentMap<String, TimedKeeper> searchCache = new ConcurrentHashMap<>();
+
     /**
      * Creates a new instance and configures it using the provided properties.
      *
@@ -52,72 +75,27 @@ public class LDAP {
     public Map<String, Object> authenticate(String userName, String password) {
         LOGGER.debug("authenticate(" + userName + ") - (ENTER)");
 
-        SearchControls searchControls = new SearchControls();
-        searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-        if (queryAttributes != null && !queryAttributes.trim().isEmpty()) {
-            String[] returnedAtts = queryAttributes.split(",");
-            searchControls.setReturningAttributes(returnedAtts);
-        }
-
-        Hashtable<String, String> env = new Hashtable<>();
-        env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
-        env.put(Context.PROVIDER_URL, serverURL);
-        if (bindDN != null && !bindDN.trim().isEmpty() && bindPassword != null) {
-            env.put(Context.SECURITY_AUTHENTICATION, "simple");
-            env.put(Context.SECURITY_PRINCIPAL, bindDN.trim());
-            env.put(Context.SECURITY_CREDENTIALS, bindPassword.trim());
-            LOGGER.debug("LDAP search by techdn: " + bindDN);
-        } else {
-            LOGGER.debug("LDAP anonymous search");
-        }
-
         Map<String, Object> returnMap = null;
 
         LdapContext ctx = null;
-        NamingEnumeration<SearchResult> answer = null;
-        NamingEnumeration<? extends Attribute> attributeNamingEnumeration = null;
         try {
-            ctx = new InitialLdapContext(env, null);
-            String searchFor = MessageFormat.format(queryFilter, userName);
-            LOGGER.info("LDAP search for " + searchFor + " under root " + contextRoot);
-            answer = ctx.search(contextRoot, searchFor, searchControls);
-            LOGGER.info("LDAP search for " + searchFor + " got answer");
-
-            while (answer.hasMoreElements()) {
-                SearchResult searchResult = answer.next();
-                String dn = searchResult.getNameInNamespace();
-                if (dn == null || answer.hasMoreElements()) {
-                    answer.close();
-                    ctx.close();
-                    return null;
-                }
-
-                Attributes attrs = searchResult.getAttributes();
-                if (attrs != null) {
-                    returnMap = new HashMap<>();
-                    attributeNamingEnumeration = attrs.getAll();
-                    while (attributeNamingEnumeration.hasMore()) {
-                        Attribute attr = attributeNamingEnumeration.next();
-                        returnMap.put(attr.getID(), attr.get());
-                    }
-                    returnMap.put(LDAP_QUERY_ATTRIBUTES, queryAttributes);
-                    attributeNamingEnumeration.close();
-                }
-                answer.close();
-                LOGGER.info("LDAP search for " + searchFor + " answer closed");
-                ctx.close();
-                LOGGER.info("LDAP search for " + searchFor + " initial context closed");
-
+            SearchEntry entry = search(userName);
+            if (entry != null) {
+                Hashtable<String, String> env = createEnvironment();
                 env.put(Context.SECURITY_AUTHENTICATION, "simple");
-                env.put(Context.SECURITY_PRINCIPAL, dn);
+                env.put(Context.SECURITY_PRINCIPAL, entry.dn);
                 env.put(Context.SECURITY_CREDENTIALS, password);
-                LOGGER.info("LDAP bind for " + dn);
+                LOGGER.info("LDAP bind for " + entry.dn);
                 ctx = new InitialLdapContext(env, null);
-                ctx.close();
+
+                if (entry.attributes != null) {
+                    returnMap = new HashMap<>(entry.attributes);
+                }
             }
             LOGGER.info("LDAP operations ended.");
         } catch (NamingException e) {
             LOGGER.info("LDAP operations failed: " + e.getMessage());
+            searchCache.remove(userName);
             returnMap = new HashMap<>();
             String expl = null;
             if (e.getCause() instanceof AuthenticationException) {
@@ -137,13 +115,178 @@ public class LDAP {
                 returnMap.put(STATUS_CODE, AuthenticationResponse.INTERNAL_ERROR);
             }
         } finally {
-            cleanUp(ctx, answer, attributeNamingEnumeration);
+            cleanUp(ctx, null, null);
         }
 
         LOGGER.debug("authenticate() - (LEAVE): " + returnMap);
         return returnMap;
     }
 
+    /**
+     * Searches the distinguished name and attributes of the user with the
+     * provided name, using the technical account on a pooled connection.
+     * Search results are cached for 1 minute.
+     *
+     * @param userName the user name
+     * @return the search result, or null if no (or more than one) user matches
+     * @throws NamingException in case the search failed
+     */
+    private SearchEntry search(String userName) throws NamingException {
+        SearchEntry ret = null;
+
+        TimedKeeper tk = searchCache.get(userName);
+        if (tk != null && tk.timestamp + SEARCH_CACHE_TTL > System.currentTimeMillis()) {
+            LOGGER.debug("LDAP search for " + userName + " served from cache");
+            return tk.entry;
+        }
+
+        SearchControls searchControls = new SearchControls();
+        searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        if (queryAttributes != null && !queryAttributes.trim().isEmpty()) {
+            String[] returnedAtts = queryAttributes.split(",");
+            searchControls.setReturningAttributes(returnedAtts);
+        }
+
+        Hashtable<String, String> env = createTechnicalEnvironment();
+        env.put(CONNECT_POOL, "true");
+
+        LdapContext ctx = null;
+        NamingEnumeration<SearchResult> answer = null;
+        NamingEnumeration<? extends Attribute> attributeNamingEnumeration = null;
+        try {
+            ctx = new InitialLdapContext(env, null);
+            String searchFor = MessageFormat.format(queryFilter, userName);
+            LOGGER.info("LDAP search for " + searchFor + " under root " + contextRoot);
+            answer = ctx.search(contextRoot, searchFor, searchControls);
+            LOGGER.info("LDAP search for " + searchFor + " got answer");
+
+            if (answer.hasMoreElements()) {
+                SearchResult searchResult = answer.next();
+                String dn = searchResult.getNameInNamespace();
+                if (dn != null && !answer.hasMoreElements()) {
+                    Map<String, Object> attributes = null;
+                    Attributes attrs = searchResult.getAttributes();
+                    if (attrs != null) {
+                        attributeNamingEnumeration = attrs.getAll();
+                        attributes = toMap(attributeNamingEnumeration);
+                    }
+                    ret = new SearchEntry(dn, attributes);
+                    cacheSearch(userName, ret);
+                }
+            }
+        } finally {
+            cleanUp(ctx, answer, attributeNamingEnumeration);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Pages through all the users matching the configured query filter,
+     * using the technical account.
+     *
+     * @param userAttribute the attribute holding the user name
+     * @param pageSize      the number of users retrieved per page
+     * @param consumer      receives the user name and attributes of each user,
+     *                      in the same form as returned by authenticate
+     * @throws NamingException in case the search failed
+     * @throws IOException     in case the paged-results control could not be encoded
+     */
+    public void searchUsers(String userAttribute, int pageSize, BiConsumer<String, Map<String, Object>> consumer)
+            throws NamingException, IOException {
+        LOGGER.debug("searchUsers(" + userAttribute + ", " + pageSize + ") - (ENTER)");
+
+        SearchControls searchControls = new SearchControls();
+        searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        if (queryAttributes != null && !queryAttributes.trim().isEmpty()) {
+            String[] returnedAtts = (queryAttributes + "," + userAttribute).split(",");
+            searchControls.setReturningAttributes(returnedAtts);
+        }
+        String searchFor = MessageFormat.format(queryFilter, "*");
+
+        LdapContext ctx = null;
+        NamingEnumeration<SearchResult> answer = null;
+        int cnt = 0;
+        try {
+            ctx = new InitialLdapContext(createTechnicalEnvironment(), null);
+            ctx.setRequestControls(new Control[]{new PagedResultsControl(pageSize, Control.CRITICAL)});
+
+            byte[] cookie;
+            do {
+                answer = ctx.search(contextRoot, searchFor, searchControls);
+                while (answer.hasMore()) {
+                    Attributes attrs = answer.next().getAttributes();
+                    Attribute userName = attrs != null ? attrs.get(userAttribute) : null;
+                    if (userName != null && userName.get() != null) {
+                        consumer.accept(userName.get().toString(), toMap(attrs.getAll()));
+                        cnt++;
+                    }
+                }
+                answer.close();
+
+                cookie = null;
+                Control[] controls = ctx.getResponseControls();
+                if (controls != null) {
+                    for (Control control : controls) {
+                        if (control instanceof PagedResultsResponseControl) {
+                            cookie = ((PagedResultsResponseControl) control).getCookie();
+                        }
+                    }
+                }
+                ctx.setRequestControls(new Control[]{new PagedResultsControl(pageSize, cookie, Control.CRITICAL)});
+            } while (cookie != null && cookie.length > 0);
+        } finally {
+            cleanUp(ctx, answer, null);
+        }
+
+        LOGGER.debug("searchUsers() - (LEAVE): " + cnt);
+    }
+
+    private Map<String, Object> toMap(NamingEnumeration<? extends Attribute> attributes) throws NamingException {
+        Map<String, Object> ret = new HashMap<>();
+        try {
+            while (attributes.hasMore()) {
+                Attribute attr = attributes.next();
+                ret.put(attr.getID(), attr.get());
+            }
+        } finally {
+            attributes.close();
+        }
+        ret.put(LDAP_QUERY_ATTRIBUTES, queryAttributes);
+        return ret;
+    }
+
+    private Hashtable<String, String> createTechnicalEnvironment() {
+        Hashtable<String, String> env = createEnvironment();
+        if (bindDN != null && !bindDN.trim().isEmpty() && bindPassword != null) {
+            env.put(Context.SECURITY_AUTHENTICATION, "simple");
+            env.put(Context.SECURITY_PRINCIPAL, bindDN.trim());
+            env.put(Context.SECURITY_CREDENTIALS, bindPassword.trim());
+            LOGGER.debug("LDAP search by techdn: " + bindDN);
+        } else {
+            LOGGER.debug("LDAP anonymous search");
+        }
+        return env;
+    }
+
+    private void cacheSearch(String userName, SearchEntry entry) {
+        if (searchCache.size() >= MAX_CACHED_SEARCHES) {
+            long now = System.currentTimeMillis();
+            searchCache.values().removeIf(tk -> tk.timestamp + SEARCH_CACHE_TTL <= now);
+            if (searchCache.size() >= MAX_CACHED_SEARCHES) {
+                searchCache.clear();
+            }
+        }
+        searchCache.put(userName, new TimedKeeper(entry));
+    }
+
+    private Hashtable<String, String> createEnvironment() {
+        Hashtable<String, String> env = new Hashtable<>();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+        env.put(Context.PROVIDER_URL, serverURL);
+        return env;
+    }
+
     private void cleanUp(LdapContext ctx,
                          NamingEnumeration<SearchResult> answer,
                          NamingEnumeration<? extends Attribute> ne) {
@@ -179,6 +322,26 @@ public class LDAP {
         queryAttributes = props.getProperty(LDAP_QUERY_ATTRIBUTES);
     }
 
+    private static class SearchEntry {
+        private final String dn;
+        private final Map<String, Object> attributes;
+
+        private SearchEntry(String dn, Map<String, Object> attributes) {
+            this.dn = dn;
+            this.attributes = attributes;
+        }
+    }
+
+    private static class TimedKeeper {
+        private final long timestamp;
+        private final SearchEntry entry;
+
+        private TimedKeeper(SearchEntry entry) {
+            this.entry = entry;
+            this.timestamp = System.currentTimeMillis();
+        }
+    }
+
     public static String[] getQueryAttributes(Map<String, Object> map) {
         String[] attrArray = null;
 
@@ -0,0 +1,88 @@
+package fish.focus.uvms.usm.authentication.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * J2EE scheduled singleton that keeps track of the last activity of users
+ * and periodically writes it back, in a single batch, as their last logon
+ * time.
+ * <p>
+ * Consecutive activities of the same user between two flushes are
+ * coalesced, so that authenticated requests no longer update USER_T
+ * one by one.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class LastLogonRecorder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LastLogonRecorder.class);
+
+    @EJB
+    private AuthenticationDao dao;
+
+    private final ConcurrentMap<String, Long> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Records an activity of the given user, to be written back with the
+     * next flush.
+     *
+     * @param userName the user name
+     */
+    public void recordActivity(String userName) {
+        if (userName != null) {
+            pending.merge(userName, System.currentTimeMillis(), Math::max);
+        }
+    }
+
+    /**
+     * Writes back the recorded activities as last logon times.
+     * <p>
+     * Scheduled job running every 30 seconds.
+     */
+    @Schedule(hour = "*", minute = "*", second = "*/30", persistent = false)
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        LOGGER.debug("flush() - (ENTER)");
+
+        Map<String, Long> batch = new HashMap<>();
+        for (String userName : pending.keySet()) {
+            Long timestamp = pending.remove(userName);
+            if (timestamp != null) {
+                batch.put(userName, timestamp);
+            }
+        }
+
+        try {
+            dao.recordLastLogons(batch);
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Failed to record last logon of " + batch.size() + " users, retrying with next flush");
+            for (Map.Entry<String, Long> entry : batch.entrySet()) {
+                pending.merge(entry.getKey(), entry.getValue(), Math::max);
+            }
+        }
+
+        LOGGER.debug("flush() - (LEAVE): " + batch.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+}
@@ -0,0 +1,51 @@
+package fish.focus.uvms.usm.authentication.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import java.util.Properties;
+
+/**
+ * J2EE Singleton that shares one LDAP instance, and thus its search cache
+ * and pooled connections, among all authentications.<br/>
+ * The instance is replaced whenever the LDAP configuration changes.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class LdapProvider {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LdapProvider.class);
+
+    private volatile Configured current;
+
+    /**
+     * Gets the LDAP instance for the provided configuration properties.
+     *
+     * @param properties the LDAP configuration properties
+     * @return the shared LDAP instance
+     */
+    public LDAP getLdap(Properties properties) {
+        Configured c = current;
+        if (c == null || !c.properties.equals(properties)) {
+            LOGGER.debug("getLdap() - (new configuration)");
+            Properties copy = new Properties();
+            copy.putAll(properties);
+            c = new Configured(copy, new LDAP(copy));
+            current = c;
+        }
+        return c.ldap;
+    }
+
+    private static class Configured {
+        private final Properties properties;
+        private final LDAP ldap;
+
+        private Configured(Properties properties, LDAP ldap) {
+            this.properties = properties;
+            this.ldap = ldap;
+        }
+    }
+
+}
@@ -0,0 +1,273 @@
+package fish.focus.uvms.usm.authentication.service.impl;
+
+import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * J2EE scheduled singleton that throttles login attempts, based on the
+ * recent login failures of each user and, optionally, of each client
+ * address.
+ * <p>
+ * Failures are counted in memory over a sliding window as long as the
+ * lock-out duration of the authentication policy. Once a user reaches the
+ * lock-out threshold, further attempts are rejected before any password
+ * hashing or database access, until the failures decay out of the window.
+ * <p>
+ * Client addresses are only throttled if the authentication policy sets
+ * <i>account.addressLockoutFreshold</i>. The address is the one of the
+ * connection, so this should not be enabled when clients connect through
+ * a proxy or NAT, as they would all share its address.
+ * <p>
+ * Failures are written back to USER_T periodically, in a single batch,
+ * with the usual lock-out semantics. A login success clears the failures
+ * of the user, in the database and in memory, either before or after a
+ * batch is written but never while it is. Unlocking or re-enabling a user
+ * is to clear its failures on this node, see {@link #clear(String)}.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class LoginThrottle {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoginThrottle.class);
+
+    private static final String AUTHENTICATION_SUBJECT = "Authentication";
+    private static final String LOCKOUT_DURATION = "account.lockoutDuration";
+    private static final String LOCKOUT_FRESHOLD = "account.lockoutFreshold";
+    private static final String ADDRESS_LOCKOUT_FRESHOLD = "account.addressLockoutFreshold";
+    private static final long ONE_MINUTE = (1000L * 60L);
+    private static final int MAX_WINDOWS = 100000;
+
+    @EJB
+    private AuthenticationDao dao;
+
+    @EJB
+    private PolicyProvider policyProvider;
+
+    private final ConcurrentMap<String, Window> userWindows = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Window> addressWindows = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> pending = new ConcurrentHashMap<>();
+    // Successes (shared) against the write back of failures (exclusive)
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    /**
+     * Checks whether login attempts of the given user, or from the given
+     * client address, are to be rejected.
+     *
+     * @param userName      the user name
+     * @param clientAddress the client address, possibly null
+     * @return <i>true</i> if the user or (if throttled) the client address
+     * have too many recent login failures, <i>false</i> otherwise
+     */
+    public boolean isThrottled(String userName, String clientAddress) {
+        Properties properties = policyProvider.getProperties(AUTHENTICATION_SUBJECT);
+        int threshold = policyProvider.getIntProperty(properties, LOCKOUT_FRESHOLD, 0);
+        int addressThreshold = policyProvider.getIntProperty(properties, ADDRESS_LOCKOUT_FRESHOLD, 0);
+        int duration = policyProvider.getIntProperty(properties, LOCKOUT_DURATION, 0);
+        if (duration == 0) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean ret = (threshold != 0 && exceeds(userWindows, userName, threshold, now)) ||
+                (addressThreshold != 0 && exceeds(addressWindows, clientAddress, addressThreshold, now));
+
+        if (ret) {
+            LOGGER.debug("Throttled login of user " + userName + " from " + clientAddress);
+        }
+        return ret;
+    }
+
+    /**
+     * Records a login failure of the given user, from the given client
+     * address, to be written back with the next flush.
+     *
+     * @param userName      the user name
+     * @param clientAddress the client address, possibly null
+     */
+    public void recordFailure(String userName, String clientAddress) {
+        Properties properties = policyProvider.getProperties(AUTHENTICATION_SUBJECT);
+        int duration = policyProvider.getIntProperty(properties, LOCKOUT_DURATION, 0);
+        if (duration != 0) {
+            long now = System.currentTimeMillis();
+            long length = duration * ONE_MINUTE;
+            increment(userWindows, userName, length, now);
+            if (policyProvider.getIntProperty(properties, ADDRESS_LOCKOUT_FRESHOLD, 0) != 0) {
+                increment(addressWindows, clientAddress, length, now);
+            }
+        }
+        if (userName != null) {
+            pending.merge(userName, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Records a login success of the given user in the database, and
+     * clears its recent (and not yet written back) login failures.
+     *
+     * @param userName the user name
+     */
+    public void recordSuccess(String userName) {
+        if (userName != null) {
+            flushLock.readLock().lock();
+            try {
+                dao.recordLoginSuccess(userName);
+                userWindows.remove(userName);
+                pending.remove(userName);
+            } finally {
+                flushLock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Clears the recent (and not yet written back) login failures of the
+     * given user, e.g. when the user is unlocked or re-enabled.
+     *
+     * @param userName the user name
+     */
+    public void clear(String userName) {
+        if (userName != null) {
+            flushLock.readLock().lock();
+            try {
+                userWindows.remove(userName);
+                pending.remove(userName);
+            } finally {
+                flushLock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes back the recorded login failures, locking-out the users that
+     * reach the lock-out threshold, and evicts the expired windows.
+     * <p>
+     * Scheduled job running every 5 seconds.
+     */
+    @Schedule(hour = "*", minute = "*", second = "*/5", persistent = false)
+    public void flush() {
+        evictExpired();
+        if (pending.isEmpty()) {
+            return;
+        }
+        LOGGER.debug("flush() - (ENTER)");
+
+        Properties properties = policyProvider.getProperties(AUTHENTICATION_SUBJECT);
+        int threshold = policyProvider.getIntProperty(properties, LOCKOUT_FRESHOLD, 0);
+        int duration = policyProvider.getIntProperty(properties, LOCKOUT_DURATION, 0);
+        Map<String, Integer> batch = new HashMap<>();
+
+        // A success of a drained user must not be overwritten by its failures
+        flushLock.writeLock().lock();
+        try {
+            for (String userName : pending.keySet()) {
+                Integer failures = pending.remove(userName);
+                if (failures != null) {
+                    batch.put(userName, failures);
+                }
+            }
+
+            if (threshold != 0 && duration != 0) {
+                Date lockoutExpiry = new Date(System.currentTimeMillis() + duration * ONE_MINUTE);
+                dao.recordLoginFailures(batch, threshold, lockoutExpiry);
+            } else {
+                dao.recordLoginFailures(batch, 0, null);
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Failed to record login failures of " + batch.size() + " users, retrying with next flush");
+            for (Map.Entry<String, Integer> entry : batch.entrySet()) {
+                pending.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+
+        LOGGER.debug("flush() - (LEAVE): " + batch.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        userWindows.values().removeIf(w -> w.isExpired(now));
+        addressWindows.values().removeIf(w -> w.isExpired(now));
+    }
+
+    private static boolean exceeds(ConcurrentMap<String, Window> windows, String key, int limit, long now) {
+        if (key == null) {
+            return false;
+        }
+        Window window = windows.get(key);
+        return window != null && window.roll(now).estimate(now) >= limit;
+    }
+
+    private static void increment(ConcurrentMap<String, Window> windows, String key, long length, long now) {
+        if (key == null || (windows.size() >= MAX_WINDOWS && !windows.containsKey(key))) {
+            return;
+        }
+        windows.compute(key, (k, w) -> (w == null || w.length != length ? new Window(now, length, 0, 0) :
+                w.roll(now)).increment());
+    }
+
+    /**
+     * Immutable sliding window of failures, approximated by the count of
+     * the current period and the (linearly decaying) count of the
+     * previous one.
+     */
+    static final class Window {
+        private final long start;
+        private final long length;
+        private final int previous;
+        private final int current;
+
+        Window(long start, long length, int previous, int current) {
+            this.start = start;
+            this.length = length;
+            this.previous = previous;
+            this.current = current;
+        }
+
+        Window roll(long now) {
+            long elapsed = now - start;
+            if (elapsed < length) {
+                return this;
+            }
+            if (elapsed < 2 * length) {
+                return new Window(start + length, length, current, 0);
+            }
+            return new Window(now, length, 0, 0);
+        }
+
+        Window increment() {
+            return new Window(start, length, previous, current + 1);
+        }
+
+        double estimate(long now) {
+            return current + previous * Math.max(0, 1 - (double) (now - start) / length);
+        }
+
+        boolean isExpired(long now) {
+            return now - start >= 2 * length;
+        }
+    }
+}
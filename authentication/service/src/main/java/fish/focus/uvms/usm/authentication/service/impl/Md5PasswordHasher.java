@@ -0,0 +1,57 @@
+package fish.focus.uvms.usm.authentication.service.impl;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Legacy, unsalted MD5 password hasher.
+ * <p>
+ * Only kept to verify existing hashes (32 hexadecimal digits), which are
+ * always due for rehashing.
+ */
+public class Md5PasswordHasher implements PasswordHasher {
+    private static final String MD5 = "MD5";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Override
+    public boolean accepts(String hash) {
+        if (hash == null || hash.length() != 32) {
+            return false;
+        }
+        for (int i = 0; i < hash.length(); i++) {
+            if (Character.digit(hash.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String hash(String password) {
+        try {
+            MessageDigest md = MessageDigest.getInstance(MD5);
+            // Legacy hashes were computed with the platform default charset
+            byte[] digest = md.digest(password.getBytes(Charset.defaultCharset()));
+
+            char[] ret = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                ret[2 * i] = HEX[(digest[i] >> 4) & 0x0f];
+                ret[2 * i + 1] = HEX[digest[i] & 0x0f];
+            }
+            return new String(ret);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("Failed to compute hash", ex);
+        }
+    }
+
+    @Override
+    public boolean verify(String password, String hash) {
+        return MessageDigest.isEqual(hash(password).getBytes(), hash.toLowerCase().getBytes());
+    }
+
+    @Override
+    public boolean needsRehash(String hash) {
+        return true;
+    }
+}
@@ -0,0 +1,238 @@
+package fish.focus.uvms.usm.authentication.service.impl;
+
+import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * J2EE Singleton that hashes and verifies user passwords.
+ * <p>
+ * New passwords are hashed with PBKDF2, using the number of iterations
+ * configured by the 'password.hashIterations' authentication policy
+ * property. Existing hashes are verified with the algorithm and parameters
+ * they were computed with, including legacy MD5 hashes.
+ * <p>
+ * The number of passwords hashed concurrently is capped by the
+ * 'password.hashConcurrency' authentication policy property (default is
+ * the number of available processors), so that a burst of logins cannot
+ * starve the rest of the application server.
+ * <p>
+ * A password without (supported) hash to verify against, as for unknown,
+ * disabled or locked users, is verified against a dummy PBKDF2 hash, so
+ * that the time taken does not reveal whether the user exists.
+ * <p>
+ * At start-up, the password columns of USER_T and PASSWORD_HIST_T are
+ * checked to be wide enough for PBKDF2 hashes (see
+ * src/main/resources/sql/password_hash.sql); iteration counts whose hashes
+ * would not fit are ignored.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class PasswordHashService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PasswordHashService.class);
+    private static final String AUTHENTICATION_SUBJECT = "Authentication";
+    private static final String HASH_ITERATIONS = "password.hashIterations";
+    private static final String HASH_CONCURRENCY = "password.hashConcurrency";
+    private static final long ACQUIRE_TIMEOUT = (30 * 1000);
+
+    @EJB
+    private PolicyProvider policyProvider;
+
+    @EJB
+    private AuthenticationDao dao;
+
+    private final PasswordHasher legacyHasher = new Md5PasswordHasher();
+    private volatile Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(Pbkdf2PasswordHasher.DEFAULT_ITERATIONS);
+    private volatile Gate gate = new Gate(Runtime.getRuntime().availableProcessors());
+    private volatile DummyHash dummyHash;
+    private volatile int passwordColumnSize;
+    private volatile int rejectedIterations;
+
+    /**
+     * Checks that the password columns can hold the hashes computed with
+     * the configured number of iterations.
+     *
+     * @throws IllegalStateException in case the password columns are too small
+     */
+    @PostConstruct
+    public void checkPasswordColumns() {
+        try {
+            passwordColumnSize = dao.getPasswordColumnSize();
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Failed to check the size of the password columns", ex);
+            return;
+        }
+        configure();
+
+        int length = hasher.getHashLength();
+        if (!fitsPasswordColumns(hasher)) {
+            throw new IllegalStateException("Password columns of USER_T and PASSWORD_HIST_T hold " +
+                    passwordColumnSize + " characters, password hashes need " + length +
+                    ": apply sql/password_hash.sql");
+        }
+        LOGGER.debug("Password columns hold " + passwordColumnSize + " characters, hashes need " + length);
+    }
+
+    /**
+     * Computes the hash of the provided password, using the currently
+     * configured algorithm and parameters.
+     *
+     * @param password the clear-text password
+     * @return the self-describing password hash, or null if the password is null
+     * @throws RuntimeException in case the hash could not be computed in time
+     */
+    public String hashPassword(String password) {
+        String ret = null;
+
+        if (password != null) {
+            configure();
+            Pbkdf2PasswordHasher h = hasher;
+            ret = gate.run(() -> h.hash(password));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Verifies the provided password against the provided hash.
+     *
+     * @param password the clear-text password
+     * @param hash     the stored password hash
+     * @return true if the password matches the hash
+     * @throws RuntimeException in case the hash could not be computed in time
+     */
+    public boolean verifyPassword(String password, String hash) {
+        boolean ret = false;
+
+        if (password != null) {
+            configure();
+            Pbkdf2PasswordHasher h = hasher;
+            if (h.accepts(hash)) {
+                ret = gate.run(() -> h.verify(password, hash));
+            } else if (legacyHasher.accepts(hash)) {
+                ret = legacyHasher.verify(password, hash);
+            } else {
+                if (hash != null) {
+                    LOGGER.warn("Unsupported password hash format");
+                }
+                // Take as long as a verification would, the result is ignored
+                String dummy = getDummyHash(h);
+                gate.run(() -> h.verify(password, dummy));
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Checks whether the provided hash was computed with a legacy algorithm,
+     * or weaker parameters than the ones currently configured.
+     *
+     * @param hash the stored password hash
+     * @return true if the password should be hashed again
+     */
+    public boolean needsRehash(String hash) {
+        configure();
+        Pbkdf2PasswordHasher h = hasher;
+        return !h.accepts(hash) || h.needsRehash(hash);
+    }
+
+    private void configure() {
+        Properties policy = policyProvider.getProperties(AUTHENTICATION_SUBJECT);
+
+        int iterations = policyProvider.getIntProperty(policy, HASH_ITERATIONS,
+                Pbkdf2PasswordHasher.DEFAULT_ITERATIONS);
+        if (iterations > 0 && iterations != hasher.getIterations() && iterations != rejectedIterations) {
+            Pbkdf2PasswordHasher candidate = new Pbkdf2PasswordHasher(iterations);
+            if (fitsPasswordColumns(candidate)) {
+                LOGGER.info("Password hash iterations set to " + iterations);
+                hasher = candidate;
+            } else {
+                LOGGER.error("Password hash iterations " + iterations + " ignored: hashes of " +
+                        candidate.getHashLength() + " characters do not fit the password columns");
+                rejectedIterations = iterations;
+            }
+        }
+
+        int concurrency = policyProvider.getIntProperty(policy, HASH_CONCURRENCY,
+                Runtime.getRuntime().availableProcessors());
+        if (concurrency > 0 && concurrency != gate.permits) {
+            LOGGER.info("Password hash concurrency set to " + concurrency);
+            gate = new Gate(concurrency);
+        }
+    }
+
+    private boolean fitsPasswordColumns(Pbkdf2PasswordHasher h) {
+        int size = passwordColumnSize;
+        return size <= 0 || h.getHashLength() <= size;
+    }
+
+    private String getDummyHash(Pbkdf2PasswordHasher h) {
+        DummyHash ret = dummyHash;
+        if (ret == null || ret.iterations != h.getIterations()) {
+            ret = new DummyHash(h.getIterations(), h.hash(UUID.randomUUID().toString()));
+            dummyHash = ret;
+        }
+        return ret.hash;
+    }
+
+    /**
+     * A hash of a random password, computed with a given number of
+     * iterations.
+     */
+    private static class DummyHash {
+        private final int iterations;
+        private final String hash;
+
+        private DummyHash(int iterations, String hash) {
+            this.iterations = iterations;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Caps the number of concurrent hash computations.
+     */
+    private static class Gate {
+        private final int permits;
+        private final Semaphore semaphore;
+
+        private Gate(int permits) {
+            this.permits = permits;
+            this.semaphore = new Semaphore(permits, true);
+        }
+
+        private <T> T run(Supplier<T> task) {
+            try {
+                if (!semaphore.tryAcquire(ACQUIRE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    throw new RuntimeException("Timed out waiting to compute password hash");
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting to compute password hash", ex);
+            }
+            try {
+                return task.get();
+            } finally {
+                semaphore.release();
+            }
+        }
+    }
+
+}
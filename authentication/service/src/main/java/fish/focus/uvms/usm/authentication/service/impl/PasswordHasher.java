@@ -0,0 +1,45 @@
+package fish.focus.uvms.usm.authentication.service.impl;
+
+/**
+ * Computes and verifies password hashes for one hashing algorithm.
+ * <p>
+ * Hashes are self-describing: they carry the algorithm and its parameters
+ * alongside the (salted) hash value, so that users whose password was
+ * hashed with different algorithms or parameters can coexist.
+ */
+public interface PasswordHasher {
+
+    /**
+     * Checks whether the provided hash was computed by this hasher.
+     *
+     * @param hash the stored password hash
+     * @return true if this hasher is able to verify the hash
+     */
+    boolean accepts(String hash);
+
+    /**
+     * Computes the hash of the provided password.
+     *
+     * @param password the clear-text password
+     * @return the self-describing password hash
+     */
+    String hash(String password);
+
+    /**
+     * Verifies the provided password against the provided hash.
+     *
+     * @param password the clear-text password
+     * @param hash     the stored password hash
+     * @return true if the password matches the hash
+     */
+    boolean verify(String password, String hash);
+
+    /**
+     * Checks whether the provided hash was computed with weaker parameters
+     * than the ones currently configured for this hasher.
+     *
+     * @param hash the stored password hash
+     * @return true if the password should be hashed again
+     */
+    boolean needsRehash(String hash);
+}
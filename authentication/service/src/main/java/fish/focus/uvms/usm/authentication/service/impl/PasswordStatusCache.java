@@ -0,0 +1,112 @@
+package fish.focus.uvms.usm.authentication.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * J2EE Singleton that keeps a snapshot of the password expiry time of
+ * users.<br/>
+ * Snapshots are cached for 1 minute, and should be evicted whenever the
+ * password of a user is changed.
+ * <p>
+ * Evictions requested within a transaction take place once the transaction
+ * completes, so that expiry times re-loaded by concurrent requests before
+ * the commit are not kept; expiry times loaded while an eviction took place
+ * are not cached either.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class PasswordStatusCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PasswordStatusCache.class);
+    private static final long TTL = (60 * 1000);
+
+    @EJB
+    private AuthenticationDao dao;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    private final ConcurrentMap<String, TimedKeeper> cache = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Gets the password expiry time for the given user.
+     *
+     * @param userName the user name
+     * @return the password expiry time of the user, possibly null
+     */
+    public Date getPasswordExpiry(String userName) {
+        TimedKeeper tk = cache.get(userName);
+        if (tk != null && tk.timestamp + TTL > System.currentTimeMillis()) {
+            return tk.expiry;
+        }
+
+        long generation = evictions.get();
+        Date ret = dao.getPasswordExpiry(userName);
+        if (evictions.get() == generation) {
+            cache.put(userName, new TimedKeeper(ret));
+        }
+        return ret;
+    }
+
+    /**
+     * Evicts the cached password expiry time of the given user, once the
+     * current transaction (if any) completes.
+     *
+     * @param userName the user name
+     */
+    public void evict(String userName) {
+        if (userName != null) {
+            afterCompletion(() -> {
+                LOGGER.debug("evict(" + userName + ")");
+                evictions.incrementAndGet();
+                cache.remove(userName);
+            });
+        }
+    }
+
+    private void afterCompletion(Runnable eviction) {
+        if (txRegistry != null && txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // Nothing to do
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+
+    private static class TimedKeeper {
+        private final long timestamp;
+        private final Date expiry;
+
+        private TimedKeeper(Date expiry) {
+            this.expiry = expiry;
+            this.timestamp = System.currentTimeMillis();
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package fish.focus.uvms.usm.authentication.service.impl;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Salted PBKDF2 (HMAC-SHA256) password hasher.
+ * <p>
+ * Hashes are formatted as '$pbkdf2-sha256$&lt;iterations&gt;$&lt;salt&gt;$&lt;hash&gt;',
+ * with the salt and hash Base64 encoded (without padding).
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+    public static final int DEFAULT_ITERATIONS = 310000;
+
+    private static final String PREFIX = "$pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+
+    public Pbkdf2PasswordHasher(int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("iterations must be positive");
+        }
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Gets the length of the (formatted) hashes computed by this hasher.
+     *
+     * @return the number of characters of a hash
+     */
+    public int getHashLength() {
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX.length() + Integer.toString(iterations).length() + 1 +
+                encoder.encodeToString(new byte[SALT_LENGTH]).length() + 1 +
+                encoder.encodeToString(new byte[HASH_LENGTH]).length();
+    }
+
+    @Override
+    public boolean accepts(String hash) {
+        return hash != null && hash.startsWith(PREFIX);
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        byte[] hash = derive(password, salt, iterations, HASH_LENGTH);
+
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    @Override
+    public boolean verify(String password, String hash) {
+        String[] parts = split(hash);
+        if (parts == null) {
+            return false;
+        }
+        try {
+            int hashIterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            if (hashIterations <= 0 || expected.length == 0) {
+                return false;
+            }
+
+            byte[] actual = derive(password, salt, hashIterations, expected.length);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String hash) {
+        String[] parts = split(hash);
+        if (parts == null) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(parts[0]) < iterations;
+        } catch (NumberFormatException ex) {
+            return true;
+        }
+    }
+
+    private String[] split(String hash) {
+        if (!accepts(hash)) {
+            return null;
+        }
+        String[] ret = hash.substring(PREFIX.length()).split("\\$");
+        return ret.length == 3 ? ret : null;
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations, int length) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException ex) {
+            throw new RuntimeException("Failed to compute hash", ex);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package fish.focus.uvms.usm.authentication.service.impl;
+
+import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * J2EE scheduled singleton that keeps the persons of LDAP users in sync
+ * with their LDAP attributes, off the login path.
+ * <p>
+ * The attributes retrieved at login are queued and periodically written
+ * back in a single batch; consecutive logins of the same user between two
+ * flushes are coalesced, the latest attributes winning. Optionally, when
+ * policy property 'ldap.sync.userAttribute' names the LDAP attribute
+ * holding the user name, all LDAP users are reconciled every night using
+ * a paged search.
+ * <p>
+ * A {@link PersonsChangedEvent} is fired once persons were updated.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class PersonSynchronizer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonSynchronizer.class);
+
+    private static final String AUTHENTICATION_SUBJECT = "Authentication";
+    private static final String LDAP_ENABLED = "ldap.enabled";
+    private static final String SYNC_USER_ATTRIBUTE = "ldap.sync.userAttribute";
+    private static final String SYNC_PAGE_SIZE = "ldap.sync.pageSize";
+    private static final int DEFAULT_PAGE_SIZE = 500;
+
+    @EJB
+    private AuthenticationDao dao;
+
+    @EJB
+    private PolicyProvider policyProvider;
+
+    @EJB
+    private LdapProvider ldapProvider;
+
+    @Inject
+    private Event<PersonsChangedEvent> personsChanged;
+
+    private final ConcurrentMap<String, Map<String, Object>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Queues the LDAP attributes of the given user, to be written back to
+     * its person with the next flush.
+     *
+     * @param userName the user name
+     * @param userMap  the LDAP attributes of the user
+     */
+    public void enqueue(String userName, Map<String, Object> userMap) {
+        if (userName != null && userMap != null) {
+            pending.put(userName, userMap);
+        }
+    }
+
+    /**
+     * Writes back the queued LDAP attributes to the persons of the users.
+     * <p>
+     * Scheduled job running every 10 seconds.
+     */
+    @Schedule(hour = "*", minute = "*", second = "*/10", persistent = false)
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        LOGGER.debug("flush() - (ENTER)");
+
+        Map<String, Map<String, Object>> batch = new HashMap<>();
+        for (String userName : pending.keySet()) {
+            Map<String, Object> userMap = pending.remove(userName);
+            if (userMap != null) {
+                batch.put(userName, userMap);
+            }
+        }
+
+        int updated = 0;
+        try {
+            updated = dao.syncPersons(batch);
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Failed to sync " + batch.size() + " persons with LDAP, retrying with next flush");
+            for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+                pending.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (updated > 0) {
+            // Fired once the (REQUIRES_NEW) sync was committed
+            PersonsChangedEvent event = new PersonsChangedEvent();
+            event.userNames = batch.keySet();
+            personsChanged.fire(event);
+        }
+
+        LOGGER.debug("flush() - (LEAVE): " + batch.size());
+    }
+
+    /**
+     * Reconciles the persons of all LDAP users, one page at a time, when
+     * LDAP is enabled and the user name attribute is configured.
+     * <p>
+     * Scheduled job running every night at 03:00.
+     */
+    @Schedule(hour = "3", minute = "0", persistent = false)
+    public void reconcile() {
+        Properties props = policyProvider.getProperties(AUTHENTICATION_SUBJECT);
+        String userAttribute = props.getProperty(SYNC_USER_ATTRIBUTE);
+        if (!Boolean.parseBoolean(props.getProperty(LDAP_ENABLED, "false")) ||
+                userAttribute == null || userAttribute.trim().isEmpty()) {
+            return;
+        }
+        LOGGER.debug("reconcile() - (ENTER)");
+
+        int pageSize = policyProvider.getIntProperty(props, SYNC_PAGE_SIZE, DEFAULT_PAGE_SIZE);
+        int[] cnt = {0};
+        try {
+            LDAP ldap = ldapProvider.getLdap(props);
+            ldap.searchUsers(userAttribute.trim(), pageSize, (userName, userMap) -> {
+                enqueue(userName, userMap);
+                if (++cnt[0] % pageSize == 0) {
+                    flush();
+                }
+            });
+            flush();
+        } catch (Exception ex) {
+            LOGGER.warn("Failed to reconcile persons with LDAP: " + ex.getMessage());
+        }
+
+        LOGGER.debug("reconcile() - (LEAVE): " + cnt[0]);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+}
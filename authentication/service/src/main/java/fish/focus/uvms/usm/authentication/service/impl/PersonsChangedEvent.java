@@ -0,0 +1,11 @@
+package fish.focus.uvms.usm.authentication.service.impl;
+
+import java.util.Collection;
+
+/**
+ * Fired once the persons of the given users were changed and committed,
+ * e.g. when synchronised with LDAP.
+ */
+public class PersonsChangedEvent {
+    public Collection<String> userNames;
+}
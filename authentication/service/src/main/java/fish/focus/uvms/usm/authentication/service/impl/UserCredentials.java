@@ -0,0 +1,53 @@
+package fish.focus.uvms.usm.authentication.service.impl;
+
+import java.util.Date;
+
+/**
+ * The credential row of a user, holding all that is needed to decide on a
+ * (local) login attempt.
+ * <p>
+ * Whether the user is active, and not (or no longer) locked-out, is
+ * decided by active_user_v, through the active password.
+ */
+public class UserCredentials {
+    private final String status;
+    private final String activePassword;
+    private final String lockoutReason;
+    private final Date passwordExpiry;
+
+    public UserCredentials(String status, String activePassword, String lockoutReason, Date passwordExpiry) {
+        this.status = status;
+        this.activePassword = activePassword;
+        this.lockoutReason = lockoutReason;
+        this.passwordExpiry = passwordExpiry;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the password hash if the user is active, and is neither
+     * disabled nor locked-out; null otherwise
+     */
+    public String getActivePassword() {
+        return activePassword;
+    }
+
+    public String getLockoutReason() {
+        return lockoutReason;
+    }
+
+    public Date getPasswordExpiry() {
+        return passwordExpiry;
+    }
+
+    @Override
+    public String toString() {
+        return "UserCredentials{" +
+                "status=" + status +
+                ", lockoutReason=" + lockoutReason +
+                ", passwordExpiry=" + passwordExpiry +
+                '}';
+    }
+}
@@ -7,6 +7,7 @@ import javax.annotation.PostConstruct;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Timestamp;
 import java.util.Properties;
 
 /**
@@ -70,4 +71,39 @@ public class PolicyDao extends AbstractJdbcDao {
         return ret;
     }
 
+    /**
+     * Retrieves the current version of the policy table, derived from its
+     * number of rows and latest creation/modification time.
+     *
+     * @return a version tag, which changes whenever a policy property is
+     * created, updated (through the administration services) or deleted
+     */
+    public String getVersion() {
+        LOGGER.debug("getVersion() - (ENTER)");
+
+        String ret = null;
+
+        Connection co = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+
+        try {
+            co = getConnection();
+            ps = co.prepareStatement("select count(*),max(coalesce(MODIFIED_ON,CREATED_ON)) from POLICY_T");
+            rs = ps.executeQuery();
+            if (rs.next()) {
+                Timestamp lastModified = rs.getTimestamp(2);
+                ret = rs.getInt(1) + "@" + (lastModified != null ? lastModified.getTime() : 0);
+            }
+        } catch (Exception ex) {
+            handleException(ex);
+        } finally {
+            closeResultSet(rs);
+            closeStatement(ps);
+            closeConnection(co);
+        }
+        LOGGER.debug("getVersion() - (LEAVE): " + ret);
+        return ret;
+    }
+
 }
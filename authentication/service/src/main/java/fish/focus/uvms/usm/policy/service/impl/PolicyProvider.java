@@ -3,31 +3,44 @@ package fish.focus.uvms.usm.policy.service.impl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.Singleton;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * J2EE Singleton that provides configuration/definition properties
  * for the  user authentication and number of session policies.
+ * <p>
+ * Policies are kept in an immutable snapshot, swapped atomically on
+ * change, so that readers never block. The snapshot is refreshed when the
+ * version of the POLICY_T table changes (checked at most every 10 seconds)
+ * and policies are evicted immediately when updated through the
+ * administration services.
  */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 @TransactionAttribute(TransactionAttributeType.SUPPORTS)
 public class PolicyProvider {
     private static final Logger LOGGER = LoggerFactory.getLogger(PolicyProvider.class);
-    private static final long FIVE_MINUTES = (5 * 60 * 1000);
+    private static final long VERSION_CHECK_INTERVAL = (10 * 1000);
 
     @Inject
     private PolicyDao dao;
 
-    private final Map<String, TimedKeeper> cache;
+    private volatile Snapshot snapshot;
+    private final AtomicLong nextVersionCheck;
 
     public PolicyProvider() {
-        cache = new HashMap<>();
+        snapshot = new Snapshot(null, Collections.emptyMap());
+        nextVersionCheck = new AtomicLong();
     }
 
     public void reset() {
@@ -46,24 +59,13 @@ public class PolicyProvider {
     public Properties getProperties(String subject) {
         LOGGER.debug("getProperties(" + subject + ") - (ENTER)");
 
-        PolicyDefinition def = null;
-
-        TimedKeeper tk = cache.get(subject);
-        if (tk != null) {
-            if (tk.timestamp + FIVE_MINUTES > System.currentTimeMillis()) {
-                def = tk.definition;
-            } else {
-                // Evict expired cached version
-                evictDefinition(subject);
-            }
-        }
-
-        if (def == null) {
-            def = readDefinition(subject);
-            cacheDefinition(subject, def);
+        Policy policy = currentSnapshot().policies.get(subject);
+        if (policy == null) {
+            policy = new Policy(readDefinition(subject), false);
+            cacheDefinition(subject, policy);
         }
 
-        Properties ret = def.getProperties();
+        Properties ret = policy.definition.getProperties();
 
         LOGGER.debug("getProperties() - (LEAVE)");
         return ret;
@@ -72,6 +74,9 @@ public class PolicyProvider {
     /**
      * Sets the configuration/definition properties for the provided
      * policy subject.
+     * <p>
+     * The provided properties take precedence over the persistent ones
+     * until the subject is evicted or the provider is reset.
      *
      * @param subject    the policy subject
      * @param properties the new configuration/definition properties
@@ -83,7 +88,7 @@ public class PolicyProvider {
         PolicyDefinition def = new PolicyDefinition();
         def.setSubject(subject);
         def.setProperties(properties);
-        cacheDefinition(subject, def);
+        cacheDefinition(subject, new Policy(def, true));
 
         Properties ret = properties;
 
@@ -91,6 +96,18 @@ public class PolicyProvider {
         return ret;
     }
 
+    /**
+     * Evicts the cached configuration/definition properties of the provided
+     * policy subject, so that they are read again on next use.
+     *
+     * @param subject the policy subject
+     */
+    public void evict(String subject) {
+        LOGGER.debug("evict(" + subject + ") - (ENTER)");
+        evictDefinition(subject);
+        LOGGER.debug("evict() - (LEAVE)");
+    }
+
     /**
      * Gets an integer (policy) property value.
      *
@@ -115,6 +132,27 @@ public class PolicyProvider {
         return ret;
     }
 
+    /**
+     * Gets the current snapshot, after dropping the persistent policies
+     * if the version of the policy table changed. Only one thread checks
+     * the version at a time, the others keep using the current snapshot.
+     */
+    private Snapshot currentSnapshot() {
+        Snapshot ret = snapshot;
+
+        long now = System.currentTimeMillis();
+        long next = nextVersionCheck.get();
+        if (now >= next && nextVersionCheck.compareAndSet(next, now + VERSION_CHECK_INTERVAL)) {
+            String version = dao.getVersion();
+            if (version != null && !version.equals(ret.version)) {
+                LOGGER.debug("Policy version changed: " + ret.version + " -> " + version);
+                ret = refresh(version);
+            }
+        }
+
+        return ret;
+    }
+
     private PolicyDefinition readDefinition(String subject) {
         PolicyDefinition ret = new PolicyDefinition();
 
@@ -124,31 +162,54 @@ public class PolicyProvider {
         return ret;
     }
 
-    private void cacheDefinition(String subject, PolicyDefinition ret) {
-        synchronized (cache) {
-            cache.put(subject, new TimedKeeper(ret));
+    private synchronized Snapshot refresh(String version) {
+        Map<String, Policy> policies = new HashMap<>();
+        for (Map.Entry<String, Policy> entry : snapshot.policies.entrySet()) {
+            if (entry.getValue().overridden) {
+                policies.put(entry.getKey(), entry.getValue());
+            }
         }
+        snapshot = new Snapshot(version, policies);
+        return snapshot;
     }
 
-    private void evictDefinition(String subject) {
-        synchronized (cache) {
-            cache.remove(subject);
-        }
+    private synchronized void cacheDefinition(String subject, Policy policy) {
+        Map<String, Policy> policies = new HashMap<>(snapshot.policies);
+        policies.put(subject, policy);
+        snapshot = new Snapshot(snapshot.version, policies);
     }
 
-    private void clear() {
-        synchronized (cache) {
-            cache.clear();
+    private synchronized void evictDefinition(String subject) {
+        Map<String, Policy> policies = new HashMap<>(snapshot.policies);
+        policies.remove(subject);
+        snapshot = new Snapshot(snapshot.version, policies);
+    }
+
+    private synchronized void clear() {
+        snapshot = new Snapshot(null, Collections.emptyMap());
+        nextVersionCheck.set(0);
+    }
+
+    /**
+     * Immutable set of cached policies, by subject.
+     */
+    private static class Snapshot {
+        private final String version;
+        private final Map<String, Policy> policies;
+
+        private Snapshot(String version, Map<String, Policy> policies) {
+            this.version = version;
+            this.policies = Collections.unmodifiableMap(policies);
         }
     }
 
-    private class TimedKeeper {
-        long timestamp;
-        PolicyDefinition definition;
+    private static class Policy {
+        private final PolicyDefinition definition;
+        private final boolean overridden;
 
-        private TimedKeeper(PolicyDefinition def) {
-            definition = def;
-            timestamp = System.currentTimeMillis();
+        private Policy(PolicyDefinition definition, boolean overridden) {
+            this.definition = definition;
+            this.overridden = overridden;
         }
     }
 
@@ -70,12 +70,18 @@ public class AbstractJdbcDao {
         LOGGER.debug("lookupDatasource() - (LEAVE)");
     }
 
+    /**
+     * Gets a connection, shared with the other data access objects taking
+     * part in the current unit of work (if any).
+     *
+     * @see UnitOfWork
+     */
     protected Connection getConnection()
             throws SQLException {
         if (dataSource == null) {
             lookupDatasource();
         }
-        return dataSource.getConnection();
+        return UnitOfWork.getConnection(dataSource);
     }
 
     protected void handleException(Exception ex)
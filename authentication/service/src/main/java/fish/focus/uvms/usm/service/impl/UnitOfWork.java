@@ -0,0 +1,321 @@
+package fish.focus.uvms.usm.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares JDBC connections between the data access objects taking part in
+ * the same unit of work, so that a request no longer checks out a fresh
+ * connection (and prepares fresh statements) for every DAO call.
+ * <p>
+ * Within an active JTA transaction, connections are held for the duration
+ * of the transaction (a REQUIRES_NEW transaction thus gets its own
+ * connection). Outside any transaction, connections are held for the
+ * duration of the (REST) request, between {@link #begin()} and
+ * {@link #end()}. Otherwise, connections are neither shared nor counted.
+ * <p>
+ * Shared connections ignore <i>close()</i> and cache their prepared
+ * statements, which are re-used when the same SQL is prepared again.
+ */
+public final class UnitOfWork {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnitOfWork.class);
+    private static final String REGISTRY_NAME = "java:comp/TransactionSynchronizationRegistry";
+    private static final Object RESOURCE_KEY = UnitOfWork.class;
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private static volatile TransactionSynchronizationRegistry registry;
+    private static volatile boolean registryLookedUp;
+
+    private final Map<DataSource, SharedConnection> connections = new IdentityHashMap<>();
+    private final Statistics statistics;
+    private int depth;
+
+    private UnitOfWork(Statistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Begins a (request) unit of work on the current thread. Nested calls
+     * join the unit of work already begun.
+     */
+    public static void begin() {
+        UnitOfWork current = CURRENT.get();
+        if (current == null) {
+            current = new UnitOfWork(new Statistics());
+            CURRENT.set(current);
+        }
+        current.depth++;
+    }
+
+    /**
+     * Ends the (request) unit of work of the current thread, closing the
+     * connections it holds.
+     *
+     * @return the statistics of the unit of work, or <i>null</i> if no unit
+     * of work was begun, or if it is still held by an enclosing call
+     */
+    public static Statistics end() {
+        UnitOfWork current = CURRENT.get();
+        if (current == null || --current.depth > 0) {
+            return null;
+        }
+        CURRENT.remove();
+        current.close();
+        return current.statistics;
+    }
+
+    /**
+     * Gets a connection from the given data-source, shared with the other
+     * data access objects taking part in the current unit of work (if any).
+     *
+     * @param dataSource the data-source
+     * @return a connection, to be closed after use as usual
+     * @throws SQLException in case no connection could be obtained
+     */
+    public static Connection getConnection(DataSource dataSource) throws SQLException {
+        UnitOfWork unit = getTransactionUnit();
+        if (unit == null) {
+            unit = CURRENT.get();
+        }
+        if (unit == null) {
+            return dataSource.getConnection();
+        }
+
+        SharedConnection ret = unit.connections.get(dataSource);
+        if (ret == null) {
+            ret = new SharedConnection(dataSource.getConnection(), unit.statistics);
+            unit.connections.put(dataSource, ret);
+            unit.statistics.connections++;
+        }
+        return ret.proxy;
+    }
+
+    private static UnitOfWork getTransactionUnit() {
+        TransactionSynchronizationRegistry tsr = getRegistry();
+        if (tsr == null || tsr.getTransactionKey() == null ||
+                tsr.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            return null;
+        }
+
+        UnitOfWork ret = (UnitOfWork) tsr.getResource(RESOURCE_KEY);
+        if (ret == null) {
+            // Report to the request unit of work, if any
+            UnitOfWork current = CURRENT.get();
+            ret = new UnitOfWork(current != null ? current.statistics : new Statistics());
+            UnitOfWork unit = ret;
+            tsr.putResource(RESOURCE_KEY, unit);
+            tsr.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // NOP
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    unit.close();
+                }
+            });
+        }
+        return ret;
+    }
+
+    private static TransactionSynchronizationRegistry getRegistry() {
+        if (!registryLookedUp) {
+            try {
+                InitialContext context = new InitialContext();
+                registry = (TransactionSynchronizationRegistry) context.lookup(REGISTRY_NAME);
+                context.close();
+            } catch (NamingException ex) {
+                LOGGER.info("No transaction synchronization registry, connections are only shared per request");
+            }
+            registryLookedUp = true;
+        }
+        return registry;
+    }
+
+    private void close() {
+        for (SharedConnection connection : connections.values()) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    /**
+     * The number of connections acquired, and of statements prepared and
+     * executed, during a unit of work.
+     */
+    public static class Statistics {
+        private int connections;
+        private int prepared;
+        private int executed;
+
+        public int getConnections() {
+            return connections;
+        }
+
+        public int getPrepared() {
+            return prepared;
+        }
+
+        public int getExecuted() {
+            return executed;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{" +
+                    "connections=" + connections +
+                    ", prepared=" + prepared +
+                    ", executed=" + executed +
+                    '}';
+        }
+    }
+
+    /**
+     * A connection shared during a unit of work, caching its prepared
+     * statements by SQL.
+     */
+    private static class SharedConnection implements InvocationHandler {
+        private final Connection connection;
+        private final Statistics statistics;
+        private final Connection proxy;
+        private final Map<String, Deque<SharedStatement>> idle = new HashMap<>();
+        private final List<PreparedStatement> statements = new ArrayList<>();
+
+        SharedConnection(Connection connection, Statistics statistics) {
+            this.connection = connection;
+            this.statistics = statistics;
+            this.proxy = (Connection) Proxy.newProxyInstance(UnitOfWork.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    return null;
+                case "isClosed":
+                    return false;
+                case "prepareStatement":
+                    return prepareStatement(method, args);
+                default:
+                    return delegate(connection, method, args);
+            }
+        }
+
+        private PreparedStatement prepareStatement(Method method, Object[] args) throws Throwable {
+            String sql = (String) args[0];
+            boolean cacheable = args.length == 1;
+            if (cacheable) {
+                Deque<SharedStatement> cached = idle.get(sql);
+                if (cached != null && !cached.isEmpty()) {
+                    return cached.pop().reopen();
+                }
+            }
+
+            PreparedStatement statement = (PreparedStatement) delegate(connection, method, args);
+            statements.add(statement);
+            statistics.prepared++;
+            return new SharedStatement(this, statement, cacheable ? sql : null).proxy;
+        }
+
+        void release(SharedStatement statement) {
+            idle.computeIfAbsent(statement.sql, k -> new ArrayDeque<>()).push(statement);
+        }
+
+        void close() {
+            for (PreparedStatement statement : statements) {
+                try {
+                    statement.close();
+                } catch (Exception ex) {
+                    LOGGER.info("Error closing statement", ex);
+                }
+            }
+            try {
+                connection.close();
+            } catch (Exception ex) {
+                LOGGER.info("Error closing connection", ex);
+            }
+        }
+    }
+
+    /**
+     * A statement prepared on a shared connection, returned to the cache of
+     * the connection when closed.
+     */
+    private static class SharedStatement implements InvocationHandler {
+        private final SharedConnection connection;
+        private final PreparedStatement statement;
+        private final String sql;
+        private final PreparedStatement proxy;
+        private boolean open = true;
+
+        SharedStatement(SharedConnection connection, PreparedStatement statement, String sql) {
+            this.connection = connection;
+            this.statement = statement;
+            this.sql = sql;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(UnitOfWork.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        PreparedStatement reopen() {
+            open = true;
+            return proxy;
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                if (open && sql != null) {
+                    statement.clearParameters();
+                    statement.clearBatch();
+                    connection.release(this);
+                } else if (open) {
+                    statement.close();
+                }
+                open = false;
+                return null;
+            }
+            if ("isClosed".equals(name)) {
+                return !open;
+            }
+            if ("getConnection".equals(name)) {
+                return connection.proxy;
+            }
+            if (name.startsWith("execute")) {
+                connection.statistics.executed++;
+            }
+            return delegate(statement, method, args);
+        }
+    }
+
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+}
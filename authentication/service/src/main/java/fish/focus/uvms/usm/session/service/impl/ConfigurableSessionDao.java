@@ -0,0 +1,112 @@
+package fish.focus.uvms.usm.session.service.impl;
+
+import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * J2EE Singleton implementation of the SessionDao interface that delegates
+ * to the session store selected by the 'account.sessionStore' policy
+ * property: 'memory' (the default) keeps sessions in the heap of the
+ * current node, 'database' keeps them in the USM database so that
+ * session policies are enforced across all nodes of a cluster.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class ConfigurableSessionDao implements SessionDao {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigurableSessionDao.class);
+
+    private static final String POLICY_SUBJECT = "Account";
+    private static final String SESSION_STORE = "account.sessionStore";
+    private static final String DATABASE_STORE = "database";
+    private static final long ONE_SECOND = 1000L;
+
+    @EJB
+    private PolicyProvider policyProvider;
+
+    @EJB
+    private InMemorySessionDao inMemorySessionDao;
+
+    @EJB
+    private JdbcSessionDao jdbcSessionDao;
+
+    /**
+     * Deletes the expired sessions from the database session store, if
+     * selected.
+     * <p>
+     * Scheduled job running every 5 minutes.
+     */
+    @Schedule(hour = "*", minute = "*/5", persistent = false)
+    public void expireSessions() {
+        Properties policy = policyProvider.getProperties(POLICY_SUBJECT);
+        int ttlSession = policyProvider.getIntProperty(policy, "account.maxSessionDuration", 0);
+
+        if (ttlSession > 0 && isDatabaseStore(policy)) {
+            LOGGER.debug("expireSessions() - (ENTER)");
+
+            Date startedBefore = new Date(System.currentTimeMillis() -
+                    (ttlSession * ONE_SECOND));
+            jdbcSessionDao.deleteSessionsStartedBefore(startedBefore);
+
+            LOGGER.debug("expireSessions() - (LEAVE)");
+        }
+    }
+
+    @Override
+    public String createSession(UserSession session) {
+        return getSessionStore().createSession(session);
+    }
+
+    @Override
+    public String createSession(UserSession session, int maxOneSite, int maxAnySite, Date startedAfter) {
+        return getSessionStore().createSession(session, maxOneSite, maxAnySite, startedAfter);
+    }
+
+    @Override
+    public UserSession readSession(String uniqueId) {
+        return getSessionStore().readSession(uniqueId);
+    }
+
+    @Override
+    public List<UserSession> readSessions(String userName, Date startedAfter) {
+        return getSessionStore().readSessions(userName, startedAfter);
+    }
+
+    @Override
+    public int countSessions(String userName, String userSite, Date startedAfter) {
+        return getSessionStore().countSessions(userName, userSite, startedAfter);
+    }
+
+    @Override
+    public void deleteSession(String uniqueId) {
+        getSessionStore().deleteSession(uniqueId);
+    }
+
+    @Override
+    public void deleteSessions() {
+        getSessionStore().deleteSessions();
+    }
+
+    private SessionDao getSessionStore() {
+        Properties policy = policyProvider.getProperties(POLICY_SUBJECT);
+
+        return isDatabaseStore(policy) ? jdbcSessionDao : inMemorySessionDao;
+    }
+
+    private boolean isDatabaseStore(Properties policy) {
+        return DATABASE_STORE.equalsIgnoreCase(policy.getProperty(SESSION_STORE));
+    }
+
+}
@@ -8,13 +8,21 @@ import javax.annotation.Resource;
 import javax.ejb.Timer;
 import javax.ejb.*;
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
  * J2EE Singleton implementation of the SessionDao interface that
  * keeps active session in-memory.
+ * <p>
+ * Sessions are indexed by unique identifier, by user (with per-site
+ * counters) and by creation time, so that reading, deleting, counting and
+ * expiring sessions never requires a scan of all active sessions.
  */
 @Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class InMemorySessionDao implements SessionDao {
     private static final Logger LOGGER = LoggerFactory.getLogger(InMemorySessionDao.class);
 
@@ -22,17 +30,27 @@ public class InMemorySessionDao implements SessionDao {
     private static final long ONE_SECOND = 1000L;
     private static final long FIVE_MINUTES = 300000L;
 
+    /**
+     * Orders sessions by creation time, then by unique identifier
+     */
+    private static final Comparator<UserSession> BY_CREATION_TIME =
+            Comparator.comparingLong(InMemorySessionDao::creationTime)
+                    .thenComparing(UserSession::getUniqueId);
+
     @EJB
     private PolicyProvider policyProvider;
 
-    private final Map<String, List<UserSession>> sessionMap;
+    private final ConcurrentMap<String, UserSession> sessionMap;
+    private final ConcurrentMap<String, UserSessions> userMap;
+    private final NavigableSet<UserSession> creationIndex;
 
     @Resource
     private TimerService timerService;
 
     public InMemorySessionDao() {
-        Map<String, List<UserSession>> nakedMap = new HashMap<>();
-        sessionMap = Collections.synchronizedMap(nakedMap);
+        sessionMap = new ConcurrentHashMap<>();
+        userMap = new ConcurrentHashMap<>();
+        creationIndex = new ConcurrentSkipListSet<>(BY_CREATION_TIME);
     }
 
     @PostConstruct
@@ -81,6 +99,35 @@ public class InMemorySessionDao implements SessionDao {
         return ret;
     }
 
+    @Override
+    public String createSession(UserSession session, int maxOneSite, int maxAnySite, Date startedAfter) {
+        LOGGER.debug("createSession(" + session + ", " + maxOneSite + ", " + maxAnySite + ", " +
+                startedAfter + ") - (ENTER)");
+
+        String ret = null;
+
+        if (session != null && session.getUserName() != null) {
+            session.setUniqueId(UUID.randomUUID().toString());
+
+            // Counting and adding under the lock of the user entry, as deleting does
+            boolean[] created = new boolean[1];
+            userMap.compute(session.getUserName(), (userName, sessions) -> {
+                UserSessions current = sessions == null ? new UserSessions() : sessions;
+                created[0] = current.addIfAllowed(session, maxOneSite, maxAnySite, startedAfter);
+                return current.isEmpty() ? null : current;
+            });
+
+            if (created[0]) {
+                sessionMap.put(session.getUniqueId(), session);
+                creationIndex.add(session);
+                ret = session.getUniqueId();
+            }
+        }
+
+        LOGGER.debug("createSession() - (LEAVE): " + ret);
+        return ret;
+    }
+
     @Override
     public UserSession readSession(String sessionId) {
         LOGGER.debug("readSession(" + sessionId + ") - (ENTER)");
@@ -88,7 +135,7 @@ public class InMemorySessionDao implements SessionDao {
         UserSession ret = null;
 
         if (sessionId != null) {
-            ret = doReadSession(sessionId);
+            ret = sessionMap.get(sessionId);
         }
 
         LOGGER.debug("readSession() - (LEAVE): " + ret);
@@ -102,17 +149,9 @@ public class InMemorySessionDao implements SessionDao {
         List<UserSession> ret = new ArrayList<>();
 
         if (userName != null) {
-            List<UserSession> lst = doReadSessions(userName);
-            if (lst != null) {
-                if (startedAfter == null) {
-                    ret.addAll(lst);
-                } else {
-                    for (UserSession item : lst) {
-                        if (startedAfter.before(item.getCreationTime())) {
-                            ret.add(item);
-                        }
-                    }
-                }
+            UserSessions sessions = userMap.get(userName);
+            if (sessions != null) {
+                sessions.collect(startedAfter, ret);
             }
         }
 
@@ -120,6 +159,23 @@ public class InMemorySessionDao implements SessionDao {
         return ret;
     }
 
+    @Override
+    public int countSessions(String userName, String userSite, Date startedAfter) {
+        LOGGER.debug("countSessions(" + userName + ", " + userSite + ", " + startedAfter + ") - (ENTER)");
+
+        int ret = 0;
+
+        if (userName != null) {
+            UserSessions sessions = userMap.get(userName);
+            if (sessions != null) {
+                ret = sessions.count(userSite, startedAfter);
+            }
+        }
+
+        LOGGER.debug("countSessions() - (LEAVE): " + ret);
+        return ret;
+    }
+
     @Override
     public void deleteSession(String sessionId) {
         LOGGER.debug("deleteSession(" + sessionId + ") - (ENTER)");
@@ -135,75 +191,128 @@ public class InMemorySessionDao implements SessionDao {
     public void deleteSessions() throws RuntimeException {
         LOGGER.debug("deleteSessions() - (ENTER)");
 
-        sessionMap.clear();
+        for (String sessionId : new ArrayList<>(sessionMap.keySet())) {
+            doDelete(sessionId);
+        }
 
         LOGGER.debug("deleteSessions() - (LEAVE)");
     }
 
     private void doCreate(UserSession session) {
-        List<UserSession> lst = sessionMap.get(session.getUserName());
-        if (lst == null) {
-            lst = new ArrayList<>();
-        }
-        lst.add(session);
-
-        sessionMap.put(session.getUserName(), lst);
+        userMap.compute(session.getUserName(), (userName, sessions) -> {
+            UserSessions ret = sessions == null ? new UserSessions() : sessions;
+            ret.add(session);
+            return ret;
+        });
+        sessionMap.put(session.getUniqueId(), session);
+        creationIndex.add(session);
     }
 
-    private List<UserSession> doReadSessions(String userName) {
-        return sessionMap.get(userName);
+    private void doDelete(String sessionId) {
+        UserSession item = sessionMap.remove(sessionId);
+
+        if (item != null) {
+            creationIndex.remove(item);
+            userMap.computeIfPresent(item.getUserName(), (userName, sessions) -> {
+                sessions.remove(item);
+                return sessions.isEmpty() ? null : sessions;
+            });
+        }
     }
 
-    private UserSession doReadSession(String sessionId) {
-        UserSession ret = null;
+    private List<String> findExpiredSessions(Date startedBefore) {
+        List<String> ret = new ArrayList<>();
 
-        for (Entry<String, List<UserSession>> e : sessionMap.entrySet()) {
-            for (UserSession s : e.getValue()) {
-                if (sessionId.equals(s.getUniqueId())) {
-                    ret = s;
-                    break;
-                }
-            }
-            if (ret != null) {
-                break;
-            }
+        for (UserSession item : creationIndex.headSet(probe(startedBefore), false)) {
+            ret.add(item.getUniqueId());
         }
 
         return ret;
     }
 
-    private void doDelete(String sessionId) {
-        List<UserSession> lst = null;
-        UserSession item = null;
-
-        for (Entry<String, List<UserSession>> e : sessionMap.entrySet()) {
-            for (UserSession s : e.getValue()) {
-                if (sessionId.equals(s.getUniqueId())) {
-                    lst = e.getValue();
-                    item = s;
-                    break;
-                }
+    private static UserSession probe(Date creationTime) {
+        UserSession ret = new UserSession();
+        ret.setUniqueId("");
+        ret.setCreationTime(creationTime);
+        return ret;
+    }
+
+    private static long creationTime(UserSession session) {
+        return session.getCreationTime() == null ? 0L : session.getCreationTime().getTime();
+    }
+
+    /**
+     * The active sessions of a single user, ordered by creation time, with
+     * the number of sessions per user site.
+     */
+    private static class UserSessions {
+        private final NavigableSet<UserSession> sessions = new TreeSet<>(BY_CREATION_TIME);
+        private final Map<String, Integer> siteCounts = new HashMap<>();
+
+        private synchronized void add(UserSession session) {
+            if (sessions.add(session)) {
+                siteCounts.merge(session.getUserSite(), 1, Integer::sum);
             }
-            if (lst != null) {
-                break;
+        }
+
+        /**
+         * Adds the given session, unless the maximum number of sessions
+         * started after the given time is reached for its site or for any
+         * site.
+         */
+        private synchronized boolean addIfAllowed(UserSession session, int maxOneSite, int maxAnySite,
+                                                  Date startedAfter) {
+            boolean ret = (maxOneSite <= 0 || count(session.getUserSite(), startedAfter) < maxOneSite) &&
+                    (maxAnySite <= 0 || count(null, startedAfter) < maxAnySite);
+            if (ret) {
+                add(session);
             }
+            return ret;
         }
-        if (lst != null) {
-            lst.remove(item);
+
+        private synchronized void remove(UserSession session) {
+            if (sessions.remove(session)) {
+                siteCounts.computeIfPresent(session.getUserSite(),
+                        (site, cnt) -> cnt > 1 ? cnt - 1 : null);
+            }
         }
-    }
 
-    private List<String> findExpiredSessions(Date startedBefore) {
-        List<String> ret = new ArrayList<>();
+        private synchronized boolean isEmpty() {
+            return sessions.isEmpty();
+        }
 
-        for (Entry<String, List<UserSession>> entry : sessionMap.entrySet()) {
-            for (UserSession item : entry.getValue()) {
-                if (startedBefore.after(item.getCreationTime())) {
-                    ret.add(item.getUniqueId());
-                }
+        private synchronized void collect(Date startedAfter, List<UserSession> target) {
+            if (startedAfter == null) {
+                target.addAll(sessions);
+            } else {
+                target.addAll(sessions.tailSet(probe(new Date(startedAfter.getTime() + 1)), true));
             }
         }
 
-        return ret;
+        /**
+         * Counts the sessions started after the given time, for a single
+         * site or for any site. Sessions not started after the given time
+         * are the oldest ones, so only those are visited.
+         */
+        private synchronized int count(String userSite, Date startedAfter) {
+            int ret;
+            if (userSite == null) {
+                ret = sessions.size();
+            } else {
+                ret = siteCounts.getOrDefault(userSite, 0);
+            }
+
+            if (startedAfter != null) {
+                for (UserSession s : sessions) {
+                    if (creationTime(s) > startedAfter.getTime()) {
+                        break;
+                    }
+                    if (userSite == null || userSite.equals(s.getUserSite())) {
+                        ret--;
+                    }
+                }
+            }
+            return ret;
+        }
     }
 }
@@ -0,0 +1,391 @@
+package fish.focus.uvms.usm.session.service.impl;
+
+import fish.focus.uvms.usm.service.impl.AbstractJdbcDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * J2EE Singleton, JDBC based implementation of the SessionDao interface
+ * that keeps active sessions in the USM database, so that they are shared
+ * by all the nodes of a cluster and survive restarts.
+ * <p>
+ * Sessions are stored in table SESSION_T (SESSION_ID, USER_NAME, USER_SITE,
+ * CREATION_TIME), indexed on (USER_NAME, CREATION_TIME) and on
+ * CREATION_TIME (see src/main/resources/sql/session_t.sql). Sessions created
+ * subject to a maximum number of sessions lock the USER_T row of the user
+ * first (users authenticated through LDAP have one as well), so that concurrent creations for the same user, on any node, are
+ * counted one after the other. Sessions read by unique identifier are kept in a local
+ * near-cache for 10 seconds, hence a session ended on another node may
+ * still be reported by this node for that long.
+ * <p>
+ * It uses a (container provided) JDBC data-source retrieved from the JNDI
+ * context using JNDI name 'jdbc/USM2'.
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class JdbcSessionDao extends AbstractJdbcDao implements SessionDao {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JdbcSessionDao.class);
+    private static final long NEAR_CACHE_TTL = (10 * 1000);
+
+    private static final String SELECT_SESSION = "select SESSION_ID,USER_NAME,USER_SITE,CREATION_TIME from SESSION_T";
+
+    private final ConcurrentMap<String, TimedKeeper> nearCache = new ConcurrentHashMap<>();
+
+    public JdbcSessionDao() {
+    }
+
+    /**
+     * Retrieves the JDBC data-source from the JNDI context.
+     *
+     * @throws RuntimeException in case the JNDI lookup fails
+     */
+    @PostConstruct
+    public void postConstruct() throws RuntimeException {
+        lookupDatasource();
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public String createSession(UserSession session) {
+        LOGGER.debug("createSession(" + session + ") - (ENTER)");
+
+        String ret = null;
+
+        if (session != null && session.getUserName() != null) {
+            session.setUniqueId(UUID.randomUUID().toString());
+
+            Connection co = null;
+
+            try {
+                co = getConnection();
+                insertSession(co, session);
+
+                ret = session.getUniqueId();
+            } catch (Exception ex) {
+                handleException(ex);
+            } finally {
+                closeConnection(co);
+            }
+        }
+
+        LOGGER.debug("createSession() - (LEAVE): " + ret);
+        return ret;
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public String createSession(UserSession session, int maxOneSite, int maxAnySite, Date startedAfter) {
+        LOGGER.debug("createSession(" + session + ", " + maxOneSite + ", " + maxAnySite + ", " +
+                startedAfter + ") - (ENTER)");
+
+        String ret = null;
+
+        if (session != null && session.getUserName() != null) {
+            session.setUniqueId(UUID.randomUUID().toString());
+
+            Connection co = null;
+            PreparedStatement ps = null;
+            ResultSet rs = null;
+
+            try {
+                co = getConnection();
+
+                // Held until the (new) transaction completes
+                ps = co.prepareStatement("select USER_ID from USER_T where USER_NAME=? for update");
+                ps.setString(1, session.getUserName());
+                rs = ps.executeQuery();
+                closeResultSet(rs);
+                closeStatement(ps);
+
+                ps = co.prepareStatement("select count(*)," +
+                        " coalesce(sum(case when USER_SITE=? then 1 else 0 end), 0)" +
+                        " from SESSION_T where USER_NAME=?" +
+                        (startedAfter != null ? " and CREATION_TIME>?" : ""));
+                ps.setString(1, session.getUserSite());
+                ps.setString(2, session.getUserName());
+                if (startedAfter != null) {
+                    ps.setTimestamp(3, toTimestamp(startedAfter));
+                }
+                rs = ps.executeQuery();
+                rs.next();
+                int cntAnySite = rs.getInt(1);
+                int cntOneSite = session.getUserSite() != null ? rs.getInt(2) : cntAnySite;
+
+                if ((maxOneSite <= 0 || cntOneSite < maxOneSite) &&
+                        (maxAnySite <= 0 || cntAnySite < maxAnySite)) {
+                    insertSession(co, session);
+                    ret = session.getUniqueId();
+                }
+            } catch (Exception ex) {
+                handleException(ex);
+            } finally {
+                closeResultSet(rs);
+                closeStatement(ps);
+                closeConnection(co);
+            }
+        }
+
+        LOGGER.debug("createSession() - (LEAVE): " + ret);
+        return ret;
+    }
+
+    @Override
+    public UserSession readSession(String sessionId) {
+        LOGGER.debug("readSession(" + sessionId + ") - (ENTER)");
+
+        UserSession ret = null;
+
+        if (sessionId != null) {
+            TimedKeeper tk = nearCache.get(sessionId);
+            if (tk != null && tk.timestamp + NEAR_CACHE_TTL > System.currentTimeMillis()) {
+                ret = tk.session;
+            } else {
+                ret = selectSession(sessionId);
+                if (ret != null) {
+                    nearCache.put(sessionId, new TimedKeeper(ret));
+                } else {
+                    nearCache.remove(sessionId);
+                }
+            }
+        }
+
+        LOGGER.debug("readSession() - (LEAVE): " + ret);
+        return ret;
+    }
+
+    @Override
+    public List<UserSession> readSessions(String userName, Date startedAfter) {
+        LOGGER.debug("readSessions(" + userName + ", " + startedAfter + ") - (ENTER)");
+
+        List<UserSession> ret = new ArrayList<>();
+
+        if (userName != null) {
+            Connection co = null;
+            PreparedStatement ps = null;
+            ResultSet rs = null;
+
+            try {
+                co = getConnection();
+                ps = co.prepareStatement(SELECT_SESSION + " where USER_NAME=?" +
+                        (startedAfter != null ? " and CREATION_TIME>?" : "") +
+                        " order by CREATION_TIME");
+                ps.setString(1, userName);
+                if (startedAfter != null) {
+                    ps.setTimestamp(2, toTimestamp(startedAfter));
+                }
+                rs = ps.executeQuery();
+                while (rs.next()) {
+                    ret.add(readSession(rs));
+                }
+            } catch (Exception ex) {
+                handleException(ex);
+            } finally {
+                closeResultSet(rs);
+                closeStatement(ps);
+                closeConnection(co);
+            }
+        }
+
+        LOGGER.debug("readSessions() - (LEAVE)");
+        return ret;
+    }
+
+    @Override
+    public int countSessions(String userName, String userSite, Date startedAfter) {
+        LOGGER.debug("countSessions(" + userName + ", " + userSite + ", " + startedAfter + ") - (ENTER)");
+
+        int ret = 0;
+
+        if (userName != null) {
+            Connection co = null;
+            PreparedStatement ps = null;
+            ResultSet rs = null;
+
+            try {
+                co = getConnection();
+                ps = co.prepareStatement("select count(*) from SESSION_T where USER_NAME=?" +
+                        (userSite != null ? " and USER_SITE=?" : "") +
+                        (startedAfter != null ? " and CREATION_TIME>?" : ""));
+                int idx = 1;
+                ps.setString(idx++, userName);
+                if (userSite != null) {
+                    ps.setString(idx++, userSite);
+                }
+                if (startedAfter != null) {
+                    ps.setTimestamp(idx, toTimestamp(startedAfter));
+                }
+                rs = ps.executeQuery();
+                if (rs.next()) {
+                    ret = rs.getInt(1);
+                }
+            } catch (Exception ex) {
+                handleException(ex);
+            } finally {
+                closeResultSet(rs);
+                closeStatement(ps);
+                closeConnection(co);
+            }
+        }
+
+        LOGGER.debug("countSessions() - (LEAVE): " + ret);
+        return ret;
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void deleteSession(String sessionId) {
+        LOGGER.debug("deleteSession(" + sessionId + ") - (ENTER)");
+
+        if (sessionId != null) {
+            nearCache.remove(sessionId);
+            executeDelete("delete from SESSION_T where SESSION_ID=?", sessionId);
+        }
+
+        LOGGER.debug("deleteSession() - (LEAVE)");
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void deleteSessions() {
+        LOGGER.debug("deleteSessions() - (ENTER)");
+
+        nearCache.clear();
+        executeDelete("delete from SESSION_T", null);
+
+        LOGGER.debug("deleteSessions() - (LEAVE)");
+    }
+
+    /**
+     * Deletes, in a single statement, all user sessions started before the
+     * provided date.
+     *
+     * @param startedBefore the maximum session start date
+     * @throws RuntimeException in case an internal error prevented processing
+     *                          the request
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void deleteSessionsStartedBefore(Date startedBefore) {
+        LOGGER.debug("deleteSessionsStartedBefore(" + startedBefore + ") - (ENTER)");
+
+        nearCache.values().removeIf(tk -> tk.session.getCreationTime() == null ||
+                tk.session.getCreationTime().before(startedBefore));
+        executeDelete("delete from SESSION_T where CREATION_TIME<?", toTimestamp(startedBefore));
+
+        LOGGER.debug("deleteSessionsStartedBefore() - (LEAVE)");
+    }
+
+    private void insertSession(Connection co, UserSession session) throws SQLException {
+        PreparedStatement ps = null;
+
+        try {
+            ps = co.prepareStatement("insert into SESSION_T" +
+                    " (SESSION_ID,USER_NAME,USER_SITE,CREATION_TIME)" +
+                    " values (?,?,?,?)");
+            ps.setString(1, session.getUniqueId());
+            ps.setString(2, session.getUserName());
+            ps.setString(3, session.getUserSite());
+            ps.setTimestamp(4, toTimestamp(session.getCreationTime()));
+            ps.executeUpdate();
+
+            nearCache.put(session.getUniqueId(), new TimedKeeper(session));
+        } finally {
+            closeStatement(ps);
+        }
+    }
+
+    private UserSession selectSession(String sessionId) {
+        UserSession ret = null;
+
+        Connection co = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+
+        try {
+            co = getConnection();
+            ps = co.prepareStatement(SELECT_SESSION + " where SESSION_ID=?");
+            ps.setString(1, sessionId);
+            rs = ps.executeQuery();
+            if (rs.next()) {
+                ret = readSession(rs);
+            }
+        } catch (Exception ex) {
+            handleException(ex);
+        } finally {
+            closeResultSet(rs);
+            closeStatement(ps);
+            closeConnection(co);
+        }
+
+        return ret;
+    }
+
+    private void executeDelete(String sql, Object parameter) {
+        Connection co = null;
+        PreparedStatement ps = null;
+
+        try {
+            co = getConnection();
+            ps = co.prepareStatement(sql);
+            if (parameter != null) {
+                ps.setObject(1, parameter);
+            }
+            int cnt = ps.executeUpdate();
+            LOGGER.debug("Row count: " + cnt);
+        } catch (Exception ex) {
+            handleException(ex);
+        } finally {
+            closeStatement(ps);
+            closeConnection(co);
+        }
+    }
+
+    private static UserSession readSession(ResultSet rs) throws SQLException {
+        UserSession ret = new UserSession();
+
+        ret.setUniqueId(rs.getString("SESSION_ID"));
+        ret.setUserName(rs.getString("USER_NAME"));
+        ret.setUserSite(rs.getString("USER_SITE"));
+        Timestamp creationTime = rs.getTimestamp("CREATION_TIME");
+        if (creationTime != null) {
+            ret.setCreationTime(new Date(creationTime.getTime()));
+        }
+
+        return ret;
+    }
+
+    private static Timestamp toTimestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+
+    private static class TimedKeeper {
+        private final long timestamp;
+        private final UserSession session;
+
+        private TimedKeeper(UserSession session) {
+            this.session = session;
+            this.timestamp = System.currentTimeMillis();
+        }
+    }
+
+}
@@ -18,6 +18,26 @@ public interface SessionDao {
      */
     public String createSession(UserSession session) throws RuntimeException;
 
+    /**
+     * Creates (or stores) the given user session, unless the user already
+     * has the maximum number of sessions started after the provided date,
+     * from the same site or from any site. Counting the existing sessions and
+     * creating the new one is atomic with respect to other sessions of the
+     * same user being created.
+     *
+     * @param session      the user session to be created
+     * @param maxOneSite   the maximum number of sessions from the same site,
+     *                     or 0 for no maximum
+     * @param maxAnySite   the maximum number of sessions from any site,
+     *                     or 0 for no maximum
+     * @param startedAfter the minimum start date of the sessions counted
+     * @return the session unique identifier, or null if a maximum was reached
+     * @throws RuntimeException in case an internal error prevented processing
+     *                          the request
+     */
+    public String createSession(UserSession session, int maxOneSite, int maxAnySite, Date startedAfter)
+            throws RuntimeException;
+
     /**
      * Reads the user session with the  provided unique identifier.
      *
@@ -41,6 +61,19 @@ public interface SessionDao {
      */
     public List<UserSession> readSessions(String userName, Date startedAfter) throws RuntimeException;
 
+    /**
+     * Counts the existing sessions for the user with the provided name,
+     * started from the provided site after the provided date.
+     *
+     * @param userName     the user name
+     * @param userSite     the user site, or null to count sessions from any site
+     * @param startedAfter the minimum session start date.
+     * @return the number of user sessions matching the provided criteria
+     * @throws RuntimeException in case an internal error prevented processing
+     *                          the request
+     */
+    public int countSessions(String userName, String userSite, Date startedAfter) throws RuntimeException;
+
     /**
      * Deletes the user session with the provided unique identifier.
      *
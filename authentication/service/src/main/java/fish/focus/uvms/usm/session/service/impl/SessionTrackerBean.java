@@ -13,7 +13,6 @@ import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 import java.util.Date;
-import java.util.List;
 import java.util.Properties;
 
 /**
@@ -44,14 +43,7 @@ public class SessionTrackerBean implements SessionTracker {
         String ret = null;
         validator.assertValid(sessionInfo);
         try {
-            checkMaxSessionPolicy(sessionInfo);
-
-            UserSession session = new UserSession();
-            session.setCreationTime(new Date());
-            session.setUserName(sessionInfo.getUserName());
-            session.setUserSite(sessionInfo.getUserSite());
-
-            ret = sessionDao.createSession(session);
+            ret = createSession(sessionInfo);
 
             LOGGER.debug("startSession() - (LEAVE): " + ret);
         } catch (IllegalStateException ex) {
@@ -89,9 +81,15 @@ public class SessionTrackerBean implements SessionTracker {
         LOGGER.debug("endSession() - (LEAVE)");
     }
 
-    private void checkMaxSessionPolicy(SessionInfo sessionInfo) throws NumberFormatException {
-        LOGGER.debug("checkMaxSessionPolicy(" + sessionInfo + ") - (ENTER)");
-        boolean isAllowed = true;
+    /**
+     * Creates a session, unless the maximum number of sessions of the user
+     * is reached. Counting the sessions and creating the new one is left to
+     * the session store, so that concurrent session starts of the same user
+     * cannot exceed the maximum.
+     */
+    private String createSession(SessionInfo sessionInfo) throws NumberFormatException {
+        LOGGER.debug("createSession(" + sessionInfo + ") - (ENTER)");
+        String ret;
 
         Properties policy = policyProvider.getProperties(POLICY_SUBJECT);
         int maxOneSite = policyProvider.getIntProperty(policy,
@@ -101,39 +99,30 @@ public class SessionTrackerBean implements SessionTracker {
         int ttlSession = policyProvider.getIntProperty(policy,
                 "account.maxSessionDuration", 0);
 
+        UserSession session = new UserSession();
+        session.setCreationTime(new Date());
+        session.setUserName(sessionInfo.getUserName());
+        session.setUserSite(sessionInfo.getUserSite());
+
         if (maxOneSite > 0 || maxAnySite > 0) {
-            int cntOneSite = 0;
-            int cntAnySite = 0;
             Date earliestStartTime = new Date(System.currentTimeMillis()
                     - (ttlSession * ONE_SECOND));
 
-            List<UserSession> lst = sessionDao.readSessions(
-                    sessionInfo.getUserName(), earliestStartTime);
-            for (UserSession session : lst) {
-                if (sessionInfo.getUserSite().equals(session.getUserSite())) {
-                    cntOneSite += 1;
-                }
-                cntAnySite += 1;
-            }
-
-            if ((maxOneSite > 0 && cntOneSite >= maxOneSite)) {
-                isAllowed = false;
+            ret = sessionDao.createSession(session, maxOneSite, maxAnySite,
+                    earliestStartTime);
+            if (ret == null) {
                 LOGGER.warn("User " + sessionInfo.getUserName()
                         + " exceeded the maximum number (" + maxOneSite
-                        + ") of user sessions for single site");
+                        + ") of user sessions for single site or ("
+                        + maxAnySite + ") for any site");
+                throw new IllegalStateException(
+                        "Maximum number of sessions exceeded");
             }
-            if ((maxAnySite > 0 && cntAnySite >= maxAnySite)) {
-                isAllowed = false;
-                LOGGER.warn("User " + sessionInfo.getUserName()
-                        + " exceeded the maximum number (" + maxAnySite
-                        + ") of user sessions for any site");
-            }
-        }
-        if (!isAllowed) {
-            throw new IllegalStateException(
-                    "Maximum number of sessions exceeded");
+        } else {
+            ret = sessionDao.createSession(session);
         }
 
-        LOGGER.debug("checkMaxSessionPolicy() - (LEAVE)");
+        LOGGER.debug("createSession() - (LEAVE): " + ret);
+        return ret;
     }
 }
@@ -0,0 +1,8 @@
+-- Widens the password columns of the USM database schema to hold PBKDF2
+-- hashes ('$pbkdf2-sha256$<iterations>$<salt>$<hash>', about 90 characters),
+-- as computed by PasswordHashService. PasswordHashService refuses to start
+-- when the columns are too small.
+
+alter table USER_T alter column PASSWORD type varchar(128);
+
+alter table PASSWORD_HIST_T alter column PASSWORD type varchar(128);
@@ -0,0 +1,14 @@
+-- Active user sessions, kept by JdbcSessionDao when the 'account.sessionStore'
+-- policy property is set to 'database'. To be applied to the USM database
+-- schema, next to USER_T.
+
+create table SESSION_T (
+  SESSION_ID varchar(36) not null primary key,
+  USER_NAME varchar(255) not null,
+  USER_SITE varchar(255),
+  CREATION_TIME timestamp not null
+);
+
+create index SESSION_USER_I on SESSION_T (USER_NAME, CREATION_TIME);
+
+create index SESSION_CREATION_I on SESSION_T (CREATION_TIME);
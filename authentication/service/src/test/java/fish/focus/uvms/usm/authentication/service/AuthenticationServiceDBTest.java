@@ -7,6 +7,7 @@ import fish.focus.uvms.usm.authentication.service.AuthenticationService;
 import fish.focus.uvms.usm.authentication.service.impl.AuthenticationDao;
 import fish.focus.uvms.usm.authentication.service.impl.AuthenticationServiceBean;
 import fish.focus.uvms.usm.authentication.service.impl.LDAP;
+import fish.focus.uvms.usm.authentication.service.impl.LoginThrottle;
 import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
 import fish.focus.uvms.usm.service.impl.RequestValidator;
 import fish.focus.uvms.usm.session.domain.SessionInfo;
@@ -40,6 +41,9 @@ public class AuthenticationServiceDBTest extends AbstractAuthenticationServiceTe
     @EJB
     private JdbcTestFixture testFixture;
 
+    @EJB
+    private LoginThrottle loginThrottle;
+
     @Before
     public void before() {
         Properties props = policyProvider.getProperties(POLICY_SUBJECT);
@@ -55,6 +59,7 @@ public class AuthenticationServiceDBTest extends AbstractAuthenticationServiceTe
                 " LOCKOUT_REASON=null, " +
                 " LOCKOUT_TO=null" +
                 " where user_name=?", "lock_me_out");
+        loginThrottle.clear("lock_me_out");
         testFixture.update("update user_t set" +
                         " PASSWORD_EXPIRY=?" +
                         " where user_name='change_me'",
@@ -167,4 +172,119 @@ public class AuthenticationServiceDBTest extends AbstractAuthenticationServiceTe
                 AuthenticationResponse.ACCOUNT_LOCKED, resp.getStatusCode());
     }
 
+    @Test
+    public void testAuthenticateUserThrottledClientAddress() {
+        // Set-up
+        Properties props = policyProvider.getProperties(POLICY_SUBJECT);
+        String threshold = props.getProperty("account.lockoutFreshold");
+        String duration = props.getProperty("account.lockoutDuration");
+        String addressThreshold = props.getProperty("account.addressLockoutFreshold");
+        props.setProperty("account.lockoutFreshold", "3");
+        props.setProperty("account.lockoutDuration", "1");
+        props.setProperty("account.addressLockoutFreshold", "30");
+        policyProvider.setProperties(POLICY_SUBJECT, props);
+
+        AuthenticationRequest request = new AuthenticationRequest();
+        request.setPassword("password");
+        try {
+            // Execute
+            for (int i = 0; i < 30; i++) {
+                request.setUserName("no_such_user_" + i);
+                AuthenticationResponse response = getTestSubject().authenticateUser(request, "192.0.2.1");
+                assertEquals("Unexpected StatusCode", AuthenticationResponse.INVALID_CREDENTIALS,
+                        response.getStatusCode());
+            }
+
+            // Verify
+            request.setUserName("anonymous");
+            AuthenticationResponse response = getTestSubject().authenticateUser(request, "192.0.2.1");
+            assertFalse("Unexpected isAuthenticated value", response.isAuthenticated());
+            assertEquals("Unexpected StatusCode", AuthenticationResponse.ACCOUNT_LOCKED, response.getStatusCode());
+
+            response = getTestSubject().authenticateUser(request, "192.0.2.2");
+            assertTrue("Unexpected isAuthenticated value", response.isAuthenticated());
+        } finally {
+            restoreProperty(props, "account.lockoutFreshold", threshold);
+            restoreProperty(props, "account.lockoutDuration", duration);
+            restoreProperty(props, "account.addressLockoutFreshold", addressThreshold);
+            policyProvider.setProperties(POLICY_SUBJECT, props);
+        }
+    }
+
+    @Test
+    public void testAuthenticateUserClientAddressNotThrottledByDefault() {
+        // Set-up
+        Properties props = policyProvider.getProperties(POLICY_SUBJECT);
+        String threshold = props.getProperty("account.lockoutFreshold");
+        String duration = props.getProperty("account.lockoutDuration");
+        String addressThreshold = props.getProperty("account.addressLockoutFreshold");
+        props.setProperty("account.lockoutFreshold", "3");
+        props.setProperty("account.lockoutDuration", "1");
+        props.remove("account.addressLockoutFreshold");
+        policyProvider.setProperties(POLICY_SUBJECT, props);
+
+        AuthenticationRequest request = new AuthenticationRequest();
+        request.setPassword("password");
+        try {
+            // Execute
+            for (int i = 0; i < 50; i++) {
+                request.setUserName("no_such_user_" + i);
+                getTestSubject().authenticateUser(request, "192.0.2.3");
+            }
+
+            // Verify
+            request.setUserName("anonymous");
+            AuthenticationResponse response = getTestSubject().authenticateUser(request, "192.0.2.3");
+            assertTrue("Unexpected isAuthenticated value", response.isAuthenticated());
+        } finally {
+            restoreProperty(props, "account.lockoutFreshold", threshold);
+            restoreProperty(props, "account.lockoutDuration", duration);
+            restoreProperty(props, "account.addressLockoutFreshold", addressThreshold);
+            policyProvider.setProperties(POLICY_SUBJECT, props);
+        }
+    }
+
+    @Test
+    public void testAuthenticateUserThrottleCleared() {
+        // Set-up
+        Properties props = policyProvider.getProperties(POLICY_SUBJECT);
+        String threshold = props.getProperty("account.lockoutFreshold");
+        String duration = props.getProperty("account.lockoutDuration");
+        props.setProperty("account.lockoutFreshold", "3");
+        props.setProperty("account.lockoutDuration", "1");
+        policyProvider.setProperties(POLICY_SUBJECT, props);
+
+        AuthenticationRequest request = new AuthenticationRequest();
+        request.setUserName("lock_me_out");
+        request.setPassword("wrong password");
+        try {
+            for (int i = 0; i < 3; i++) {
+                getTestSubject().authenticateUser(request);
+            }
+            AuthenticationResponse response = getTestSubject().authenticateUser(request);
+            assertEquals("Unexpected StatusCode", AuthenticationResponse.ACCOUNT_LOCKED, response.getStatusCode());
+
+            // Execute, as when unlocked by an administrator
+            loginThrottle.clear("lock_me_out");
+            testFixture.update("update user_t set STATUS='E', LOGON_FAILURE=0, LOCKOUT_REASON=null, LOCKOUT_TO=null" +
+                    " where user_name=?", "lock_me_out");
+
+            // Verify
+            response = getTestSubject().authenticateUser(request);
+            assertEquals("Unexpected StatusCode", AuthenticationResponse.INVALID_CREDENTIALS,
+                    response.getStatusCode());
+        } finally {
+            restoreProperty(props, "account.lockoutFreshold", threshold);
+            restoreProperty(props, "account.lockoutDuration", duration);
+            policyProvider.setProperties(POLICY_SUBJECT, props);
+        }
+    }
+
+    private static void restoreProperty(Properties props, String name, String value) {
+        if (value != null) {
+            props.setProperty(name, value);
+        } else {
+            props.remove(name);
+        }
+    }
 }
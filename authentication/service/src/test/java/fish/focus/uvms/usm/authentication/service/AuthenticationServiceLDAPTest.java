@@ -7,6 +7,7 @@ import fish.focus.uvms.usm.authentication.service.AuthenticationService;
 import fish.focus.uvms.usm.authentication.service.impl.AuthenticationDao;
 import fish.focus.uvms.usm.authentication.service.impl.AuthenticationServiceBean;
 import fish.focus.uvms.usm.authentication.service.impl.LDAP;
+import fish.focus.uvms.usm.authentication.service.impl.PersonSynchronizer;
 import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
 import fish.focus.uvms.usm.service.impl.RequestValidator;
 import fish.focus.uvms.usm.session.domain.SessionInfo;
@@ -45,6 +46,9 @@ public class AuthenticationServiceLDAPTest extends AbstractAuthenticationService
     @EJB
     private PolicyProvider policyProvider;
 
+    @EJB
+    private PersonSynchronizer personSynchronizer;
+
     @Before
     public void before() throws IOException {
         InputStream is = getClass().getResourceAsStream("/ApacheDS.properties");
@@ -297,6 +301,8 @@ public class AuthenticationServiceLDAPTest extends AbstractAuthenticationService
         verifyLDAPAttributes(response);
 
         // Verify user's person's attributes in DB are in sync with LDAP
+        // (once the queued synchronisation has been flushed)
+        personSynchronizer.flush();
         params[0] = "ldap";
         params[1] = "Enabled";
         verifyPerson(params, response);
@@ -7,8 +7,13 @@ import javax.annotation.PostConstruct;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Scanner;
 
 @Stateless
 @TransactionAttribute(TransactionAttributeType.SUPPORTS)
@@ -156,6 +161,98 @@ public class JdbcTestFixture extends AbstractJdbcDao {
         LOGGER.debug("delete() - (LEAVE)");
     }
 
+    /**
+     * Checks whether the given table exists, whatever the case the database
+     * keeps table names in.
+     *
+     * @param tableName the table name
+     * @return <i>true</i> if the table exists, <i>false</i> otherwise
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean tableExists(String tableName) {
+        LOGGER.debug("tableExists(" + tableName + ") - (ENTER)");
+
+        boolean ret = false;
+        Connection co = null;
+
+        try {
+            co = getConnection();
+            DatabaseMetaData md = co.getMetaData();
+            for (String name : new String[]{tableName.toUpperCase(), tableName.toLowerCase()}) {
+                try (ResultSet rs = md.getTables(null, null, name, new String[]{"TABLE"})) {
+                    ret |= rs.next();
+                }
+            }
+        } catch (Exception ex) {
+            handleException(ex);
+        } finally {
+            closeConnection(co);
+        }
+
+        LOGGER.debug("tableExists() - (LEAVE): " + ret);
+        return ret;
+    }
+
+    /**
+     * Executes the given (DDL) statements, in a single transaction.
+     *
+     * @param statements the statements to be executed
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void execute(List<String> statements) {
+        LOGGER.debug("execute(" + statements.size() + ") - (ENTER)");
+
+        Connection co = null;
+        Statement st = null;
+
+        try {
+            co = getConnection();
+            st = co.createStatement();
+            for (String sql : statements) {
+                st.execute(sql);
+            }
+        } catch (Exception ex) {
+            handleException(ex);
+        } finally {
+            if (st != null) {
+                try {
+                    st.close();
+                } catch (SQLException ex) {
+                    LOGGER.debug("Failed to close statement", ex);
+                }
+            }
+            closeConnection(co);
+        }
+
+        LOGGER.debug("execute() - (LEAVE)");
+    }
+
+    /**
+     * Reads the statements of an SQL script from the class-path, skipping
+     * comment lines.
+     *
+     * @param resource the class-path resource holding the script
+     * @return the statements, without their terminating semicolon
+     */
+    public static List<String> readScript(String resource) {
+        List<String> ret = new ArrayList<>();
+        InputStream is = JdbcTestFixture.class.getResourceAsStream(resource);
+        try (Scanner scanner = new Scanner(is, StandardCharsets.UTF_8.name()).useDelimiter(";")) {
+            while (scanner.hasNext()) {
+                StringBuilder sql = new StringBuilder();
+                for (String line : scanner.next().split("\n")) {
+                    if (!line.trim().startsWith("--")) {
+                        sql.append(line).append('\n');
+                    }
+                }
+                if (!sql.toString().trim().isEmpty()) {
+                    ret.add(sql.toString());
+                }
+            }
+        }
+        return ret;
+    }
+
     /**
      * Binds a parameter to a prepared statement, using the pertinent
      * setter depending on the parameter type.
@@ -0,0 +1,112 @@
+package fish.focus.uvms.usm.authentication.service;
+
+import fish.focus.uvms.usm.authentication.domain.AuthenticationRequest;
+import fish.focus.uvms.usm.authentication.domain.ChallengeResponse;
+import fish.focus.uvms.usm.authentication.service.impl.AuthenticationServiceBean;
+import fish.focus.uvms.usm.authentication.service.impl.LastLogonRecorder;
+import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
+import fish.focus.uvms.usm.service.impl.RequestValidator;
+import fish.focus.uvms.usm.session.domain.SessionInfo;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.ejb.EJB;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit-test for the LastLogonRecorder, against the USM database schema.
+ */
+@RunWith(Arquillian.class)
+public class LastLogonRecorderDBTest {
+    private static final long ONE_DAY = 1000 * 60 * 60 * 24;
+    private static final String[] USER_NAMES = {"change_me", "lock_me_out"};
+
+    @EJB
+    private LastLogonRecorder testSubject;
+
+    @EJB
+    private JdbcTestFixture testFixture;
+
+    @Before
+    public void before() {
+        // Write back activities recorded by other tests
+        testSubject.flush();
+        for (String userName : USER_NAMES) {
+            testFixture.update("update user_t set LAST_LOGON=null where user_name=?", userName);
+        }
+    }
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        JavaArchive jar = ShrinkWrap.create(JavaArchive.class,
+                "LastLogonRecorderDBTest.jar")
+                .addPackage(AuthenticationService.class.getPackage())
+                .addPackage(AuthenticationServiceBean.class.getPackage())
+                .addPackage(RequestValidator.class.getPackage())
+                .addPackage(ChallengeResponse.class.getPackage())
+                .addPackage(SessionInfo.class.getPackage())
+                .addPackage(PolicyProvider.class.getPackage())
+                .addPackage(AuthenticationRequest.class.getPackage())
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+        return jar;
+    }
+
+    @Test
+    public void testFlushWritesBatch() {
+        // Setup
+        Date before = new Date(System.currentTimeMillis() - 1000);
+
+        // Execute
+        for (String userName : USER_NAMES) {
+            testSubject.recordActivity(userName);
+            testSubject.recordActivity(userName);
+        }
+        testSubject.flush();
+
+        // Verify
+        for (String userName : USER_NAMES) {
+            assertEquals("Unexpected last logon of " + userName, "1",
+                    testFixture.select("select count(*) from user_t where user_name=? and LAST_LOGON>=?",
+                            new Object[]{userName, before}));
+        }
+    }
+
+    @Test
+    public void testFlushKeepsMoreRecentLastLogon() {
+        // Setup
+        Date later = new Date(System.currentTimeMillis() + ONE_DAY);
+        testSubject.recordActivity(USER_NAMES[0]);
+        // Logon recorded meanwhile, e.g. by another node
+        testFixture.update("update user_t set LAST_LOGON=? where user_name=?",
+                new Object[]{later, USER_NAMES[0]});
+
+        // Execute
+        testSubject.flush();
+
+        // Verify
+        assertEquals("Unexpected overwritten last logon", "1",
+                testFixture.select("select count(*) from user_t where user_name=? and LAST_LOGON=?",
+                        new Object[]{USER_NAMES[0], later}));
+    }
+
+    @Test
+    public void testFlushWithoutActivity() {
+        // Execute
+        testSubject.flush();
+
+        // Verify
+        for (String userName : USER_NAMES) {
+            assertEquals("Unexpected last logon of " + userName, "0",
+                    testFixture.select("select count(*) from user_t where user_name=? and LAST_LOGON is not null",
+                            new Object[]{userName}));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package fish.focus.uvms.usm.authentication.service;
+
+import fish.focus.uvms.usm.authentication.service.impl.Md5PasswordHasher;
+import fish.focus.uvms.usm.authentication.service.impl.Pbkdf2PasswordHasher;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit-test for the password hashers
+ */
+public class PasswordHasherTest {
+    private static final String PASSWORD = "password";
+    private static final String PASSWORD_MD5 = "5f4dcc3b5aa765d61d8327deb882cf99";
+
+    @Test
+    public void testLegacyHash() {
+        Md5PasswordHasher hasher = new Md5PasswordHasher();
+
+        assertTrue(hasher.accepts(PASSWORD_MD5));
+        assertEquals(PASSWORD_MD5, hasher.hash(PASSWORD));
+        assertTrue(hasher.verify(PASSWORD, PASSWORD_MD5));
+        assertFalse(hasher.verify("Password", PASSWORD_MD5));
+        assertTrue(hasher.needsRehash(PASSWORD_MD5));
+    }
+
+    @Test
+    public void testHash() {
+        Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(1000);
+
+        String hash = hasher.hash(PASSWORD);
+
+        assertTrue(hasher.accepts(hash));
+        assertFalse(new Md5PasswordHasher().accepts(hash));
+        assertFalse(hasher.accepts(PASSWORD_MD5));
+        assertNotEquals("Unexpected unsalted hash", hash, hasher.hash(PASSWORD));
+        assertTrue(hasher.verify(PASSWORD, hash));
+        assertFalse(hasher.verify("Password", hash));
+        assertFalse(hasher.needsRehash(hash));
+    }
+
+    @Test
+    public void testRehash() {
+        String hash = new Pbkdf2PasswordHasher(1000).hash(PASSWORD);
+        Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(2000);
+
+        assertTrue(hasher.verify(PASSWORD, hash));
+        assertTrue(hasher.needsRehash(hash));
+    }
+
+    @Test
+    public void testMalformedHash() {
+        Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(1000);
+
+        assertFalse(hasher.verify(PASSWORD, "$pbkdf2-sha256$1000$"));
+        assertFalse(hasher.verify(PASSWORD, "$pbkdf2-sha256$x$AAAA$AAAA"));
+        assertTrue(hasher.needsRehash("$pbkdf2-sha256$x$AAAA$AAAA"));
+    }
+
+    @Test
+    public void testHashLength() {
+        for (int iterations : new int[]{1000, Pbkdf2PasswordHasher.DEFAULT_ITERATIONS}) {
+            Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(iterations);
+
+            assertEquals(hasher.hash(PASSWORD).length(), hasher.getHashLength());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package fish.focus.uvms.usm.authentication.service;
+
+import fish.focus.uvms.usm.authentication.domain.AuthenticationRequest;
+import fish.focus.uvms.usm.authentication.domain.ChallengeResponse;
+import fish.focus.uvms.usm.authentication.service.impl.AuthenticationServiceBean;
+import fish.focus.uvms.usm.authentication.service.impl.PasswordStatusCache;
+import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
+import fish.focus.uvms.usm.service.impl.RequestValidator;
+import fish.focus.uvms.usm.session.domain.SessionInfo;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.ejb.EJB;
+import javax.inject.Inject;
+import javax.transaction.UserTransaction;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit-test for the PasswordStatusCache, against the USM database schema.
+ */
+@RunWith(Arquillian.class)
+public class PasswordStatusCacheDBTest {
+    private static final long ONE_DAY = 1000 * 60 * 60 * 24;
+    private static final String USER_NAME = "change_me";
+
+    @EJB
+    private PasswordStatusCache testSubject;
+
+    @EJB
+    private JdbcTestFixture testFixture;
+
+    @Inject
+    private UserTransaction utx;
+
+    @After
+    public void tearDown() {
+        setPasswordExpiry(new Date(System.currentTimeMillis() + ONE_DAY));
+        testSubject.evict(USER_NAME);
+    }
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        JavaArchive jar = ShrinkWrap.create(JavaArchive.class,
+                "PasswordStatusCacheDBTest.jar")
+                .addPackage(AuthenticationService.class.getPackage())
+                .addPackage(AuthenticationServiceBean.class.getPackage())
+                .addPackage(RequestValidator.class.getPackage())
+                .addPackage(ChallengeResponse.class.getPackage())
+                .addPackage(SessionInfo.class.getPackage())
+                .addPackage(PolicyProvider.class.getPackage())
+                .addPackage(AuthenticationRequest.class.getPackage())
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+        return jar;
+    }
+
+    @Test
+    public void testPasswordExpiryCachedUntilEvicted() {
+        // Setup
+        Date initial = new Date(System.currentTimeMillis() + ONE_DAY);
+        Date changed = new Date(initial.getTime() + ONE_DAY);
+        setPasswordExpiry(initial);
+        testSubject.evict(USER_NAME);
+
+        // Execute & verify
+        assertEquals("Unexpected initial expiry", initial.getTime(),
+                testSubject.getPasswordExpiry(USER_NAME).getTime());
+
+        setPasswordExpiry(changed);
+        assertEquals("Unexpected expiry before eviction", initial.getTime(),
+                testSubject.getPasswordExpiry(USER_NAME).getTime());
+
+        testSubject.evict(USER_NAME);
+        assertEquals("Unexpected expiry after eviction", changed.getTime(),
+                testSubject.getPasswordExpiry(USER_NAME).getTime());
+    }
+
+    @Test
+    public void testEvictedOnceTransactionCompletes() throws Exception {
+        // Setup
+        Date initial = new Date(System.currentTimeMillis() + ONE_DAY);
+        Date changed = new Date(initial.getTime() + ONE_DAY);
+        setPasswordExpiry(initial);
+        testSubject.evict(USER_NAME);
+        testSubject.getPasswordExpiry(USER_NAME);
+
+        // Execute
+        utx.begin();
+        try {
+            setPasswordExpiry(changed);
+            testSubject.evict(USER_NAME);
+
+            // Verify, a concurrent request before the commit
+            assertEquals("Unexpected expiry before commit", initial.getTime(),
+                    testSubject.getPasswordExpiry(USER_NAME).getTime());
+        } finally {
+            utx.commit();
+        }
+
+        // Verify
+        assertEquals("Unexpected expiry after commit", changed.getTime(),
+                testSubject.getPasswordExpiry(USER_NAME).getTime());
+    }
+
+    @Test
+    public void testEvictUnknownUser() {
+        // Execute
+        testSubject.evict(null);
+        testSubject.evict("no_such_user");
+
+        // Verify
+        assertNotNull("Unexpected null expiry", testSubject.getPasswordExpiry(USER_NAME));
+    }
+
+    private void setPasswordExpiry(Date expiry) {
+        testFixture.update("update user_t set PASSWORD_EXPIRY=? where user_name=?",
+                new Object[]{expiry, USER_NAME});
+    }
+}
@@ -0,0 +1,226 @@
+package fish.focus.uvms.usm.service;
+
+import fish.focus.uvms.usm.service.impl.UnitOfWork;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the sharing of connections, and caching of prepared
+ * statements, by the UnitOfWork, against an embedded (H2) database.
+ */
+public class UnitOfWorkTest {
+    private static final String INSERT = "insert into ITEM_T (ITEM_ID) values (?)";
+    private static final String COUNT = "select count(*) from ITEM_T";
+
+    private JdbcConnectionPool pool;
+    private DataSource dataSource;
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:unitofwork;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection co = pool.getConnection();
+             Statement st = co.createStatement()) {
+            st.execute("create table ITEM_T (ITEM_ID int not null primary key)");
+        }
+        dataSource = counting(pool);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        // Never leave a (nested) unit of work of a failed test on the thread
+        UnitOfWork.end();
+        UnitOfWork.end();
+        try (Connection co = pool.getConnection();
+             Statement st = co.createStatement()) {
+            st.execute("drop all objects");
+        }
+        pool.dispose();
+    }
+
+    @Test
+    public void testNotSharedOutsideUnitOfWork() throws Exception {
+        // Execute
+        Connection first = UnitOfWork.getConnection(dataSource);
+        Connection second = UnitOfWork.getConnection(dataSource);
+        first.close();
+        second.close();
+
+        // Verify
+        assertNotSame("Unexpected shared connection", first, second);
+        assertEquals("Unexpected opened count", 2, opened.get());
+        assertEquals("Unexpected closed count", 2, closed.get());
+    }
+
+    @Test
+    public void testSharedConnectionIgnoresClose() throws Exception {
+        // Set-up
+        UnitOfWork.begin();
+
+        // Execute
+        Connection first = UnitOfWork.getConnection(dataSource);
+        first.close();
+        Connection second = UnitOfWork.getConnection(dataSource);
+
+        // Verify
+        assertSame("Unexpected connection", first, second);
+        assertFalse("Unexpected closed connection", first.isClosed());
+        assertEquals("Unexpected count", 0, count(second));
+        assertEquals("Unexpected closed count", 0, closed.get());
+
+        UnitOfWork.Statistics statistics = UnitOfWork.end();
+        assertNotNull("Unexpected null statistics", statistics);
+        assertEquals("Unexpected connection count", 1, statistics.getConnections());
+        assertEquals("Unexpected opened count", 1, opened.get());
+        assertEquals("Unexpected closed count", 1, closed.get());
+    }
+
+    @Test
+    public void testCachedStatementReusedOnlyOnceClosed() throws Exception {
+        // Set-up
+        UnitOfWork.begin();
+        Connection co = UnitOfWork.getConnection(dataSource);
+
+        // Execute
+        PreparedStatement first = co.prepareStatement(INSERT);
+        PreparedStatement second = co.prepareStatement(INSERT);
+        PreparedStatement firstTarget = first.unwrap(PreparedStatement.class);
+        PreparedStatement secondTarget = second.unwrap(PreparedStatement.class);
+        first.close();
+        PreparedStatement third = co.prepareStatement(INSERT);
+
+        // Verify
+        assertNotSame("Unexpected statement in use re-used", firstTarget, secondTarget);
+        assertSame("Unexpected closed statement not re-used", firstTarget, third.unwrap(PreparedStatement.class));
+        assertFalse("Unexpected closed statement", third.isClosed());
+        assertFalse("Unexpected closed target statement", firstTarget.isClosed());
+
+        second.close();
+        third.close();
+        UnitOfWork.Statistics statistics = UnitOfWork.end();
+        assertEquals("Unexpected prepared count", 2, statistics.getPrepared());
+        assertTrue("Unexpected open target statement", firstTarget.isClosed());
+        assertTrue("Unexpected open target statement", secondTarget.isClosed());
+    }
+
+    @Test
+    public void testParametersAndBatchClearedOnReuse() throws Exception {
+        // Set-up
+        UnitOfWork.begin();
+        Connection co = UnitOfWork.getConnection(dataSource);
+        PreparedStatement ps = co.prepareStatement(INSERT);
+        ps.setInt(1, 1);
+        ps.addBatch();
+        ps.setInt(1, 2);
+        ps.close();
+
+        // Execute
+        ps = co.prepareStatement(INSERT);
+        int[] cnt = ps.executeBatch();
+
+        // Verify
+        assertEquals("Unexpected batch size", 0, cnt.length);
+        try {
+            ps.executeUpdate();
+            fail("Failed to trigger SQLException for unset parameter");
+        } catch (SQLException exc) {
+            System.out.println("Triggered expected exception: " + exc.getMessage());
+        }
+        ps.close();
+        assertEquals("Unexpected count", 0, count(co));
+
+        UnitOfWork.Statistics statistics = UnitOfWork.end();
+        assertEquals("Unexpected prepared count", 2, statistics.getPrepared());
+        assertEquals("Unexpected executed count", 3, statistics.getExecuted());
+    }
+
+    @Test
+    public void testNonCacheableStatementClosed() throws Exception {
+        // Set-up
+        UnitOfWork.begin();
+        Connection co = UnitOfWork.getConnection(dataSource);
+
+        // Execute
+        PreparedStatement first = co.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS);
+        PreparedStatement firstTarget = first.unwrap(PreparedStatement.class);
+        first.close();
+        PreparedStatement second = co.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS);
+
+        // Verify
+        assertTrue("Unexpected open target statement", firstTarget.isClosed());
+        assertNotSame("Unexpected re-used statement", firstTarget, second.unwrap(PreparedStatement.class));
+
+        second.close();
+        UnitOfWork.end();
+    }
+
+    @Test
+    public void testNestedUnitOfWorkClosesOnce() throws Exception {
+        // Set-up
+        UnitOfWork.begin();
+        Connection outer = UnitOfWork.getConnection(dataSource);
+
+        // Execute
+        UnitOfWork.begin();
+        Connection inner = UnitOfWork.getConnection(dataSource);
+        UnitOfWork.Statistics innerStatistics = UnitOfWork.end();
+
+        // Verify
+        assertSame("Unexpected connection", outer, inner);
+        assertNull("Unexpected nested statistics", innerStatistics);
+        assertEquals("Unexpected closed count", 0, closed.get());
+        assertEquals("Unexpected count", 0, count(outer));
+
+        UnitOfWork.Statistics statistics = UnitOfWork.end();
+        assertNotNull("Unexpected null statistics", statistics);
+        assertEquals("Unexpected connection count", 1, statistics.getConnections());
+        assertEquals("Unexpected closed count", 1, closed.get());
+
+        assertNull("Unexpected statistics without unit of work", UnitOfWork.end());
+        assertEquals("Unexpected closed count", 1, closed.get());
+    }
+
+    private static int count(Connection co) throws SQLException {
+        try (PreparedStatement ps = co.prepareStatement(COUNT);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * Counts the connections handed out, and actually closed.
+     */
+    private DataSource counting(DataSource target) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                    Object ret = method.invoke(target, args);
+                    if (ret instanceof Connection) {
+                        Connection co = (Connection) ret;
+                        opened.incrementAndGet();
+                        ret = Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                                new Class<?>[]{Connection.class}, (p, m, a) -> {
+                                    if ("close".equals(m.getName())) {
+                                        closed.incrementAndGet();
+                                    }
+                                    return m.invoke(co, a);
+                                });
+                    }
+                    return ret;
+                });
+    }
+}
@@ -0,0 +1,167 @@
+package fish.focus.uvms.usm.session.service;
+
+import fish.focus.uvms.usm.authentication.service.JdbcTestFixture;
+import fish.focus.uvms.usm.service.impl.AbstractJdbcDao;
+import fish.focus.uvms.usm.session.service.impl.InMemorySessionDao;
+import fish.focus.uvms.usm.session.service.impl.JdbcSessionDao;
+import fish.focus.uvms.usm.session.service.impl.SessionDao;
+import fish.focus.uvms.usm.session.service.impl.UserSession;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the maximum number of sessions enforced by the session
+ * stores when sessions of the same user are created concurrently, the
+ * database store running against an embedded (H2) database.
+ */
+public class SessionStoreConcurrencyTest {
+    private static final String USER_NAME = "concurrent_user";
+    private static final int THREADS = 8;
+    private static final int SESSIONS_PER_THREAD = 10;
+    private static final int MAX_ONE_SITE = 2;
+    private static final int MAX_ANY_SITE = 3;
+
+    private JdbcConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:sessions;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        try (Connection co = pool.getConnection();
+             Statement st = co.createStatement()) {
+            st.execute("create table USER_T (USER_ID bigint primary key, USER_NAME varchar(40) not null unique)");
+            st.execute("insert into USER_T (USER_ID, USER_NAME) values (1, '" + USER_NAME + "')");
+            for (String ddl : JdbcTestFixture.readScript("/sql/session_t.sql")) {
+                st.execute(ddl);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Connection co = pool.getConnection();
+             Statement st = co.createStatement()) {
+            st.execute("drop all objects");
+        }
+        pool.dispose();
+    }
+
+    @Test
+    public void testConcurrentStartDatabaseStore() throws Exception {
+        // Set-up
+        JdbcSessionDao dao = new JdbcSessionDao();
+        setDataSource(dao, transactional(pool));
+
+        // Execute
+        int created = createConcurrently(dao);
+
+        // Verify
+        assertEquals("Unexpected created count", MAX_ANY_SITE, created);
+        assertEquals("Unexpected session count", MAX_ANY_SITE,
+                dao.countSessions(USER_NAME, null, null));
+        assertTrue("Unexpected session count for single site",
+                dao.countSessions(USER_NAME, "site0", null) <= MAX_ONE_SITE);
+        assertTrue("Unexpected session count for single site",
+                dao.countSessions(USER_NAME, "site1", null) <= MAX_ONE_SITE);
+    }
+
+    @Test
+    public void testConcurrentStartInMemoryStore() throws Exception {
+        // Set-up
+        InMemorySessionDao dao = new InMemorySessionDao();
+
+        // Execute
+        int created = createConcurrently(dao);
+
+        // Verify
+        assertEquals("Unexpected created count", MAX_ANY_SITE, created);
+        assertEquals("Unexpected session count", MAX_ANY_SITE,
+                dao.countSessions(USER_NAME, null, null));
+        assertTrue("Unexpected session count for single site",
+                dao.countSessions(USER_NAME, "site0", null) <= MAX_ONE_SITE);
+        assertTrue("Unexpected session count for single site",
+                dao.countSessions(USER_NAME, "site1", null) <= MAX_ONE_SITE);
+    }
+
+    private int createConcurrently(SessionDao dao) throws Exception {
+        Date startedAfter = new Date(System.currentTimeMillis() - 60000);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final String userSite = "site" + (i % 2);
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws InterruptedException {
+                    start.await();
+                    int created = 0;
+                    for (int j = 0; j < SESSIONS_PER_THREAD; j++) {
+                        UserSession session = new UserSession();
+                        session.setUserName(USER_NAME);
+                        session.setUserSite(userSite);
+                        session.setCreationTime(new Date());
+                        if (dao.createSession(session, MAX_ONE_SITE, MAX_ANY_SITE, startedAfter) != null) {
+                            created++;
+                        }
+                    }
+                    return created;
+                }
+            }));
+        }
+        start.countDown();
+
+        int ret = 0;
+        for (Future<Integer> result : results) {
+            ret += result.get();
+        }
+        executor.shutdown();
+        return ret;
+    }
+
+    private static void setDataSource(AbstractJdbcDao dao, DataSource dataSource) throws Exception {
+        Field field = AbstractJdbcDao.class.getDeclaredField("dataSource");
+        field.setAccessible(true);
+        field.set(dao, dataSource);
+    }
+
+    /**
+     * Stands in for the (REQUIRES_NEW) container transaction of the DAO
+     * methods: connections are handed out without auto-commit, and commit
+     * when closed.
+     */
+    private static DataSource transactional(DataSource dataSource) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                    Object ret = method.invoke(dataSource, args);
+                    if (ret instanceof Connection) {
+                        Connection co = (Connection) ret;
+                        co.setAutoCommit(false);
+                        ret = Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                                new Class<?>[]{Connection.class}, (p, m, a) -> {
+                                    if ("close".equals(m.getName())) {
+                                        co.commit();
+                                    }
+                                    return m.invoke(co, a);
+                                });
+                    }
+                    return ret;
+                });
+    }
+}
@@ -0,0 +1,214 @@
+package fish.focus.uvms.usm.session.service;
+
+import fish.focus.uvms.usm.authentication.domain.ChallengeResponse;
+import fish.focus.uvms.usm.authentication.service.JdbcTestFixture;
+import fish.focus.uvms.usm.policy.service.impl.PolicyProvider;
+import fish.focus.uvms.usm.service.impl.RequestValidator;
+import fish.focus.uvms.usm.session.domain.SessionInfo;
+import fish.focus.uvms.usm.session.service.impl.SessionDao;
+import fish.focus.uvms.usm.session.service.impl.SessionTrackerBean;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.ejb.EJB;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the SessionTracker configured to keep sessions in the
+ * USM database.
+ */
+@RunWith(Arquillian.class)
+public class SessionStoreDBTest {
+    private static final String POLICY_SUBJECT = "Account";
+    private static final int NODES = 2;
+    private static final int SESSIONS_PER_NODE = 20;
+    // An existing user, whose USER_T row serialises its session starts
+    private static final String LIMITED_USER = "usm_user";
+
+    @EJB
+    private PolicyProvider policyProvider;
+
+    @EJB
+    private SessionTracker testSubject;
+
+    @EJB
+    private SessionDao sessionDao;
+
+    @EJB
+    private JdbcTestFixture testFixture;
+
+    @Before
+    public void setUp() throws IOException {
+        InputStream is = getClass().getResourceAsStream("/MaxSessionsEnabled.properties");
+        Properties props = new Properties();
+        props.load(is);
+        props.setProperty("account.sessionStore", "database");
+        policyProvider.setProperties(POLICY_SUBJECT, props);
+        // SESSION_T is not part of the USM database scripts (yet)
+        if (!testFixture.tableExists("SESSION_T")) {
+            testFixture.execute(JdbcTestFixture.readScript("/sql/session_t.sql"));
+        }
+        sessionDao.deleteSessions();
+    }
+
+    @After
+    public void tearDown() {
+        sessionDao.deleteSessions();
+        policyProvider.reset();
+    }
+
+    @Deployment
+    public static JavaArchive createDeployment() {
+        JavaArchive jar = ShrinkWrap.create(JavaArchive.class,
+                "SessionStoreDBTest.jar")
+                .addPackage(SessionTracker.class.getPackage())
+                .addPackage(SessionTrackerBean.class.getPackage())
+                .addPackage(SessionDao.class.getPackage())
+                .addPackage(ChallengeResponse.class.getPackage())
+                .addPackage(SessionInfo.class.getPackage())
+                .addPackage(RequestValidator.class.getPackage())
+                .addPackage(PolicyProvider.class.getPackage())
+                .addClass(JdbcTestFixture.class)
+                .addAsResource("MaxSessionsEnabled.properties")
+                .addAsResource("sql/session_t.sql")
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+
+        return jar;
+    }
+
+    @Test
+    public void testConcurrentStartAndEnd() throws Exception {
+        // Set-up
+        Properties props = policyProvider.getProperties(POLICY_SUBJECT);
+        props.setProperty("account.maxSessionOneSite", "0");
+        props.setProperty("account.maxSessionAnySite", "0");
+        policyProvider.setProperties(POLICY_SUBJECT, props);
+
+        // Execute
+        ExecutorService executor = Executors.newFixedThreadPool(NODES);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            final String userSite = "node" + i;
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int ended = 0;
+                    for (int j = 0; j < SESSIONS_PER_NODE; j++) {
+                        String sessionId = testSubject.startSession(createSessionInfo(userSite));
+                        assertNotNull("Unexpected null session", testSubject.getSession(sessionId));
+                        if (j % 2 == 0) {
+                            testSubject.endSession(sessionId);
+                            assertNull("Unexpected ended session", testSubject.getSession(sessionId));
+                            ended++;
+                        }
+                    }
+                    return ended;
+                }
+            }));
+        }
+        int ended = 0;
+        for (Future<Integer> result : results) {
+            ended += result.get();
+        }
+        executor.shutdown();
+
+        // Verify
+        int expected = NODES * SESSIONS_PER_NODE - ended;
+        assertEquals("Unexpected session count", expected,
+                sessionDao.countSessions("testConcurrentStartAndEnd", null, null));
+        assertEquals("Unexpected session count", expected / NODES,
+                sessionDao.countSessions("testConcurrentStartAndEnd", "node0", null));
+    }
+
+    @Test
+    public void testConcurrentStartWithinLimits() throws Exception {
+        // Set-up
+        Properties props = policyProvider.getProperties(POLICY_SUBJECT);
+        props.setProperty("account.maxSessionOneSite", "1");
+        props.setProperty("account.maxSessionAnySite", "2");
+        props.setProperty("account.maxSessionDuration", "3600");
+        policyProvider.setProperties(POLICY_SUBJECT, props);
+
+        // Execute
+        ExecutorService executor = Executors.newFixedThreadPool(NODES * 2);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < NODES * 2; i++) {
+            final String userSite = "node" + (i % NODES);
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int started = 0;
+                    for (int j = 0; j < SESSIONS_PER_NODE; j++) {
+                        SessionInfo sessionInfo = createSessionInfo(userSite);
+                        sessionInfo.setUserName(LIMITED_USER);
+                        if (testSubject.startSession(sessionInfo) != null) {
+                            started++;
+                        }
+                    }
+                    return started;
+                }
+            }));
+        }
+        int started = 0;
+        for (Future<Integer> result : results) {
+            started += result.get();
+        }
+        executor.shutdown();
+
+        // Verify
+        assertEquals("Unexpected started count", 2, started);
+        assertEquals("Unexpected session count", 2,
+                sessionDao.countSessions(LIMITED_USER, null, null));
+        assertEquals("Unexpected session count", 1,
+                sessionDao.countSessions(LIMITED_USER, "node0", null));
+    }
+
+    @Test
+    public void testSessionStartedOnOtherNode() {
+        // Set-up
+        SessionInfo session1 = createSessionInfo("site1");
+        session1.setUserName("testSessionStartedOnOtherNode");
+        assertNotNull("Unexpected null result", testSubject.startSession(session1));
+
+        testFixture.update("insert into SESSION_T" +
+                        " (SESSION_ID,USER_NAME,USER_SITE,CREATION_TIME)" +
+                        " values (?,?,?,?)",
+                new Object[]{"other-node", "testSessionStartedOnOtherNode", "site2", new Date()});
+
+        // Execute
+        SessionInfo session3 = createSessionInfo("site3");
+        session3.setUserName("testSessionStartedOnOtherNode");
+        String ret = testSubject.startSession(session3);
+
+        // Verify
+        assertNull(ret);
+        assertNotNull("Unexpected null session", testSubject.getSession("other-node"));
+    }
+
+    private SessionInfo createSessionInfo(String userSite) {
+        SessionInfo ret = new SessionInfo();
+        ret.setUserName("testConcurrentStartAndEnd");
+        ret.setUserSite(userSite);
+
+        return ret;
+    }
+
+}
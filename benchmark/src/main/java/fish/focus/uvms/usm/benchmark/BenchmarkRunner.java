@@ -0,0 +1,47 @@
+package fish.focus.uvms.usm.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Runs the USM benchmarks, accepting the usual JMH command-line options,
+ * and writes the results as JSON (by default to 'jmh-result.json'), so that
+ * they can be compared between releases.
+ */
+public class BenchmarkRunner {
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, IOException, RunnerException {
+        CommandLineOptions cmdLine = new CommandLineOptions(args);
+        if (cmdLine.shouldHelp()) {
+            cmdLine.showHelp();
+            return;
+        }
+
+        OptionsBuilder builder = new OptionsBuilder();
+        if (!cmdLine.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmdLine.getResult().hasValue()) {
+            builder.result(DEFAULT_RESULT_FILE);
+        }
+        Options options = builder.parent(cmdLine).build();
+
+        Runner runner = new Runner(options);
+        if (cmdLine.shouldList()) {
+            runner.list();
+        } else {
+            runner.run();
+        }
+    }
+}
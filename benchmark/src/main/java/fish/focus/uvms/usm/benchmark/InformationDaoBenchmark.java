@@ -0,0 +1,73 @@
+package fish.focus.uvms.usm.benchmark;
+
+import fish.focus.uvms.usm.information.domain.UserContext;
+import fish.focus.uvms.usm.information.domain.UserContextQuery;
+import fish.focus.uvms.usm.information.service.impl.InformationDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retrieving the user context of a random user, for all applications or
+ * for a single one, from an embedded database seeded with a synthetic
+ * population of the given size (e.g. '-p users=50000').
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InformationDaoBenchmark {
+
+    @Param({"10000"})
+    private int users;
+
+    private SyntheticPopulation population;
+    private InformationDao dao;
+
+    @Setup
+    public void setUp() throws Exception {
+        population = SyntheticPopulation.create("information", users);
+
+        // The data-source is otherwise looked up in the (container) JNDI context
+        dao = new InformationDao();
+        Field field = InformationDao.class.getDeclaredField("dataSource");
+        field.setAccessible(true);
+        field.set(dao, population.getDataSource());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        population.close();
+    }
+
+    @Benchmark
+    public UserContext getUserContext() {
+        UserContextQuery query = new UserContextQuery();
+        query.setUserName(SyntheticPopulation.userName(ThreadLocalRandom.current().nextInt(users)));
+        return dao.getUserContext(query);
+    }
+
+    @Benchmark
+    public UserContext getApplicationUserContext() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UserContextQuery query = new UserContextQuery();
+        query.setUserName(SyntheticPopulation.userName(random.nextInt(users)));
+        query.setApplicationName(SyntheticPopulation.applicationName(random.nextInt(SyntheticPopulation.APPLICATIONS)));
+        return dao.getUserContext(query);
+    }
+}
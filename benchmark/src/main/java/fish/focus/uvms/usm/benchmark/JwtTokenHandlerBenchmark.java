@@ -0,0 +1,84 @@
+package fish.focus.uvms.usm.benchmark;
+
+import fish.focus.uvms.usm.jwt.DefaultJwtTokenHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Creating, parsing and extending JWT tokens, with a given number of
+ * features in the token, and with or without the compact feature encoding.
+ * <p>
+ * Parsing a token again hits the verified-claims cache, as it does for the
+ * successive requests of a user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenHandlerBenchmark {
+    private static final String USER_NAME = "benchmark_user";
+
+    @Param({"0", "50", "500"})
+    private int featureCount;
+
+    @Param({"false", "true"})
+    private boolean compactFeatures;
+
+    private DefaultJwtTokenHandler handler;
+    private List<Integer> features;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("USM.secretKey", Base64.getEncoder().encodeToString(new byte[32]));
+        System.setProperty("USM.timeToLiveInMinutes", "480");
+        System.setProperty("USM.renewalThresholdInPercent", "10");
+        System.setProperty("USM.compactFeatures", String.valueOf(compactFeatures));
+
+        handler = new DefaultJwtTokenHandler();
+        handler.init();
+
+        features = IntStream.range(0, featureCount)
+                .map(i -> i * 3)
+                .boxed()
+                .collect(Collectors.toList());
+        token = handler.createToken(USER_NAME, features);
+    }
+
+    @Benchmark
+    public String createToken() {
+        return handler.createToken(USER_NAME, features);
+    }
+
+    @Benchmark
+    public String parseToken() {
+        return handler.parseToken(token);
+    }
+
+    @Benchmark
+    public List<Integer> parseTokenFeatures() {
+        return handler.parseTokenFeatures(token);
+    }
+
+    @Benchmark
+    public String extendToken() {
+        return handler.extendToken(token);
+    }
+}
@@ -0,0 +1,139 @@
+package fish.focus.uvms.usm.benchmark;
+
+import fish.focus.uvms.usm.administration.common.jdbc.BaseJdbcDao;
+import fish.focus.uvms.usm.administration.domain.ComprehensiveRole;
+import fish.focus.uvms.usm.administration.domain.FindRolesQuery;
+import fish.focus.uvms.usm.administration.domain.FindScopesQuery;
+import fish.focus.uvms.usm.administration.domain.Paginator;
+import fish.focus.uvms.usm.administration.service.role.impl.RoleJdbcDao;
+import fish.focus.uvms.usm.administration.service.scope.impl.ScopeJdbcDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing roles and scopes with their number of active users, with the
+ * per-row (correlated) counts the administration DAOs used to run and with
+ * the DAOs themselves (which now run grouped joins), from an embedded
+ * database seeded with a synthetic population of the given size.
+ * <p>
+ * The correlated listings are fixed baselines; the DAO listings also count
+ * the matching rows, as every (offset paginated) listing request does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ListingCountBenchmark {
+    private static final String CORRELATED_ROLES = "select DISTINCT " +
+            "r.ROLE_ID,r.NAME,r.DESCRIPTION,STATUS,(select count(DISTINCT USER_NAME) " +
+            "from active_user_role_v v where v.ROLE_ID=r.ROLE_ID) as USERS " +
+            "from ROLE_T r left join PERMISSION_T  p on p.ROLE_ID = r.ROLE_ID " +
+            "left join FEATURE_T f on f.FEATURE_ID = p.FEATURE_ID " +
+            "left join APPLICATION_T a on a.APPLICATION_ID=f.APPLICATION_ID where 1=1 ";
+    private static final String CORRELATED_SCOPES = "select " +
+            "DISTINCT s.SCOPE_ID,s.NAME,s.DESCRIPTION,STATUS,ACTIVE_FROM, " +
+            "ACTIVE_TO,DATA_FROM,DATA_TO,(select count(DISTINCT USER_NAME) " +
+            "from active_user_scope_v v where v.SCOPE_ID=s.SCOPE_ID) as USERS " +
+            "from SCOPE_T s left join SCOPE_DATASET_T  sd on " +
+            "s.SCOPE_ID = sd.SCOPE_ID left join DATASET_T d on " +
+            "sd.DATASET_ID = d.DATASET_ID left join APPLICATION_T a on " +
+            "a.APPLICATION_ID=d.APPLICATION_ID where 1=1 ";
+
+    @Param({"50000"})
+    private int users;
+
+    private SyntheticPopulation population;
+    private RoleJdbcDao roleDao;
+    private ScopeJdbcDao scopeDao;
+
+    @Setup
+    public void setUp() throws Exception {
+        population = SyntheticPopulation.create("listing", users);
+
+        // The data-source is otherwise looked up in the (container) JNDI context
+        roleDao = new RoleJdbcDao();
+        scopeDao = new ScopeJdbcDao();
+        Field field = BaseJdbcDao.class.getDeclaredField("dataSource");
+        field.setAccessible(true);
+        field.set(roleDao, population.getDataSource());
+        field.set(scopeDao, population.getDataSource());
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        population.close();
+    }
+
+    @Benchmark
+    public long correlatedRoleCounts() throws SQLException {
+        return sumUsers(CORRELATED_ROLES);
+    }
+
+    @Benchmark
+    public long groupedRoleCounts() {
+        FindRolesQuery query = new FindRolesQuery();
+        query.setPaginator(allRows());
+
+        long ret = 0;
+        for (ComprehensiveRole role : roleDao.findRoles(query).getResults()) {
+            ret += role.getActiveUsers();
+        }
+        return ret;
+    }
+
+    @Benchmark
+    public long correlatedScopeCounts() throws SQLException {
+        return sumUsers(CORRELATED_SCOPES);
+    }
+
+    @Benchmark
+    public long groupedScopeCounts() {
+        FindScopesQuery query = new FindScopesQuery();
+        query.setPaginator(allRows());
+
+        long ret = 0;
+        for (fish.focus.uvms.usm.administration.domain.Scope scope : scopeDao.findScopes(query).getResults()) {
+            ret += scope.getActiveUsers();
+        }
+        return ret;
+    }
+
+    private static Paginator allRows() {
+        Paginator ret = new Paginator();
+        ret.setSortColumn("name");
+        ret.setSortDirection("ASC");
+        ret.setLimit(-1);
+        return ret;
+    }
+
+    private long sumUsers(String sql) throws SQLException {
+        long ret = 0;
+        try (Connection connection = population.getDataSource().getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                ret += rs.getInt("USERS");
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,67 @@
+package fish.focus.uvms.usm.benchmark;
+
+import fish.focus.uvms.usm.authentication.service.impl.Md5PasswordHasher;
+import fish.focus.uvms.usm.authentication.service.impl.Pbkdf2PasswordHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing and verifying passwords for a range of PBKDF2 iteration counts,
+ * to pick the 'password.hashIterations' policy value for the target
+ * hardware. The legacy MD5 verification is measured for comparison.
+ * <p>
+ * PasswordDigester.hashPassword delegates to the hasher measured here,
+ * through the PasswordHashService singleton, which only adds the policy
+ * lookup and the concurrency gate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PasswordHashBenchmark {
+    private static final String PASSWORD = "Benchmark-Passw0rd!";
+
+    @Param({"100000", "310000", "600000"})
+    private int iterations;
+
+    private Pbkdf2PasswordHasher hasher;
+    private String hash;
+    private Md5PasswordHasher legacyHasher;
+    private String legacyHash;
+
+    @Setup
+    public void setUp() {
+        hasher = new Pbkdf2PasswordHasher(iterations);
+        hash = hasher.hash(PASSWORD);
+        legacyHasher = new Md5PasswordHasher();
+        legacyHash = legacyHasher.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return hasher.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verifyPassword() {
+        return hasher.verify(PASSWORD, hash);
+    }
+
+    @Benchmark
+    public boolean verifyLegacyPassword() {
+        return legacyHasher.verify(PASSWORD, legacyHash);
+    }
+}
@@ -0,0 +1,72 @@
+package fish.focus.uvms.usm.benchmark;
+
+import fish.focus.uvms.usm.authentication.domain.AuthenticationRequest;
+import fish.focus.uvms.usm.service.impl.RequestValidator;
+import fish.focus.uvms.usm.session.domain.SessionInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating authentication and session requests, including the rejection
+ * of an invalid request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestValidatorBenchmark {
+    private RequestValidator validator;
+    private AuthenticationRequest authenticationRequest;
+    private AuthenticationRequest invalidRequest;
+    private SessionInfo sessionInfo;
+
+    @Setup
+    public void setUp() {
+        validator = new RequestValidator();
+
+        authenticationRequest = new AuthenticationRequest();
+        authenticationRequest.setUserName("benchmark_user");
+        authenticationRequest.setPassword("Benchmark-Passw0rd!");
+
+        invalidRequest = new AuthenticationRequest();
+        invalidRequest.setUserName("benchmark_user");
+
+        sessionInfo = new SessionInfo();
+        sessionInfo.setUserName("benchmark_user");
+        sessionInfo.setUserSite("benchmark");
+    }
+
+    @Benchmark
+    public AuthenticationRequest assertValidAuthenticationRequest() {
+        validator.assertValid(authenticationRequest);
+        return authenticationRequest;
+    }
+
+    @Benchmark
+    public SessionInfo assertValidSessionInfo() {
+        validator.assertValid(sessionInfo);
+        return sessionInfo;
+    }
+
+    @Benchmark
+    public IllegalArgumentException assertInvalidAuthenticationRequest() {
+        try {
+            validator.assertValid(invalidRequest);
+            return null;
+        } catch (IllegalArgumentException ex) {
+            return ex;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package fish.focus.uvms.usm.benchmark;
+
+import fish.focus.uvms.usm.session.service.impl.InMemorySessionDao;
+import fish.focus.uvms.usm.session.service.impl.UserSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating, reading, counting and deleting in-memory sessions, from 8
+ * concurrent threads, with a given number of already active sessions
+ * spread over a given number of users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class SessionDaoBenchmark {
+    private static final String USER_SITE = "benchmark";
+
+    @Param({"10000"})
+    private int sessionCount;
+
+    @Param({"1000"})
+    private int userCount;
+
+    private InMemorySessionDao dao;
+    private String[] sessionIds;
+
+    @Setup
+    public void setUp() {
+        dao = new InMemorySessionDao();
+        sessionIds = new String[sessionCount];
+        for (int i = 0; i < sessionCount; i++) {
+            sessionIds[i] = dao.createSession(newSession(i % userCount));
+        }
+    }
+
+    @Benchmark
+    public UserSession readSession() {
+        return dao.readSession(sessionIds[ThreadLocalRandom.current().nextInt(sessionCount)]);
+    }
+
+    @Benchmark
+    public int countSessions() {
+        return dao.countSessions(userName(ThreadLocalRandom.current().nextInt(userCount)), USER_SITE, null);
+    }
+
+    @Benchmark
+    public String createAndDeleteSession() {
+        String ret = dao.createSession(newSession(ThreadLocalRandom.current().nextInt(userCount)));
+        dao.deleteSession(ret);
+        return ret;
+    }
+
+    private static UserSession newSession(int user) {
+        UserSession ret = new UserSession();
+        ret.setUserName(userName(user));
+        ret.setUserSite(USER_SITE);
+        ret.setCreationTime(new Date());
+        return ret;
+    }
+
+    private static String userName(int user) {
+        return "user_" + user;
+    }
+}
@@ -0,0 +1,246 @@
+package fish.focus.uvms.usm.benchmark;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Random;
+
+/**
+ * Embedded (in-memory H2) database, with a simplified USM schema, seeded
+ * with a synthetic, reproducible population of users.
+ * <p>
+ * Each user is granted a few contexts (role and optional scope), each with
+ * a few preferences, over a fixed set of applications, features, roles,
+ * scopes and data-sets.
+ */
+public class SyntheticPopulation implements AutoCloseable {
+    public static final int APPLICATIONS = 5;
+    public static final int FEATURES_PER_APPLICATION = 40;
+    public static final int OPTIONS_PER_APPLICATION = 10;
+    public static final int DATASETS_PER_APPLICATION = 20;
+    public static final int ROLES = 100;
+    public static final int FEATURES_PER_ROLE = 30;
+    public static final int SCOPES = 50;
+    public static final int DATASETS_PER_SCOPE = 5;
+    public static final int CONTEXTS_PER_USER = 3;
+    public static final int PREFERENCES_PER_CONTEXT = 4;
+
+    private static final String SCHEMA = "classpath:/benchmark-schema.sql";
+    private static final int BATCH_SIZE = 1000;
+    private static final String ENABLED = "E";
+
+    private final JdbcConnectionPool dataSource;
+    private final int users;
+    private final Random random = new Random(42);
+
+    private SyntheticPopulation(String name, int users) {
+        this.dataSource = JdbcConnectionPool.create("jdbc:h2:mem:" + name +
+                ";MODE=PostgreSQL;DATABASE_TO_UPPER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        this.users = users;
+    }
+
+    /**
+     * Creates and seeds a new embedded database.
+     *
+     * @param name  the (unique) database name
+     * @param users the number of users to create
+     * @return the seeded database
+     * @throws SQLException in case the database could not be created or seeded
+     */
+    public static SyntheticPopulation create(String name, int users) throws SQLException {
+        SyntheticPopulation ret = new SyntheticPopulation(name, users);
+        try (Connection connection = ret.dataSource.getConnection()) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("runscript from '" + SCHEMA + "'");
+            }
+            connection.setAutoCommit(false);
+            ret.seed(connection);
+            connection.commit();
+        }
+        return ret;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    /**
+     * Gets the name of a synthetic user.
+     *
+     * @param user the user index, between 0 and the number of users
+     * @return the user name
+     */
+    public static String userName(int user) {
+        return "user_" + user;
+    }
+
+    /**
+     * Gets the name of a synthetic application.
+     *
+     * @param application the application index, between 0 and {@link #APPLICATIONS}
+     * @return the application name
+     */
+    public static String applicationName(int application) {
+        return "application_" + application;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("shutdown");
+        } finally {
+            dataSource.dispose();
+        }
+    }
+
+    private void seed(Connection connection) throws SQLException {
+        try (PreparedStatement application = connection.prepareStatement(
+                "insert into APPLICATION_T (APPLICATION_ID,NAME) values (?,?)");
+             PreparedStatement feature = connection.prepareStatement(
+                     "insert into FEATURE_T (FEATURE_ID,NAME,APPLICATION_ID) values (?,?,?)");
+             PreparedStatement option = connection.prepareStatement(
+                     "insert into OPTION_T (OPTION_ID,NAME,DEFAULT_VALUE,APPLICATION_ID) values (?,?,?,?)");
+             PreparedStatement dataset = connection.prepareStatement(
+                     "insert into DATASET_T (DATASET_ID,NAME,CATEGORY,DISCRIMINATOR,APPLICATION_ID) " +
+                             "values (?,?,?,?,?)")) {
+            for (int a = 0; a < APPLICATIONS; a++) {
+                application.setLong(1, a);
+                application.setString(2, applicationName(a));
+                application.addBatch();
+
+                for (int f = 0; f < FEATURES_PER_APPLICATION; f++) {
+                    feature.setLong(1, (long) a * FEATURES_PER_APPLICATION + f);
+                    feature.setString(2, "feature_" + f);
+                    feature.setLong(3, a);
+                    feature.addBatch();
+                }
+                for (int o = 0; o < OPTIONS_PER_APPLICATION; o++) {
+                    option.setLong(1, (long) a * OPTIONS_PER_APPLICATION + o);
+                    option.setString(2, "option_" + o);
+                    option.setBytes(3, ("default_" + o).getBytes(StandardCharsets.UTF_8));
+                    option.setLong(4, a);
+                    option.addBatch();
+                }
+                for (int d = 0; d < DATASETS_PER_APPLICATION; d++) {
+                    dataset.setLong(1, (long) a * DATASETS_PER_APPLICATION + d);
+                    dataset.setString(2, "dataset_" + d);
+                    dataset.setString(3, "category_" + (d % 4));
+                    dataset.setString(4, "discriminator_" + d);
+                    dataset.setLong(5, a);
+                    dataset.addBatch();
+                }
+            }
+            application.executeBatch();
+            feature.executeBatch();
+            option.executeBatch();
+            dataset.executeBatch();
+        }
+
+        try (PreparedStatement role = connection.prepareStatement(
+                "insert into ROLE_T (ROLE_ID,NAME,DESCRIPTION,STATUS) values (?,?,?,?)");
+             PreparedStatement permission = connection.prepareStatement(
+                     "insert into PERMISSION_T (ROLE_ID,FEATURE_ID) values (?,?)")) {
+            int featureCount = APPLICATIONS * FEATURES_PER_APPLICATION;
+            for (int r = 0; r < ROLES; r++) {
+                role.setLong(1, r);
+                role.setString(2, "role_" + r);
+                role.setString(3, "Synthetic role " + r);
+                role.setString(4, ENABLED);
+                role.addBatch();
+
+                int first = random.nextInt(featureCount);
+                for (int f = 0; f < FEATURES_PER_ROLE; f++) {
+                    permission.setLong(1, r);
+                    permission.setLong(2, (first + f) % featureCount);
+                    permission.addBatch();
+                }
+            }
+            role.executeBatch();
+            permission.executeBatch();
+        }
+
+        try (PreparedStatement scope = connection.prepareStatement(
+                "insert into SCOPE_T (SCOPE_ID,NAME,DESCRIPTION,STATUS) values (?,?,?,?)");
+             PreparedStatement scopeDataset = connection.prepareStatement(
+                     "insert into SCOPE_DATASET_T (SCOPE_ID,DATASET_ID) values (?,?)")) {
+            int datasetCount = APPLICATIONS * DATASETS_PER_APPLICATION;
+            for (int s = 0; s < SCOPES; s++) {
+                scope.setLong(1, s);
+                scope.setString(2, "scope_" + s);
+                scope.setString(3, "Synthetic scope " + s);
+                scope.setString(4, ENABLED);
+                scope.addBatch();
+
+                int first = random.nextInt(datasetCount);
+                for (int d = 0; d < DATASETS_PER_SCOPE; d++) {
+                    scopeDataset.setLong(1, s);
+                    scopeDataset.setLong(2, (first + d) % datasetCount);
+                    scopeDataset.addBatch();
+                }
+            }
+            scope.executeBatch();
+            scopeDataset.executeBatch();
+        }
+
+        try (PreparedStatement user = connection.prepareStatement(
+                "insert into USER_T (USER_ID,USER_NAME,STATUS) values (?,?,?)");
+             PreparedStatement context = connection.prepareStatement(
+                     "insert into USER_CONTEXT_T (USER_CONTEXT_ID,USER_ID,ROLE_ID,SCOPE_ID) values (?,?,?,?)");
+             PreparedStatement preference = connection.prepareStatement(
+                     "insert into PREFERENCE_T (PREFERENCE_ID,USER_CONTEXT_ID,OPTION_ID,OPTION_VALUE) " +
+                             "values (?,?,?,?)")) {
+            int optionCount = APPLICATIONS * OPTIONS_PER_APPLICATION;
+            long contextId = 0;
+            long preferenceId = 0;
+            for (int u = 0; u < users; u++) {
+                user.setLong(1, u);
+                user.setString(2, userName(u));
+                user.setString(3, ENABLED);
+                user.addBatch();
+
+                int firstRole = random.nextInt(ROLES);
+                for (int c = 0; c < CONTEXTS_PER_USER; c++) {
+                    context.setLong(1, contextId);
+                    context.setLong(2, u);
+                    context.setLong(3, (firstRole + c) % ROLES);
+                    if (c == 0) {
+                        context.setNull(4, Types.BIGINT);
+                    } else {
+                        context.setLong(4, random.nextInt(SCOPES));
+                    }
+                    context.addBatch();
+
+                    int firstOption = random.nextInt(optionCount);
+                    for (int p = 0; p < PREFERENCES_PER_CONTEXT; p++) {
+                        preference.setLong(1, preferenceId++);
+                        preference.setLong(2, contextId);
+                        preference.setLong(3, (firstOption + p) % optionCount);
+                        preference.setBytes(4, ("value_" + p).getBytes(StandardCharsets.UTF_8));
+                        preference.addBatch();
+                    }
+                    contextId++;
+                }
+
+                if ((u + 1) % BATCH_SIZE == 0) {
+                    user.executeBatch();
+                    context.executeBatch();
+                    preference.executeBatch();
+                }
+            }
+            user.executeBatch();
+            context.executeBatch();
+            preference.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+-- Simplified stand-in for the USM database schema, holding only the tables,
+-- columns and views read by the benchmarked queries.
+
+create table APPLICATION_T (
+  APPLICATION_ID bigint primary key,
+  NAME varchar(40) not null unique,
+  DESCRIPTION varchar(512),
+  PARENT_ID bigint
+);
+
+create table FEATURE_T (
+  FEATURE_ID bigint primary key,
+  NAME varchar(40) not null,
+  DESCRIPTION varchar(512),
+  APPLICATION_ID bigint not null references APPLICATION_T,
+  GROUP_NAME varchar(128)
+);
+
+create table OPTION_T (
+  OPTION_ID bigint primary key,
+  NAME varchar(128) not null,
+  DESCRIPTION varchar(512),
+  DATA_TYPE varchar(40),
+  DEFAULT_VALUE bytea,
+  GROUP_NAME varchar(128),
+  APPLICATION_ID bigint not null references APPLICATION_T
+);
+
+create table DATASET_T (
+  DATASET_ID bigint primary key,
+  NAME varchar(128) not null,
+  DESCRIPTION varchar(512),
+  CATEGORY varchar(128),
+  DISCRIMINATOR varchar(512),
+  APPLICATION_ID bigint not null references APPLICATION_T
+);
+
+create table ROLE_T (
+  ROLE_ID bigint primary key,
+  NAME varchar(128) not null unique,
+  DESCRIPTION varchar(512),
+  STATUS char(1) not null
+);
+
+create table PERMISSION_T (
+  ROLE_ID bigint not null references ROLE_T,
+  FEATURE_ID bigint not null references FEATURE_T,
+  primary key (ROLE_ID, FEATURE_ID)
+);
+
+create table SCOPE_T (
+  SCOPE_ID bigint primary key,
+  NAME varchar(128) not null unique,
+  DESCRIPTION varchar(512),
+  STATUS char(1) not null,
+  ACTIVE_FROM timestamp,
+  ACTIVE_TO timestamp,
+  DATA_FROM timestamp,
+  DATA_TO timestamp
+);
+
+create table SCOPE_DATASET_T (
+  SCOPE_ID bigint not null references SCOPE_T,
+  DATASET_ID bigint not null references DATASET_T,
+  primary key (SCOPE_ID, DATASET_ID)
+);
+
+create table USER_T (
+  USER_ID bigint primary key,
+  USER_NAME varchar(40) not null unique,
+  STATUS char(1) not null,
+  ACTIVE_FROM timestamp,
+  ACTIVE_TO timestamp
+);
+
+create table USER_CONTEXT_T (
+  USER_CONTEXT_ID bigint primary key,
+  USER_ID bigint not null references USER_T,
+  ROLE_ID bigint not null references ROLE_T,
+  SCOPE_ID bigint references SCOPE_T
+);
+
+create index USER_CONTEXT_USER_IDX on USER_CONTEXT_T (USER_ID);
+create index USER_CONTEXT_ROLE_IDX on USER_CONTEXT_T (ROLE_ID);
+create index USER_CONTEXT_SCOPE_IDX on USER_CONTEXT_T (SCOPE_ID);
+
+create table PREFERENCE_T (
+  PREFERENCE_ID bigint primary key,
+  USER_CONTEXT_ID bigint not null references USER_CONTEXT_T,
+  OPTION_ID bigint not null references OPTION_T,
+  OPTION_VALUE bytea
+);
+
+create index PREFERENCE_CONTEXT_IDX on PREFERENCE_T (USER_CONTEXT_ID);
+
+create view ACTIVE_USER_ROLE_V as
+  select u.USER_NAME, r.ROLE_ID, r.NAME as ROLE_NAME, uc.SCOPE_ID, uc.USER_CONTEXT_ID
+  from USER_T u
+  join USER_CONTEXT_T uc on uc.USER_ID = u.USER_ID
+  join ROLE_T r on r.ROLE_ID = uc.ROLE_ID
+  where u.STATUS = 'E' and r.STATUS = 'E'
+  and (u.ACTIVE_FROM is null or u.ACTIVE_FROM <= current_timestamp)
+  and (u.ACTIVE_TO is null or u.ACTIVE_TO >= current_timestamp);
+
+create view ACTIVE_USER_SCOPE_V as
+  select u.USER_NAME, s.SCOPE_ID
+  from USER_T u
+  join USER_CONTEXT_T uc on uc.USER_ID = u.USER_ID
+  join SCOPE_T s on s.SCOPE_ID = uc.SCOPE_ID
+  where u.STATUS = 'E' and s.STATUS = 'E'
+  and (u.ACTIVE_FROM is null or u.ACTIVE_FROM <= current_timestamp)
+  and (u.ACTIVE_TO is null or u.ACTIVE_TO >= current_timestamp);
+
+create view USER_PROFILE_V as
+  select u.USER_NAME, p.USER_CONTEXT_ID, 'N' as IS_DEFAULT, o.NAME as OPTION_NAME,
+         p.OPTION_VALUE, a.NAME as APPLICATION_NAME
+  from PREFERENCE_T p
+  join USER_CONTEXT_T uc on uc.USER_CONTEXT_ID = p.USER_CONTEXT_ID
+  join USER_T u on u.USER_ID = uc.USER_ID
+  join OPTION_T o on o.OPTION_ID = p.OPTION_ID
+  join APPLICATION_T a on a.APPLICATION_ID = o.APPLICATION_ID
+  union all
+  select u.USER_NAME, null, 'Y', o.NAME, o.DEFAULT_VALUE, a.NAME
+  from USER_T u
+  cross join OPTION_T o
+  join APPLICATION_T a on a.APPLICATION_ID = o.APPLICATION_ID;
@@ -41,6 +41,9 @@ public class DeploymentServiceBean implements DeploymentService {
     @EJB
     private PolicyProvider policyProvider;
 
+    @EJB
+    private RoleFeatureIndex roleFeatureIndex;
+
     @Override
     public void deployApplication(Application request) throws IllegalArgumentException, RuntimeException {
         LOGGER.debug("deployApplication(" + request + ") - (ENTER)");
@@ -62,6 +65,7 @@ public class DeploymentServiceBean implements DeploymentService {
         entity.setCreatedOn(new Date());
 
         jpaDao.create(entity);
+        roleFeatureIndex.evictAll();
 
         LOGGER.debug("deployApplication() - (LEAVE)");
     }
@@ -91,6 +95,7 @@ public class DeploymentServiceBean implements DeploymentService {
             jpaDao.update(entity);
             jpaDao.deleteDetails(obsolete);
         }
+        roleFeatureIndex.evictAll();
         LOGGER.debug("redeployApplication() - (LEAVE)");
     }
 
@@ -132,6 +137,7 @@ public class DeploymentServiceBean implements DeploymentService {
                     "children");
         }
         jpaDao.delete(appName);
+        roleFeatureIndex.evictAll();
 
         LOGGER.debug("undeployApplication() - (LEAVE)");
     }
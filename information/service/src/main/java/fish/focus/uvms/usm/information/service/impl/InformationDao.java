@@ -1,6 +1,7 @@
 package fish.focus.uvms.usm.information.service.impl;
 
 import fish.focus.uvms.usm.information.domain.*;
+import fish.focus.uvms.usm.service.impl.UnitOfWork;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,8 +15,15 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -30,6 +38,15 @@ public class InformationDao {
     private static final String FAILED_TO_EXECUTE_QUERY = "Failed to execute query: ";
     private static final String DATASOURCE_NAME = "jdbc/USM2";
     private static final String ENABLED = "E";
+    private static final int MAX_IN_LIST = 1000;
+
+    // Context rows, of all applications (by role or by scope)
+    private static final String CONTEXT_ROWS = getContextRowsQuery("");
+    // Context rows, of a single application (by role or by scope)
+    private static final String APPLICATION_CONTEXT_ROWS = getContextRowsQuery("         and a.name=?");
+    private static final String USER_PREFERENCES = "select USER_CONTEXT_ID,IS_DEFAULT,OPTION_NAME,OPTION_VALUE," +
+            "APPLICATION_NAME from USER_PROFILE_V where USER_NAME=?";
+    private static final String APPLICATION_USER_PREFERENCES = USER_PREFERENCES + " and APPLICATION_NAME=?";
 
     private DataSource dataSource;
 
@@ -67,7 +84,7 @@ public class InformationDao {
         ResultSet rs = null;
 
         try {
-            connection = dataSource.getConnection();
+            connection = UnitOfWork.getConnection(dataSource);
             stmt = connection.prepareStatement("select FIRST_NAME,LAST_NAME,PHONE_NUMBER," +
                     "MOBILE_NUMBER,FAX_NUMBER,E_MAIL," +
                     "u.ORGANISATION_ID" +
@@ -106,26 +123,16 @@ public class InformationDao {
     public Organisation getOrganisation(String organisationName) {
         Organisation ret = null;
         Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
 
         try {
-            connection = dataSource.getConnection();
-            stmt = connection.prepareStatement("select ORGANISATION_ID,NAME,ISOA3CODE," +
-                    "E_MAIL,STATUS,PARENT_ID,DESCRIPTION" +
-                    " from ORGANISATION_T" +
-                    " where NAME=?");
-            stmt.setString(1, organisationName);
-
-            rs = stmt.executeQuery();
-            if (rs.next()) {
-                ret = mapOrganisation(connection, rs);
+            connection = UnitOfWork.getConnection(dataSource);
+            List<Organisation> lst = loadOrganisations(connection, "NAME", organisationName);
+            if (!lst.isEmpty()) {
+                ret = lst.get(0);
             }
         } catch (SQLException ex) {
             handleException(ex);
         } finally {
-            close(rs);
-            close(stmt);
             close(connection);
         }
         return ret;
@@ -145,311 +152,400 @@ public class InformationDao {
 
         List<Organisation> ret = null;
         Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
 
         try {
-            connection = dataSource.getConnection();
-            stmt = connection.prepareStatement("select ORGANISATION_ID,NAME,ISOA3CODE," +
-                    "E_MAIL,STATUS,PARENT_ID,DESCRIPTION" +
-                    " from ORGANISATION_T" +
-                    " where ISOA3CODE=?");
-            stmt.setString(1, nation);
-
-            rs = stmt.executeQuery();
-            ret = new ArrayList<>();
-            while (rs.next()) {
-                ret.add(mapOrganisation(connection, rs));
-            }
+            connection = UnitOfWork.getConnection(dataSource);
+            ret = loadOrganisations(connection, "ISOA3CODE", nation);
         } catch (Exception ex) {
             handleException(ex);
         } finally {
-            close(rs);
-            close(stmt);
             close(connection);
         }
         return ret;
     }
 
-    private Organisation mapOrganisation(Connection co, ResultSet rs) throws SQLException {
-        Organisation org = new Organisation();
-        org.setName(rs.getString("NAME"));
-        org.setNation(rs.getString("ISOA3CODE"));
-        org.setEmail(rs.getString("E_MAIL"));
-        org.setDescription(rs.getString("DESCRIPTION"));
-        org.setEnabled(ENABLED.equals(rs.getString("STATUS")));
-        Long organisationId = rs.getLong("ORGANISATION_ID");
-        org.setEndPoints(getEndPoints(co, organisationId));
-        org.setChildOrganisations(getChildOrganisationNames(co, organisationId));
-        Long parentId = rs.getLong("PARENT_ID");
-        if (parentId != null) {
-            org.setParentOrganisation(getOrganisationName(co, parentId));
-        }
-        return org;
-    }
-
-    public boolean optionExists(String applicationName, String optionName) {
-        Connection connection = null;
+    /**
+     * Loads the organisations matching the provided condition, with their
+     * end-points, channels, contacts and child organisations, using a fixed
+     * number of queries (one per level, per chunk of identifiers) and
+     * assembling the Organisation graph in memory.
+     */
+    private List<Organisation> loadOrganisations(Connection connection, String condition, String value)
+            throws SQLException {
+        List<Organisation> ret = new ArrayList<>();
+        Map<Long, Organisation> organisations = new LinkedHashMap<>();
         PreparedStatement stmt = null;
         ResultSet rs = null;
 
-        boolean ret = false;
         try {
-            connection = dataSource.getConnection();
-            stmt = connection.prepareStatement("select 1 from OPTION_T o, APPLICATION_T a" +
-                    " where o.APPLICATION_ID=a.APPLICATION_ID" +
-                    " and a.NAME=? and o.NAME=?");
-            stmt.setString(1, applicationName);
-            stmt.setString(2, optionName);
+            stmt = connection.prepareStatement("select o.ORGANISATION_ID,o.NAME,o.ISOA3CODE," +
+                    "o.E_MAIL,o.STATUS,o.DESCRIPTION,p.NAME PARENT_NAME" +
+                    " from ORGANISATION_T o" +
+                    " left join ORGANISATION_T p on p.ORGANISATION_ID=o.PARENT_ID" +
+                    " where o." + condition + "=?");
+            stmt.setString(1, value);
 
             rs = stmt.executeQuery();
-            ret = rs.next();
-        } catch (Exception ex) {
-            handleException(ex);
+            while (rs.next()) {
+                Organisation org = new Organisation();
+                org.setName(rs.getString("NAME"));
+                org.setNation(rs.getString("ISOA3CODE"));
+                org.setEmail(rs.getString("E_MAIL"));
+                org.setDescription(rs.getString("DESCRIPTION"));
+                org.setEnabled(ENABLED.equals(rs.getString("STATUS")));
+                org.setParentOrganisation(rs.getString("PARENT_NAME"));
+                organisations.put(rs.getLong("ORGANISATION_ID"), org);
+                ret.add(org);
+            }
         } finally {
             close(rs);
             close(stmt);
-            close(connection);
+        }
+
+        if (!organisations.isEmpty()) {
+            loadChildOrganisationNames(connection, organisations);
+            loadEndPoints(connection, organisations);
         }
         return ret;
     }
 
-    public boolean userExists(String userName) {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
+    private void loadChildOrganisationNames(Connection connection, Map<Long, Organisation> organisations)
+            throws SQLException {
+        for (List<Long> chunk : chunks(organisations.keySet())) {
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
 
-        boolean ret = false;
-        try {
-            connection = dataSource.getConnection();
-            stmt = connection.prepareStatement("select * from USER_T where USER_NAME=?");
-            stmt.setString(1, userName);
-
-            rs = stmt.executeQuery();
-            ret = rs.next();
-        } catch (SQLException ex) {
-            handleException(ex);
-        } finally {
-            close(rs);
-            close(stmt);
-            close(connection);
+            try {
+                stmt = prepareInStatement(connection, "select PARENT_ID,NAME from ORGANISATION_T" +
+                        " where PARENT_ID in ", chunk);
+                rs = stmt.executeQuery();
+                while (rs.next()) {
+                    Organisation parent = organisations.get(rs.getLong("PARENT_ID"));
+                    if (parent.getChildOrganisations() == null) {
+                        parent.setChildOrganisations(new ArrayList<>());
+                    }
+                    parent.getChildOrganisations().add(rs.getString("NAME"));
+                }
+            } finally {
+                close(rs);
+                close(stmt);
+            }
         }
-        return ret;
     }
 
-    public boolean userContextExists(String userName, Context ctx) {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
+    private void loadEndPoints(Connection connection, Map<Long, Organisation> organisations) throws SQLException {
+        Map<Long, EndPoint> endPoints = new HashMap<>();
 
-        boolean ret = false;
-        try {
-            StringBuilder sb = new StringBuilder();
-            sb.append("select 1 from user_context_t uc, user_t u, role_t r");
-            if (ctx.getScope() != null) {
-                sb.append(", scope_t s");
+        for (List<Long> chunk : chunks(organisations.keySet())) {
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+
+            try {
+                stmt = prepareInStatement(connection, "select END_POINT_ID,ORGANISATION_ID," +
+                        "NAME,DESCRIPTION,URI,E_MAIL,STATUS" +
+                        " from END_POINT_T" +
+                        " where ORGANISATION_ID in ", chunk);
+                rs = stmt.executeQuery();
+                while (rs.next()) {
+                    EndPoint item = new EndPoint();
+                    item.setName(rs.getString("NAME"));
+                    item.setDescription(rs.getString("DESCRIPTION"));
+                    item.setUri(rs.getString("URI"));
+                    item.setEmail(rs.getString("E_MAIL"));
+                    item.setEnabled(ENABLED.equals(rs.getString("STATUS")));
+                    item.setChannels(new ArrayList<>());
+                    item.setContactDetails(new ArrayList<>());
+                    endPoints.put(rs.getLong("END_POINT_ID"), item);
+
+                    Organisation org = organisations.get(rs.getLong("ORGANISATION_ID"));
+                    if (org.getEndPoints() == null) {
+                        org.setEndPoints(new ArrayList<>());
+                    }
+                    org.getEndPoints().add(item);
+                }
+            } finally {
+                close(rs);
+                close(stmt);
             }
-            sb.append(" where uc.USER_ID=u.USER_ID")
-                    .append(" and uc.ROLE_ID=r.ROLE_ID")
-                    .append(" and u.USER_NAME=?")
-                    .append(" and r.NAME=?");
-            if (ctx.getScope() != null) {
-                sb.append(" and uc.SCOPE_ID=s.SCOPE_ID")
-                        .append(" and s.NAME=?");
+        }
+
+        if (!endPoints.isEmpty()) {
+            loadChannels(connection, endPoints);
+            loadContactDetails(connection, endPoints);
+        }
+    }
+
+    private void loadChannels(Connection connection, Map<Long, EndPoint> endPoints) throws SQLException {
+        for (List<Long> chunk : chunks(endPoints.keySet())) {
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+
+            try {
+                stmt = prepareInStatement(connection, "select END_POINT_ID,DATAFLOW,SERVICE,PRIORITY" +
+                        " from CHANNEL_T" +
+                        " where END_POINT_ID in ", chunk);
+                rs = stmt.executeQuery();
+                while (rs.next()) {
+                    Channel item = new Channel();
+                    item.setDataFlow(rs.getString("DATAFLOW"));
+                    item.setService(rs.getString("SERVICE"));
+                    item.setPriority(rs.getInt("PRIORITY"));
+
+                    endPoints.get(rs.getLong("END_POINT_ID")).getChannels().add(item);
+                }
+            } finally {
+                close(rs);
+                close(stmt);
             }
+        }
+    }
 
-            String sql = sb.toString();
-            LOGGER.info("userContextExists:sql: " + sql);
+    private void loadContactDetails(Connection connection, Map<Long, EndPoint> endPoints) throws SQLException {
+        for (List<Long> chunk : chunks(endPoints.keySet())) {
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
 
-            connection = dataSource.getConnection();
-            stmt = connection.prepareStatement(sql);
-            stmt.setString(1, userName);
-            stmt.setString(2, ctx.getRole().getRoleName());
-            if (ctx.getScope() != null) {
-                stmt.setString(3, ctx.getScope().getScopeName());
+            try {
+                stmt = prepareInStatement(connection, "select u.END_POINT_ID,FIRST_NAME,LAST_NAME,PHONE_NUMBER," +
+                        "MOBILE_NUMBER,FAX_NUMBER,E_MAIL" +
+                        " from END_POINT_CONTACT_T u, PERSON_T p" +
+                        " where u.PERSON_ID=p.PERSON_ID" +
+                        " and u.END_POINT_ID in ", chunk);
+                rs = stmt.executeQuery();
+                while (rs.next()) {
+                    endPoints.get(rs.getLong("END_POINT_ID")).getContactDetails().add(mapContactDetails(rs));
+                }
+            } finally {
+                close(rs);
+                close(stmt);
             }
+        }
+    }
 
-            rs = stmt.executeQuery();
-            ret = rs.next();
-        } catch (Exception ex) {
-            handleException(ex);
-        } finally {
-            close(rs);
-            close(stmt);
-            close(connection);
+    private PreparedStatement prepareInStatement(Connection connection, String sql, List<Long> ids)
+            throws SQLException {
+        PreparedStatement ret = connection.prepareStatement(sql +
+                "(" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")");
+        for (int i = 0; i < ids.size(); i++) {
+            ret.setLong(i + 1, ids.get(i));
+        }
+        return ret;
+    }
+
+    /**
+     * Splits the provided identifiers in chunks fitting in an SQL in-list.
+     */
+    private static List<List<Long>> chunks(Collection<Long> ids) {
+        List<List<Long>> ret = new ArrayList<>();
+        List<Long> all = new ArrayList<>(ids);
+        for (int from = 0; from < all.size(); from += MAX_IN_LIST) {
+            ret.add(all.subList(from, Math.min(from + MAX_IN_LIST, all.size())));
         }
         return ret;
     }
 
     /**
-     * Updates the user preferences for the provided user and context.
+     * Retrieves the identifiers of all the contexts of the provided user, by
+     * role name and scope name (empty for contexts without scope).
      *
-     * @param userName the name of the user to which the context applies
-     * @param ctx      the context holding user preferences to be stored
+     * @param userName the user name
+     * @return the possibly-empty user context identifiers, or <i>null</i> if
+     * the user does not exist
      * @throws RuntimeException in case an internal error prevented fulfilling
      *                          the request
      */
-    public void updateUserContext(String userName, Context ctx) {
-        LOGGER.debug("updateUserContext(" + ctx + ") - (ENTER)");
-
+    public Map<String, Map<String, Long>> getUserContextIds(String userName) {
         Connection connection = null;
-        PreparedStatement stmt_delete = null;
-        PreparedStatement stmt_insert = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
 
+        Map<String, Map<String, Long>> ret = null;
         try {
-            connection = dataSource.getConnection();
-
-            // Delete all/any previously existing preferences
-            StringBuilder deleteSB = new StringBuilder();
-
-            deleteSB.append("delete from PREFERENCE_T p")
-                    .append(" where p.USER_CONTEXT_ID=(select uc.USER_CONTEXT_ID")
-                    .append(" from USER_CONTEXT_T uc")
-                    .append(" inner join USER_T u on u.USER_ID=uc.USER_ID")
-                    .append(" inner join ROLE_T r on r.ROLE_ID=uc.ROLE_ID");
-            if (ctx.getScope() != null) {
-                deleteSB.append(" inner join SCOPE_T s on s.SCOPE_ID=uc.SCOPE_ID");
-            }
-            deleteSB.append(" where u.USER_NAME=?").
-                    append(" and r.NAME=?");
-            if (ctx.getScope() != null) {
-                deleteSB.append(" and s.NAME=?");
-            }
-            deleteSB.append(")");
-
-            String deleteSQL = deleteSB.toString();
-
-            LOGGER.info("updateUserContext: delSql " + deleteSQL);
-
-            stmt_delete = connection.prepareStatement(deleteSQL);
-
-            stmt_delete.setString(1, userName);
-            stmt_delete.setString(2, ctx.getRole().getRoleName());
-            if (ctx.getScope() != null) {
-                stmt_delete.setString(3, ctx.getScope().getScopeName());
-            }
-
-            int cnt = stmt_delete.executeUpdate();
-            LOGGER.info("updateUserContext: Deleted " + cnt + " preference records");
-
-            // Create all/any provided preferences
-            if (ctx.getPreferences() != null &&
-                    ctx.getPreferences().getPreferences() != null &&
-                    !ctx.getPreferences().getPreferences().isEmpty()) {
-
-                StringBuilder insertSB = new StringBuilder();
+            connection = UnitOfWork.getConnection(dataSource);
+            stmt = connection.prepareStatement("select uc.USER_CONTEXT_ID, r.NAME ROLE_NAME, s.NAME SCOPE_NAME" +
+                    " from USER_T u" +
+                    " left join USER_CONTEXT_T uc on uc.USER_ID=u.USER_ID" +
+                    " left join ROLE_T r on r.ROLE_ID=uc.ROLE_ID" +
+                    " left join SCOPE_T s on s.SCOPE_ID=uc.SCOPE_ID" +
+                    " where u.USER_NAME=?");
+            stmt.setString(1, userName);
 
-                insertSB.append("insert into PREFERENCE_T ")
-                        .append("(USER_CONTEXT_ID, OPTION_ID, OPTION_VALUE)")
-                        .append(" select uc.USER_CONTEXT_ID, o.OPTION_ID, ?")
-                        .append(" from APPLICATION_T a,OPTION_T o,USER_CONTEXT_T uc,USER_T u,")
-                        .append(" ROLE_T r");
-                if (ctx.getScope() != null) {
-                    insertSB.append(", SCOPE_T s");
-                }
-                insertSB.append(" where a.NAME=?")
-                        .append(" and o.NAME=?")
-                        .append(" and u.USER_NAME=?")
-                        .append(" and r.NAME=?")
-                        .append(" and o.APPLICATION_ID=a.APPLICATION_ID ")
-                        .append(" and uc.USER_ID=u.USER_ID")
-                        .append(" and uc.ROLE_ID=r.ROLE_ID");
-                if (ctx.getScope() != null) {
-                    insertSB.append(" and s.NAME=?").
-                            append(" and uc.SCOPE_ID=s.SCOPE_ID");
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                if (ret == null) {
+                    ret = new HashMap<>();
                 }
-                String insertSQL = insertSB.toString();
-
-                LOGGER.info("updateUserContext: insSql " + insertSQL);
-
-                stmt_insert = connection.prepareStatement(insertSQL);
-                int cnt2 = 0;
-                for (Preference item : ctx.getPreferences().getPreferences()) {
-                    stmt_insert.setBytes(1, item.getOptionValue() != null ? item.getOptionValue().getBytes() : null);
-                    stmt_insert.setString(2, item.getApplicationName());
-                    stmt_insert.setString(3, item.getOptionName());
-                    stmt_insert.setString(4, userName);
-                    stmt_insert.setString(5, ctx.getRole().getRoleName());
-                    if (ctx.getScope() != null) {
-                        stmt_insert.setString(6, ctx.getScope().getScopeName());
-                    }
-                    cnt2 += stmt_insert.executeUpdate();
+                String roleName = rs.getString("ROLE_NAME");
+                if (roleName != null) {
+                    String scopeName = rs.getString("SCOPE_NAME");
+                    ret.computeIfAbsent(roleName, k -> new HashMap<>())
+                            .put(scopeName != null ? scopeName : "", rs.getLong("USER_CONTEXT_ID"));
                 }
-                LOGGER.debug("updateUserContext: Created  " + cnt2 + " preference records");
             }
         } catch (Exception ex) {
             handleException(ex);
         } finally {
-            close(stmt_delete);
-            close(stmt_insert);
+            close(rs);
+            close(stmt);
             close(connection);
         }
+        return ret;
     }
 
-    private List<EndPoint> getEndPoints(Connection connection, long organisationId) {
-        List<EndPoint> ret = null;
+    /**
+     * Retrieves, in a single query, the identifiers of all the options of
+     * the provided applications.
+     *
+     * @param applicationNames the application names
+     * @return the possibly-empty option identifiers, by application name and
+     * option name
+     * @throws RuntimeException in case an internal error prevented fulfilling
+     *                          the request
+     */
+    public Map<String, Map<String, Long>> getOptionIds(Set<String> applicationNames) {
+        Map<String, Map<String, Long>> ret = new HashMap<>();
+        if (applicationNames.isEmpty()) {
+            return ret;
+        }
+
+        Connection connection = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
 
         try {
-            stmt = connection.prepareStatement("select END_POINT_ID," +
-                    "NAME,DESCRIPTION,URI,E_MAIL,STATUS" +
-                    " from END_POINT_T " +
-                    " where ORGANISATION_ID=?");
-            stmt.setLong(1, organisationId);
+            connection = UnitOfWork.getConnection(dataSource);
+            stmt = connection.prepareStatement("select a.NAME APPLICATION_NAME, o.NAME OPTION_NAME, o.OPTION_ID" +
+                    " from OPTION_T o" +
+                    " inner join APPLICATION_T a on a.APPLICATION_ID=o.APPLICATION_ID" +
+                    " where a.NAME in (" + String.join(",", Collections.nCopies(applicationNames.size(), "?")) + ")");
+            int idx = 1;
+            for (String applicationName : applicationNames) {
+                stmt.setString(idx++, applicationName);
+            }
 
             rs = stmt.executeQuery();
             while (rs.next()) {
-                EndPoint item = new EndPoint();
-                item.setName(rs.getString("NAME"));
-                item.setDescription(rs.getString("DESCRIPTION"));
-                item.setUri(rs.getString("URI"));
-                item.setEmail(rs.getString("E_MAIL"));
-                item.setEnabled(ENABLED.equals(rs.getString("STATUS")));
-
-                long endPointId = rs.getLong("END_POINT_ID");
-                item.setChannels(getChannels(connection, endPointId));
-                item.setContactDetails(getContactDetails(connection, endPointId));
-
-                if (ret == null) {
-                    ret = new ArrayList<>();
-                }
-                ret.add(item);
+                ret.computeIfAbsent(rs.getString("APPLICATION_NAME"), k -> new HashMap<>())
+                        .put(rs.getString("OPTION_NAME"), rs.getLong("OPTION_ID"));
             }
         } catch (Exception ex) {
             handleException(ex);
         } finally {
             close(rs);
             close(stmt);
+            close(connection);
         }
         return ret;
     }
 
-    private List<String> getChildOrganisationNames(Connection connection, Long parentId) {
+    /**
+     * Replaces the preferences of the provided user contexts, using a single
+     * connection.
+     * <p>
+     * The existing preferences are read first, so that only the differences
+     * are written back, using one JDBC batch for each of the deleted, updated
+     * and created preferences.
+     *
+     * @param preferences the new option values, by option identifier, by
+     *                    user context identifier
+     * @throws RuntimeException in case an internal error prevented fulfilling
+     *                          the request
+     */
+    public void updateUserPreferences(Map<Long, Map<Long, byte[]>> preferences) {
+        LOGGER.debug("updateUserPreferences(" + preferences.keySet() + ") - (ENTER)");
+
+        if (preferences.isEmpty()) {
+            return;
+        }
+
+        Connection connection = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
-        List<String> ret = null;
+        PreparedStatement stmtDelete = null;
+        PreparedStatement stmtUpdate = null;
+        PreparedStatement stmtInsert = null;
 
         try {
-            stmt = connection.prepareStatement("select NAME from ORGANISATION_T o" +
-                    " where o.PARENT_ID=?");
-            stmt.setLong(1, parentId);
-
+            connection = UnitOfWork.getConnection(dataSource);
+
+            // Read the existing preferences
+            Map<Long, Map<Long, byte[]>> existing = new HashMap<>();
+            stmt = connection.prepareStatement("select USER_CONTEXT_ID, OPTION_ID, OPTION_VALUE" +
+                    " from PREFERENCE_T" +
+                    " where USER_CONTEXT_ID in (" + String.join(",", Collections.nCopies(preferences.size(), "?")) + ")");
+            int idx = 1;
+            for (Long userContextId : preferences.keySet()) {
+                stmt.setLong(idx++, userContextId);
+            }
             rs = stmt.executeQuery();
             while (rs.next()) {
-                if (ret == null) {
-                    ret = new ArrayList<>();
+                existing.computeIfAbsent(rs.getLong("USER_CONTEXT_ID"), k -> new HashMap<>())
+                        .put(rs.getLong("OPTION_ID"), rs.getBytes("OPTION_VALUE"));
+            }
+
+            // Write back the differences
+            stmtDelete = connection.prepareStatement("delete from PREFERENCE_T" +
+                    " where USER_CONTEXT_ID=? and OPTION_ID=?");
+            stmtUpdate = connection.prepareStatement("update PREFERENCE_T set OPTION_VALUE=?" +
+                    " where USER_CONTEXT_ID=? and OPTION_ID=?");
+            stmtInsert = connection.prepareStatement("insert into PREFERENCE_T" +
+                    " (USER_CONTEXT_ID, OPTION_ID, OPTION_VALUE) values (?,?,?)");
+            int deleted = 0;
+            int updated = 0;
+            int created = 0;
+
+            for (Map.Entry<Long, Map<Long, byte[]>> ctx : preferences.entrySet()) {
+                Long userContextId = ctx.getKey();
+                Map<Long, byte[]> current = existing.getOrDefault(userContextId, Collections.emptyMap());
+
+                for (Long optionId : current.keySet()) {
+                    if (!ctx.getValue().containsKey(optionId)) {
+                        stmtDelete.setLong(1, userContextId);
+                        stmtDelete.setLong(2, optionId);
+                        stmtDelete.addBatch();
+                        deleted++;
+                    }
+                }
+                for (Map.Entry<Long, byte[]> option : ctx.getValue().entrySet()) {
+                    if (!current.containsKey(option.getKey())) {
+                        stmtInsert.setLong(1, userContextId);
+                        stmtInsert.setLong(2, option.getKey());
+                        stmtInsert.setBytes(3, option.getValue());
+                        stmtInsert.addBatch();
+                        created++;
+                    } else if (!Arrays.equals(current.get(option.getKey()), option.getValue())) {
+                        stmtUpdate.setBytes(1, option.getValue());
+                        stmtUpdate.setLong(2, userContextId);
+                        stmtUpdate.setLong(3, option.getKey());
+                        stmtUpdate.addBatch();
+                        updated++;
+                    }
                 }
-                ret.add(rs.getString("NAME"));
             }
+
+            if (deleted > 0) {
+                stmtDelete.executeBatch();
+            }
+            if (updated > 0) {
+                stmtUpdate.executeBatch();
+            }
+            if (created > 0) {
+                stmtInsert.executeBatch();
+            }
+            LOGGER.debug("updateUserPreferences: Deleted " + deleted + ", updated " + updated +
+                    ", created " + created + " preference records");
         } catch (Exception ex) {
             handleException(ex);
         } finally {
             close(rs);
             close(stmt);
+            close(stmtDelete);
+            close(stmtUpdate);
+            close(stmtInsert);
+            close(connection);
         }
 
-        return ret;
+        LOGGER.debug("updateUserPreferences() - (LEAVE)");
     }
 
     private String getOrganisationName(Connection connection, Long organisationId) {
@@ -477,6 +573,12 @@ public class InformationDao {
 
     /**
      * Retrieves an end-user profile for a specific application.
+     * <p>
+     * The profile is loaded with a fixed number of queries, regardless of the
+     * number of contexts the user has: one for the contexts themselves, one
+     * for the features of all their roles, one for all their scopes (including
+     * data-sets) and one for all their preferences. The UserContext graph is
+     * then assembled in memory.
      *
      * @param query the (unique) user and application names
      * @return the user profile if the user and application exist, <i>null</i>
@@ -488,120 +590,110 @@ public class InformationDao {
         UserContext ret = null;
 
         Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
-        String sql = "select distinct ROLE_NAME,ROLE_ID,SCOPE_ID,USER_CONTEXT_ID" +
-                " from active_user_role_v ar" +
-                " where ar.user_name=?" +
-                " and (exists (select 1 from role_t r, permission_t p, feature_t f, application_t a" +
-                "              where r.role_id=ar.role_id" +
-                "              and p.role_id=r.role_id" +
-                "              and f.feature_id=p.feature_id" +
-                "              and a.application_id=f.application_id";
-        if (query.getApplicationName() != null) {
-            sql += "         and a.name=?";
-        }
-        sql += ") or" +
-                "     exists (select 1 from scope_t s,scope_dataset_t sd,dataset_t d,application_t a" +
-                "              where s.scope_id=ar.scope_id" +
-                "              and sd.scope_id=s.scope_id" +
-                "              and d.dataset_id=sd.dataset_id" +
-                "              and a.application_id=d.application_id";
-        if (query.getApplicationName() != null) {
-            sql += "         and a.name=?";
-        }
-        sql += "))";
-        LOGGER.debug("getUserContext() - sql: " + sql);
         try {
-            connection = dataSource.getConnection();
-
-            stmt = connection.prepareStatement(sql);
-            stmt.setString(1, query.getUserName());
-            if (query.getApplicationName() != null) {
-                stmt.setString(2, query.getApplicationName());  // Once for roles
-                stmt.setString(3, query.getApplicationName());  // Once for scopes
-            }
-
-            rs = stmt.executeQuery();
-            Preferences preferences;
-
-            while (rs.next()) {
-                if (ret == null) {
-                    ret = new UserContext();
-                    ret.setUserName(query.getUserName());
-                    ret.setApplicationName(query.getApplicationName());
-                    ret.setContextSet(new ContextSet());
-                    ret.getContextSet().setContexts(new HashSet<Context>());
-                }
-
-                Context item = new Context();
-                item.setRole(new Role());
-                item.getRole().setRoleName(rs.getString("ROLE_NAME"));
-                item.getRole().setFeatures(getFeatures(connection, rs.getLong("ROLE_ID")));
+            connection = UnitOfWork.getConnection(dataSource);
+
+            List<ContextRow> rows = getContextRows(connection, query);
+            if (!rows.isEmpty()) {
+                Map<Long, Set<Feature>> features = getRoleFeatures(connection, query.getUserName());
+                Map<Long, Scope> scopes = getUserScopes(connection, query.getUserName());
+                PreferenceRows preferences = getUserPreferences(connection, query);
+
+                ret = new UserContext();
+                ret.setUserName(query.getUserName());
+                ret.setApplicationName(query.getApplicationName());
+                ret.setContextSet(new ContextSet());
+                ret.getContextSet().setContexts(new HashSet<Context>());
+
+                for (ContextRow row : rows) {
+                    Context item = new Context();
+                    item.setRole(new Role());
+                    item.getRole().setRoleName(row.roleName);
+                    Set<Feature> roleFeatures = features.get(row.roleId);
+                    item.getRole().setFeatures(roleFeatures != null ? new HashSet<>(roleFeatures) : new HashSet<Feature>());
+
+                    if (row.scopeId != null) {
+                        item.setScope(scopes.get(row.scopeId));
+                    }
+                    item.setPreferences(preferences.forContext(row.userContextId));
 
-                if (rs.getObject("SCOPE_ID") != null) {
-                    item.setScope(getScope(connection, rs.getLong("SCOPE_ID")));
+                    ret.getContextSet().getContexts().add(item);
                 }
-
-                Long userContextId = rs.getLong("USER_CONTEXT_ID");
-                preferences = getPreferences(connection, query, userContextId);
-                item.setPreferences(preferences);
-
-                ret.getContextSet().getContexts().add(item);
             }
         } catch (Exception ex) {
             handleException(ex);
         } finally {
-            close(rs);
-            close(stmt);
             close(connection);
         }
         return ret;
     }
 
-    public Set<Feature> getUserFeatures(String username) {
-        Set<Feature> ret = new HashSet<>();
-
-        Connection connection = null;
+    private List<ContextRow> getContextRows(Connection connection, UserContextQuery query) throws SQLException {
+        List<ContextRow> ret = new ArrayList<>();
         PreparedStatement stmt = null;
         ResultSet rs = null;
-        String sql = "select distinct ROLE_ID" +
-                " from active_user_role_v ar" +
-                " where ar.user_name=?";
+        String sql = query.getApplicationName() != null ? APPLICATION_CONTEXT_ROWS : CONTEXT_ROWS;
+        LOGGER.debug("getContextRows() - sql: " + sql);
         try {
-            connection = dataSource.getConnection();
-
             stmt = connection.prepareStatement(sql);
-            stmt.setString(1, username);
+            stmt.setString(1, query.getUserName());
+            if (query.getApplicationName() != null) {
+                stmt.setString(2, query.getApplicationName());  // Once for roles
+                stmt.setString(3, query.getApplicationName());  // Once for scopes
+            }
 
             rs = stmt.executeQuery();
-
             while (rs.next()) {
-                ret.addAll(getFeatures(connection, rs.getLong("ROLE_ID")));
+                ContextRow row = new ContextRow();
+                row.roleName = rs.getString("ROLE_NAME");
+                row.roleId = rs.getLong("ROLE_ID");
+                if (rs.getObject("SCOPE_ID") != null) {
+                    row.scopeId = rs.getLong("SCOPE_ID");
+                }
+                row.userContextId = rs.getLong("USER_CONTEXT_ID");
+                ret.add(row);
             }
-        } catch (Exception ex) {
-            handleException(ex);
         } finally {
             close(rs);
             close(stmt);
-            close(connection);
         }
         return ret;
     }
 
-    private Set<Feature> getFeatures(Connection connection, long roleId) {
+    private static String getContextRowsQuery(String applicationFilter) {
+        return "select distinct ROLE_NAME,ROLE_ID,SCOPE_ID,USER_CONTEXT_ID" +
+                " from active_user_role_v ar" +
+                " where ar.user_name=?" +
+                " and (exists (select 1 from role_t r, permission_t p, feature_t f, application_t a" +
+                "              where r.role_id=ar.role_id" +
+                "              and p.role_id=r.role_id" +
+                "              and f.feature_id=p.feature_id" +
+                "              and a.application_id=f.application_id" +
+                applicationFilter +
+                ") or" +
+                "     exists (select 1 from scope_t s,scope_dataset_t sd,dataset_t d,application_t a" +
+                "              where s.scope_id=ar.scope_id" +
+                "              and sd.scope_id=s.scope_id" +
+                "              and d.dataset_id=sd.dataset_id" +
+                "              and a.application_id=d.application_id" +
+                applicationFilter +
+                "))";
+    }
+
+    private Map<Long, Set<Feature>> getRoleFeatures(Connection connection, String userName) throws SQLException {
+        Map<Long, Set<Feature>> ret = new HashMap<>();
         PreparedStatement stmt = null;
         ResultSet rs = null;
-        Set<Feature> ret = new HashSet<>();
 
         try {
-            stmt = connection.prepareStatement("select f.NAME as FEATURE_NAME, a.NAME" +
+            stmt = connection.prepareStatement("select p.ROLE_ID, f.NAME as FEATURE_NAME, a.NAME" +
                     " as APPLICATION_NAME, f.FEATURE_ID as FEATURE_ID" +
                     " from permission_t p,feature_t f,application_t a" +
                     " where f.feature_id=p.feature_id" +
                     " and a.application_id=f.application_id" +
-                    " and p.role_id=?");
-            stmt.setLong(1, roleId);
+                    " and p.role_id in (select ar.ROLE_ID from active_user_role_v ar" +
+                    "                   where ar.user_name=?)");
+            stmt.setString(1, userName);
 
             rs = stmt.executeQuery();
             while (rs.next()) {
@@ -610,10 +702,8 @@ public class InformationDao {
                 item.setFeatureName(rs.getString("FEATURE_NAME"));
                 item.setFeatureId(rs.getInt("FEATURE_ID"));
 
-                ret.add(item);
+                ret.computeIfAbsent(rs.getLong("ROLE_ID"), k -> new HashSet<>()).add(item);
             }
-        } catch (Exception ex) {
-            handleException(ex);
         } finally {
             close(rs);
             close(stmt);
@@ -621,67 +711,87 @@ public class InformationDao {
         return ret;
     }
 
-    private Scope getScope(Connection connection, long scopeId) {
-        Scope ret = null;
+    private Map<Long, Scope> getUserScopes(Connection connection, String userName) throws SQLException {
+        Map<Long, Scope> ret = new HashMap<>();
         PreparedStatement stmt = null;
         ResultSet rs = null;
 
         try {
-            stmt = connection.prepareStatement("select s.NAME,s.ACTIVE_FROM,s.ACTIVE_TO,s.DATA_FROM,s.DATA_TO" +
+            stmt = connection.prepareStatement("select s.SCOPE_ID,s.NAME,s.ACTIVE_FROM,s.ACTIVE_TO,s.DATA_FROM,s.DATA_TO," +
+                    " d.DATASET_ID,d.NAME as DATASET_NAME,d.CATEGORY,d.DISCRIMINATOR," +
+                    " a.NAME as APPLICATION_NAME" +
                     " from scope_t s" +
-                    " where s.scope_id=?");
-            stmt.setLong(1, scopeId);
+                    " left join scope_dataset_t sd on sd.scope_id=s.scope_id" +
+                    " left join dataset_t d on d.dataset_id=sd.dataset_id" +
+                    " left join application_t a on a.application_id=d.application_id" +
+                    " where s.scope_id in (select ar.SCOPE_ID from active_user_role_v ar" +
+                    "                     where ar.user_name=?)");
+            stmt.setString(1, userName);
 
             rs = stmt.executeQuery();
-            if (rs.next()) {
-                ret = new Scope();
-                ret.setScopeName(rs.getString("NAME"));
-                ret.setActiveFrom(rs.getTimestamp("ACTIVE_FROM"));
-                ret.setActiveTo(rs.getTimestamp("ACTIVE_TO"));
-                ret.setDataFrom(rs.getTimestamp("DATA_FROM"));
-                ret.setDataTo(rs.getTimestamp("DATA_TO"));
+            while (rs.next()) {
+                long scopeId = rs.getLong("SCOPE_ID");
+                Scope scope = ret.get(scopeId);
+                if (scope == null) {
+                    scope = new Scope();
+                    scope.setScopeName(rs.getString("NAME"));
+                    scope.setActiveFrom(rs.getTimestamp("ACTIVE_FROM"));
+                    scope.setActiveTo(rs.getTimestamp("ACTIVE_TO"));
+                    scope.setDataFrom(rs.getTimestamp("DATA_FROM"));
+                    scope.setDataTo(rs.getTimestamp("DATA_TO"));
+                    ret.put(scopeId, scope);
+                }
+
+                if (rs.getObject("DATASET_ID") != null) {
+                    if (scope.getDatasets() == null) {
+                        scope.setDatasets(new HashSet<DataSet>());
+                    }
+                    DataSet item = new DataSet();
+                    item.setApplicationName(rs.getString("APPLICATION_NAME"));
+                    item.setCategory(rs.getString("CATEGORY"));
+                    item.setDiscriminator(rs.getString("DISCRIMINATOR"));
+                    item.setName(rs.getString("DATASET_NAME"));
 
-                ret.setDatasets(getDataSets(connection, scopeId));
+                    scope.getDatasets().add(item);
+                }
             }
-        } catch (Exception ex) {
-            handleException(ex);
         } finally {
             close(rs);
             close(stmt);
         }
-
         return ret;
     }
 
-    private Set<DataSet> getDataSets(Connection connection, long scopeId) {
-        Set<DataSet> ret = null;
+    private PreferenceRows getUserPreferences(Connection connection, UserContextQuery query) throws SQLException {
+        PreferenceRows ret = new PreferenceRows();
         PreparedStatement stmt = null;
         ResultSet rs = null;
 
         try {
-            stmt = connection.prepareStatement("select d.NAME as DATASET_NAME,d.CATEGORY,d.DISCRIMINATOR," +
-                    " a.NAME as APPLICATION_NAME" +
-                    " from scope_t s,scope_dataset_t sd,dataset_t d,application_t a" +
-                    " where d.dataset_id=sd.dataset_id" +
-                    " and a.application_id=d.application_id" +
-                    " and sd.scope_id=?");
-            stmt.setLong(1, scopeId);
+            String sql = query.getApplicationName() != null ? APPLICATION_USER_PREFERENCES : USER_PREFERENCES;
+            LOGGER.debug("getUserPreferences() - sql: " + sql);
+            stmt = connection.prepareStatement(sql);
+
+            stmt.setString(1, query.getUserName());
+            if (query.getApplicationName() != null) {
+                stmt.setString(2, query.getApplicationName());
+            }
 
             rs = stmt.executeQuery();
             while (rs.next()) {
-                if (ret == null) {
-                    ret = new HashSet<>();
-                }
-                DataSet item = new DataSet();
+                Preference item = new Preference();
                 item.setApplicationName(rs.getString("APPLICATION_NAME"));
-                item.setCategory(rs.getString("CATEGORY"));
-                item.setDiscriminator(rs.getString("DISCRIMINATOR"));
-                item.setName(rs.getString("DATASET_NAME"));
+                item.setOptionName(rs.getString("OPTION_NAME"));
 
-                ret.add(item);
+                byte[] optionValue = rs.getBytes("OPTION_VALUE");
+                item.setOptionValue(optionValue != null ? new String(optionValue) : null);
+
+                if ("Y".equals(rs.getString("IS_DEFAULT"))) {
+                    ret.defaults.add(item);
+                } else if (rs.getObject("USER_CONTEXT_ID") != null) {
+                    ret.byContext.computeIfAbsent(rs.getLong("USER_CONTEXT_ID"), k -> new ArrayList<>()).add(item);
+                }
             }
-        } catch (Exception ex) {
-            handleException(ex);
         } finally {
             close(rs);
             close(stmt);
@@ -689,110 +799,111 @@ public class InformationDao {
         return ret;
     }
 
-    private Preferences getPreferences(Connection connection, UserContextQuery query, Long userContextId) {
-        Preferences ret = null;
+    /**
+     * Retrieves the identifiers of the roles the provided user is currently
+     * granted.
+     *
+     * @param userName the user name
+     * @return the possibly-empty set of role identifiers
+     * @throws RuntimeException in case an internal error prevented fulfilling
+     *                          the request
+     */
+    public Set<Long> getActiveRoleIds(String userName) {
+        Set<Long> ret = new HashSet<>();
+
+        Connection connection = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
-
         try {
-            StringBuilder sb = new StringBuilder();
-            sb.append("select OPTION_NAME,OPTION_VALUE,APPLICATION_NAME" +
-                    " from USER_PROFILE_V" +
-                    " where USER_NAME=?" +
-                    " and (IS_DEFAULT='Y' or USER_CONTEXT_ID=?)");
-            if (query.getApplicationName() != null) {
-                sb.append(" and APPLICATION_NAME=?");
-            }
-            String sql = sb.toString();
-            LOGGER.debug("getPreferences() - sql: " + sql);
-            stmt = connection.prepareStatement(sql);
-
-            stmt.setString(1, query.getUserName());
-            stmt.setLong(2, userContextId);
-            if (query.getApplicationName() != null) {
-                stmt.setString(3, query.getApplicationName());
-            }
+            connection = UnitOfWork.getConnection(dataSource);
+            stmt = connection.prepareStatement("select distinct ROLE_ID" +
+                    " from active_user_role_v ar" +
+                    " where ar.user_name=?");
+            stmt.setString(1, userName);
 
             rs = stmt.executeQuery();
             while (rs.next()) {
-                if (ret == null) {
-                    ret = new Preferences();
-                    ret.setPreferences(new HashSet<Preference>());
-                }
-                Preference item = new Preference();
-                item.setApplicationName(rs.getString("APPLICATION_NAME"));
-                item.setOptionName(rs.getString("OPTION_NAME"));
-
-
-                byte[] optionValue = rs.getBytes("OPTION_VALUE");
-
-                item.setOptionValue(optionValue != null ? new String(optionValue) : null);
-                ret.getPreferences().add(item);
+                ret.add(rs.getLong("ROLE_ID"));
             }
         } catch (Exception ex) {
             handleException(ex);
         } finally {
             close(rs);
             close(stmt);
+            close(connection);
         }
         return ret;
     }
 
-    private List<ContactDetails> getContactDetails(Connection connection, long endPointId) {
-        List<ContactDetails> ret = new ArrayList<>();
+    /**
+     * Retrieves, in a single query, the identifiers of the features granted
+     * to every role, including roles without any permission.
+     *
+     * @return the feature identifiers, by role identifier
+     * @throws RuntimeException in case an internal error prevented fulfilling
+     *                          the request
+     */
+    public Map<Long, BitSet> getRoleFeatureIds() {
+        Map<Long, BitSet> ret = new HashMap<>();
+
+        Connection connection = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
-
         try {
-            stmt = connection.prepareStatement("select FIRST_NAME,LAST_NAME,PHONE_NUMBER," +
-                    "MOBILE_NUMBER,FAX_NUMBER,E_MAIL" +
-                    " from END_POINT_CONTACT_T u, PERSON_T p" +
-                    " where u.PERSON_ID=p.PERSON_ID" +
-                    " and u.END_POINT_ID=?");
-            stmt.setLong(1, endPointId);
+            connection = UnitOfWork.getConnection(dataSource);
+            stmt = connection.prepareStatement("select r.ROLE_ID, p.FEATURE_ID" +
+                    " from ROLE_T r" +
+                    " left join PERMISSION_T p on p.ROLE_ID=r.ROLE_ID");
 
             rs = stmt.executeQuery();
             while (rs.next()) {
-                ContactDetails cd = mapContactDetails(rs);
-
-                ret.add(cd);
+                BitSet features = ret.computeIfAbsent(rs.getLong("ROLE_ID"), k -> new BitSet());
+                int featureId = rs.getInt("FEATURE_ID");
+                if (!rs.wasNull()) {
+                    features.set(featureId);
+                }
             }
         } catch (Exception ex) {
             handleException(ex);
         } finally {
             close(rs);
             close(stmt);
+            close(connection);
         }
         return ret;
     }
 
-    private List<Channel> getChannels(Connection connection, long endPointId) {
-        List<Channel> ret = new ArrayList<>();
+    /**
+     * Retrieves the identifiers of the features granted to the provided role.
+     *
+     * @param roleId the role identifier
+     * @return the possibly-empty feature identifiers
+     * @throws RuntimeException in case an internal error prevented fulfilling
+     *                          the request
+     */
+    public BitSet getRoleFeatureIds(long roleId) {
+        BitSet ret = new BitSet();
+
+        Connection connection = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
-
         try {
-            stmt = connection.prepareStatement("select DATAFLOW,SERVICE,PRIORITY" +
-                    " from CHANNEL_T" +
-                    " where END_POINT_ID=?");
-            stmt.setLong(1, endPointId);
+            connection = UnitOfWork.getConnection(dataSource);
+            stmt = connection.prepareStatement("select FEATURE_ID" +
+                    " from PERMISSION_T" +
+                    " where ROLE_ID=?");
+            stmt.setLong(1, roleId);
 
             rs = stmt.executeQuery();
             while (rs.next()) {
-                Channel item = new Channel();
-
-                item.setDataFlow(rs.getString("DATAFLOW"));
-                item.setService(rs.getString("SERVICE"));
-
-                item.setPriority(rs.getInt("PRIORITY"));
-
-                ret.add(item);
+                ret.set(rs.getInt("FEATURE_ID"));
             }
         } catch (Exception ex) {
             handleException(ex);
         } finally {
             close(rs);
             close(stmt);
+            close(connection);
         }
         return ret;
     }
@@ -845,4 +956,36 @@ public class InformationDao {
         }
     }
 
+    /**
+     * A single row of the active_user_role_v view, identifying a user context.
+     */
+    private static class ContextRow {
+        private String roleName;
+        private long roleId;
+        private Long scopeId;
+        private long userContextId;
+    }
+
+    /**
+     * The preferences of a user, split in default preferences (applicable to
+     * all contexts) and context-specific preferences.
+     */
+    private static class PreferenceRows {
+        private final List<Preference> defaults = new ArrayList<>();
+        private final Map<Long, List<Preference>> byContext = new HashMap<>();
+
+        private Preferences forContext(long userContextId) {
+            List<Preference> specific = byContext.get(userContextId);
+            if (defaults.isEmpty() && specific == null) {
+                return null;
+            }
+            Preferences ret = new Preferences();
+            ret.setPreferences(new HashSet<Preference>(defaults));
+            if (specific != null) {
+                ret.getPreferences().addAll(specific);
+            }
+            return ret;
+        }
+    }
+
 }
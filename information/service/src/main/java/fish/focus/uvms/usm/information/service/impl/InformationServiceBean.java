@@ -12,9 +12,13 @@ import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Stateless session bean implementation of the InformationService
@@ -33,6 +37,12 @@ public class InformationServiceBean implements InformationService {
     @EJB
     private DataSetJpaDao dataSetDao;
 
+    @EJB
+    private OrganisationCache organisationCache;
+
+    @EJB
+    private RoleFeatureIndex roleFeatureIndex;
+
     @Override
     public ContactDetails getContactDetails(String userName) throws IllegalArgumentException, RuntimeException {
         LOGGER.debug("getContactDetails(" + userName + ") - (ENTER)");
@@ -49,7 +59,7 @@ public class InformationServiceBean implements InformationService {
         LOGGER.debug("findOrganisations(" + nation + ") - (ENTER)");
 
         assertNotEmpty("nation", nation);
-        List<Organisation> ret = dao.findOrganisations(nation);
+        List<Organisation> ret = organisationCache.findOrganisations(nation);
 
         LOGGER.debug("findOrganisations() - (LEAVE)");
         return ret;
@@ -60,7 +70,7 @@ public class InformationServiceBean implements InformationService {
         LOGGER.debug("getOrganisation(" + organisationName + ") - (ENTER)");
 
         assertNotEmpty("organisationName", organisationName);
-        Organisation ret = dao.getOrganisation(organisationName);
+        Organisation ret = organisationCache.getOrganisation(organisationName);
 
         LOGGER.debug("getOrganisation() - (LEAVE)");
         return ret;
@@ -79,24 +89,18 @@ public class InformationServiceBean implements InformationService {
 
     @Override
     public List<Integer> getUserFeatures(String username) {
-        Set<Feature> features = dao.getUserFeatures(username);
-        return features.stream().map(Feature::getFeatureId).collect(Collectors.toList());
+        return roleFeatureIndex.getFeatureIds(dao.getActiveRoleIds(username));
     }
 
     @Override
     public void updateUserPreferences(UserContext userContext) throws IllegalArgumentException, RuntimeException {
         LOGGER.debug("updateUserContext(" + userContext + ") - (ENTER)");
 
-        // Validate input
-        assertValid(userContext);
+        // Validate input, resolving user contexts and options
+        Map<Long, Map<Long, byte[]>> preferences = assertValid(userContext);
 
         // Execute
-        if (userContext.getContextSet() != null &&
-                userContext.getContextSet().getContexts() != null) {
-            for (Context ctx : userContext.getContextSet().getContexts()) {
-                dao.updateUserContext(userContext.getUserName(), ctx);
-            }
-        }
+        dao.updateUserPreferences(preferences);
 
         LOGGER.debug("updateUserContext() - (LEAVE)");
     }
@@ -209,47 +213,88 @@ public class InformationServiceBean implements InformationService {
         assertNotEmpty("query.userName", query.getUserName());
     }
 
-    private void assertValid(UserContext userContext) {
+    /**
+     * Validates the provided user context, with one query for the user
+     * contexts and one for the options, and resolves the preferences to be
+     * stored by user context identifier and option identifier.
+     */
+    private Map<Long, Map<Long, byte[]>> assertValid(UserContext userContext) {
         assertNotNull("userContext", userContext);
         assertNotEmpty("userContext.userName", userContext.getUserName());
-        if (!dao.userExists(userContext.getUserName())) {
+        Map<String, Map<String, Long>> userContextIds = dao.getUserContextIds(userContext.getUserName());
+        if (userContextIds == null) {
             throw new IllegalArgumentException("User does not exist");
         }
+
+        Map<Long, Collection<Preference>> resolved = new LinkedHashMap<>();
+        Set<String> applicationNames = new HashSet<>();
         if (userContext.getContextSet() != null &&
                 userContext.getContextSet().getContexts() != null) {
             for (Context ctx : userContext.getContextSet().getContexts()) {
-                assertValid(userContext.getUserName(), ctx);
+                Collection<Preference> preferences = assertValid(ctx.getPreferences(), applicationNames);
+                for (Long userContextId : assertValid(userContext.getUserName(), ctx, userContextIds)) {
+                    resolved.put(userContextId, preferences);
+                }
             }
         }
+
+        Map<String, Map<String, Long>> optionIds = dao.getOptionIds(applicationNames);
+        Map<Long, Map<Long, byte[]>> ret = new HashMap<>();
+        for (Map.Entry<Long, Collection<Preference>> entry : resolved.entrySet()) {
+            Map<Long, byte[]> values = new HashMap<>();
+            for (Preference p : entry.getValue()) {
+                Long optionId = optionIds.getOrDefault(p.getApplicationName(), new HashMap<>())
+                        .get(p.getOptionName());
+                if (optionId == null) {
+                    throw new IllegalArgumentException("Option " + p.getApplicationName() +
+                            "/" + p.getOptionName() + " does not exist");
+                }
+                values.put(optionId, p.getOptionValue() != null ? p.getOptionValue().getBytes() : null);
+            }
+            ret.put(entry.getKey(), values);
+        }
+        return ret;
     }
 
-    private void assertValid(String userName, Context ctx) {
+    /**
+     * Resolves the identifiers of the user contexts matching the provided
+     * context; a context without scope matches all scopes of its role.
+     */
+    private Collection<Long> assertValid(String userName, Context ctx, Map<String, Map<String, Long>> userContextIds) {
         assertNotNull("role", ctx.getRole());
         assertNotEmpty("role.name", ctx.getRole().getRoleName());
         if (ctx.getScope() != null) {
             assertNotEmpty("scope.name", ctx.getScope().getScopeName());
         }
-        if (!dao.userContextExists(userName, ctx)) {
+
+        List<Long> ret = new ArrayList<>();
+        Map<String, Long> byScope = userContextIds.get(ctx.getRole().getRoleName());
+        if (byScope != null) {
+            if (ctx.getScope() == null) {
+                ret.addAll(byScope.values());
+            } else if (byScope.containsKey(ctx.getScope().getScopeName())) {
+                ret.add(byScope.get(ctx.getScope().getScopeName()));
+            }
+        }
+        if (ret.isEmpty()) {
             throw new IllegalArgumentException("User context " + userName + "/" +
                     ctx.getRole().getRoleName() + "/" +
                     (ctx.getScope() == null ? "" : ctx.getScope().getScopeName()) + " does not exist");
         }
-        if (ctx.getPreferences() != null) {
-            assertValid(ctx.getPreferences());
-        }
+        return ret;
     }
 
-    private void assertValid(Preferences preferences) {
-        if (preferences.getPreferences() != null) {
+    private Collection<Preference> assertValid(Preferences preferences, Set<String> applicationNames) {
+        List<Preference> ret = new ArrayList<>();
+        if (preferences != null && preferences.getPreferences() != null) {
             for (Preference p : preferences.getPreferences()) {
                 assertNotEmpty("preference.applicationName", p.getApplicationName());
                 assertNotEmpty("preference.optionName", p.getOptionName());
-                if (!dao.optionExists(p.getApplicationName(), p.getOptionName())) {
-                    throw new IllegalArgumentException("Option " + p.getApplicationName() +
-                            "/" + p.getOptionName() + " does not exist");
-                }
+                applicationNames.add(p.getApplicationName());
+                ret.add(p);
             }
         }
+        return ret;
     }
 
     private void assertNotEmpty(String name, String value) {
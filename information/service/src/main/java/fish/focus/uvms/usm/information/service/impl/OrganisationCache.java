@@ -0,0 +1,148 @@
+package fish.focus.uvms.usm.information.service.impl;
+
+import fish.focus.uvms.usm.authentication.service.impl.PersonsChangedEvent;
+import fish.focus.uvms.usm.information.domain.Organisation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.event.Observes;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * J2EE Singleton read-through cache of organisations, with their
+ * end-points, channels and contacts, by nation and by organisation name.<br/>
+ * Organisations are cached for 5 minutes, and should be evicted whenever an
+ * organisation, end-point, channel, contact or person is changed; persons
+ * synchronised with LDAP are evicted upon {@link PersonsChangedEvent}.
+ * <p>
+ * Evictions requested within a transaction take place once the transaction
+ * completes, so that organisations re-loaded by concurrent requests before
+ * the commit are not kept; organisations loaded while an eviction took
+ * place are not kept either.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class OrganisationCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrganisationCache.class);
+    private static final long TTL = (5 * 60 * 1000);
+
+    @EJB
+    private InformationDao dao;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    private final ConcurrentMap<String, TimedKeeper<List<Organisation>>> byNation = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TimedKeeper<Organisation>> byName = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Retrieves all organisations associated with the provided nation.
+     *
+     * @param nation the nation
+     * @return the possibly-empty list of Organisations and their associated
+     * EndPoints
+     */
+    public List<Organisation> findOrganisations(String nation) {
+        TimedKeeper<List<Organisation>> tk = byNation.get(nation);
+        if (tk == null || tk.isExpired()) {
+            long generation = evictions.get();
+            tk = new TimedKeeper<>(dao.findOrganisations(nation));
+            if (evictions.get() == generation) {
+                byNation.put(nation, tk);
+            }
+        }
+        return tk.value;
+    }
+
+    /**
+     * Retrieves an organisation and its associated end-points.
+     *
+     * @param organisationName the (unique) organisation name
+     * @return the organisation details if the organisation exists, <i>null</i>
+     * otherwise
+     */
+    public Organisation getOrganisation(String organisationName) {
+        TimedKeeper<Organisation> tk = byName.get(organisationName);
+        if (tk == null || tk.isExpired()) {
+            long generation = evictions.get();
+            tk = new TimedKeeper<>(dao.getOrganisation(organisationName));
+            if (tk.value == null) {
+                byName.remove(organisationName);
+            } else if (evictions.get() == generation) {
+                byName.put(organisationName, tk);
+            }
+        }
+        return tk.value;
+    }
+
+    /**
+     * Evicts all cached organisations, once the current transaction (if any)
+     * completes.
+     */
+    public void evictAll() {
+        afterCompletion(() -> {
+            LOGGER.debug("evictAll()");
+            evictions.incrementAndGet();
+            byNation.clear();
+            byName.clear();
+        });
+    }
+
+    /**
+     * Evicts all cached organisations, whose contacts may have changed.
+     *
+     * @param event the persons that changed
+     */
+    public void onPersonsChanged(@Observes PersonsChangedEvent event) {
+        LOGGER.debug("onPersonsChanged(" + event.userNames + ")");
+        evictAll();
+    }
+
+    private void afterCompletion(Runnable eviction) {
+        if (txRegistry != null && txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // Nothing to do
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+
+    private static class TimedKeeper<T> {
+        private final long timestamp;
+        private final T value;
+
+        private TimedKeeper(T value) {
+            this.value = value;
+            this.timestamp = System.currentTimeMillis();
+        }
+
+        private boolean isExpired() {
+            return timestamp + TTL <= System.currentTimeMillis();
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package fish.focus.uvms.usm.information.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * J2EE Singleton that keeps, in memory, the identifiers of the features
+ * granted to every role as a bit-set, so that the features of a user are
+ * computed as the union of the bit-sets of its roles.
+ * <p>
+ * The whole index is loaded with a single query and rebuilt every 5
+ * minutes. A role whose permissions change should be evicted, it is then
+ * reloaded alone on next use; deployments, which may add or remove
+ * features, should evict the whole index.
+ * <p>
+ * Evictions requested within a transaction take place once the transaction
+ * completes, so that features re-loaded by concurrent requests before the
+ * commit are not kept; features loaded while an eviction took place are
+ * not kept either.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class RoleFeatureIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoleFeatureIndex.class);
+    private static final long TTL = (5 * 60 * 1000);
+
+    @EJB
+    private InformationDao dao;
+
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    private volatile ConcurrentMap<Long, BitSet> index;
+    private volatile long loadedAt;
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Gets the identifiers of the features granted to any of the provided
+     * roles.
+     *
+     * @param roleIds the role identifiers
+     * @return the feature identifiers, in ascending order
+     */
+    public List<Integer> getFeatureIds(Collection<Long> roleIds) {
+        ConcurrentMap<Long, BitSet> current = currentIndex();
+
+        BitSet union = new BitSet();
+        for (Long roleId : roleIds) {
+            BitSet features = current.get(roleId);
+            if (features == null) {
+                // Role created or evicted since the index was loaded
+                long generation = evictions.get();
+                features = dao.getRoleFeatureIds(roleId);
+                if (evictions.get() == generation) {
+                    current.put(roleId, features);
+                }
+            }
+            union.or(features);
+        }
+
+        return union.stream().boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * Evicts the features of the provided role, which are reloaded on next
+     * use, once the current transaction (if any) completes.
+     *
+     * @param roleId the role identifier
+     */
+    public void evictRole(Long roleId) {
+        if (roleId != null) {
+            afterCompletion(() -> {
+                LOGGER.debug("evictRole(" + roleId + ")");
+                evictions.incrementAndGet();
+                ConcurrentMap<Long, BitSet> current = index;
+                if (current != null) {
+                    current.remove(roleId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Evicts the whole index, which is rebuilt on next use, once the current
+     * transaction (if any) completes.
+     */
+    public void evictAll() {
+        afterCompletion(() -> {
+            LOGGER.debug("evictAll()");
+            evictions.incrementAndGet();
+            index = null;
+        });
+    }
+
+    private ConcurrentMap<Long, BitSet> currentIndex() {
+        ConcurrentMap<Long, BitSet> ret = index;
+        if (ret == null || loadedAt + TTL <= System.currentTimeMillis()) {
+            long now = System.currentTimeMillis();
+            long generation = evictions.get();
+            ret = new ConcurrentHashMap<>(dao.getRoleFeatureIds());
+            if (evictions.get() == generation) {
+                loadedAt = now;
+                index = ret;
+            }
+            LOGGER.debug("Loaded features of " + ret.size() + " roles");
+        }
+        return ret;
+    }
+
+    private void afterCompletion(Runnable eviction) {
+        if (txRegistry != null && txRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // Nothing to do
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+
+}
@@ -2,15 +2,20 @@ package fish.focus.uvms.usm.jwt;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
 import javax.crypto.SecretKey;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.json.bind.Jsonb;
@@ -21,6 +26,7 @@ import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.Header;
 import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -33,10 +39,19 @@ import io.jsonwebtoken.security.SecurityException;
 
 /**
  * Handles the creation, extension (of validity) and verification (parsing) of JWT tokens.
+ * <p>
+ * The claims of verified tokens are cached until the tokens expire, so that the same token presented on
+ * consecutive requests is verified and parsed only once.
+ * <p>
+ * Features are put in the claims as a JSON array of identifiers, unless the <i>compactFeatures</i> configuration
+ * value is <i>true</i>, in which case they are put as a compact (base64url) string in the <i>featureSet</i> claim.
+ * Both forms are understood when parsing tokens, the array form is kept as default for consumers that read the
+ * claims themselves.
  */
 
 @Singleton
 @Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class DefaultJwtTokenHandler implements JwtTokenHandler {
 
     public static final long DEFAULT_TTL = 8 * 60 * 60 * 1000L;
@@ -48,16 +63,33 @@ public class DefaultJwtTokenHandler implements JwtTokenHandler {
     private static final String PROP_ISSUER = "issuer";
     private static final String PROP_ID = "id";
     private static final String TTL_PROPERTY_NAME = "timeToLiveInMinutes";
+    private static final String RENEWAL_PROPERTY_NAME = "renewalThresholdInPercent";
+    private static final String COMPACT_FEATURES_PROPERTY_NAME = "compactFeatures";
+    private static final int DEFAULT_RENEWAL_THRESHOLD = 10;
     private static final String DEFAULT_KEY = "usmSecretKey";
     private static final String DEFAULT_ID = "usm/authentication";
     private static final String DEFAULT_ISSUER = "usm";
     private static final String DEFAULT_SUBJECT = "authentication";
     private static final String USER_NAME = "userName";
     private static final String FEATURES = "features";
+    private static final String FEATURE_SET = "featureSet";
     private static final SignatureAlgorithm signatureAlgorithm = SignatureAlgorithm.HS256;
+    private static final int MAX_CACHED_TOKENS = 10000;
 
     private byte[] secretKey;
 
+    private volatile SecretKey signingKey;
+
+    private volatile JwtParser parser;
+
+    private final ConcurrentMap<String, Claims> verifiedClaims = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, RenewedToken> renewedTokens = new ConcurrentHashMap<>();
+
+    private int renewalThreshold = DEFAULT_RENEWAL_THRESHOLD;
+
+    private boolean compactFeatures;
+
     private Properties properties = new Properties();
 
     private Jsonb jsonb = JsonbBuilder.create();
@@ -75,6 +107,9 @@ public class DefaultJwtTokenHandler implements JwtTokenHandler {
             LOGGER.debug("Class-path resource: '{}' does not exist. Using default values", PROPERTIES_FILE);
         }
         initKey();
+        initRenewalThreshold();
+        compactFeatures = Boolean.parseBoolean(getConfigValue(COMPACT_FEATURES_PROPERTY_NAME));
+        LOGGER.debug("Compact feature encoding set to: {}", compactFeatures);
     }
 
     /**
@@ -105,7 +140,11 @@ public class DefaultJwtTokenHandler implements JwtTokenHandler {
             claims.setExpiration(new Date(now + DEFAULT_TTL));
             claims.put(USER_NAME, userName);
             if (features != null) {
-                claims.put(FEATURES, features);
+                if (compactFeatures) {
+                    claims.put(FEATURE_SET, FeatureCodec.encode(features));
+                } else {
+                    claims.put(FEATURES, features);
+                }
             }
 
             ret = signClaims(claims);
@@ -130,18 +169,73 @@ public class DefaultJwtTokenHandler implements JwtTokenHandler {
         String ret = null;
         Claims claims = parseClaims(token);
         if (claims != null) {
+            ret = extendClaims(claims);
+        }
 
-            long now = System.currentTimeMillis();
-            claims.setIssuedAt(new Date(now));
-            claims.setExpiration(new Date(now + getTtlInMilliseconds()));
+        LOGGER.debug("extendToken() - (LEAVE)");
+        return ret;
+    }
 
-            ret = signClaims(claims);
+    /**
+     * Renews the provided token, once the configured percentage (default 10%) of its validity period has elapsed.
+     * Concurrent renewals of the same token return the same renewed token.
+     * 
+     * @param token the JWT token to be renewed
+     * 
+     * @return the provided token if it is not yet due for renewal, an extended (validity) version of the token
+     *         otherwise, or null if the provided input was invalid or already expired.
+     */
+    public String renewToken(String token) {
+        LOGGER.debug("renewToken({}) - (ENTER)", token);
+
+        String ret = null;
+        Claims claims = parseClaims(token);
+        if (claims != null) {
+            if (isRenewalDue(claims)) {
+                purgeRenewedTokens();
+                Date expiration = claims.getExpiration();
+                ret = renewedTokens.computeIfAbsent(token,
+                        t -> new RenewedToken(expiration, extendClaims(claims))).token;
+            } else {
+                ret = token;
+            }
         }
 
-        LOGGER.debug("extendToken() - (LEAVE)");
+        LOGGER.debug("renewToken() - (LEAVE)");
         return ret;
     }
 
+    private String extendClaims(Claims claims) {
+        long now = System.currentTimeMillis();
+        claims.setIssuedAt(new Date(now));
+        claims.setExpiration(new Date(now + getTtlInMilliseconds()));
+
+        return signClaims(claims);
+    }
+
+    private boolean isRenewalDue(Claims claims) {
+        Date issuedAt = claims.getIssuedAt();
+        Date expiration = claims.getExpiration();
+        if (issuedAt == null || expiration == null) {
+            return true;
+        }
+
+        long elapsed = System.currentTimeMillis() - issuedAt.getTime();
+        long validity = expiration.getTime() - issuedAt.getTime();
+        return elapsed * 100 >= validity * renewalThreshold;
+    }
+
+    private void purgeRenewedTokens() {
+        if (renewedTokens.size() >= MAX_CACHED_TOKENS) {
+            long now = System.currentTimeMillis();
+            renewedTokens.values().removeIf(r -> r.expiration == null || r.expiration.getTime() <= now);
+            if (renewedTokens.size() >= MAX_CACHED_TOKENS) {
+                LOGGER.debug("Cache of renewed tokens is full. Clearing it");
+                renewedTokens.clear();
+            }
+        }
+    }
+
     private long getTtlInMilliseconds() {
         String configValue = getConfigValue(TTL_PROPERTY_NAME);
         if (configValue != null && !configValue.isEmpty()) {
@@ -181,21 +275,63 @@ public class DefaultJwtTokenHandler implements JwtTokenHandler {
         return ret;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Extract the identifiers of the features granted to the user to which the provided token was issued.
+     * 
+     * @param token the JWT token to be parsed
+     * 
+     * @return the feature identifiers, or null if the provided input was invalid, expired or without features.
+     */
     public List<Integer> parseTokenFeatures(String token) {
-        LOGGER.debug("parseToken({}) - (ENTER)", token);
+        LOGGER.debug("parseTokenFeatures({}) - (ENTER)", token);
 
         List<Integer> ret = null;
 
+        int[] features = parseTokenFeatureIds(token);
+        if (features != null) {
+            ret = Arrays.stream(features).boxed().collect(Collectors.toList());
+        }
+
+        LOGGER.debug("parseTokenFeatures() - (LEAVE)");
+        return ret;
+    }
+
+    /**
+     * Extract the identifiers of the features granted to the user to which the provided token was issued, without
+     * boxing them.
+     * 
+     * @param token the JWT token to be parsed
+     * 
+     * @return the feature identifiers, in ascending order, or null if the provided input was invalid, expired or
+     *         without features.
+     */
+    @SuppressWarnings("unchecked")
+    public int[] parseTokenFeatureIds(String token) {
+        LOGGER.debug("parseTokenFeatureIds({}) - (ENTER)", token);
+
+        int[] ret = null;
+
         Claims claims = parseClaims(token);
         if (claims != null) {
-            List<Number> features = claims.get(FEATURES, List.class);
-            ret = features.stream()
-                    .map(Number::intValue)
-                    .collect(Collectors.toList());
+            String featureSet = claims.get(FEATURE_SET, String.class);
+            if (featureSet != null) {
+                try {
+                    ret = FeatureCodec.decode(featureSet);
+                } catch (IllegalArgumentException e) {
+                    LOGGER.error("Failed to decode token features", e);
+                }
+            } else {
+                List<Number> features = claims.get(FEATURES, List.class);
+                if (features != null) {
+                    ret = features.stream()
+                            .mapToInt(Number::intValue)
+                            .sorted()
+                            .toArray();
+                }
+            }
         }
 
-        LOGGER.debug("parseToken() - (LEAVE)");
+        LOGGER.debug("parseTokenFeatureIds() - (LEAVE)");
         return ret;
     }
 
@@ -205,28 +341,33 @@ public class DefaultJwtTokenHandler implements JwtTokenHandler {
         header.put(Header.TYPE, Header.JWT_TYPE);
         header.put(JwsHeader.ALGORITHM, signatureAlgorithm);
 
-        // Signature key
-        SecretKey key = Keys.hmacShaKeyFor(getSecretKey());
-
         return Jwts.builder()
                 .setHeader(header)
                 .setClaims(claims)
-                .signWith(key, signatureAlgorithm)
+                .signWith(getSigningKey(), signatureAlgorithm)
                 .serializeToJsonWith(new JsonbSerializer<>())
                 .compact();
     }
 
+    /**
+     * Verifies the provided token and returns a (modifiable) copy of its claims, served from the cache of verified
+     * claims when the token was already verified and has not yet expired.
+     */
     private Claims parseClaims(String token) {
         Claims ret = null;
 
         if (token != null && !token.trim().isEmpty()) {
             try {
-                SecretKey key = Keys.hmacShaKeyFor(getSecretKey());
-                ret = Jwts.parserBuilder()
-                        .setSigningKey(key)
-                        .deserializeJsonWith(new JsonbDeserializer<>())
-                        .build()
-                        .parseClaimsJws(token).getBody();
+                Claims claims = verifiedClaims.get(token);
+                if (claims != null && isExpired(claims)) {
+                    verifiedClaims.remove(token);
+                    claims = null;
+                }
+                if (claims == null) {
+                    claims = getParser().parseClaimsJws(token).getBody();
+                    cacheClaims(token, claims);
+                }
+                ret = Jwts.claims(claims);
             } catch (ExpiredJwtException e) {
                 LOGGER.error("Token expired", e);
             } catch (UnsupportedJwtException | MalformedJwtException | SecurityException
@@ -238,6 +379,63 @@ public class DefaultJwtTokenHandler implements JwtTokenHandler {
         return ret;
     }
 
+    private void cacheClaims(String token, Claims claims) {
+        if (claims.getExpiration() == null) {
+            return;
+        }
+        if (verifiedClaims.size() >= MAX_CACHED_TOKENS) {
+            verifiedClaims.values().removeIf(this::isExpired);
+            if (verifiedClaims.size() >= MAX_CACHED_TOKENS) {
+                LOGGER.debug("Cache of verified tokens is full. Clearing it");
+                verifiedClaims.clear();
+            }
+        }
+        verifiedClaims.put(token, claims);
+    }
+
+    private boolean isExpired(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return expiration == null || expiration.getTime() <= System.currentTimeMillis();
+    }
+
+    private SecretKey getSigningKey() {
+        SecretKey ret = signingKey;
+        if (ret == null) {
+            ret = Keys.hmacShaKeyFor(getSecretKey());
+            signingKey = ret;
+        }
+        return ret;
+    }
+
+    private JwtParser getParser() {
+        JwtParser ret = parser;
+        if (ret == null) {
+            ret = Jwts.parserBuilder()
+                    .setSigningKey(getSigningKey())
+                    .deserializeJsonWith(new JsonbDeserializer<>())
+                    .build();
+            parser = ret;
+        }
+        return ret;
+    }
+
+    private void initRenewalThreshold() {
+        String configValue = getConfigValue(RENEWAL_PROPERTY_NAME);
+        if (configValue != null && !configValue.isEmpty()) {
+            try {
+                int threshold = Integer.parseInt(configValue);
+                if (threshold >= 0 && threshold <= 100) {
+                    renewalThreshold = threshold;
+                } else {
+                    LOGGER.warn("Configured renewal threshold is not a percentage: {}", threshold);
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Failed to parse renewal threshold config value to number: {}", configValue);
+            }
+        }
+        LOGGER.debug("Token renewal threshold set to: {}%", renewalThreshold);
+    }
+
     private String genkey() {
         SecretKey generatedKey = Keys.secretKeyFor(signatureAlgorithm);
         return Base64.getEncoder().encodeToString(generatedKey.getEncoded());
@@ -253,6 +451,10 @@ public class DefaultJwtTokenHandler implements JwtTokenHandler {
         LOGGER.debug("Secret JWT signature key set to: {}", base64signatureKey);
 
         secretKey = Base64.getDecoder().decode(base64signatureKey);
+        signingKey = null;
+        parser = null;
+        verifiedClaims.clear();
+        renewedTokens.clear();
         LOGGER.debug("Parsed Base64 JWT signature key: {}", secretKey);
     }
 
@@ -306,6 +508,16 @@ public class DefaultJwtTokenHandler implements JwtTokenHandler {
         return secretKey;
     }
 
+    private static class RenewedToken {
+        private final Date expiration;
+        private final String token;
+
+        private RenewedToken(Date expiration, String token) {
+            this.expiration = expiration;
+            this.token = token;
+        }
+    }
+
     class JsonbSerializer<T> implements Serializer<T> {
         @Override
         public byte[] serialize(T t) {
@@ -0,0 +1,112 @@
+package fish.focus.uvms.usm.jwt;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Compact (base64url) encoding of a set of feature identifiers, used for the features claim of JWT tokens.
+ * <p>
+ * The identifiers are sorted and encoded either as a bit-set or as a run of delta-encoded varints, whichever is
+ * shorter; the first encoded byte tells which of the two forms follows.
+ */
+final class FeatureCodec {
+
+    private static final byte BIT_SET = 0;
+    private static final byte DELTA_VARINT = 1;
+
+    private FeatureCodec() {
+    }
+
+    /**
+     * Encodes the provided feature identifiers.
+     *
+     * @param features the (non-negative) feature identifiers, in any order, possibly with duplicates
+     *
+     * @return the base64url encoded (without padding) feature identifiers
+     */
+    static String encode(Collection<Integer> features) {
+        int[] ids = features.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        if (ids.length > 0 && ids[0] < 0) {
+            throw new IllegalArgumentException("Negative feature identifier: " + ids[0]);
+        }
+
+        BitSet bits = new BitSet();
+        ByteArrayOutputStream varints = new ByteArrayOutputStream();
+        varints.write(DELTA_VARINT);
+        int previous = 0;
+        for (int id : ids) {
+            bits.set(id);
+            writeVarint(varints, id - previous);
+            previous = id;
+        }
+
+        byte[] bitBytes = bits.toByteArray();
+        byte[] encoded;
+        if (bitBytes.length + 1 < varints.size()) {
+            encoded = new byte[bitBytes.length + 1];
+            encoded[0] = BIT_SET;
+            System.arraycopy(bitBytes, 0, encoded, 1, bitBytes.length);
+        } else {
+            encoded = varints.toByteArray();
+        }
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(encoded);
+    }
+
+    /**
+     * Decodes feature identifiers encoded with {@link #encode(Collection)}.
+     *
+     * @param encoded the base64url encoded feature identifiers
+     *
+     * @return the feature identifiers, in ascending order and without duplicates
+     *
+     * @throws IllegalArgumentException if the provided value is not a valid encoding
+     */
+    static int[] decode(String encoded) {
+        byte[] bytes = Base64.getUrlDecoder().decode(encoded);
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Empty feature encoding");
+        }
+
+        int[] ret;
+        if (bytes[0] == BIT_SET) {
+            ret = BitSet.valueOf(Arrays.copyOfRange(bytes, 1, bytes.length)).stream().toArray();
+        } else if (bytes[0] == DELTA_VARINT) {
+            ret = new int[bytes.length - 1];
+            int count = 0;
+            int previous = 0;
+            int pos = 1;
+            while (pos < bytes.length) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    if (pos >= bytes.length || shift > 28) {
+                        throw new IllegalArgumentException("Malformed feature encoding");
+                    }
+                    b = bytes[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                previous += delta;
+                ret[count++] = previous;
+            }
+            ret = Arrays.copyOf(ret, count);
+        } else {
+            throw new IllegalArgumentException("Unknown feature encoding: " + bytes[0]);
+        }
+
+        return ret;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
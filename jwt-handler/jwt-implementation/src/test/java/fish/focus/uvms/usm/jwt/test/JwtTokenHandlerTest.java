@@ -4,8 +4,15 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.*;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.ejb.EJB;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -42,6 +49,7 @@ public class JwtTokenHandlerTest {
                 .addClass(JwtTokenHandler.class)
                 .addClass(JndiUtil.class)
                 .addClass(DefaultJwtTokenHandler.class)
+                .addClass("fish.focus.uvms.usm.jwt.FeatureCodec")
                 .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
         war.addAsLibraries(Maven.configureResolver().loadPomFromFile("pom.xml")
                 .resolve("io.jsonwebtoken:jjwt-api",
@@ -56,6 +64,7 @@ public class JwtTokenHandlerTest {
                 .addClass(JwtTokenHandler.class)
                 .addClass(JndiUtil.class)
                 .addClass(DefaultJwtTokenHandler.class)
+                .addClass("fish.focus.uvms.usm.jwt.FeatureCodec")
                 .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
         war.addAsLibraries(Maven.configureResolver().loadPomFromFile("pom.xml")
                 .resolve("io.jsonwebtoken:jjwt-api",
@@ -67,6 +76,8 @@ public class JwtTokenHandlerTest {
     @Before
     public void clearProperties() {
         System.clearProperty("USM.secretKey");
+        System.clearProperty("USM.compactFeatures");
+        System.clearProperty("USM.renewalThresholdInPercent");
         testSubject = new DefaultJwtTokenHandler();
         testSubject.init();
     }
@@ -143,4 +154,83 @@ public class JwtTokenHandlerTest {
         assertThat(parsedFeatures.contains(1), is(true));
         assertThat(parsedFeatures.contains(2), is(true));
     }
+
+    @Test
+    @OperateOnDeployment("withProperties")
+    public void testParseCompactFeatures() {
+        System.setProperty("USM.compactFeatures", "true");
+        DefaultJwtTokenHandler compactHandler = new DefaultJwtTokenHandler();
+        compactHandler.init();
+
+        List<Integer> sparse = Arrays.asList(7, 1, 300000, 7);
+        String token = compactHandler.createToken(USER_NAME, sparse);
+        assertArrayEquals(new int[]{1, 7, 300000}, compactHandler.parseTokenFeatureIds(token));
+        assertArrayEquals(new int[]{1, 7, 300000}, testSubject.parseTokenFeatureIds(token));
+
+        List<Integer> dense = new ArrayList<>();
+        for (int i = 0; i < 500; i += 2) {
+            dense.add(i);
+        }
+        token = compactHandler.createToken(USER_NAME, dense);
+        assertThat(compactHandler.parseTokenFeatures(token), is(dense));
+        assertThat(compactHandler.parseTokenFeatureIds(testSubject.createToken(USER_NAME, dense)).length,
+                is(dense.size()));
+    }
+
+    @Test
+    @OperateOnDeployment("withProperties")
+    public void testParseCachedToken() {
+        String token = testSubject.createToken(USER_NAME, Arrays.asList(1, 2));
+        assertEquals(USER_NAME, testSubject.parseToken(token));
+
+        String extended = testSubject.extendToken(token);
+        assertNotNull("Unexpected null extended token", extended);
+
+        assertEquals(USER_NAME, testSubject.parseToken(token));
+        assertEquals(USER_NAME, testSubject.parseToken(extended));
+        assertThat(testSubject.parseTokenFeatures(token).size(), is(2));
+        assertNull(testSubject.parseToken(token + "x"));
+    }
+
+    @Test
+    @OperateOnDeployment("withProperties")
+    public void testRenewToken() {
+        String token = testSubject.createToken(USER_NAME);
+
+        assertEquals(token, testSubject.renewToken(token));
+        assertNull(testSubject.renewToken(RANDOM_SIG_TOKEN));
+    }
+
+    @Test
+    @OperateOnDeployment("withProperties")
+    public void testRenewTokenConcurrently() throws Exception {
+        System.setProperty("USM.renewalThresholdInPercent", "0");
+        DefaultJwtTokenHandler renewingHandler = new DefaultJwtTokenHandler();
+        renewingHandler.init();
+        String token = renewingHandler.createToken(USER_NAME);
+
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return renewingHandler.renewToken(token);
+            }));
+        }
+        start.countDown();
+
+        Set<String> renewed = new HashSet<>();
+        for (Future<String> result : results) {
+            renewed.add(result.get());
+        }
+        executor.shutdown();
+
+        assertThat(renewed.size(), is(1));
+        String ret = renewed.iterator().next();
+        assertNotNull("Unexpected null renewed token", ret);
+        assertEquals(USER_NAME, renewingHandler.parseToken(ret));
+        assertEquals(ret, renewingHandler.renewToken(token));
+    }
 }
@@ -42,6 +42,7 @@ public class OverrideSecretTest {
                 .addAsResource("jwtsecret.properties", "jwt.properties")
                 .addClass(JwtTokenHandler.class)
                 .addClass(DefaultJwtTokenHandler.class)
+                .addClass("fish.focus.uvms.usm.jwt.FeatureCodec")
                 .addClass(JndiUtil.class)
                 .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
         war.addAsLibraries(Maven.configureResolver().loadPomFromFile("pom.xml")
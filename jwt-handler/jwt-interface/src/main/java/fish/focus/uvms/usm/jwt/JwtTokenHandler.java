@@ -15,10 +15,31 @@ public interface JwtTokenHandler {
   @Lock(LockType.READ)
   String extendToken(String token);
 
+  /**
+   * Renews the provided token. Unless overridden, the token is extended on every call.
+   */
+  @Lock(LockType.READ)
+  default String renewToken(String token) {
+    return extendToken(token);
+  }
+
   @Lock(LockType.READ)
   String parseToken(String token);
 
   @Lock(LockType.READ)
   List<Integer> parseTokenFeatures(String token);
+
+  /**
+   * Extracts the feature identifiers of the provided token, in ascending order, or null. Unless overridden, they
+   * are unboxed from the result of parseTokenFeatures.
+   */
+  @Lock(LockType.READ)
+  default int[] parseTokenFeatureIds(String token) {
+    List<Integer> features = parseTokenFeatures(token);
+    if (features == null) {
+      return null;
+    }
+    return features.stream().mapToInt(Integer::intValue).sorted().toArray();
+  }
   
 }